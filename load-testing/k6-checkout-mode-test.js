@@ -0,0 +1,122 @@
+import http from 'k6/http';
+import { check } from 'k6';
+import { Counter, Rate, Trend } from 'k6/metrics';
+
+// Compares checkout throughput of the standard and transactional checkout modes.
+// Start the application against a single-node replica set in one mode, run this script,
+// then restart in the other mode and run it again (see README.md):
+//   k6 run -e MODE=standard k6-checkout-mode-test.js
+//   k6 run -e MODE=transactional k6-checkout-mode-test.js
+
+// Custom metrics
+const checkoutDuration = new Trend('checkout_duration');
+const checkoutsCompleted = new Counter('checkouts_completed');
+const checkoutErrors = new Rate('checkout_error_rate');
+
+// Configuration
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const API_BASE = `${BASE_URL}/api`;
+const MODE = __ENV.MODE || 'standard';
+const ITEMS_PER_CART = parseInt(__ENV.ITEMS_PER_CART || '3');
+const PRODUCT_POOL = parseInt(__ENV.PRODUCT_POOL || '50');
+const MAX_BUYERS = 32;
+
+export const options = {
+  setupTimeout: '5m',
+  stages: [
+    { duration: '30s', target: 8 },
+    { duration: '1m', target: 8 },
+    { duration: '30s', target: MAX_BUYERS },
+    { duration: '2m', target: MAX_BUYERS },
+    { duration: '30s', target: 0 },
+  ],
+  tags: { mode: MODE },
+  thresholds: {
+    checkout_error_rate: ['rate<0.01'],
+    checkout_duration: ['p(95)<1000'],
+  },
+};
+
+const address = {
+  label: 'Ev',
+  line1: 'Test Mahallesi 1',
+  city: 'İzmir',
+  postalCode: '35000',
+  country: 'TR',
+  phone: '+905551112233',
+};
+
+function jsonHeaders(token) {
+  const headers = { 'Content-Type': 'application/json' };
+  if (token) {
+    headers.Authorization = `Bearer ${token}`;
+  }
+  return { headers };
+}
+
+function login(email, password) {
+  const response = http.post(`${API_BASE}/auth/login`, JSON.stringify({ email, password }), jsonHeaders());
+  return response.status === 200 ? JSON.parse(response.body).accessToken : null;
+}
+
+export function setup() {
+  console.log(`🚀 Starting checkout benchmark (mode: ${MODE})...`);
+  
+  const adminToken = login('admin@ozdilek.com', 'admin123');
+  if (!adminToken) {
+    throw new Error('Admin login failed');
+  }
+  
+  // Enough stock that the comparison measures contention, not sell-outs
+  const productsResponse = http.get(`${API_BASE}/products?size=${PRODUCT_POOL}`);
+  const productIds = JSON.parse(productsResponse.body).content.map(p => p.id);
+  productIds.forEach(id => {
+    http.put(`${API_BASE}/admin/products/${id}/stock?stock=1000000`, null, jsonHeaders(adminToken));
+  });
+  
+  // One buyer account per virtual user so carts never collide
+  const tokens = [];
+  for (let i = 1; i <= MAX_BUYERS; i++) {
+    const email = `checkout-buyer-${i}@ozdilek.com`;
+    const password = 'Checkout123!';
+    http.post(`${API_BASE}/auth/register`, JSON.stringify({ name: `Checkout Buyer ${i}`, email, password }), jsonHeaders());
+    tokens.push(login(email, password));
+  }
+  
+  console.log(`📦 Using ${productIds.length} products and ${tokens.filter(t => t).length} buyers`);
+  return { productIds, tokens };
+}
+
+export default function(data) {
+  const token = data.tokens[(__VU - 1) % data.tokens.length];
+  
+  const items = [];
+  for (let i = 0; i < ITEMS_PER_CART; i++) {
+    items.push({ productId: data.productIds[Math.floor(Math.random() * data.productIds.length)], quantity: 1 });
+  }
+  
+  const cartResponse = http.post(`${API_BASE}/cart/items:batch`, JSON.stringify({ items }), jsonHeaders(token));
+  if (cartResponse.status !== 200) {
+    checkoutErrors.add(1);
+    return;
+  }
+  
+  const checkoutPayload = JSON.stringify({
+    cartId: JSON.parse(cartResponse.body).id,
+    shippingAddress: address,
+    billingAddress: address,
+    paymentMethod: { provider: 'mock', token: 'tok_test' },
+  });
+  
+  const startTime = Date.now();
+  const response = http.post(`${API_BASE}/orders/checkout`, checkoutPayload, jsonHeaders(token));
+  checkoutDuration.add(Date.now() - startTime);
+  
+  const success = check(response, {
+    'checkout status is 200': (r) => r.status === 200,
+  });
+  checkoutErrors.add(!success);
+  if (success) {
+    checkoutsCompleted.add(1);
+  }
+}
@@ -0,0 +1,131 @@
+import http from 'k6/http';
+import { check } from 'k6';
+import { Counter, Rate, Trend } from 'k6/metrics';
+
+// Flash sale benchmark: every virtual user checks out the same SKU.
+// Run once per mode and compare checkouts/s per scenario:
+//   k6 run -e HOT_SKU=false k6-hot-sku-test.js
+//   k6 run -e HOT_SKU=true -e SHARDS=16 k6-hot-sku-test.js
+
+// Custom metrics
+const checkoutDuration = new Trend('checkout_duration');
+const checkoutsCompleted = new Counter('checkouts_completed');
+const checkoutErrors = new Rate('checkout_error_rate');
+
+// Configuration
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const API_BASE = `${BASE_URL}/api`;
+const HOT_SKU = __ENV.HOT_SKU === 'true';
+const SHARDS = parseInt(__ENV.SHARDS || '8');
+const MAX_BUYERS = 64;
+
+// 1, 8 and 64 concurrent buyers, one after another
+export const options = {
+  setupTimeout: '5m',
+  scenarios: {
+    buyers_1: { executor: 'constant-vus', vus: 1, duration: '1m', startTime: '0s', tags: { buyers: '1' } },
+    buyers_8: { executor: 'constant-vus', vus: 8, duration: '1m', startTime: '1m10s', tags: { buyers: '8' } },
+    buyers_64: { executor: 'constant-vus', vus: 64, duration: '1m', startTime: '2m20s', tags: { buyers: '64' } },
+  },
+  thresholds: {
+    checkout_error_rate: ['rate<0.01'],
+    'checkout_duration{buyers:1}': ['p(95)<500'],
+    'checkout_duration{buyers:8}': ['p(95)<500'],
+    'checkout_duration{buyers:64}': ['p(95)<1000'],
+  },
+};
+
+const address = {
+  label: 'Ev',
+  line1: 'Test Mahallesi 1',
+  city: 'İzmir',
+  postalCode: '35000',
+  country: 'TR',
+  phone: '+905551112233',
+};
+
+function jsonHeaders(token) {
+  const headers = { 'Content-Type': 'application/json' };
+  if (token) {
+    headers.Authorization = `Bearer ${token}`;
+  }
+  return { headers };
+}
+
+function login(email, password) {
+  const response = http.post(`${API_BASE}/auth/login`, JSON.stringify({ email, password }), jsonHeaders());
+  return response.status === 200 ? JSON.parse(response.body).accessToken : null;
+}
+
+export function setup() {
+  console.log(`🚀 Starting hot SKU benchmark (hot SKU mode: ${HOT_SKU})...`);
+  
+  const adminToken = login('admin@ozdilek.com', 'admin123');
+  if (!adminToken) {
+    throw new Error('Admin login failed');
+  }
+  
+  let productId = __ENV.PRODUCT_ID;
+  if (!productId) {
+    const productsResponse = http.get(`${API_BASE}/products?size=1`);
+    productId = JSON.parse(productsResponse.body).content[0].id;
+  }
+  
+  // Start from a clean mode and enough stock that nobody sells out
+  http.del(`${API_BASE}/admin/products/${productId}/hot-sku`, null, jsonHeaders(adminToken));
+  http.put(`${API_BASE}/admin/products/${productId}/stock?stock=10000000`, null, jsonHeaders(adminToken));
+  if (HOT_SKU) {
+    const enableResponse = http.post(`${API_BASE}/admin/products/${productId}/hot-sku?shards=${SHARDS}`, null, jsonHeaders(adminToken));
+    if (enableResponse.status !== 200) {
+      throw new Error(`Could not enable hot SKU mode: ${enableResponse.status}`);
+    }
+  }
+  
+  // One buyer account per virtual user so carts never collide
+  const tokens = [];
+  for (let i = 1; i <= MAX_BUYERS; i++) {
+    const email = `flash-buyer-${i}@ozdilek.com`;
+    const password = 'Flash123!';
+    http.post(`${API_BASE}/auth/register`, JSON.stringify({ name: `Flash Buyer ${i}`, email, password }), jsonHeaders());
+    tokens.push(login(email, password));
+  }
+  
+  console.log(`📦 Benchmarking product ${productId} with ${tokens.filter(t => t).length} buyers`);
+  return { productId, tokens };
+}
+
+export default function(data) {
+  const token = data.tokens[(__VU - 1) % data.tokens.length];
+  
+  const cartResponse = http.post(`${API_BASE}/cart/add`,
+    JSON.stringify({ productId: data.productId, quantity: 1 }), jsonHeaders(token));
+  if (cartResponse.status !== 200) {
+    checkoutErrors.add(1);
+    return;
+  }
+  
+  const checkoutPayload = JSON.stringify({
+    cartId: JSON.parse(cartResponse.body).id,
+    shippingAddress: address,
+    billingAddress: address,
+    paymentMethod: { provider: 'mock', token: 'tok_test' },
+  });
+  
+  const startTime = Date.now();
+  const response = http.post(`${API_BASE}/orders/checkout`, checkoutPayload, jsonHeaders(token));
+  checkoutDuration.add(Date.now() - startTime);
+  
+  const success = check(response, {
+    'checkout status is 200': (r) => r.status === 200,
+  });
+  checkoutErrors.add(!success);
+  if (success) {
+    checkoutsCompleted.add(1);
+  }
+}
+
+export function teardown(data) {
+  const adminToken = login('admin@ozdilek.com', 'admin123');
+  const statusResponse = http.get(`${API_BASE}/admin/products/${data.productId}/hot-sku`, jsonHeaders(adminToken));
+  console.log(`📊 Final stock state: ${statusResponse.body}`);
+}
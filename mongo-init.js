@@ -73,7 +73,22 @@ db.createCollection('products', {
 
 db.createCollection('categories');
 db.createCollection('carts');
+db.createCollection('carts_archive');
+db.createCollection('stock_shards');
 db.createCollection('orders');
+// Closed orders past app.orders.archive.after; compression can only be set at creation
+db.createCollection('orders_archive', {
+  storageEngine: { wiredTiger: { configString: 'block_compressor=zstd' } }
+});
+db.createCollection('order_outbox');
+db.createCollection('order_events');
+db.createCollection('order_summaries');
+db.createCollection('promotions');
+db.createCollection('price_books');
+db.createCollection('price_history');
+db.createCollection('daily_sales');
+db.createCollection('migrations');
+db.createCollection('counters');
 db.createCollection('refresh_tokens');
 
 // Create indexes for better performance
@@ -89,6 +104,7 @@ db.products.createIndex({ slug: 1 }, { unique: true });
 db.products.createIndex({ title: 'text', description: 'text' });
 db.products.createIndex({ categories: 1, price: 1 });
 db.products.createIndex({ available: 1, stock: 1 });
+db.products.createIndex({ available: 1, price: 1, stock: 1 }); // price range + availability
 db.products.createIndex({ createdAt: -1 });
 
 // Categories indexes
@@ -100,10 +116,50 @@ db.categories.createIndex({ active: 1 });
 db.carts.createIndex({ userId: 1 });
 db.carts.createIndex({ sessionId: 1 });
 db.carts.createIndex({ updatedAt: 1 });
+// Guest carts expire after 7 days of inactivity (app.cart.guest-idle-window)
+db.carts.createIndex(
+  { updatedAt: 1 },
+  { name: 'guest_cart_ttl', expireAfterSeconds: 604800, partialFilterExpression: { sessionId: { $exists: true } } }
+);
+
+// Cart archive indexes
+db.carts_archive.createIndex({ userId: 1 });
+
+// Stock shard indexes (hot SKU mode)
+db.stock_shards.createIndex({ productId: 1, shard: 1 }, { unique: true });
 
 // Orders indexes
 db.orders.createIndex({ userId: 1, createdAt: -1 });
 db.orders.createIndex({ status: 1 });
+db.orders.createIndex({ status: 1, createdAt: 1 });
+db.orders.createIndex({ orderNumber: 1 }, { unique: true, sparse: true });
+
+// Order archive indexes (monthly partitions get the same ones when the job creates them)
+db.orders_archive.createIndex({ userId: 1, createdAt: -1 });
+db.orders_archive.createIndex({ createdAt: 1 });
+db.orders_archive.createIndex({ orderNumber: 1 }, { sparse: true });
+
+// Order history: one document per event, dense sequence per order
+db.order_events.createIndex({ orderId: 1, seq: 1 }, { unique: true });
+
+// "My orders" read model, keyset-paginated per user
+db.order_summaries.createIndex({ userId: 1, createdAt: -1, _id: -1 });
+
+// Promotions (compiled in memory, read in full on change)
+db.promotions.createIndex({ updatedAt: 1 });
+db.promotions.createIndex({ couponCode: 1 }, { sparse: true });
+
+// Price books (compiled in memory, read in full on change)
+db.price_books.createIndex({ updatedAt: 1 });
+
+// Price history, one bucket per SKU per day
+db.price_history.createIndex({ sku: 1, day: 1 }, { unique: true });
+
+// Daily sales rollups, one document per day per currency
+db.daily_sales.createIndex({ day: 1, currency: 1 }, { unique: true });
+
+// Order pipeline outbox indexes
+db.order_outbox.createIndex({ status: 1, availableAt: 1 });
 
 // Refresh tokens indexes
 db.refresh_tokens.createIndex({ tokenHash: 1 });
@@ -111,5 +167,5 @@ db.refresh_tokens.createIndex({ userId: 1 });
 db.refresh_tokens.createIndex({ expiresAt: 1 }, { expireAfterSeconds: 0 });
 
 print('Database initialization completed successfully!');
-print('Collections created: users, products, categories, carts, orders, refresh_tokens');
+print('Collections created: users, products, categories, carts, carts_archive, stock_shards, orders, orders_archive, order_events, order_summaries, order_outbox, promotions, price_books, price_history, daily_sales, migrations, counters, refresh_tokens');
 print('Indexes created for optimal performance');
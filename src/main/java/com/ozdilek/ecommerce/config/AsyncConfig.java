@@ -0,0 +1,67 @@
+package com.ozdilek.ecommerce.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class AsyncConfig {
+    
+    /**
+     * Runs the independent Mongo loads and the best-effort side effects of checkout.
+     */
+    @Bean
+    public Executor checkoutExecutor(@Value("${app.checkout.executor.pool-size:16}") int poolSize,
+                                     @Value("${app.checkout.executor.queue-capacity:500}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("checkout-");
+        // Under saturation the request thread does the work itself instead of failing
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+    
+    /**
+     * Rebuilds daily_sales chunks in parallel during a backfill.
+     */
+    @Bean
+    public Executor dailySalesExecutor(@Value("${app.analytics.daily-sales.backfill-parallelism:4}") int parallelism) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setThreadNamePrefix("daily-sales-");
+        executor.initialize();
+        return executor;
+    }
+    
+    /**
+     * Runs order pipeline steps, which mostly wait on Mongo and the payment provider.
+     * Uses a virtual thread per task on Java 21+; on older runtimes falls back to a fixed
+     * pool. Concurrency is bounded by app.orders.pipeline.max-in-flight either way.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService orderPipelineExecutor(@Value("${app.orders.pipeline.pool-size:32}") int poolSize) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+            ThreadFactory threadFactory = runnable -> {
+                Thread thread = new Thread(runnable, "order-pipeline-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            return Executors.newFixedThreadPool(poolSize, threadFactory);
+        }
+    }
+}
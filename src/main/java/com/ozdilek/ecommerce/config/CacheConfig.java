@@ -1,26 +1,33 @@
 package com.ozdilek.ecommerce.config;
 
+import com.ozdilek.ecommerce.dto.cart.CartResponse;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
+import java.time.LocalDateTime;
 
 @Configuration
 @EnableCaching
 public class CacheConfig {
     
+    private static final Duration DEFAULT_TTL = Duration.ofMinutes(30); // Cache 30 dakika
+    
+    private static final Duration MIN_TTL = Duration.ofSeconds(1);
+    
     @Bean
     public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory) {
         RedisCacheConfiguration config = RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(Duration.ofMinutes(30)) // Cache 30 dakika
+                .entryTtl(priceAwareTtl())
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
                 .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(new GenericJackson2JsonRedisSerializer()));
         
@@ -28,4 +35,21 @@ public class CacheConfig {
                 .cacheDefaults(config)
                 .build();
     }
+    
+    /**
+     * Cached carts expire at their next scheduled price change at the latest, so a price
+     * book entry takes effect on time without evicting anything.
+     */
+    private RedisCacheWriter.TtlFunction priceAwareTtl() {
+        return (key, value) -> {
+            if (value instanceof CartResponse cart && cart.getPriceValidUntil() != null) {
+                Duration untilPriceChange = Duration.between(LocalDateTime.now(), cart.getPriceValidUntil());
+                if (untilPriceChange.compareTo(DEFAULT_TTL) < 0) {
+                    // A zero TTL would mean "never expires"
+                    return untilPriceChange.compareTo(MIN_TTL) < 0 ? MIN_TTL : untilPriceChange;
+                }
+            }
+            return DEFAULT_TTL;
+        };
+    }
 }
@@ -0,0 +1,47 @@
+package com.ozdilek.ecommerce.config;
+
+import org.bson.types.Decimal128;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Stores BigDecimal (prices and every other amount) as Decimal128 instead of Spring Data's
+ * default string, so amounts compare numerically and range queries can use indexes.
+ * Documents written before this still hold strings until MonetaryFieldMigrationService
+ * rewrites them; the default String to BigDecimal reader keeps them readable meanwhile.
+ */
+@Configuration
+public class MongoConfig {
+    
+    @Bean
+    public MongoCustomConversions mongoCustomConversions() {
+        return new MongoCustomConversions(List.of(
+                new BigDecimalToDecimal128Converter(),
+                new Decimal128ToBigDecimalConverter()));
+    }
+    
+    @WritingConverter
+    static class BigDecimalToDecimal128Converter implements Converter<BigDecimal, Decimal128> {
+        
+        @Override
+        public Decimal128 convert(BigDecimal source) {
+            return new Decimal128(source);
+        }
+    }
+    
+    @ReadingConverter
+    static class Decimal128ToBigDecimalConverter implements Converter<Decimal128, BigDecimal> {
+        
+        @Override
+        public BigDecimal convert(Decimal128 source) {
+            return source.bigDecimalValue();
+        }
+    }
+}
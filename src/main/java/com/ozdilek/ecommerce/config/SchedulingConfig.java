@@ -0,0 +1,15 @@
+package com.ozdilek.ecommerce.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * All @Scheduled jobs; app.scheduling.enabled=false turns every one of them off, e.g. for
+ * benchmarks that must not have sweeps running over the measured data.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "app.scheduling.enabled", havingValue = "true", matchIfMissing = true)
+public class SchedulingConfig {
+}
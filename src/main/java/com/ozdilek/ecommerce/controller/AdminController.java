@@ -1,9 +1,14 @@
 package com.ozdilek.ecommerce.controller;
 
+import com.ozdilek.ecommerce.dto.order.BulkStatusUpdateRequest;
+import com.ozdilek.ecommerce.dto.pricing.PriceBookRequest;
 import com.ozdilek.ecommerce.dto.product.ProductCreateRequest;
 import com.ozdilek.ecommerce.dto.product.ProductUpdateRequest;
+import com.ozdilek.ecommerce.dto.promotion.PromotionRequest;
 import com.ozdilek.ecommerce.model.Order;
+import com.ozdilek.ecommerce.model.PriceBook;
 import com.ozdilek.ecommerce.model.Product;
+import com.ozdilek.ecommerce.model.Promotion;
 import com.ozdilek.ecommerce.model.User;
 import com.ozdilek.ecommerce.service.*;
 import lombok.RequiredArgsConstructor;
@@ -12,6 +17,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
@@ -19,6 +25,7 @@ import org.springframework.web.bind.annotation.*;
 import jakarta.validation.Valid;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -33,6 +40,16 @@ public class AdminController {
     private final AdminProductManagementService adminProductService;
     private final AdminOrderManagementService adminOrderService;
     private final AdminAnalyticsService adminAnalyticsService;
+    private final DashboardStatsService dashboardStatsService;
+    private final DailySalesService dailySalesService;
+    private final HotSkuStockService hotSkuStockService;
+    private final OrderEventService orderEventService;
+    private final OrderSummaryService orderSummaryService;
+    private final OrderArchiveService orderArchiveService;
+    private final AdminPromotionManagementService adminPromotionService;
+    private final AdminPriceBookManagementService adminPriceBookService;
+    private final PriceHistoryService priceHistoryService;
+    private final MonetaryFieldMigrationService monetaryFieldMigrationService;
     private final RoleBasedPermissionService permissionService;
     
     // ==================== USER MANAGEMENT ====================
@@ -246,6 +263,36 @@ public class AdminController {
         return ResponseEntity.ok(Map.of("message", "Product permanently deleted"));
     }
     
+    @GetMapping("/products/{productId}/hot-sku")
+    public ResponseEntity<Map<String, Object>> getHotSkuStatus(@PathVariable String productId, Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        return ResponseEntity.ok(hotSkuStockService.getHotSkuStatus(productId));
+    }
+    
+    @PostMapping("/products/{productId}/hot-sku")
+    public ResponseEntity<Map<String, Object>> enableHotSku(
+            @PathVariable String productId,
+            @RequestParam(defaultValue = "8") int shards,
+            Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        return ResponseEntity.ok(hotSkuStockService.enableHotSku(productId, shards));
+    }
+    
+    @DeleteMapping("/products/{productId}/hot-sku")
+    public ResponseEntity<Map<String, Object>> disableHotSku(@PathVariable String productId, Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        return ResponseEntity.ok(hotSkuStockService.disableHotSku(productId));
+    }
+    
     @GetMapping("/products/low-stock")
     public ResponseEntity<List<Product>> getLowStockProducts(
             @RequestParam(defaultValue = "10") int threshold,
@@ -280,6 +327,127 @@ public class AdminController {
         return ResponseEntity.ok(products);
     }
     
+    @PostMapping("/products/{productId}/discount")
+    public ResponseEntity<Product> addProductDiscount(
+            @PathVariable String productId,
+            @RequestParam BigDecimal percentage,
+            Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        Product product = adminProductService.addProductDiscount(productId, percentage);
+        return ResponseEntity.ok(product);
+    }
+    
+    @DeleteMapping("/products/{productId}/discount")
+    public ResponseEntity<Product> removeProductDiscount(@PathVariable String productId, Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        Product product = adminProductService.removeProductDiscount(productId);
+        return ResponseEntity.ok(product);
+    }
+    
+    // ==================== PROMOTIONS ====================
+    
+    @GetMapping("/promotions")
+    public ResponseEntity<List<Promotion>> getAllPromotions(Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        return ResponseEntity.ok(adminPromotionService.getAllPromotions());
+    }
+    
+    @PostMapping("/promotions")
+    public ResponseEntity<Promotion> createPromotion(
+            @Valid @RequestBody PromotionRequest request,
+            Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        return ResponseEntity.ok(adminPromotionService.createPromotion(request));
+    }
+    
+    @PutMapping("/promotions/{promotionId}")
+    public ResponseEntity<Promotion> updatePromotion(
+            @PathVariable String promotionId,
+            @Valid @RequestBody PromotionRequest request,
+            Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        return ResponseEntity.ok(adminPromotionService.updatePromotion(promotionId, request));
+    }
+    
+    @DeleteMapping("/promotions/{promotionId}")
+    public ResponseEntity<Promotion> deactivatePromotion(@PathVariable String promotionId, Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        return ResponseEntity.ok(adminPromotionService.deactivatePromotion(promotionId));
+    }
+    
+    // ==================== PRICE BOOKS ====================
+    
+    @GetMapping("/price-books")
+    public ResponseEntity<List<PriceBook>> getAllPriceBooks(Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        return ResponseEntity.ok(adminPriceBookService.getAllPriceBooks());
+    }
+    
+    @PostMapping("/price-books")
+    public ResponseEntity<PriceBook> createPriceBook(
+            @Valid @RequestBody PriceBookRequest request,
+            Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        return ResponseEntity.ok(adminPriceBookService.createPriceBook(request));
+    }
+    
+    @PutMapping("/price-books/{priceBookId}")
+    public ResponseEntity<PriceBook> updatePriceBook(
+            @PathVariable String priceBookId,
+            @Valid @RequestBody PriceBookRequest request,
+            Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        return ResponseEntity.ok(adminPriceBookService.updatePriceBook(priceBookId, request));
+    }
+    
+    @DeleteMapping("/price-books/{priceBookId}")
+    public ResponseEntity<PriceBook> deactivatePriceBook(@PathVariable String priceBookId, Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        return ResponseEntity.ok(adminPriceBookService.deactivatePriceBook(priceBookId));
+    }
+    
+    @GetMapping("/products/{productId}/effective-price")
+    public ResponseEntity<PriceResolver.ResolvedPrice> previewProductPrice(
+            @PathVariable String productId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at,
+            Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        return ResponseEntity.ok(adminPriceBookService.previewPrice(productId, at));
+    }
+    
     // ==================== ORDER MANAGEMENT ====================
     
     @GetMapping("/orders")
@@ -311,6 +479,82 @@ public class AdminController {
         return ResponseEntity.ok(order);
     }
     
+    @GetMapping("/orders/{orderId}/events")
+    public ResponseEntity<Map<String, Object>> getOrderTimeline(
+            @PathVariable String orderId,
+            @RequestParam(defaultValue = "0") long afterSeq,
+            @RequestParam(defaultValue = "50") int limit,
+            Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        return ResponseEntity.ok(orderEventService.getTimeline(orderId, afterSeq, limit));
+    }
+    
+    @GetMapping("/orders/{orderId}/events/replay")
+    public ResponseEntity<Map<String, Object>> replayOrderEvents(
+            @PathVariable String orderId,
+            @RequestParam(required = false) Long uptoSeq,
+            Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        return ResponseEntity.ok(orderEventService.replay(orderId, uptoSeq));
+    }
+    
+    @PostMapping("/orders/events:migrate")
+    public ResponseEntity<Map<String, Object>> migrateOrderEvents(
+            @RequestParam(defaultValue = "500") int batchSize,
+            Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        return ResponseEntity.ok(orderEventService.migrateEmbeddedEvents(batchSize));
+    }
+    
+    @PostMapping("/orders/summaries:rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildOrderSummaries(
+            @RequestParam(required = false) String afterId,
+            @RequestParam(defaultValue = "500") int batchSize,
+            Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        return ResponseEntity.ok(orderSummaryService.rebuild(afterId, batchSize));
+    }
+    
+    @GetMapping("/orders/archive/stats")
+    public ResponseEntity<Map<String, Object>> getOrderArchiveStats(Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        return ResponseEntity.ok(orderArchiveService.getStats());
+    }
+    
+    @PostMapping("/orders/archive:run")
+    public ResponseEntity<Map<String, Object>> archiveClosedOrders(Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        return ResponseEntity.ok(orderArchiveService.archiveNow());
+    }
+    
+    @GetMapping("/orders/number/{orderNumber}")
+    public ResponseEntity<Order> getOrderByNumber(@PathVariable String orderNumber, Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        Order order = adminOrderService.getOrderByNumber(orderNumber);
+        return ResponseEntity.ok(order);
+    }
+    
     @GetMapping("/orders/status/{status}")
     public ResponseEntity<List<Order>> getOrdersByStatus(@PathVariable String status, Authentication authentication) {
         if (!isAdminAuthenticated(authentication)) {
@@ -337,6 +581,18 @@ public class AdminController {
         return ResponseEntity.ok(order);
     }
     
+    @PostMapping("/orders/status:bulk")
+    public ResponseEntity<Map<String, Object>> bulkUpdateOrderStatus(
+            @Valid @RequestBody BulkStatusUpdateRequest request,
+            Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        Map<String, Object> result = adminOrderService.bulkUpdateOrderStatus(request.getUpdates());
+        return ResponseEntity.ok(result);
+    }
+    
     @PostMapping("/orders/{orderId}/cancel")
     public ResponseEntity<Order> cancelOrder(
             @PathVariable String orderId,
@@ -387,6 +643,24 @@ public class AdminController {
         return ResponseEntity.ok(overview);
     }
     
+    @GetMapping("/dashboard/reconciliation")
+    public ResponseEntity<Map<String, Object>> getDashboardReconciliation(Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        return ResponseEntity.ok(dashboardStatsService.getLastReconciliation());
+    }
+    
+    @PostMapping("/dashboard:reconcile")
+    public ResponseEntity<Map<String, Object>> reconcileDashboard(Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        return ResponseEntity.ok(dashboardStatsService.reconcileNow());
+    }
+    
     @GetMapping("/analytics/sales")
     public ResponseEntity<Map<String, Object>> getSalesReport(
             @RequestParam String startDate,
@@ -402,6 +676,20 @@ public class AdminController {
         return ResponseEntity.ok(report);
     }
     
+    @PostMapping("/analytics/daily-sales:rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildDailySales(
+            @RequestParam(required = false) String startDate,
+            @RequestParam(required = false) String endDate,
+            Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        LocalDate start = startDate != null ? LocalDate.parse(startDate) : null;
+        LocalDate end = endDate != null ? LocalDate.parse(endDate) : null;
+        return ResponseEntity.ok(dailySalesService.backfill(start, end));
+    }
+    
     @GetMapping("/analytics/top-products")
     public ResponseEntity<List<Map<String, Object>>> getTopSellingProducts(
             @RequestParam(defaultValue = "10") int limit,
@@ -418,6 +706,35 @@ public class AdminController {
         return ResponseEntity.ok(products);
     }
     
+    @GetMapping("/analytics/top-products/exact")
+    public ResponseEntity<List<Map<String, Object>>> getExactTopSellingProducts(
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(required = false) String startDate,
+            @RequestParam(required = false) String endDate,
+            Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        LocalDate start = startDate != null ? LocalDate.parse(startDate) : null;
+        LocalDate end = endDate != null ? LocalDate.parse(endDate) : null;
+        return ResponseEntity.ok(adminAnalyticsService.getExactTopSellingProducts(limit, start, end));
+    }
+    
+    @PostMapping("/analytics/top-products:rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildTopProducts(
+            @RequestParam(required = false) String startDate,
+            @RequestParam(required = false) String endDate,
+            Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        LocalDate start = startDate != null ? LocalDate.parse(startDate) : null;
+        LocalDate end = endDate != null ? LocalDate.parse(endDate) : null;
+        return ResponseEntity.ok(adminAnalyticsService.rebuildTopProducts(start, end));
+    }
+    
     @GetMapping("/analytics/user-growth")
     public ResponseEntity<List<Map<String, Object>>> getUserGrowthReport(
             @RequestParam String startDate,
@@ -433,6 +750,16 @@ public class AdminController {
         return ResponseEntity.ok(report);
     }
     
+    @GetMapping("/analytics/abandoned-carts")
+    public ResponseEntity<Map<String, Object>> getAbandonedCartAnalysis(Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        Map<String, Object> analysis = adminAnalyticsService.getAbandonedCartAnalysis();
+        return ResponseEntity.ok(analysis);
+    }
+    
     @GetMapping("/analytics/inventory-alerts")
     public ResponseEntity<Map<String, Object>> getInventoryAlerts(Authentication authentication) {
         if (!isAdminAuthenticated(authentication)) {
@@ -455,6 +782,56 @@ public class AdminController {
         return ResponseEntity.ok(activity);
     }
     
+    @GetMapping("/analytics/price-history/{sku}")
+    public ResponseEntity<Map<String, Object>> getPriceHistory(
+            @PathVariable String sku,
+            @RequestParam String startDate,
+            @RequestParam String endDate,
+            Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        LocalDate start = LocalDate.parse(startDate);
+        LocalDate end = LocalDate.parse(endDate);
+        Map<String, Object> history = priceHistoryService.getHistory(sku, start, end);
+        return ResponseEntity.ok(history);
+    }
+    
+    // ==================== MIGRATIONS ====================
+    
+    @GetMapping("/migrations/decimal128")
+    public ResponseEntity<Map<String, Object>> getDecimal128MigrationStatus(Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        return ResponseEntity.ok(monetaryFieldMigrationService.getStatus());
+    }
+    
+    @PostMapping("/migrations/decimal128:run")
+    public ResponseEntity<Map<String, Object>> runDecimal128Migration(
+            @RequestParam(defaultValue = "20") int maxBatches,
+            Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        return ResponseEntity.ok(monetaryFieldMigrationService.run(maxBatches));
+    }
+    
+    @GetMapping("/products/price-range/explain")
+    public ResponseEntity<Map<String, Object>> explainPriceRangeQuery(
+            @RequestParam BigDecimal minPrice,
+            @RequestParam BigDecimal maxPrice,
+            Authentication authentication) {
+        if (!isAdminAuthenticated(authentication)) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        return ResponseEntity.ok(monetaryFieldMigrationService.explainPriceRange(minPrice, maxPrice));
+    }
+    
     // ==================== PERMISSIONS ====================
     
     @GetMapping("/permissions")
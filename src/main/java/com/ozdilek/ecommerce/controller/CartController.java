@@ -1,10 +1,12 @@
 package com.ozdilek.ecommerce.controller;
 
 import com.ozdilek.ecommerce.dto.cart.AddToCartRequest;
+import com.ozdilek.ecommerce.dto.cart.BatchAddToCartRequest;
 import com.ozdilek.ecommerce.dto.cart.CartResponse;
 import com.ozdilek.ecommerce.dto.cart.MergeCartRequest;
 import com.ozdilek.ecommerce.dto.cart.UpdateCartItemRequest;
 import com.ozdilek.ecommerce.service.CartService;
+import com.ozdilek.ecommerce.service.IdempotencyService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -20,6 +22,7 @@ import org.springframework.web.bind.annotation.*;
 public class CartController {
     
     private final CartService cartService;
+    private final IdempotencyService idempotencyService;
     
     @GetMapping
     public ResponseEntity<CartResponse> getCart(
@@ -40,6 +43,7 @@ public class CartController {
     public ResponseEntity<CartResponse> addToCart(
             @Valid @RequestBody AddToCartRequest request,
             @RequestHeader(value = "X-Session-ID", required = false) String sessionId,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             Authentication authentication) {
         
         String userId = null;
@@ -48,7 +52,43 @@ public class CartController {
         }
         
         log.info("Adding to cart - userId: {}, sessionId: {}, request: {}", userId, sessionId, request);
-        CartResponse cart = cartService.addToCart(userId, sessionId, request);
+        String cartOwner = userId;
+        CartResponse cart = idempotencyService.execute("cart:" + (userId != null ? userId : sessionId), idempotencyKey,
+                request, CartResponse.class, () -> cartService.addToCart(cartOwner, sessionId, request));
+        return ResponseEntity.ok(cart);
+    }
+    
+    @PostMapping("/items:batch")
+    public ResponseEntity<CartResponse> addItemsToCart(
+            @Valid @RequestBody BatchAddToCartRequest request,
+            @RequestHeader(value = "X-Session-ID", required = false) String sessionId,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            Authentication authentication) {
+        
+        String userId = null;
+        if (authentication != null && authentication.isAuthenticated()) {
+            userId = authentication.getName(); // email from JWT
+        }
+        
+        log.info("Batch adding to cart - userId: {}, sessionId: {}, items: {}", userId, sessionId, request.getItems().size());
+        String cartOwner = userId;
+        CartResponse cart = idempotencyService.execute("cart:" + (userId != null ? userId : sessionId), idempotencyKey,
+                request, CartResponse.class, () -> cartService.addItemsToCart(cartOwner, sessionId, request));
+        return ResponseEntity.ok(cart);
+    }
+    
+    @PostMapping("/refresh")
+    public ResponseEntity<CartResponse> refreshCart(
+            @RequestHeader(value = "X-Session-ID", required = false) String sessionId,
+            Authentication authentication) {
+        
+        String userId = null;
+        if (authentication != null && authentication.isAuthenticated()) {
+            userId = authentication.getName(); // email from JWT
+        }
+        
+        log.info("Refreshing cart for userId: {}, sessionId: {}", userId, sessionId);
+        CartResponse cart = cartService.refreshCart(userId, sessionId);
         return ResponseEntity.ok(cart);
     }
     
@@ -68,6 +108,37 @@ public class CartController {
         return ResponseEntity.ok(cart);
     }
     
+    @PostMapping("/coupon")
+    public ResponseEntity<CartResponse> applyCoupon(
+            @RequestParam String code,
+            @RequestHeader(value = "X-Session-ID", required = false) String sessionId,
+            Authentication authentication) {
+        
+        String userId = null;
+        if (authentication != null && authentication.isAuthenticated()) {
+            userId = authentication.getName(); // email from JWT
+        }
+        
+        log.info("Applying coupon for userId: {}, sessionId: {}", userId, sessionId);
+        CartResponse cart = cartService.applyCoupon(userId, sessionId, code);
+        return ResponseEntity.ok(cart);
+    }
+    
+    @DeleteMapping("/coupon")
+    public ResponseEntity<CartResponse> removeCoupon(
+            @RequestHeader(value = "X-Session-ID", required = false) String sessionId,
+            Authentication authentication) {
+        
+        String userId = null;
+        if (authentication != null && authentication.isAuthenticated()) {
+            userId = authentication.getName(); // email from JWT
+        }
+        
+        log.info("Removing coupon for userId: {}, sessionId: {}", userId, sessionId);
+        CartResponse cart = cartService.removeCoupon(userId, sessionId);
+        return ResponseEntity.ok(cart);
+    }
+    
     @PostMapping("/merge")
     public ResponseEntity<CartResponse> mergeCart(
             @Valid @RequestBody MergeCartRequest request,
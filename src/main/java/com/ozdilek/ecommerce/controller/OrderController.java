@@ -2,17 +2,17 @@ package com.ozdilek.ecommerce.controller;
 
 import com.ozdilek.ecommerce.dto.order.CheckoutRequest;
 import com.ozdilek.ecommerce.dto.order.OrderResponse;
+import com.ozdilek.ecommerce.service.IdempotencyService;
 import com.ozdilek.ecommerce.service.OrderService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/orders")
 @RequiredArgsConstructor
@@ -21,10 +21,12 @@ import org.springframework.web.bind.annotation.*;
 public class OrderController {
     
     private final OrderService orderService;
+    private final IdempotencyService idempotencyService;
     
     @PostMapping("/checkout")
     public ResponseEntity<OrderResponse> checkout(
             @Valid @RequestBody CheckoutRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             Authentication authentication) {
         
         if (authentication == null || !authentication.isAuthenticated()) {
@@ -34,14 +36,15 @@ public class OrderController {
         String userId = authentication.getName(); // email from JWT
         log.info("Checkout request for userId: {}, request: {}", userId, request);
         
-        OrderResponse order = orderService.createOrder(userId, request);
+        OrderResponse order = idempotencyService.execute("checkout:" + userId, idempotencyKey, request, OrderResponse.class,
+                () -> orderService.createOrder(userId, request));
         return ResponseEntity.ok(order);
     }
     
     @GetMapping
-    public ResponseEntity<Page<OrderResponse>> getUserOrders(
-            @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size,
+    public ResponseEntity<Map<String, Object>> getUserOrders(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int limit,
             Authentication authentication) {
         
         if (authentication == null || !authentication.isAuthenticated()) {
@@ -49,10 +52,9 @@ public class OrderController {
         }
         
         String userId = authentication.getName(); // email from JWT
-        log.info("Getting orders for userId: {}, page: {}, size: {}", userId, page, size);
+        log.info("Getting orders for userId: {}, cursor: {}, limit: {}", userId, cursor, limit);
         
-        Pageable pageable = PageRequest.of(page, size);
-        Page<OrderResponse> orders = orderService.getUserOrders(userId, pageable);
+        Map<String, Object> orders = orderService.getUserOrders(userId, cursor, limit);
         return ResponseEntity.ok(orders);
     }
     
@@ -71,4 +73,20 @@ public class OrderController {
         OrderResponse order = orderService.getOrderById(orderId, userId);
         return ResponseEntity.ok(order);
     }
+    
+    @GetMapping("/{orderId}/events")
+    public ResponseEntity<Map<String, Object>> getOrderTimeline(
+            @PathVariable String orderId,
+            @RequestParam(defaultValue = "0") long afterSeq,
+            @RequestParam(defaultValue = "50") int limit,
+            Authentication authentication) {
+        
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        String userId = authentication.getName(); // email from JWT
+        Map<String, Object> timeline = orderService.getOrderTimeline(orderId, userId, afterSeq, limit);
+        return ResponseEntity.ok(timeline);
+    }
 }
@@ -0,0 +1,22 @@
+package com.ozdilek.ecommerce.dto.cart;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchAddToCartRequest {
+    
+    @NotEmpty(message = "At least one item is required")
+    @Size(max = 50, message = "A batch can contain at most 50 items")
+    private List<@Valid AddToCartRequest> items;
+}
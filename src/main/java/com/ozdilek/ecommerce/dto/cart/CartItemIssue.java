@@ -0,0 +1,27 @@
+package com.ozdilek.ecommerce.dto.cart;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartItemIssue {
+    
+    private String productId;
+    private String sku;
+    private IssueType type;
+    private BigDecimal previousPrice;
+    private BigDecimal currentPrice;
+    private Integer requestedQuantity;
+    private Integer availableQuantity;
+    
+    public enum IssueType {
+        PRICE_CHANGED, INSUFFICIENT_STOCK, UNAVAILABLE, NOT_FOUND
+    }
+}
@@ -1,5 +1,6 @@
 package com.ozdilek.ecommerce.dto.cart;
 
+import com.ozdilek.ecommerce.model.AppliedPromotion;
 import com.ozdilek.ecommerce.model.Cart.CartItem;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -9,6 +10,7 @@ import lombok.NoArgsConstructor;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @Builder
@@ -20,8 +22,15 @@ public class CartResponse {
     private String userId;
     private String sessionId;
     private List<CartItem> items;
-    private BigDecimal totalAmount;
+    private Map<String, BigDecimal> unitPrices; // productId -> current price; snapshots may be older
+    private BigDecimal subtotal; // list prices, before promotions
+    private BigDecimal discountTotal;
+    private BigDecimal totalAmount; // what checkout charges before shipping
+    private String couponCode;
+    private List<AppliedPromotion> appliedPromotions;
+    private LocalDateTime priceValidUntil; // next scheduled price change, ends the cache entry
     private Integer itemCount;
+    private List<CartItemIssue> issues; // populated by cart refresh only
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 }
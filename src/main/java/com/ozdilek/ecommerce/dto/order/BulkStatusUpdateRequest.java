@@ -0,0 +1,40 @@
+package com.ozdilek.ecommerce.dto.order;
+
+import com.ozdilek.ecommerce.model.Order;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkStatusUpdateRequest {
+    
+    @NotEmpty(message = "At least one status update is required")
+    @Size(max = 20000, message = "A batch can contain at most 20000 status updates")
+    private List<@Valid StatusUpdate> updates;
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class StatusUpdate {
+        
+        @NotBlank(message = "Order id is required")
+        private String orderId;
+        
+        @NotNull(message = "Target status is required")
+        private Order.OrderStatus status;
+        
+        private String note;
+    }
+}
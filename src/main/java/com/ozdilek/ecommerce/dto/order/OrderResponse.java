@@ -1,11 +1,11 @@
 package com.ozdilek.ecommerce.dto.order;
 
+import com.ozdilek.ecommerce.model.AppliedPromotion;
 import com.ozdilek.ecommerce.model.Order;
 import com.ozdilek.ecommerce.model.Order.OrderItem;
 import com.ozdilek.ecommerce.model.Order.OrderStatus;
 import com.ozdilek.ecommerce.model.Order.Address;
 import com.ozdilek.ecommerce.model.Order.Payment;
-import com.ozdilek.ecommerce.model.Order.OrderEvent;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -22,16 +22,19 @@ import java.util.List;
 public class OrderResponse {
     
     private String id;
+    private String orderNumber;
     private String userId;
     private List<OrderItem> items;
     private BigDecimal subtotal;
+    private BigDecimal discount;
+    private List<AppliedPromotion> promotions;
+    private String couponCode;
     private BigDecimal shipping;
     private BigDecimal total;
     private OrderStatus status;
     private Address shippingAddress;
     private Address billingAddress;
     private Payment payment;
-    private List<OrderEvent> events;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 }
@@ -0,0 +1,31 @@
+package com.ozdilek.ecommerce.dto.pricing;
+
+import com.ozdilek.ecommerce.model.PriceBook;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriceBookRequest {
+    
+    @NotBlank(message = "Name is required")
+    private String name;
+    
+    private Integer priority;
+    
+    @Builder.Default
+    private Boolean active = true;
+    
+    @NotEmpty(message = "At least one entry is required")
+    @Size(max = 50000, message = "A price book can contain at most 50000 entries")
+    private List<PriceBook.Entry> entries;
+}
@@ -21,7 +21,10 @@ public class ProductResponse {
     private String title;
     private String slug;
     private String description;
-    private BigDecimal price;
+    private BigDecimal price; // effective price, see PriceResolver
+    private BigDecimal listPrice;
+    private LocalDateTime priceValidUntil;
+    private BigDecimal lowestPrice30d; // lowest effective price of the 30 days before the current price, detail views only
     private String currency;
     private List<String> categories;
     private List<ProductImageResponse> images;
@@ -0,0 +1,59 @@
+package com.ozdilek.ecommerce.dto.promotion;
+
+import com.ozdilek.ecommerce.model.Promotion;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PromotionRequest {
+    
+    @NotBlank(message = "Name is required")
+    private String name;
+    
+    @NotNull(message = "Type is required")
+    private Promotion.Type type;
+    
+    @NotNull(message = "Scope is required")
+    private Promotion.Scope scope;
+    
+    private List<String> productIds;
+    
+    private List<String> categoryIds;
+    
+    @Positive(message = "Percent must be positive")
+    private BigDecimal percent;
+    
+    @Positive(message = "Amount must be positive")
+    private BigDecimal amount;
+    
+    @Positive(message = "Buy quantity must be positive")
+    private Integer buyQty;
+    
+    @Positive(message = "Get quantity must be positive")
+    private Integer getQty;
+    
+    private String couponCode;
+    
+    private BigDecimal minSubtotal;
+    
+    private Integer priority;
+    
+    private LocalDateTime startsAt;
+    
+    private LocalDateTime endsAt;
+    
+    @Builder.Default
+    private Boolean active = true;
+}
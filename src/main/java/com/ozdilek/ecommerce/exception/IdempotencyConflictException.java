@@ -0,0 +1,14 @@
+package com.ozdilek.ecommerce.exception;
+
+/**
+ * Thrown when an Idempotency-Key is reused for a different request, or when the
+ * original request is still running after the caller's wait budget.
+ */
+public class IdempotencyConflictException extends RuntimeException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    public IdempotencyConflictException(String message) {
+        super(message);
+    }
+}
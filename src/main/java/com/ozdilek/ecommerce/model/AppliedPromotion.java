@@ -0,0 +1,29 @@
+package com.ozdilek.ecommerce.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * A promotion as applied to a cart or order; embedded in orders so the discount stays
+ * explainable after the rule changes.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppliedPromotion {
+    
+    private String promotionId;
+    
+    private String name;
+    
+    private String couponCode;
+    
+    private String productId; // null for cart-wide promotions
+    
+    private BigDecimal discount;
+}
@@ -32,10 +32,14 @@ public class Cart {
     @Builder.Default
     private List<CartItem> items = List.of();
     
+    private String couponCode; // evaluated by the promotion engine, upper case
+    
     private LocalDateTime createdAt;
     
     private LocalDateTime updatedAt;
     
+    private LocalDateTime abandonedAt; // set once the cart is counted as abandoned
+    
     @Data
     @Builder
     @NoArgsConstructor
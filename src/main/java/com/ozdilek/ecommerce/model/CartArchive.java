@@ -0,0 +1,55 @@
+package com.ozdilek.ecommerce.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Compact record of an abandoned user cart. Keeps only what is needed for
+ * reporting and win-back campaigns; the original cart document is deleted.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "carts_archive")
+public class CartArchive {
+    
+    @Id
+    private String id; // same as the original cart id
+    
+    @Indexed
+    private String userId;
+    
+    private List<ArchivedItem> items;
+    
+    private Integer itemCount;
+    
+    private Integer totalQuantity;
+    
+    private BigDecimal totalAmount;
+    
+    private LocalDateTime createdAt;
+    
+    private LocalDateTime lastActivityAt;
+    
+    private LocalDateTime archivedAt;
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ArchivedItem {
+        private String productId;
+        private Integer qty;
+        private BigDecimal priceSnapshot;
+    }
+}
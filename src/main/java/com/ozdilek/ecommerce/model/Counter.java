@@ -0,0 +1,29 @@
+package com.ozdilek.ecommerce.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * A named high-water mark. Nodes lease blocks of values from it instead of taking
+ * one value per write, so the document is touched once per block.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "counters")
+public class Counter {
+    
+    @Id
+    private String id;
+    
+    private Long value;
+    
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,62 @@
+package com.ozdilek.ecommerce.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Sales of one day in one currency, attributed to the day the orders were placed.
+ * Amounts are minor units so status changes can $inc them exactly; a year of reports
+ * is at most 366 small documents per currency read from one index range.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "daily_sales")
+@CompoundIndex(def = "{'day': 1, 'currency': 1}", unique = true)
+public class DailySales {
+    
+    @Id
+    private String id; // day + ":" + currency
+    
+    private LocalDate day;
+    
+    private String currency;
+    
+    // Orders placed that day, and how many of them are in each status now
+    private Long orders;
+    
+    private Map<String, Long> statuses;
+    
+    // Delivered orders only
+    private Long revenueMinor;
+    
+    private Long unitsSold;
+    
+    // By category id; an item in several categories counts in each
+    private Map<String, CategorySales> categories;
+    
+    private LocalDateTime updatedAt;
+    
+    public static String idFor(LocalDate day, String currency) {
+        return day + ":" + currency;
+    }
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CategorySales {
+        private Long revenueMinor;
+        private Long units;
+    }
+}
@@ -0,0 +1,121 @@
+package com.ozdilek.ecommerce.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Objects;
+
+/**
+ * An amount in minor units (kuruş) plus its currency, used for all price arithmetic.
+ * <p>
+ * Sums and products are exact long math that fails loudly on overflow; the only rounding
+ * is in {@link #percent} and {@link #dividedBy}, always half-up to the minor unit.
+ * Documents and API responses keep BigDecimal: convert with {@link #of} on the way in and
+ * {@link #toBigDecimal} on the way out.
+ */
+public record Money(long minor, String currency) implements Comparable<Money> {
+    
+    public static final String DEFAULT_CURRENCY = "TRY";
+    
+    private static final int SCALE = 2;
+    private static final long BASIS_POINTS = 10_000;
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+    
+    public static final Money ZERO = new Money(0, DEFAULT_CURRENCY);
+    
+    public Money {
+        Objects.requireNonNull(currency, "currency");
+    }
+    
+    public static Money of(BigDecimal amount) {
+        return of(amount, DEFAULT_CURRENCY);
+    }
+    
+    /**
+     * Amounts with more than two decimals are rounded half-up to the minor unit.
+     */
+    public static Money of(BigDecimal amount, String currency) {
+        return new Money(amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact(), currency);
+    }
+    
+    public static Money ofMinor(long minor) {
+        return new Money(minor, DEFAULT_CURRENCY);
+    }
+    
+    public Money plus(Money other) {
+        requireSameCurrency(other);
+        return other.minor == 0 ? this : new Money(Math.addExact(minor, other.minor), currency);
+    }
+    
+    public Money minus(Money other) {
+        requireSameCurrency(other);
+        return other.minor == 0 ? this : new Money(Math.subtractExact(minor, other.minor), currency);
+    }
+    
+    public Money times(long quantity) {
+        return quantity == 1 ? this : new Money(Math.multiplyExact(minor, quantity), currency);
+    }
+    
+    /**
+     * {@code percent} percent of this amount, e.g. 12.5 for 12.5%.
+     */
+    public Money percent(BigDecimal percent) {
+        // Whole percents and up to two decimals, i.e. whole basis points, stay in long math
+        if (percent.scale() >= 0 && percent.scale() <= SCALE) {
+            long basisPoints = percent.scale() == 0
+                    ? Math.multiplyExact(percent.longValueExact(), 100)
+                    : percent.movePointRight(SCALE).longValueExact();
+            return new Money(roundHalfUp(Math.multiplyExact(minor, basisPoints), BASIS_POINTS), currency);
+        }
+        // Finer than a hundredth of a percent: rare enough to take the slow path
+        BigDecimal exact = BigDecimal.valueOf(minor).multiply(percent).divide(HUNDRED, 0, RoundingMode.HALF_UP);
+        return new Money(exact.longValueExact(), currency);
+    }
+    
+    public Money dividedBy(long divisor) {
+        return new Money(roundHalfUp(minor, divisor), currency);
+    }
+    
+    public Money min(Money other) {
+        return compareTo(other) <= 0 ? this : other;
+    }
+    
+    public int signum() {
+        return Long.signum(minor);
+    }
+    
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+    
+    @Override
+    public int compareTo(Money other) {
+        requireSameCurrency(other);
+        return Long.compare(minor, other.minor);
+    }
+    
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString() + " " + currency;
+    }
+    
+    private void requireSameCurrency(Money other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Currency mismatch: " + currency + " vs " + other.currency);
+        }
+    }
+    
+    /**
+     * value / divisor rounded half away from zero, like {@link RoundingMode#HALF_UP}.
+     */
+    private static long roundHalfUp(long value, long divisor) {
+        if (divisor <= 0) {
+            throw new IllegalArgumentException("Divisor must be positive: " + divisor);
+        }
+        long quotient = value / divisor;
+        long remainder = Math.abs(value % divisor);
+        if (remainder * 2 >= divisor) {
+            quotient += Long.signum(value);
+        }
+        return quotient;
+    }
+}
@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import jakarta.validation.constraints.NotNull;
@@ -18,11 +20,16 @@ import java.util.Map;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "orders")
+@CompoundIndex(def = "{'status': 1, 'createdAt': 1}")
 public class Order {
     
     @Id
     private String id;
     
+    // Short sequential number for customers and support, e.g. OZ-000012345
+    @Indexed(unique = true, sparse = true)
+    private String orderNumber;
+    
     @NotNull
     private String userId;
     
@@ -31,6 +38,12 @@ public class Order {
     @NotNull
     private BigDecimal subtotal;
     
+    private BigDecimal discount; // promotions, see the promotions list
+    
+    private List<AppliedPromotion> promotions;
+    
+    private String couponCode;
+    
     private BigDecimal shipping;
     
     @NotNull
@@ -45,14 +58,29 @@ public class Order {
     
     private Payment payment;
     
-    private List<OrderEvent> events;
+    // Sequence of the last entry in order_events; the history itself lives there
+    private Long eventSeq;
     
     private LocalDateTime createdAt;
     
     private LocalDateTime updatedAt;
     
     public enum OrderStatus {
-        PENDING, PAID, CONFIRMED, SHIPPED, DELIVERED, CANCELLED, REFUNDED
+        PENDING, PAID, CONFIRMED, SHIPPED, DELIVERED, CANCELLED, REFUNDED;
+        
+        /**
+         * The order state machine. CANCELLED and REFUNDED are final.
+         */
+        public boolean canTransitionTo(OrderStatus next) {
+            return switch (this) {
+                case PENDING -> next == PAID || next == CANCELLED;
+                case PAID -> next == CONFIRMED || next == CANCELLED;
+                case CONFIRMED -> next == SHIPPED || next == CANCELLED;
+                case SHIPPED -> next == DELIVERED;
+                case DELIVERED -> next == REFUNDED;
+                case CANCELLED, REFUNDED -> false;
+            };
+        }
     }
     
     @Data
@@ -94,15 +122,4 @@ public class Order {
         private String currency;
         private LocalDateTime processedAt;
     }
-    
-    @Data
-    @Builder
-    @NoArgsConstructor
-    @AllArgsConstructor
-    public static class OrderEvent {
-        private OrderStatus status;
-        private LocalDateTime at;
-        private String message;
-        private Map<String, Object> meta;
-    }
 }
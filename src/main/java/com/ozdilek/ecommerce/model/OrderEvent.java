@@ -0,0 +1,47 @@
+package com.ozdilek.ecommerce.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * One entry of an order's append-only history. Sequence numbers are dense per order and
+ * the id is derived from them, so inserting an event also claims its slot: two writers
+ * can never both record event N of the same order.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "order_events")
+@CompoundIndex(def = "{'orderId': 1, 'seq': 1}", unique = true)
+public class OrderEvent {
+    
+    @Id
+    private String id; // orderId + ":" + seq
+    
+    private String orderId;
+    
+    private Long seq;
+    
+    private Order.OrderStatus status;
+    
+    private Order.OrderStatus previousStatus;
+    
+    private LocalDateTime at;
+    
+    private String message;
+    
+    private Map<String, Object> meta;
+    
+    public static String idFor(String orderId, long seq) {
+        return orderId + ":" + seq;
+    }
+}
@@ -0,0 +1,60 @@
+package com.ozdilek.ecommerce.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * A pending step of the order pipeline. Written together with the order, then claimed
+ * and executed by the pipeline workers. The id is derived from the order id and step
+ * type, so enqueueing the same step twice is a no-op.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "order_outbox")
+@CompoundIndex(def = "{'status': 1, 'availableAt': 1}")
+public class OrderOutbox {
+    
+    @Id
+    private String id; // orderId + ":" + type
+    
+    private String orderId;
+    
+    private Step type;
+    
+    @Builder.Default
+    private Status status = Status.PENDING;
+    
+    @Builder.Default
+    private Integer attempts = 0;
+    
+    private LocalDateTime availableAt;
+    
+    private LocalDateTime lockedUntil;
+    
+    private String lastError;
+    
+    private LocalDateTime createdAt;
+    
+    private LocalDateTime updatedAt;
+    
+    public static String idFor(String orderId, Step type) {
+        return orderId + ":" + type;
+    }
+    
+    public enum Step {
+        AUTHORIZE_PAYMENT, CONFIRM_ORDER, NOTIFY_CUSTOMER
+    }
+    
+    public enum Status {
+        PENDING, PROCESSING, DONE, FAILED
+    }
+}
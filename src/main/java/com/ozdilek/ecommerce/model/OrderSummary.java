@@ -0,0 +1,46 @@
+package com.ozdilek.ecommerce.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Read model behind "my orders": just what the list shows, one small document per
+ * order, laid out so a user's history is a single scan of the userId index.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "order_summaries")
+@CompoundIndex(def = "{'userId': 1, 'createdAt': -1, '_id': -1}")
+public class OrderSummary {
+    
+    @Id
+    private String id; // same as the order id
+    
+    private String userId;
+    
+    private String orderNumber;
+    
+    private LocalDateTime createdAt;
+    
+    private BigDecimal total;
+    
+    private Order.OrderStatus status;
+    
+    private Integer itemCount;
+    
+    private String thumbnailUrl;
+    
+    private String firstItemTitle;
+    
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,61 @@
+package com.ozdilek.ecommerce.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * A set of scheduled prices, e.g. one campaign. Product.price stays the list price; while
+ * an entry is running, the {@link com.ozdilek.ecommerce.service.PriceResolver} serves the
+ * entry's price instead.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "price_books")
+public class PriceBook {
+    
+    @Id
+    private String id;
+    
+    private String name;
+    
+    @Builder.Default
+    private Integer priority = 0; // higher wins when books overlap
+    
+    @Builder.Default
+    private Boolean active = true;
+    
+    private List<Entry> entries;
+    
+    private LocalDateTime createdAt;
+    
+    @Indexed
+    private LocalDateTime updatedAt;
+    
+    /**
+     * Targets one SKU or one category. A SKU entry beats a category entry.
+     * Either a fixed price or a percentage off the list price.
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Entry {
+        private String sku;
+        private String categoryId;
+        private BigDecimal price;
+        private BigDecimal percentOff;
+        private LocalDateTime startsAt; // null: already running
+        private LocalDateTime endsAt; // null: open-ended
+    }
+}
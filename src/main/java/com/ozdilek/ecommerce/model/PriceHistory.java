@@ -0,0 +1,59 @@
+package com.ozdilek.ecommerce.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * One day of a SKU's effective price changes: list price edits, price book entries and
+ * promotions starting or ending. Changes are pushed into the day's bucket, so a
+ * month of history is at most 31 small documents read from one index range.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "price_history")
+@CompoundIndex(def = "{'sku': 1, 'day': 1}", unique = true)
+public class PriceHistory {
+    
+    @Id
+    private String id; // sku + ":" + day
+    
+    private String sku;
+    
+    private String productId;
+    
+    private LocalDate day;
+    
+    private List<Change> changes;
+    
+    private Integer count;
+    
+    private LocalDateTime updatedAt;
+    
+    public static String idFor(String sku, LocalDate day) {
+        return sku + ":" + day;
+    }
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Change {
+        private LocalDateTime at;
+        private BigDecimal price;
+        private BigDecimal previousPrice; // null for the first price of a product
+        private BigDecimal listPrice;
+        private String source; // product-update, price-book, promotion, list-price ...
+    }
+}
@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.index.TextIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
@@ -22,6 +23,7 @@ import java.util.Map;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "products")
+@CompoundIndex(def = "{'available': 1, 'price': 1, 'stock': 1}")
 public class Product {
     
     @Id
@@ -62,6 +64,8 @@ public class Product {
     @Builder.Default
     private Boolean available = true;
     
+    private Integer stockShards; // set while stock is split across stock_shards (hot SKU mode)
+    
     private Rating rating;
     
     private List<String> tags;
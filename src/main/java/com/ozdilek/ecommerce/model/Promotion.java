@@ -0,0 +1,75 @@
+package com.ozdilek.ecommerce.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * A promotion rule. Rules are never deleted, only deactivated, and are evaluated by the
+ * {@link com.ozdilek.ecommerce.service.PromotionEngine} from a compiled in-memory index.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "promotions")
+public class Promotion {
+    
+    @Id
+    private String id;
+    
+    private String name;
+    
+    private Type type;
+    
+    private Scope scope;
+    
+    private List<String> productIds; // PRODUCT scope
+    
+    private List<String> categoryIds; // CATEGORY scope, matched against Product.categories
+    
+    private BigDecimal percent; // PERCENT_OFF
+    
+    private BigDecimal amount; // AMOUNT_OFF: per unit for PRODUCT/CATEGORY, once for CART
+    
+    private Integer buyQty; // BUY_X_GET_Y
+    
+    private Integer getQty; // BUY_X_GET_Y
+    
+    // Only applies when the cart carries this code (stored upper case)
+    @Indexed(sparse = true)
+    private String couponCode;
+    
+    private BigDecimal minSubtotal; // CART scope
+    
+    @Builder.Default
+    private Integer priority = 0; // breaks ties between equal discounts
+    
+    private LocalDateTime startsAt;
+    
+    private LocalDateTime endsAt;
+    
+    @Builder.Default
+    private Boolean active = true;
+    
+    private LocalDateTime createdAt;
+    
+    @Indexed
+    private LocalDateTime updatedAt;
+    
+    public enum Type {
+        PERCENT_OFF, AMOUNT_OFF, BUY_X_GET_Y
+    }
+    
+    public enum Scope {
+        PRODUCT, CATEGORY, CART
+    }
+}
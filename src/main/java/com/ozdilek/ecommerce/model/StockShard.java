@@ -0,0 +1,41 @@
+package com.ozdilek.ecommerce.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * One slice of a hot SKU's stock. While a product is in hot SKU mode its sellable
+ * stock lives in these documents and Product.stock is only a periodically
+ * refreshed total for display.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "stock_shards")
+@CompoundIndex(def = "{'productId': 1, 'shard': 1}", unique = true)
+public class StockShard {
+    
+    @Id
+    private String id; // productId + ":" + shard
+    
+    private String productId;
+    
+    private Integer shard;
+    
+    @Builder.Default
+    private Integer stock = 0;
+    
+    private LocalDateTime updatedAt;
+    
+    public static String idFor(String productId, int shard) {
+        return productId + ":" + shard;
+    }
+}
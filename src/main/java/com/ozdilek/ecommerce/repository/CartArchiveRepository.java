@@ -0,0 +1,13 @@
+package com.ozdilek.ecommerce.repository;
+
+import com.ozdilek.ecommerce.model.CartArchive;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface CartArchiveRepository extends MongoRepository<CartArchive, String> {
+    
+    List<CartArchive> findByUserIdOrderByArchivedAtDesc(String userId);
+}
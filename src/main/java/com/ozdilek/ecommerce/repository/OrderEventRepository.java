@@ -0,0 +1,16 @@
+package com.ozdilek.ecommerce.repository;
+
+import com.ozdilek.ecommerce.model.OrderEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface OrderEventRepository extends MongoRepository<OrderEvent, String> {
+    
+    List<OrderEvent> findByOrderIdAndSeqGreaterThanOrderBySeqAsc(String orderId, long afterSeq, Pageable pageable);
+    
+    List<OrderEvent> findByOrderIdAndSeqLessThanEqualOrderBySeqAsc(String orderId, long uptoSeq);
+}
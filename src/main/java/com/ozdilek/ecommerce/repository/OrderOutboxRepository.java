@@ -0,0 +1,15 @@
+package com.ozdilek.ecommerce.repository;
+
+import com.ozdilek.ecommerce.model.OrderOutbox;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface OrderOutboxRepository extends MongoRepository<OrderOutbox, String> {
+    
+    List<OrderOutbox> findByOrderIdOrderByCreatedAtAsc(String orderId);
+    
+    long countByStatus(OrderOutbox.Status status);
+}
@@ -10,7 +10,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface OrderRepository extends MongoRepository<Order, String> {
+public interface OrderRepository extends MongoRepository<Order, String>, OrderRepositoryCustom {
     
     List<Order> findByUserIdOrderByCreatedAtDesc(String userId);
     
@@ -18,5 +18,7 @@ public interface OrderRepository extends MongoRepository<Order, String> {
     
     Optional<Order> findByIdAndUserId(String id, String userId);
     
+    Optional<Order> findByOrderNumber(String orderNumber);
+    
     List<Order> findByStatus(Order.OrderStatus status);
 }
@@ -0,0 +1,36 @@
+package com.ozdilek.ecommerce.repository;
+
+import com.ozdilek.ecommerce.model.Order;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reads that span the hot orders collection and the archive tier written by
+ * {@link com.ozdilek.ecommerce.service.OrderArchiveService}. Derived queries on
+ * {@link OrderRepository} only see the hot tier.
+ */
+public interface OrderRepositoryCustom {
+    
+    Optional<Order> findByIdInAnyTier(String id);
+    
+    Optional<Order> findByOrderNumberInAnyTier(String orderNumber);
+    
+    /**
+     * Newest first. The archive is only read when the range starts before the archive horizon.
+     */
+    List<Order> findByCreatedAtBetweenInAnyTier(LocalDateTime from, LocalDateTime to);
+    
+    List<Order> findByUserIdInAnyTier(String userId);
+    
+    /**
+     * The archive collection an order created at {@code createdAt} belongs in.
+     */
+    String archiveCollectionFor(LocalDateTime createdAt);
+    
+    /**
+     * Existing archive collections that may hold orders created in the range; null bounds are open.
+     */
+    List<String> archiveCollectionsBetween(LocalDateTime from, LocalDateTime to);
+}
@@ -0,0 +1,158 @@
+package com.ozdilek.ecommerce.repository;
+
+import com.ozdilek.ecommerce.model.Order;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Routes order reads across tiers. The hot collection is always read first and wins when
+ * an order briefly exists in both (between the archive copy and the hot delete).
+ * With month partitioning, archive collections are named orders_archive_yyyy_MM after the
+ * order's createdAt month, so a date range only touches the months it covers.
+ */
+@RequiredArgsConstructor
+public class OrderRepositoryCustomImpl implements OrderRepositoryCustom {
+    
+    static final String ARCHIVE_COLLECTION = "orders_archive";
+    
+    private static final DateTimeFormatter MONTH_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    
+    private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+    
+    @Value("${app.orders.archive.after:P90D}")
+    private Duration archiveAfter;
+    
+    @Value("${app.orders.archive.partition-by-month:false}")
+    private boolean partitionByMonth;
+    
+    @Override
+    public Optional<Order> findByIdInAnyTier(String id) {
+        return timed("findById", () -> {
+            Order hot = mongoTemplate.findById(id, Order.class);
+            if (hot != null) {
+                return Optional.of(hot);
+            }
+            // An _id lookup per partition, newest month first
+            for (String collection : archiveCollectionsBetween(null, null)) {
+                Order archived = mongoTemplate.findById(id, Order.class, collection);
+                if (archived != null) {
+                    return Optional.of(archived);
+                }
+            }
+            return Optional.empty();
+        });
+    }
+    
+    @Override
+    public Optional<Order> findByOrderNumberInAnyTier(String orderNumber) {
+        return timed("findByOrderNumber", () -> {
+            Query query = new Query(Criteria.where("orderNumber").is(orderNumber));
+            Order hot = mongoTemplate.findOne(query, Order.class);
+            if (hot != null) {
+                return Optional.of(hot);
+            }
+            for (String collection : archiveCollectionsBetween(null, null)) {
+                Order archived = mongoTemplate.findOne(query, Order.class, collection);
+                if (archived != null) {
+                    return Optional.of(archived);
+                }
+            }
+            return Optional.empty();
+        });
+    }
+    
+    @Override
+    public List<Order> findByCreatedAtBetweenInAnyTier(LocalDateTime from, LocalDateTime to) {
+        boolean touchesArchive = from == null || from.isBefore(LocalDateTime.now().minus(archiveAfter));
+        return timed(touchesArchive ? "findByCreatedAtBetween.tiered" : "findByCreatedAtBetween.hot", () -> {
+            Criteria range = Criteria.where("createdAt");
+            if (from != null) {
+                range = range.gt(from);
+            }
+            if (to != null) {
+                range = range.lt(to);
+            }
+            Query query = new Query(range).with(Sort.by(Sort.Direction.DESC, "createdAt"));
+            
+            List<Order> hot = mongoTemplate.find(query, Order.class);
+            if (!touchesArchive) {
+                return hot;
+            }
+            return merge(hot, query, archiveCollectionsBetween(from, to));
+        });
+    }
+    
+    @Override
+    public List<Order> findByUserIdInAnyTier(String userId) {
+        return timed("findByUserId", () -> {
+            Query query = new Query(Criteria.where("userId").is(userId))
+                    .with(Sort.by(Sort.Direction.DESC, "createdAt"));
+            return merge(mongoTemplate.find(query, Order.class), query, archiveCollectionsBetween(null, null));
+        });
+    }
+    
+    @Override
+    public String archiveCollectionFor(LocalDateTime createdAt) {
+        return partitionByMonth
+                ? ARCHIVE_COLLECTION + "_" + YearMonth.from(createdAt).format(MONTH_SUFFIX)
+                : ARCHIVE_COLLECTION;
+    }
+    
+    @Override
+    public List<String> archiveCollectionsBetween(LocalDateTime from, LocalDateTime to) {
+        String fromName = from != null ? ARCHIVE_COLLECTION + "_" + YearMonth.from(from).format(MONTH_SUFFIX) : null;
+        String toName = to != null ? ARCHIVE_COLLECTION + "_" + YearMonth.from(to).format(MONTH_SUFFIX) : null;
+        
+        // Both layouts are listed, so switching partitioning on or off never hides archived orders
+        return mongoTemplate.getCollectionNames().stream()
+                .filter(name -> name.equals(ARCHIVE_COLLECTION)
+                        || (name.startsWith(ARCHIVE_COLLECTION + "_")
+                        && (fromName == null || name.compareTo(fromName) >= 0)
+                        && (toName == null || name.compareTo(toName) <= 0)))
+                .sorted(Comparator.reverseOrder())
+                .toList();
+    }
+    
+    private List<Order> merge(List<Order> hot, Query query, List<String> archiveCollections) {
+        if (archiveCollections.isEmpty()) {
+            return hot;
+        }
+        
+        Map<String, Order> merged = new LinkedHashMap<>();
+        hot.forEach(order -> merged.put(order.getId(), order));
+        for (String collection : archiveCollections) {
+            mongoTemplate.find(query, Order.class, collection).forEach(order -> merged.putIfAbsent(order.getId(), order));
+        }
+        
+        List<Order> orders = new ArrayList<>(merged.values());
+        orders.sort(Comparator.comparing(Order::getCreatedAt, Comparator.nullsLast(Comparator.reverseOrder())));
+        return orders;
+    }
+    
+    private <T> T timed(String operation, Supplier<T> query) {
+        return Timer.builder("orders.query")
+                .description("Latency of order reads routed across the hot and archive tiers")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .record(query);
+    }
+}
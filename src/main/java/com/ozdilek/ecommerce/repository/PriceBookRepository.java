@@ -0,0 +1,15 @@
+package com.ozdilek.ecommerce.repository;
+
+import com.ozdilek.ecommerce.model.PriceBook;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PriceBookRepository extends MongoRepository<PriceBook, String> {
+    
+    List<PriceBook> findByActiveTrue();
+    
+    List<PriceBook> findAllByOrderByUpdatedAtDesc();
+}
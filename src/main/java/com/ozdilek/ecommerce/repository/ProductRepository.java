@@ -7,6 +7,7 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
 
@@ -30,12 +31,19 @@ public interface ProductRepository extends MongoRepository<Product, String> {
     @Query("{ $text: { $search: ?0 }, 'available': true, 'stock': { $gt: 0 } }")
     Page<Product> findByTextSearchAndAvailable(String searchText, Pageable pageable);
     
+    @Query("{ 'available': true, 'stock': { $lte: ?0 } }")
+    List<Product> findAvailableWithStockAtMost(int stock);
+    
+    List<Product> findByAvailableFalse();
+    
+    List<Product> findByCategories(String categoryId);
+    
     @Query("{ 'price': { $gte: ?0, $lte: ?1 }, 'available': true, 'stock': { $gt: 0 } }")
-    Page<Product> findByPriceRangeAndAvailable(Double minPrice, Double maxPrice, Pageable pageable);
+    Page<Product> findByPriceRangeAndAvailable(BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable);
     
     @Query("{ 'categories': { $in: ?0 }, 'price': { $gte: ?1, $lte: ?2 }, 'available': true, 'stock': { $gt: 0 } }")
-    Page<Product> findByCategoriesAndPriceRangeAndAvailable(List<String> categoryIds, Double minPrice, Double maxPrice, Pageable pageable);
+    Page<Product> findByCategoriesAndPriceRangeAndAvailable(List<String> categoryIds, BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable);
     
     @Query("{ $text: { $search: ?0 }, 'categories': { $in: ?1 }, 'price': { $gte: ?2, $lte: ?3 }, 'available': true, 'stock': { $gt: 0 } }")
-    Page<Product> findByTextSearchAndCategoriesAndPriceRangeAndAvailable(String searchText, List<String> categoryIds, Double minPrice, Double maxPrice, Pageable pageable);
+    Page<Product> findByTextSearchAndCategoriesAndPriceRangeAndAvailable(String searchText, List<String> categoryIds, BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable);
 }
@@ -0,0 +1,17 @@
+package com.ozdilek.ecommerce.repository;
+
+import com.ozdilek.ecommerce.model.Promotion;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PromotionRepository extends MongoRepository<Promotion, String> {
+    
+    List<Promotion> findByActiveTrue();
+    
+    List<Promotion> findByProductIdsAndActiveTrue(String productId);
+    
+    List<Promotion> findAllByOrderByUpdatedAtDesc();
+}
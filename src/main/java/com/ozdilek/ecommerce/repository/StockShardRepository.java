@@ -0,0 +1,13 @@
+package com.ozdilek.ecommerce.repository;
+
+import com.ozdilek.ecommerce.model.StockShard;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface StockShardRepository extends MongoRepository<StockShard, String> {
+    
+    List<StockShard> findByProductIdOrderByShardAsc(String productId);
+}
@@ -5,6 +5,7 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,6 +27,17 @@ public interface UserRepository extends MongoRepository<User, String> {
     @Query("{'deleted': true}")
     List<User> findAllDeletedUsers();
     
+    @Query(value = "{'deleted': {$ne: true}}", count = true)
+    long countActiveUsers();
+    
+    @Query(value = "{'isVerified': true, 'deleted': {$ne: true}}", count = true)
+    long countVerifiedUsers();
+    
+    @Query("{'roles': ?0}")
+    List<User> findByRole(String role);
+    
+    List<User> findByCreatedAtAfterOrderByCreatedAtDesc(LocalDateTime since);
+    
     @Query("{'_id': ?0, 'deleted': {$ne: true}}")
     Optional<User> findActiveUserById(String id);
 }
@@ -1,13 +1,18 @@
 package com.ozdilek.ecommerce.service;
 
+import com.ozdilek.ecommerce.model.DailySales;
+import com.ozdilek.ecommerce.model.Money;
 import com.ozdilek.ecommerce.model.Order;
 import com.ozdilek.ecommerce.model.Product;
 import com.ozdilek.ecommerce.model.User;
-import com.ozdilek.ecommerce.repository.OrderRepository;
-import com.ozdilek.ecommerce.repository.ProductRepository;
-import com.ozdilek.ecommerce.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -22,110 +27,80 @@ import java.util.stream.Collectors;
 @Slf4j
 public class AdminAnalyticsService {
     
-    private final UserRepository userRepository;
-    private final ProductRepository productRepository;
-    private final OrderRepository orderRepository;
+    private final CartAnalyticsService cartAnalyticsService;
+    private final DashboardStatsService dashboardStatsService;
+    private final DailySalesService dailySalesService;
+    private final TopProductsService topProductsService;
+    private final MongoTemplate mongoTemplate;
     
-    @Transactional(readOnly = true)
+    /**
+     * Served from incrementally maintained counters, independent of collection sizes.
+     */
     public Map<String, Object> getDashboardOverview() {
         log.info("Getting dashboard overview");
-        
-        // User Statistics
-        List<User> allUsers = userRepository.findAll();
-        long totalUsers = allUsers.size();
-        long activeUsers = allUsers.stream().filter(u -> !u.getDeleted()).count();
-        long verifiedUsers = allUsers.stream().filter(u -> u.getIsVerified() && !u.getDeleted()).count();
-        long newUsersThisMonth = allUsers.stream()
-                .filter(u -> u.getCreatedAt().isAfter(LocalDateTime.now().minusMonths(1)))
-                .count();
-        
-        // Product Statistics
-        List<Product> allProducts = productRepository.findAll();
-        long totalProducts = allProducts.size();
-        long availableProducts = allProducts.stream().filter(Product::getAvailable).count();
-        long outOfStockProducts = allProducts.stream().filter(p -> p.getStock() == 0).count();
-        long lowStockProducts = allProducts.stream().filter(p -> p.getStock() <= 10 && p.getStock() > 0).count();
-        
-        // Order Statistics
-        List<Order> allOrders = orderRepository.findAll();
-        long totalOrders = allOrders.size();
-        long pendingOrders = allOrders.stream().filter(o -> o.getStatus() == Order.OrderStatus.PENDING).count();
-        long deliveredOrders = allOrders.stream().filter(o -> o.getStatus() == Order.OrderStatus.DELIVERED).count();
-        
-        BigDecimal totalRevenue = allOrders.stream()
-                .filter(o -> o.getStatus() == Order.OrderStatus.DELIVERED)
-                .map(Order::getTotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        BigDecimal thisMonthRevenue = allOrders.stream()
-                .filter(o -> o.getStatus() == Order.OrderStatus.DELIVERED)
-                .filter(o -> o.getCreatedAt().isAfter(LocalDateTime.now().minusMonths(1)))
-                .map(Order::getTotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        return Map.of(
-            "users", Map.of(
-                "total", totalUsers,
-                "active", activeUsers,
-                "verified", verifiedUsers,
-                "newThisMonth", newUsersThisMonth
-            ),
-            "products", Map.of(
-                "total", totalProducts,
-                "available", availableProducts,
-                "outOfStock", outOfStockProducts,
-                "lowStock", lowStockProducts
-            ),
-            "orders", Map.of(
-                "total", totalOrders,
-                "pending", pendingOrders,
-                "delivered", deliveredOrders,
-                "totalRevenue", totalRevenue,
-                "thisMonthRevenue", thisMonthRevenue
-            )
-        );
+        return dashboardStatsService.getOverview();
     }
     
+    /**
+     * Read from the daily_sales rollups: one small document per day and currency. Revenue
+     * is in the default currency; other currencies are listed in revenueByCurrency.
+     */
     @Transactional(readOnly = true)
     public Map<String, Object> getSalesReport(LocalDate startDate, LocalDate endDate) {
         log.info("Getting sales report from {} to {}", startDate, endDate);
         
-        LocalDateTime start = startDate.atStartOfDay();
-        LocalDateTime end = endDate.atTime(23, 59, 59);
-        
-        List<Order> ordersInRange = orderRepository.findAll().stream()
-                .filter(order -> order.getCreatedAt().isAfter(start) && order.getCreatedAt().isBefore(end))
-                .collect(Collectors.toList());
-        
-        // Daily breakdown
-        Map<LocalDate, BigDecimal> dailyRevenue = new LinkedHashMap<>();
+        // Daily breakdown, summed in minor units
+        Map<LocalDate, Long> dailyRevenueMinor = new LinkedHashMap<>();
         Map<LocalDate, Long> dailyOrders = new LinkedHashMap<>();
         
         LocalDate currentDate = startDate;
         while (!currentDate.isAfter(endDate)) {
-            dailyRevenue.put(currentDate, BigDecimal.ZERO);
+            dailyRevenueMinor.put(currentDate, 0L);
             dailyOrders.put(currentDate, 0L);
             currentDate = currentDate.plusDays(1);
         }
         
-        for (Order order : ordersInRange) {
-            LocalDate orderDate = order.getCreatedAt().toLocalDate();
-            if (order.getStatus() == Order.OrderStatus.DELIVERED) {
-                dailyRevenue.merge(orderDate, order.getTotal(), BigDecimal::add);
+        Map<String, Long> revenueByCurrencyMinor = new TreeMap<>();
+        Map<String, long[]> categorySales = new HashMap<>();
+        for (DailySales day : dailySalesService.findBetween(startDate, endDate)) {
+            dailyOrders.merge(day.getDay(), day.getOrders(), Long::sum);
+            revenueByCurrencyMinor.merge(day.getCurrency(), day.getRevenueMinor(), Long::sum);
+            if (!Money.DEFAULT_CURRENCY.equals(day.getCurrency())) {
+                continue;
+            }
+            dailyRevenueMinor.merge(day.getDay(), day.getRevenueMinor(), Long::sum);
+            if (day.getCategories() != null) {
+                day.getCategories().forEach((categoryId, sales) -> {
+                    long[] totals = categorySales.computeIfAbsent(categoryId, id -> new long[2]);
+                    totals[0] += sales.getRevenueMinor();
+                    totals[1] += sales.getUnits();
+                });
             }
-            dailyOrders.merge(orderDate, 1L, Long::sum);
         }
         
+        Map<LocalDate, BigDecimal> dailyRevenue = new LinkedHashMap<>();
+        dailyRevenueMinor.forEach((date, minor) -> dailyRevenue.put(date, Money.ofMinor(minor).toBigDecimal()));
+        
+        Map<String, BigDecimal> revenueByCurrency = new LinkedHashMap<>();
+        revenueByCurrencyMinor.forEach((currency, minor) -> revenueByCurrency.put(currency, new Money(minor, currency).toBigDecimal()));
+        
+        Map<String, Object> categories = new LinkedHashMap<>();
+        categorySales.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]))
+                .forEach(entry -> categories.put(entry.getKey(), Map.of(
+                    "revenue", Money.ofMinor(entry.getValue()[0]).toBigDecimal(),
+                    "units", entry.getValue()[1]
+                )));
+        
         // Summary
-        BigDecimal totalRevenue = dailyRevenue.values().stream()
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        Money totalRevenue = Money.ofMinor(dailyRevenueMinor.values().stream().mapToLong(Long::longValue).sum());
         
         long totalOrders = dailyOrders.values().stream()
                 .mapToLong(Long::longValue)
                 .sum();
         
         BigDecimal averageOrderValue = totalOrders > 0 ? 
-                totalRevenue.divide(BigDecimal.valueOf(totalOrders), 2, BigDecimal.ROUND_HALF_UP) : 
+                totalRevenue.dividedBy(totalOrders).toBigDecimal() : 
                 BigDecimal.ZERO;
         
         return Map.of(
@@ -134,57 +109,38 @@ public class AdminAnalyticsService {
                 "endDate", endDate
             ),
             "summary", Map.of(
-                "totalRevenue", totalRevenue,
+                "totalRevenue", totalRevenue.toBigDecimal(),
                 "totalOrders", totalOrders,
-                "averageOrderValue", averageOrderValue
+                "averageOrderValue", averageOrderValue,
+                "revenueByCurrency", revenueByCurrency
             ),
             "dailyBreakdown", Map.of(
                 "revenue", dailyRevenue,
                 "orders", dailyOrders
-            )
+            ),
+            "categoryBreakdown", categories
         );
     }
     
-    @Transactional(readOnly = true)
+    /**
+     * Estimated from the per-day top products summaries; maxError bounds the overcount.
+     */
     public List<Map<String, Object>> getTopSellingProducts(int limit, LocalDate startDate, LocalDate endDate) {
         log.info("Getting top selling products, limit: {}, from {} to {}", limit, startDate, endDate);
-        
-        LocalDateTime start = startDate.atStartOfDay();
-        LocalDateTime end = endDate.atTime(23, 59, 59);
-        
-        List<Order> ordersInRange = orderRepository.findAll().stream()
-                .filter(order -> order.getCreatedAt().isAfter(start) && order.getCreatedAt().isBefore(end))
-                .filter(order -> order.getStatus() == Order.OrderStatus.DELIVERED)
-                .collect(Collectors.toList());
-        
-        Map<String, Integer> productSales = new HashMap<>();
-        Map<String, String> productNames = new HashMap<>();
-        Map<String, BigDecimal> productRevenue = new HashMap<>();
-        
-        for (Order order : ordersInRange) {
-            for (Order.OrderItem item : order.getItems()) {
-                String productId = item.getProductId();
-                productSales.merge(productId, item.getQty(), Integer::sum);
-                productNames.put(productId, item.getTitle());
-                
-                BigDecimal itemRevenue = item.getPrice().multiply(BigDecimal.valueOf(item.getQty()));
-                productRevenue.merge(productId, itemRevenue, BigDecimal::add);
-            }
-        }
-        
-        return productSales.entrySet().stream()
-                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
-                .limit(limit)
-                .map(entry -> {
-                    String productId = entry.getKey();
-                    Map<String, Object> result = new HashMap<>();
-                    result.put("productId", productId);
-                    result.put("productName", productNames.get(productId));
-                    result.put("totalSold", entry.getValue());
-                    result.put("totalRevenue", productRevenue.get(productId));
-                    return result;
-                })
-                .collect(Collectors.toList());
+        return topProductsService.getTopProducts(limit, startDate, endDate);
+    }
+    
+    /**
+     * Recomputed from the orders, for checking the estimates.
+     */
+    public List<Map<String, Object>> getExactTopSellingProducts(int limit, LocalDate startDate, LocalDate endDate) {
+        log.info("Getting exact top selling products, limit: {}, from {} to {}", limit, startDate, endDate);
+        return topProductsService.getExactTopProducts(limit, startDate, endDate);
+    }
+    
+    public Map<String, Object> rebuildTopProducts(LocalDate startDate, LocalDate endDate) {
+        log.info("Rebuilding top products summaries from {} to {}", startDate, endDate);
+        return topProductsService.rebuild(startDate, endDate);
     }
     
     @Transactional(readOnly = true)
@@ -194,9 +150,12 @@ public class AdminAnalyticsService {
         LocalDateTime start = startDate.atStartOfDay();
         LocalDateTime end = endDate.atTime(23, 59, 59);
         
-        List<User> usersInRange = userRepository.findAll().stream()
-                .filter(user -> user.getCreatedAt().isAfter(start) && user.getCreatedAt().isBefore(end))
-                .collect(Collectors.toList());
+        // Signups per day, grouped in the database in the server's zone
+        List<Document> signupsPerDay = mongoTemplate.aggregate(Aggregation.newAggregation(User.class,
+                Aggregation.match(Criteria.where("createdAt").gt(start).lt(end)),
+                Aggregation.project().and(AggregationSupport.dayOf("createdAt")).as("day"),
+                Aggregation.group("day").count().as("count")),
+                Document.class).getMappedResults();
         
         // Daily breakdown
         Map<LocalDate, Long> dailyNewUsers = new LinkedHashMap<>();
@@ -207,9 +166,8 @@ public class AdminAnalyticsService {
             currentDate = currentDate.plusDays(1);
         }
         
-        for (User user : usersInRange) {
-            LocalDate userDate = user.getCreatedAt().toLocalDate();
-            dailyNewUsers.merge(userDate, 1L, Long::sum);
+        for (Document day : signupsPerDay) {
+            dailyNewUsers.merge(LocalDate.parse(day.getString("_id")), AggregationSupport.longValue(day, "count"), Long::sum);
         }
         
         // Cumulative growth
@@ -234,66 +192,37 @@ public class AdminAnalyticsService {
         );
     }
     
-    @Transactional(readOnly = true)
     public Map<String, Object> getAbandonedCartAnalysis() {
         log.info("Getting abandoned cart analysis");
         
-        // This would need cart data - for now return mock data
-        // In a real implementation, you'd analyze carts that were created but never converted to orders
-        
-        return Map.of(
-            "abandonedCarts", 45,
-            "totalCarts", 120,
-            "abandonmentRate", 37.5,
-            "potentialRevenue", BigDecimal.valueOf(2500.00),
-            "topAbandonedProducts", Arrays.asList(
-                "Laptop Pro 15\"",
-                "Wireless Headphones",
-                "Smart Watch Series 5"
-            )
-        );
+        // Served from incrementally maintained counters, independent of cart volume
+        return cartAnalyticsService.getAbandonedCartAnalysis(5);
     }
     
     @Transactional(readOnly = true)
     public Map<String, Object> getInventoryAlerts() {
         log.info("Getting inventory alerts");
         
-        List<Product> allProducts = productRepository.findAll();
-        
-        List<Product> outOfStock = allProducts.stream()
-                .filter(p -> p.getStock() == 0 && p.getAvailable())
-                .collect(Collectors.toList());
-        
-        List<Product> lowStock = allProducts.stream()
-                .filter(p -> p.getStock() > 0 && p.getStock() <= 10 && p.getAvailable())
-                .collect(Collectors.toList());
-        
-        List<Product> discontinued = allProducts.stream()
-                .filter(p -> !p.getAvailable())
-                .collect(Collectors.toList());
-        
         return Map.of(
-            "outOfStock", outOfStock.stream().map(p -> Map.of(
-                "id", p.getId(),
-                "sku", p.getSku(),
-                "title", p.getTitle(),
-                "stock", p.getStock()
-            )).collect(Collectors.toList()),
-            "lowStock", lowStock.stream().map(p -> Map.of(
-                "id", p.getId(),
-                "sku", p.getSku(),
-                "title", p.getTitle(),
-                "stock", p.getStock()
-            )).collect(Collectors.toList()),
-            "discontinued", discontinued.stream().map(p -> Map.of(
-                "id", p.getId(),
-                "sku", p.getSku(),
-                "title", p.getTitle(),
-                "stock", p.getStock()
-            )).collect(Collectors.toList())
+            "outOfStock", stockAlerts(Criteria.where("available").is(true).and("stock").is(0)),
+            "lowStock", stockAlerts(Criteria.where("available").is(true).and("stock").gt(0).lte(DashboardStatsService.LOW_STOCK_THRESHOLD)),
+            "discontinued", stockAlerts(Criteria.where("available").is(false))
         );
     }
     
+    private List<Map<String, Object>> stockAlerts(Criteria criteria) {
+        Query query = new Query(criteria);
+        query.fields().include("id").include("sku").include("title").include("stock");
+        return mongoTemplate.find(query, Product.class).stream()
+                .map(p -> Map.<String, Object>of(
+                    "id", p.getId(),
+                    "sku", p.getSku(),
+                    "title", p.getTitle(),
+                    "stock", p.getStock()
+                ))
+                .collect(Collectors.toList());
+    }
+    
     @Transactional(readOnly = true)
     public List<Map<String, Object>> getRecentActivity(int limit) {
         log.info("Getting recent activity, limit: {}", limit);
@@ -301,10 +230,9 @@ public class AdminAnalyticsService {
         List<Map<String, Object>> activities = new ArrayList<>();
         
         // Recent orders
-        List<Order> recentOrders = orderRepository.findAll().stream()
-                .sorted((o1, o2) -> o2.getCreatedAt().compareTo(o1.getCreatedAt()))
-                .limit(limit / 2)
-                .collect(Collectors.toList());
+        Query recentOrdersQuery = new Query().with(Sort.by(Sort.Direction.DESC, "createdAt")).limit(limit / 2);
+        recentOrdersQuery.fields().include("id").include("createdAt").include("total").include("status");
+        List<Order> recentOrders = mongoTemplate.find(recentOrdersQuery, Order.class);
         
         for (Order order : recentOrders) {
             activities.add(Map.of(
@@ -320,11 +248,11 @@ public class AdminAnalyticsService {
         }
         
         // Recent users
-        List<User> recentUsers = userRepository.findAll().stream()
-                .filter(u -> !u.getDeleted())
-                .sorted((u1, u2) -> u2.getCreatedAt().compareTo(u1.getCreatedAt()))
-                .limit(limit / 2)
-                .collect(Collectors.toList());
+        Query recentUsersQuery = new Query(Criteria.where("deleted").ne(true))
+                .with(Sort.by(Sort.Direction.DESC, "createdAt"))
+                .limit(limit / 2);
+        recentUsersQuery.fields().include("id").include("name").include("email").include("roles").include("createdAt");
+        List<User> recentUsers = mongoTemplate.find(recentUsersQuery, User.class);
         
         for (User user : recentUsers) {
             activities.add(Map.of(
@@ -1,21 +1,35 @@
 package com.ozdilek.ecommerce.service;
 
+import com.ozdilek.ecommerce.dto.order.BulkStatusUpdateRequest;
+import com.ozdilek.ecommerce.model.DailySales;
+import com.ozdilek.ecommerce.model.Money;
 import com.ozdilek.ecommerce.model.Order;
 import com.ozdilek.ecommerce.model.User;
 import com.ozdilek.ecommerce.repository.OrderRepository;
 import com.ozdilek.ecommerce.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
@@ -24,6 +38,14 @@ public class AdminOrderManagementService {
     
     private final OrderRepository orderRepository;
     private final UserRepository userRepository;
+    private final InventoryService inventoryService;
+    private final OrderEventService orderEventService;
+    private final MongoTemplate mongoTemplate;
+    private final DailySalesService dailySalesService;
+    private final TopProductsService topProductsService;
+    
+    @Value("${app.orders.bulk-status.chunk-size:1000}")
+    private int bulkChunkSize;
     
     @Transactional(readOnly = true)
     public Page<Order> getAllOrders(Pageable pageable) {
@@ -34,10 +56,17 @@ public class AdminOrderManagementService {
     @Transactional(readOnly = true)
     public Order getOrderById(String orderId) {
         log.info("Getting order by id: {}", orderId);
-        return orderRepository.findById(orderId)
+        return orderRepository.findByIdInAnyTier(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found with id: " + orderId));
     }
     
+    @Transactional(readOnly = true)
+    public Order getOrderByNumber(String orderNumber) {
+        log.info("Getting order by number: {}", orderNumber);
+        return orderRepository.findByOrderNumberInAnyTier(orderNumber.toUpperCase())
+                .orElseThrow(() -> new RuntimeException("Order not found with number: " + orderNumber));
+    }
+    
     @Transactional(readOnly = true)
     public List<Order> getOrdersByStatus(Order.OrderStatus status) {
         log.info("Getting orders by status: {}", status);
@@ -47,55 +76,161 @@ public class AdminOrderManagementService {
     @Transactional(readOnly = true)
     public List<Order> getOrdersByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
         log.info("Getting orders between {} and {}", startDate, endDate);
-        return orderRepository.findAll().stream()
-                .filter(order -> order.getCreatedAt().isAfter(startDate) && order.getCreatedAt().isBefore(endDate))
-                .toList();
+        return orderRepository.findByCreatedAtBetweenInAnyTier(startDate, endDate);
     }
     
     @Transactional(readOnly = true)
     public List<Order> getOrdersByUser(String userId) {
         log.info("Getting orders for user: {}", userId);
-        return orderRepository.findByUserIdOrderByCreatedAtDesc(userId);
+        return orderRepository.findByUserIdInAnyTier(userId);
     }
     
+    /**
+     * Moves one order along the state machine. The change is conditional on the status
+     * that was read, so a concurrent change in between is reported instead of overwritten.
+     */
     @Transactional
     public Order updateOrderStatus(String orderId, Order.OrderStatus newStatus, String adminNote) {
         log.info("Updating order status: {} to {}", orderId, newStatus);
         
-        Order order = getOrderById(orderId);
-        Order.OrderStatus oldStatus = order.getStatus();
-        order.setStatus(newStatus);
-        order.setUpdatedAt(LocalDateTime.now());
-        
-        // Add status change event
-        if (order.getEvents() == null) {
-            order.setEvents(List.of());
+        // Archived orders are closed for good; only the hot tier takes status changes
+        Order.OrderStatus oldStatus = orderRepository.findById(orderId)
+                .orElseThrow(() -> new RuntimeException(orderRepository.findByIdInAnyTier(orderId).isPresent()
+                        ? "Order " + orderId + " is archived and can no longer change status"
+                        : "Order not found with id: " + orderId))
+                .getStatus();
+        if (!oldStatus.canTransitionTo(newStatus)) {
+            throw new RuntimeException("Cannot change order status from " + oldStatus + " to " + newStatus);
         }
         
-        Order.OrderEvent statusChangeEvent = Order.OrderEvent.builder()
-                .status(newStatus)
-                .at(LocalDateTime.now())
-                .meta(Map.of(
-                    "previousStatus", oldStatus.toString(),
-                    "adminNote", adminNote != null ? adminNote : "",
-                    "changedBy", "ADMIN"
-                ))
-                .build();
+        Order order = orderEventService.transition(orderId, oldStatus, newStatus, "Status changed by admin",
+                adminMeta(adminNote), null);
+        if (order == null) {
+            throw new RuntimeException("Order " + orderId + " was changed concurrently, please retry");
+        }
         
-        order.getEvents().add(statusChangeEvent);
+        if (newStatus == Order.OrderStatus.CANCELLED && holdsReservedStock(oldStatus)) {
+            inventoryService.releaseStock(reservedQuantities(order));
+        }
         
-        order = orderRepository.save(order);
         log.info("Order status updated successfully: {} from {} to {}", orderId, oldStatus, newStatus);
         return order;
     }
     
+    /**
+     * Applies many status changes at once, e.g. a warehouse shipping wave.
+     * <p>
+     * Per chunk: one find loads the current snapshots, transitions are checked against
+     * the state machine, and the valid ones are applied per target status through
+     * {@link OrderEventService#transitionAll} (one bulk insert of events, one bulk update of
+     * snapshots). Orders changed by someone else in between are reported as CONFLICT.
+     * Stock of cancelled orders is released in one bulkWrite per chunk.
+     *
+     * @return counts per outcome plus one result per requested order, in request order
+     */
+    public Map<String, Object> bulkUpdateOrderStatus(List<BulkStatusUpdateRequest.StatusUpdate> updates) {
+        long startedAt = System.nanoTime();
+        List<Map<String, Object>> results = new ArrayList<>(updates.size());
+        Map<String, Integer> outcomes = new LinkedHashMap<>();
+        Set<String> seen = new HashSet<>();
+        
+        List<BulkStatusUpdateRequest.StatusUpdate> chunk = new ArrayList<>(bulkChunkSize);
+        Map<String, Map<String, Object>> chunkResults = new HashMap<>();
+        for (BulkStatusUpdateRequest.StatusUpdate update : updates) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("orderId", update.getOrderId());
+            result.put("to", update.getStatus());
+            results.add(result);
+            
+            if (!seen.add(update.getOrderId())) {
+                result.put("outcome", "DUPLICATE");
+                continue;
+            }
+            chunk.add(update);
+            chunkResults.put(update.getOrderId(), result);
+            
+            if (chunk.size() == bulkChunkSize) {
+                applyStatusChunk(chunk, chunkResults);
+                chunk.clear();
+                chunkResults.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            applyStatusChunk(chunk, chunkResults);
+        }
+        
+        results.forEach(result -> outcomes.merge((String) result.get("outcome"), 1, Integer::sum));
+        long elapsedMs = (System.nanoTime() - startedAt) / 1_000_000;
+        log.info("Bulk status update of {} orders finished in {} ms: {}", updates.size(), elapsedMs, outcomes);
+        
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("requested", updates.size());
+        response.put("applied", outcomes.getOrDefault("APPLIED", 0));
+        response.put("outcomes", outcomes);
+        response.put("elapsedMs", elapsedMs);
+        response.put("results", results);
+        return response;
+    }
+    
+    private void applyStatusChunk(List<BulkStatusUpdateRequest.StatusUpdate> chunk,
+                                  Map<String, Map<String, Object>> results) {
+        Map<String, Order> orders = orderEventService.loadSnapshots(results.keySet(), "items.productId", "items.qty");
+        Map<String, String> notes = new HashMap<>();
+        Map<Order.OrderStatus, List<Order>> byTarget = new LinkedHashMap<>();
+        
+        for (BulkStatusUpdateRequest.StatusUpdate update : chunk) {
+            Map<String, Object> result = results.get(update.getOrderId());
+            Order order = orders.get(update.getOrderId());
+            if (order == null) {
+                result.put("outcome", "NOT_FOUND");
+                continue;
+            }
+            
+            result.put("from", order.getStatus());
+            if (!order.getStatus().canTransitionTo(update.getStatus())) {
+                result.put("outcome", "INVALID_TRANSITION");
+                continue;
+            }
+            
+            notes.put(order.getId(), update.getNote());
+            byTarget.computeIfAbsent(update.getStatus(), status -> new ArrayList<>()).add(order);
+        }
+        
+        Map<String, Integer> released = new HashMap<>();
+        byTarget.forEach((target, candidates) -> {
+            Set<String> applied = orderEventService.transitionAll(candidates, target, null,
+                    order -> "Status changed by admin",
+                    order -> adminMeta(notes.get(order.getId())));
+            
+            for (Order order : candidates) {
+                if (!applied.contains(order.getId())) {
+                    results.get(order.getId()).put("outcome", "CONFLICT");
+                    continue;
+                }
+                
+                results.get(order.getId()).put("outcome", "APPLIED");
+                if (target == Order.OrderStatus.CANCELLED && holdsReservedStock(order.getStatus())) {
+                    reservedQuantities(order).forEach((productId, qty) -> released.merge(productId, qty, Integer::sum));
+                }
+            }
+        });
+        inventoryService.releaseStock(released);
+    }
+    
+    private Map<String, Object> adminMeta(String adminNote) {
+        return Map.of(
+                "adminNote", adminNote != null ? adminNote : "",
+                "changedBy", "ADMIN");
+    }
+    
     @Transactional
     public Order cancelOrder(String orderId, String reason) {
         log.info("Cancelling order: {} with reason: {}", orderId, reason);
         
         Order order = getOrderById(orderId);
         
-        if (order.getStatus() == Order.OrderStatus.DELIVERED || order.getStatus() == Order.OrderStatus.REFUNDED) {
+        if (order.getStatus() == Order.OrderStatus.DELIVERED || order.getStatus() == Order.OrderStatus.REFUNDED
+                || order.getStatus() == Order.OrderStatus.CANCELLED) {
             throw new RuntimeException("Cannot cancel order with status: " + order.getStatus());
         }
         
@@ -119,23 +254,41 @@ public class AdminOrderManagementService {
     public Map<String, Object> getOrderStatistics() {
         log.info("Getting order statistics");
         
-        List<Order> allOrders = orderRepository.findAll();
+        // Counts per status and delivered revenue in one pass per tier on the database side;
+        // archived orders count too, as in the dashboard counters and daily rollups
+        List<String> collections = new ArrayList<>();
+        collections.add(mongoTemplate.getCollectionName(Order.class));
+        collections.addAll(orderRepository.archiveCollectionsBetween(null, null));
         
-        long totalOrders = allOrders.size();
-        long pendingOrders = allOrders.stream().filter(o -> o.getStatus() == Order.OrderStatus.PENDING).count();
-        long confirmedOrders = allOrders.stream().filter(o -> o.getStatus() == Order.OrderStatus.CONFIRMED).count();
-        long shippedOrders = allOrders.stream().filter(o -> o.getStatus() == Order.OrderStatus.SHIPPED).count();
-        long deliveredOrders = allOrders.stream().filter(o -> o.getStatus() == Order.OrderStatus.DELIVERED).count();
-        long cancelledOrders = allOrders.stream().filter(o -> o.getStatus() == Order.OrderStatus.CANCELLED).count();
-        long refundedOrders = allOrders.stream().filter(o -> o.getStatus() == Order.OrderStatus.REFUNDED).count();
+        Map<String, Long> byStatus = new HashMap<>();
+        Money totalRevenue = Money.ZERO;
+        for (String collection : collections) {
+            Document stats = mongoTemplate.aggregate(Aggregation.newAggregation(Order.class,
+                    Aggregation.facet(Aggregation.group("status").count().as("count")).as("byStatus")
+                            .and(Aggregation.match(Criteria.where("status").is(Order.OrderStatus.DELIVERED.name())),
+                                    Aggregation.group().sum("total").as("revenue")).as("delivered")),
+                    collection, Document.class).getUniqueMappedResult();
+            if (stats == null) {
+                continue;
+            }
+            
+            stats.getList("byStatus", Document.class).forEach(bucket ->
+                    byStatus.merge(String.valueOf(bucket.get("_id")), AggregationSupport.longValue(bucket, "count"), Long::sum));
+            for (Document bucket : stats.getList("delivered", Document.class)) {
+                totalRevenue = totalRevenue.plus(Money.of(AggregationSupport.amount(bucket, "revenue")));
+            }
+        }
         
-        BigDecimal totalRevenue = allOrders.stream()
-                .filter(o -> o.getStatus() == Order.OrderStatus.DELIVERED)
-                .map(Order::getTotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        long totalOrders = byStatus.values().stream().mapToLong(Long::longValue).sum();
+        long pendingOrders = byStatus.getOrDefault(Order.OrderStatus.PENDING.name(), 0L);
+        long confirmedOrders = byStatus.getOrDefault(Order.OrderStatus.CONFIRMED.name(), 0L);
+        long shippedOrders = byStatus.getOrDefault(Order.OrderStatus.SHIPPED.name(), 0L);
+        long deliveredOrders = byStatus.getOrDefault(Order.OrderStatus.DELIVERED.name(), 0L);
+        long cancelledOrders = byStatus.getOrDefault(Order.OrderStatus.CANCELLED.name(), 0L);
+        long refundedOrders = byStatus.getOrDefault(Order.OrderStatus.REFUNDED.name(), 0L);
         
         BigDecimal averageOrderValue = totalOrders > 0 ? 
-                totalRevenue.divide(BigDecimal.valueOf(totalOrders), 2, BigDecimal.ROUND_HALF_UP) : 
+                totalRevenue.dividedBy(totalOrders).toBigDecimal() : 
                 BigDecimal.ZERO;
         
         return Map.of(
@@ -146,7 +299,7 @@ public class AdminOrderManagementService {
             "deliveredOrders", deliveredOrders,
             "cancelledOrders", cancelledOrders,
             "refundedOrders", refundedOrders,
-            "totalRevenue", totalRevenue,
+            "totalRevenue", totalRevenue.toBigDecimal(),
             "averageOrderValue", averageOrderValue
         );
     }
@@ -155,57 +308,32 @@ public class AdminOrderManagementService {
     public Map<String, Object> getDailySales(LocalDateTime date) {
         log.info("Getting daily sales for: {}", date);
         
-        LocalDateTime startOfDay = date.withHour(0).withMinute(0).withSecond(0);
-        LocalDateTime endOfDay = date.withHour(23).withMinute(59).withSecond(59);
-        
-        List<Order> dailyOrders = getOrdersByDateRange(startOfDay, endOfDay);
-        
-        long totalOrders = dailyOrders.size();
-        long deliveredOrders = dailyOrders.stream()
-                .filter(o -> o.getStatus() == Order.OrderStatus.DELIVERED)
-                .count();
-        
-        BigDecimal totalRevenue = dailyOrders.stream()
-                .filter(o -> o.getStatus() == Order.OrderStatus.DELIVERED)
-                .map(Order::getTotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        // One rollup document per currency; revenue is reported in the default currency
+        long totalOrders = 0;
+        long deliveredOrders = 0;
+        Money totalRevenue = Money.ZERO;
+        for (DailySales sales : dailySalesService.findBetween(date.toLocalDate(), date.toLocalDate())) {
+            totalOrders += sales.getOrders();
+            deliveredOrders += sales.getStatuses().getOrDefault(Order.OrderStatus.DELIVERED.name(), 0L);
+            if (Money.DEFAULT_CURRENCY.equals(sales.getCurrency())) {
+                totalRevenue = totalRevenue.plus(Money.ofMinor(sales.getRevenueMinor()));
+            }
+        }
         
         return Map.of(
             "date", date.toLocalDate(),
             "totalOrders", totalOrders,
             "deliveredOrders", deliveredOrders,
-            "totalRevenue", totalRevenue
+            "totalRevenue", totalRevenue.toBigDecimal()
         );
     }
     
-    @Transactional(readOnly = true)
+    /**
+     * All-time estimate from the top products summary.
+     */
     public List<Map<String, Object>> getTopSellingProducts(int limit) {
         log.info("Getting top selling products, limit: {}", limit);
-        
-        List<Order> deliveredOrders = getOrdersByStatus(Order.OrderStatus.DELIVERED);
-        
-        Map<String, Integer> productSales = new java.util.HashMap<>();
-        Map<String, String> productNames = new java.util.HashMap<>();
-        
-        for (Order order : deliveredOrders) {
-            for (Order.OrderItem item : order.getItems()) {
-                String productId = item.getProductId();
-                productSales.merge(productId, item.getQty(), Integer::sum);
-                productNames.put(productId, item.getTitle());
-            }
-        }
-        
-        return productSales.entrySet().stream()
-                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
-                .limit(limit)
-                .map(entry -> {
-                    Map<String, Object> result = new HashMap<>();
-                    result.put("productId", entry.getKey());
-                    result.put("productName", productNames.get(entry.getKey()));
-                    result.put("totalSold", entry.getValue());
-                    return result;
-                })
-                .toList();
+        return topProductsService.getTopProducts(limit, null, null);
     }
     
     @Transactional(readOnly = true)
@@ -226,9 +354,8 @@ public class AdminOrderManagementService {
     public List<Map<String, Object>> getRecentOrders(int limit) {
         log.info("Getting recent orders, limit: {}", limit);
         
-        return orderRepository.findAll().stream()
-                .sorted((o1, o2) -> o2.getCreatedAt().compareTo(o1.getCreatedAt()))
-                .limit(limit)
+        Query recent = new Query().with(Sort.by(Sort.Direction.DESC, "createdAt")).limit(limit);
+        return mongoTemplate.find(recent, Order.class).stream()
                 .map(order -> {
                     User user = userRepository.findById(order.getUserId()).orElse(null);
                     Map<String, Object> result = new HashMap<>();
@@ -243,4 +370,23 @@ public class AdminOrderManagementService {
                 })
                 .toList();
     }
+    
+    /**
+     * Stock is decremented at checkout and stays reserved until the order ships.
+     */
+    private boolean holdsReservedStock(Order.OrderStatus status) {
+        return status == Order.OrderStatus.PENDING
+                || status == Order.OrderStatus.PAID
+                || status == Order.OrderStatus.CONFIRMED;
+    }
+    
+    private Map<String, Integer> reservedQuantities(Order order) {
+        Map<String, Integer> quantities = new HashMap<>();
+        if (order.getItems() != null) {
+            for (Order.OrderItem item : order.getItems()) {
+                quantities.merge(item.getProductId(), item.getQty(), Integer::sum);
+            }
+        }
+        return quantities;
+    }
 }
@@ -0,0 +1,111 @@
+package com.ozdilek.ecommerce.service;
+
+import com.ozdilek.ecommerce.dto.pricing.PriceBookRequest;
+import com.ozdilek.ecommerce.model.PriceBook;
+import com.ozdilek.ecommerce.model.Product;
+import com.ozdilek.ecommerce.repository.PriceBookRepository;
+import com.ozdilek.ecommerce.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Admin side of price books. Every write recompiles the {@link PriceResolver} index.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AdminPriceBookManagementService {
+    
+    private final PriceBookRepository priceBookRepository;
+    private final ProductRepository productRepository;
+    private final PriceResolver priceResolver;
+    
+    public List<PriceBook> getAllPriceBooks() {
+        return priceBookRepository.findAllByOrderByUpdatedAtDesc();
+    }
+    
+    public PriceBook createPriceBook(PriceBookRequest request) {
+        log.info("Creating price book: {} with {} entries", request.getName(), request.getEntries().size());
+        
+        PriceBook book = PriceBook.builder()
+                .createdAt(LocalDateTime.now())
+                .build();
+        apply(book, request);
+        
+        PriceBook saved = priceBookRepository.save(book);
+        priceResolver.reload();
+        return saved;
+    }
+    
+    public PriceBook updatePriceBook(String priceBookId, PriceBookRequest request) {
+        log.info("Updating price book: {}", priceBookId);
+        
+        PriceBook book = priceBookRepository.findById(priceBookId)
+                .orElseThrow(() -> new RuntimeException("Price book not found with id: " + priceBookId));
+        apply(book, request);
+        
+        PriceBook saved = priceBookRepository.save(book);
+        priceResolver.reload();
+        return saved;
+    }
+    
+    public PriceBook deactivatePriceBook(String priceBookId) {
+        log.info("Deactivating price book: {}", priceBookId);
+        
+        PriceBook book = priceBookRepository.findById(priceBookId)
+                .orElseThrow(() -> new RuntimeException("Price book not found with id: " + priceBookId));
+        book.setActive(false);
+        book.setUpdatedAt(LocalDateTime.now());
+        
+        PriceBook saved = priceBookRepository.save(book);
+        priceResolver.reload();
+        return saved;
+    }
+    
+    /**
+     * The price a product has (or will have) at the given time, e.g. to check a campaign
+     * before it starts.
+     */
+    public PriceResolver.ResolvedPrice previewPrice(String productId, LocalDateTime at) {
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new RuntimeException("Product not found with id: " + productId));
+        return priceResolver.resolve(product, at != null ? at : LocalDateTime.now());
+    }
+    
+    private void apply(PriceBook book, PriceBookRequest request) {
+        request.getEntries().forEach(this::validate);
+        
+        book.setName(request.getName());
+        book.setPriority(request.getPriority() != null ? request.getPriority() : 0);
+        book.setActive(!Boolean.FALSE.equals(request.getActive()));
+        book.setEntries(List.copyOf(request.getEntries()));
+        book.setUpdatedAt(LocalDateTime.now());
+    }
+    
+    private void validate(PriceBook.Entry entry) {
+        if ((entry.getSku() == null) == (entry.getCategoryId() == null)) {
+            throw new RuntimeException("Each price book entry needs either a sku or a categoryId");
+        }
+        if ((entry.getPrice() == null) == (entry.getPercentOff() == null)) {
+            throw new RuntimeException("Each price book entry needs either a price or a percentOff");
+        }
+        if (entry.getCategoryId() != null && entry.getPrice() != null) {
+            throw new RuntimeException("Category entries take a percentOff, not a fixed price");
+        }
+        if (entry.getPrice() != null && entry.getPrice().signum() <= 0) {
+            throw new RuntimeException("Price must be positive");
+        }
+        if (entry.getPercentOff() != null
+                && (entry.getPercentOff().signum() <= 0 || entry.getPercentOff().compareTo(BigDecimal.valueOf(100)) >= 0)) {
+            throw new RuntimeException("percentOff must be between 0 and 100");
+        }
+        if (entry.getStartsAt() != null && entry.getEndsAt() != null && !entry.getEndsAt().isAfter(entry.getStartsAt())) {
+            throw new RuntimeException("Price book entry must end after it starts");
+        }
+    }
+}
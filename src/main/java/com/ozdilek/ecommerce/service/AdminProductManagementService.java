@@ -2,17 +2,24 @@ package com.ozdilek.ecommerce.service;
 
 import com.ozdilek.ecommerce.dto.product.ProductCreateRequest;
 import com.ozdilek.ecommerce.dto.product.ProductUpdateRequest;
+import com.ozdilek.ecommerce.dto.promotion.PromotionRequest;
 import com.ozdilek.ecommerce.model.Product;
+import com.ozdilek.ecommerce.model.Promotion;
 import com.ozdilek.ecommerce.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -22,6 +29,11 @@ import java.util.Map;
 public class AdminProductManagementService {
     
     private final ProductRepository productRepository;
+    private final HotSkuStockService hotSkuStockService;
+    private final AdminPromotionManagementService adminPromotionService;
+    private final PriceHistoryService priceHistoryService;
+    private final DashboardStatsService dashboardStatsService;
+    private final MongoTemplate mongoTemplate;
     
     @Transactional(readOnly = true)
     public Page<Product> getAllProducts(Pageable pageable) {
@@ -72,6 +84,8 @@ public class AdminProductManagementService {
                 .build();
         
         product = productRepository.save(product);
+        priceHistoryService.recordChange(product, null, "admin-create");
+        dashboardStatsService.recordProductTouched(product.getId());
         log.info("Product created successfully with ID: {}", product.getId());
         return product;
     }
@@ -81,6 +95,7 @@ public class AdminProductManagementService {
         log.info("Updating product: {}", productId);
         
         Product product = getProductById(productId);
+        BigDecimal previousPrice = product.getPrice();
         
         if (request.getTitle() != null) product.setTitle(request.getTitle());
         if (request.getDescription() != null) product.setDescription(request.getDescription());
@@ -104,6 +119,12 @@ public class AdminProductManagementService {
         
         product.setUpdatedAt(LocalDateTime.now());
         product = productRepository.save(product);
+        priceHistoryService.recordChange(product, previousPrice, "admin-update");
+        dashboardStatsService.recordProductTouched(productId);
+        
+        if (request.getStock() != null && product.getStockShards() != null) {
+            hotSkuStockService.setStock(productId, product.getStockShards(), request.getStock());
+        }
         
         log.info("Product updated successfully: {}", product.getSku());
         return product;
@@ -118,6 +139,11 @@ public class AdminProductManagementService {
         product.setUpdatedAt(LocalDateTime.now());
         
         product = productRepository.save(product);
+        if (product.getStockShards() != null) {
+            // Hot SKUs sell from their shards, Product.stock only mirrors the total
+            hotSkuStockService.setStock(productId, product.getStockShards(), newStock);
+        }
+        dashboardStatsService.recordProductTouched(productId);
         log.info("Product stock updated successfully: {} to {}", product.getSku(), newStock);
         return product;
     }
@@ -127,10 +153,12 @@ public class AdminProductManagementService {
         log.info("Updating product price: {} to {}", productId, newPrice);
         
         Product product = getProductById(productId);
+        BigDecimal previousPrice = product.getPrice();
         product.setPrice(newPrice);
         product.setUpdatedAt(LocalDateTime.now());
         
         product = productRepository.save(product);
+        priceHistoryService.recordChange(product, previousPrice, "admin-price");
         log.info("Product price updated successfully: {} to {}", product.getSku(), newPrice);
         return product;
     }
@@ -144,6 +172,7 @@ public class AdminProductManagementService {
         product.setUpdatedAt(LocalDateTime.now());
         
         product = productRepository.save(product);
+        dashboardStatsService.recordProductTouched(productId);
         log.info("Product availability toggled: {} to {}", product.getSku(), product.getAvailable());
         return product;
     }
@@ -154,6 +183,7 @@ public class AdminProductManagementService {
         
         Product product = getProductById(productId);
         productRepository.delete(product);
+        dashboardStatsService.recordProductTouched(productId);
         
         log.info("Product deleted successfully: {}", product.getSku());
     }
@@ -161,43 +191,38 @@ public class AdminProductManagementService {
     @Transactional(readOnly = true)
     public List<Product> getLowStockProducts(int threshold) {
         log.info("Getting products with stock below: {}", threshold);
-        return productRepository.findAll().stream()
-                .filter(product -> product.getStock() <= threshold && product.getAvailable())
-                .toList();
+        return productRepository.findAvailableWithStockAtMost(threshold);
     }
     
     @Transactional(readOnly = true)
     public List<Product> getOutOfStockProducts() {
         log.info("Getting out of stock products");
-        return productRepository.findAll().stream()
-                .filter(product -> product.getStock() == 0 && product.getAvailable())
-                .toList();
+        return productRepository.findAvailableWithStockAtMost(0);
     }
     
     @Transactional(readOnly = true)
     public List<Product> getUnavailableProducts() {
         log.info("Getting unavailable products");
-        return productRepository.findAll().stream()
-                .filter(product -> !product.getAvailable())
-                .toList();
+        return productRepository.findByAvailableFalse();
     }
     
     @Transactional(readOnly = true)
     public Map<String, Long> getProductStatistics() {
         log.info("Getting product statistics");
         
-        List<Product> allProducts = productRepository.findAll();
-        
-        long totalProducts = allProducts.size();
-        long availableProducts = allProducts.stream().filter(Product::getAvailable).count();
-        long outOfStockProducts = allProducts.stream().filter(p -> p.getStock() == 0).count();
-        long lowStockProducts = allProducts.stream().filter(p -> p.getStock() <= 10).count();
+        Document stats = mongoTemplate.aggregate(Aggregation.newAggregation(Product.class,
+                Aggregation.group()
+                        .count().as("total")
+                        .sum(AggregationSupport.countIf(ComparisonOperators.valueOf("available").equalToValue(true))).as("available")
+                        .sum(AggregationSupport.countIf(ComparisonOperators.valueOf("stock").equalToValue(0))).as("outOfStock")
+                        .sum(AggregationSupport.countIf(ComparisonOperators.valueOf("stock").lessThanEqualToValue(10))).as("lowStock")),
+                Document.class).getUniqueMappedResult();
         
         return Map.of(
-            "totalProducts", totalProducts,
-            "availableProducts", availableProducts,
-            "outOfStockProducts", outOfStockProducts,
-            "lowStockProducts", lowStockProducts
+            "totalProducts", AggregationSupport.longValue(stats, "total"),
+            "availableProducts", AggregationSupport.longValue(stats, "available"),
+            "outOfStockProducts", AggregationSupport.longValue(stats, "outOfStock"),
+            "lowStockProducts", AggregationSupport.longValue(stats, "lowStock")
         );
     }
     
@@ -216,33 +241,27 @@ public class AdminProductManagementService {
     @Transactional(readOnly = true)
     public List<Product> getProductsByCategory(String categoryId) {
         log.info("Getting products by category: {}", categoryId);
-        return productRepository.findAll().stream()
-                .filter(product -> product.getCategories() != null && product.getCategories().contains(categoryId))
-                .toList();
+        return productRepository.findByCategories(categoryId);
     }
     
+    /**
+     * Runs a percent-off promotion on the product. The list price stays untouched; the
+     * discount is applied by the {@link PromotionEngine} at cart and checkout time.
+     */
     @Transactional
     public Product addProductDiscount(String productId, BigDecimal discountPercentage) {
         log.info("Adding discount to product: {} - {}%", productId, discountPercentage);
         
         Product product = getProductById(productId);
-        BigDecimal originalPrice = product.getPrice();
-        BigDecimal discountAmount = originalPrice.multiply(discountPercentage).divide(BigDecimal.valueOf(100));
-        BigDecimal newPrice = originalPrice.subtract(discountAmount);
-        
-        product.setPrice(newPrice);
-        product.setUpdatedAt(LocalDateTime.now());
+        adminPromotionService.deactivateProductDiscounts(productId);
+        adminPromotionService.createPromotion(PromotionRequest.builder()
+                .name("Product discount " + product.getSku())
+                .type(Promotion.Type.PERCENT_OFF)
+                .scope(Promotion.Scope.PRODUCT)
+                .productIds(List.of(productId))
+                .percent(discountPercentage)
+                .build());
         
-        // Add discount info to attributes
-        if (product.getAttributes() == null) {
-            product.setAttributes(Map.of());
-        }
-        Map<String, Object> attributes = product.getAttributes();
-        attributes.put("originalPrice", originalPrice);
-        attributes.put("discountPercentage", discountPercentage);
-        attributes.put("discountAppliedAt", LocalDateTime.now());
-        
-        product = productRepository.save(product);
         log.info("Discount applied successfully to product: {}", product.getSku());
         return product;
     }
@@ -252,20 +271,25 @@ public class AdminProductManagementService {
         log.info("Removing discount from product: {}", productId);
         
         Product product = getProductById(productId);
+        adminPromotionService.deactivateProductDiscounts(productId);
         
+        // Discounts from before the promotion engine overwrote the price itself
         if (product.getAttributes() != null && product.getAttributes().containsKey("originalPrice")) {
-            BigDecimal originalPrice = (BigDecimal) product.getAttributes().get("originalPrice");
+            BigDecimal originalPrice = new BigDecimal(product.getAttributes().get("originalPrice").toString());
+            BigDecimal previousPrice = product.getPrice();
             product.setPrice(originalPrice);
             product.setUpdatedAt(LocalDateTime.now());
             
             // Remove discount info
-            Map<String, Object> attributes = product.getAttributes();
+            Map<String, Object> attributes = new HashMap<>(product.getAttributes());
             attributes.remove("originalPrice");
             attributes.remove("discountPercentage");
             attributes.remove("discountAppliedAt");
+            product.setAttributes(attributes);
+            product = productRepository.save(product);
+            priceHistoryService.recordChange(product, previousPrice, "discount-removal");
         }
         
-        product = productRepository.save(product);
         log.info("Discount removed successfully from product: {}", product.getSku());
         return product;
     }
@@ -282,6 +306,7 @@ public class AdminProductManagementService {
         // For now, we'll allow hard delete
         
         productRepository.delete(product);
+        dashboardStatsService.recordProductTouched(productId);
         
         log.info("Product hard deleted: {}", productId);
     }
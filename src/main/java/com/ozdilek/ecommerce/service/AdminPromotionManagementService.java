@@ -0,0 +1,148 @@
+package com.ozdilek.ecommerce.service;
+
+import com.ozdilek.ecommerce.dto.promotion.PromotionRequest;
+import com.ozdilek.ecommerce.model.Promotion;
+import com.ozdilek.ecommerce.repository.PromotionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Admin side of promotions. Every write recompiles the {@link PromotionEngine} rule set,
+ * so the change is live on this node when the call returns.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AdminPromotionManagementService {
+    
+    private final PromotionRepository promotionRepository;
+    private final PromotionEngine promotionEngine;
+    
+    public List<Promotion> getAllPromotions() {
+        return promotionRepository.findAllByOrderByUpdatedAtDesc();
+    }
+    
+    public Promotion createPromotion(PromotionRequest request) {
+        log.info("Creating promotion: {}", request.getName());
+        
+        Promotion promotion = Promotion.builder()
+                .createdAt(LocalDateTime.now())
+                .build();
+        apply(promotion, request);
+        
+        Promotion saved = promotionRepository.save(promotion);
+        promotionEngine.reload();
+        return saved;
+    }
+    
+    public Promotion updatePromotion(String promotionId, PromotionRequest request) {
+        log.info("Updating promotion: {}", promotionId);
+        
+        Promotion promotion = promotionRepository.findById(promotionId)
+                .orElseThrow(() -> new RuntimeException("Promotion not found with id: " + promotionId));
+        apply(promotion, request);
+        
+        Promotion saved = promotionRepository.save(promotion);
+        promotionEngine.reload();
+        return saved;
+    }
+    
+    public Promotion deactivatePromotion(String promotionId) {
+        log.info("Deactivating promotion: {}", promotionId);
+        
+        Promotion promotion = promotionRepository.findById(promotionId)
+                .orElseThrow(() -> new RuntimeException("Promotion not found with id: " + promotionId));
+        promotion.setActive(false);
+        promotion.setUpdatedAt(LocalDateTime.now());
+        
+        Promotion saved = promotionRepository.save(promotion);
+        promotionEngine.reload();
+        return saved;
+    }
+    
+    /**
+     * Deactivates the plain percent-off promotions of a single product, i.e. what
+     * {@link AdminProductManagementService#addProductDiscount} creates.
+     */
+    public int deactivateProductDiscounts(String productId) {
+        List<Promotion> discounts = promotionRepository.findByProductIdsAndActiveTrue(productId).stream()
+                .filter(promotion -> promotion.getScope() == Promotion.Scope.PRODUCT
+                        && promotion.getCouponCode() == null
+                        && promotion.getProductIds().size() == 1)
+                .toList();
+        if (discounts.isEmpty()) {
+            return 0;
+        }
+        
+        LocalDateTime now = LocalDateTime.now();
+        discounts.forEach(promotion -> {
+            promotion.setActive(false);
+            promotion.setUpdatedAt(now);
+        });
+        promotionRepository.saveAll(discounts);
+        promotionEngine.reload();
+        return discounts.size();
+    }
+    
+    private void apply(Promotion promotion, PromotionRequest request) {
+        validate(request);
+        
+        promotion.setName(request.getName());
+        promotion.setType(request.getType());
+        promotion.setScope(request.getScope());
+        promotion.setProductIds(request.getScope() == Promotion.Scope.PRODUCT ? List.copyOf(request.getProductIds()) : null);
+        promotion.setCategoryIds(request.getScope() == Promotion.Scope.CATEGORY ? List.copyOf(request.getCategoryIds()) : null);
+        promotion.setPercent(request.getPercent());
+        promotion.setAmount(request.getAmount());
+        promotion.setBuyQty(request.getBuyQty());
+        promotion.setGetQty(request.getGetQty());
+        promotion.setCouponCode(PromotionEngine.normalizeCoupon(request.getCouponCode()));
+        promotion.setMinSubtotal(request.getMinSubtotal());
+        promotion.setPriority(request.getPriority() != null ? request.getPriority() : 0);
+        promotion.setStartsAt(request.getStartsAt());
+        promotion.setEndsAt(request.getEndsAt());
+        promotion.setActive(!Boolean.FALSE.equals(request.getActive()));
+        promotion.setUpdatedAt(LocalDateTime.now());
+    }
+    
+    /**
+     * Rejects rules the engine could not evaluate, so a bad edit never reaches the compiled set.
+     */
+    private void validate(PromotionRequest request) {
+        switch (request.getType()) {
+            case PERCENT_OFF -> {
+                if (request.getPercent() == null || request.getPercent().compareTo(BigDecimal.valueOf(100)) > 0) {
+                    throw new RuntimeException("Percent off needs a percent between 0 and 100");
+                }
+            }
+            case AMOUNT_OFF -> {
+                if (request.getAmount() == null) {
+                    throw new RuntimeException("Amount off needs an amount");
+                }
+            }
+            case BUY_X_GET_Y -> {
+                if (request.getBuyQty() == null || request.getGetQty() == null) {
+                    throw new RuntimeException("Buy X get Y needs buyQty and getQty");
+                }
+                if (request.getScope() == Promotion.Scope.CART) {
+                    throw new RuntimeException("Buy X get Y applies to products or categories, not the whole cart");
+                }
+            }
+        }
+        
+        if (request.getScope() == Promotion.Scope.PRODUCT && (request.getProductIds() == null || request.getProductIds().isEmpty())) {
+            throw new RuntimeException("Product promotions need at least one product id");
+        }
+        if (request.getScope() == Promotion.Scope.CATEGORY && (request.getCategoryIds() == null || request.getCategoryIds().isEmpty())) {
+            throw new RuntimeException("Category promotions need at least one category id");
+        }
+        if (request.getStartsAt() != null && request.getEndsAt() != null && !request.getEndsAt().isAfter(request.getStartsAt())) {
+            throw new RuntimeException("Promotion must end after it starts");
+        }
+    }
+}
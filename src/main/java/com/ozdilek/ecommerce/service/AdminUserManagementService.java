@@ -4,6 +4,7 @@ import com.ozdilek.ecommerce.model.User;
 import com.ozdilek.ecommerce.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -18,6 +19,7 @@ import java.util.List;
 public class AdminUserManagementService {
     
     private final UserRepository userRepository;
+    private final DashboardStatsService dashboardStatsService;
     
     @Transactional(readOnly = true)
     public Page<User> getAllUsers(Pageable pageable) {
@@ -42,17 +44,13 @@ public class AdminUserManagementService {
     @Transactional(readOnly = true)
     public List<User> getUsersByRole(String role) {
         log.info("Getting users by role: {}", role);
-        return userRepository.findAll().stream()
-                .filter(user -> user.getRoles().contains(role))
-                .toList();
+        return userRepository.findByRole(role);
     }
     
     @Transactional(readOnly = true)
     public List<User> getDeletedUsers() {
         log.info("Getting deleted users");
-        return userRepository.findAll().stream()
-                .filter(User::getDeleted)
-                .toList();
+        return userRepository.findAllDeletedUsers();
     }
     
     @Transactional
@@ -72,6 +70,7 @@ public class AdminUserManagementService {
         log.info("Banning user: {}, reason: {}", userId, reason);
         
         User user = getUserById(userId);
+        boolean wasActive = !Boolean.TRUE.equals(user.getDeleted());
         user.setDeleted(true);
         user.setDeletedAt(LocalDateTime.now());
         
@@ -83,6 +82,9 @@ public class AdminUserManagementService {
         ((java.util.Map<String, Object>) user.getMetadata()).put("bannedAt", LocalDateTime.now());
         
         user = userRepository.save(user);
+        if (wasActive) {
+            dashboardStatsService.recordUserDeactivated(user);
+        }
         log.info("User banned successfully: {}", user.getEmail());
         return user;
     }
@@ -92,6 +94,7 @@ public class AdminUserManagementService {
         log.info("Unbanning user: {}", userId);
         
         User user = getUserById(userId);
+        boolean wasDeleted = Boolean.TRUE.equals(user.getDeleted());
         user.setDeleted(false);
         user.setDeletedAt(null);
         
@@ -102,16 +105,21 @@ public class AdminUserManagementService {
         }
         
         user = userRepository.save(user);
+        if (wasDeleted) {
+            dashboardStatsService.recordUserReactivated(user);
+        }
         log.info("User unbanned successfully: {}", user.getEmail());
         return user;
     }
     
     @Transactional
+    @CacheEvict(value = UserLookupService.USER_IDS_CACHE, key = "#result.email")
     public User hardDeleteUser(String userId) {
         log.info("Hard deleting user: {}", userId);
         
         User user = getUserById(userId);
         userRepository.delete(user);
+        dashboardStatsService.recordUserRemoved(user);
         
         log.info("User hard deleted successfully: {}", user.getEmail());
         return user;
@@ -124,25 +132,18 @@ public class AdminUserManagementService {
     
     @Transactional(readOnly = true)
     public long getActiveUsersCount() {
-        return userRepository.findAll().stream()
-                .filter(user -> !user.getDeleted())
-                .count();
+        return userRepository.countActiveUsers();
     }
     
     @Transactional(readOnly = true)
     public long getVerifiedUsersCount() {
-        return userRepository.findAll().stream()
-                .filter(user -> user.getIsVerified() && !user.getDeleted())
-                .count();
+        return userRepository.countVerifiedUsers();
     }
     
     @Transactional(readOnly = true)
     public List<User> getRecentUsers(int days) {
         LocalDateTime since = LocalDateTime.now().minusDays(days);
-        return userRepository.findAll().stream()
-                .filter(user -> user.getCreatedAt().isAfter(since))
-                .sorted((u1, u2) -> u2.getCreatedAt().compareTo(u1.getCreatedAt()))
-                .toList();
+        return userRepository.findByCreatedAtAfterOrderByCreatedAtDesc(since);
     }
     
     @Transactional(readOnly = true)
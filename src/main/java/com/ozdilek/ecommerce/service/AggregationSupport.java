@@ -0,0 +1,58 @@
+package com.ozdilek.ecommerce.service;
+
+import com.ozdilek.ecommerce.model.Money;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.DateOperators;
+
+import java.math.BigDecimal;
+import java.time.ZoneId;
+
+/**
+ * Small helpers shared by the admin aggregation pipelines.
+ */
+final class AggregationSupport {
+    
+    private AggregationSupport() {
+    }
+    
+    /**
+     * 1 when the condition holds, 0 otherwise; sum it in a $group to count matches.
+     */
+    static AggregationExpression countIf(AggregationExpression condition) {
+        return ConditionalOperators.when(condition).then(1).otherwise(0);
+    }
+    
+    /**
+     * The day of a date field as "yyyy-MM-dd", in the server's zone like LocalDate fields.
+     */
+    static AggregationExpression dayOf(String field) {
+        return DateOperators.dateOf(field)
+                .withTimezone(DateOperators.Timezone.valueOf(ZoneId.systemDefault().getId()))
+                .toString("%Y-%m-%d");
+    }
+    
+    static long longValue(Document document, String key) {
+        Object value = document != null ? document.get(key) : null;
+        return value instanceof Number number ? number.longValue() : 0L;
+    }
+    
+    /**
+     * A $sum of Decimal128 amounts; documents not yet migrated (strings) do not add up.
+     */
+    static BigDecimal amount(Document document, String key) {
+        Object value = document != null ? document.get(key) : null;
+        if (value instanceof Decimal128 decimal) {
+            return Money.of(decimal.bigDecimalValue()).toBigDecimal();
+        }
+        if (value instanceof BigDecimal decimal) {
+            return Money.of(decimal).toBigDecimal();
+        }
+        if (value instanceof Number number) {
+            return Money.of(new BigDecimal(number.toString())).toBigDecimal();
+        }
+        return Money.ZERO.toBigDecimal();
+    }
+}
@@ -34,6 +34,7 @@ public class AuthenticationService {
     private final AuthenticationManager authenticationManager;
     private final RefreshTokenService refreshTokenService;
     private final RateLimitingService rateLimitingService;
+    private final DashboardStatsService dashboardStatsService;
     
     @Transactional
     public AuthResponse register(RegisterRequest request) {
@@ -54,6 +55,7 @@ public class AuthenticationService {
                 .build();
         
         user = userRepository.save(user);
+        dashboardStatsService.recordUserRegistered(user);
         log.info("User registered successfully with ID: {}", user.getId());
         
         return generateAuthResponse(user);
@@ -0,0 +1,161 @@
+package com.ozdilek.ecommerce.service;
+
+import com.ozdilek.ecommerce.model.Cart;
+import com.ozdilek.ecommerce.model.Money;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Incrementally maintained cart funnel counters kept in Redis.
+ * Counters are updated as cart and order events happen, so reading the
+ * abandoned cart report never touches the carts collection.
+ * Amounts are stored in minor units (kuruş) to keep HINCRBY exact.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CartAnalyticsService {
+    
+    private static final String COUNTERS_KEY = "cart_stats";
+    private static final String ABANDONED_PRODUCTS_KEY = "cart_stats:abandoned_products";
+    private static final String ABANDONED_REVENUE_KEY = "cart_stats:abandoned_revenue";
+    private static final String PRODUCT_SKUS_KEY = "cart_stats:product_skus";
+    
+    private static final String CREATED = "created";
+    private static final String CONVERTED = "converted";
+    private static final String ABANDONED = "abandoned";
+    private static final String RECOVERED = "recovered";
+    private static final String POTENTIAL_REVENUE = "potentialRevenue";
+    
+    private final RedisTemplate<String, String> redisTemplate;
+    
+    public void recordCartCreated() {
+        increment(COUNTERS_KEY, CREATED, 1);
+    }
+    
+    public void recordCartConverted(Cart cart) {
+        increment(COUNTERS_KEY, CONVERTED, 1);
+        if (cart.getAbandonedAt() != null) {
+            recordCartRecovered(cart);
+        }
+    }
+    
+    /**
+     * Counts a cart as abandoned. Called once per cart by the lifecycle sweeper
+     * after it has been flagged with abandonedAt.
+     */
+    public void recordCartAbandoned(Cart cart) {
+        applyAbandonment(cart, 1);
+    }
+    
+    /**
+     * Reverses a previous abandonment when the customer comes back to the cart.
+     */
+    public void recordCartRecovered(Cart cart) {
+        applyAbandonment(cart, -1);
+        increment(COUNTERS_KEY, RECOVERED, 1);
+    }
+    
+    public Map<String, Object> getAbandonedCartAnalysis(int topProductsLimit) {
+        List<Object> counters = redisTemplate.opsForHash().multiGet(COUNTERS_KEY,
+                List.of(CREATED, CONVERTED, ABANDONED, RECOVERED, POTENTIAL_REVENUE));
+        
+        long created = toLong(counters.get(0));
+        long converted = toLong(counters.get(1));
+        long abandoned = toLong(counters.get(2));
+        long recovered = toLong(counters.get(3));
+        BigDecimal potentialRevenue = Money.ofMinor(toLong(counters.get(4))).toBigDecimal();
+        
+        double abandonmentRate = created > 0
+                ? BigDecimal.valueOf(abandoned * 100.0 / created).setScale(2, RoundingMode.HALF_UP).doubleValue()
+                : 0.0;
+        double conversionRate = created > 0
+                ? BigDecimal.valueOf(converted * 100.0 / created).setScale(2, RoundingMode.HALF_UP).doubleValue()
+                : 0.0;
+        
+        return Map.of(
+            "abandonedCarts", abandoned,
+            "totalCarts", created,
+            "convertedCarts", converted,
+            "recoveredCarts", recovered,
+            "abandonmentRate", abandonmentRate,
+            "conversionRate", conversionRate,
+            "potentialRevenue", potentialRevenue,
+            "topAbandonedProducts", getTopAbandonedProducts(topProductsLimit)
+        );
+    }
+    
+    private List<Map<String, Object>> getTopAbandonedProducts(int limit) {
+        Set<ZSetOperations.TypedTuple<String>> top = redisTemplate.opsForZSet()
+                .reverseRangeWithScores(ABANDONED_PRODUCTS_KEY, 0, limit - 1);
+        if (top == null || top.isEmpty()) {
+            return List.of();
+        }
+        
+        List<Object> productIds = top.stream().map(tuple -> (Object) tuple.getValue()).toList();
+        List<Object> skus = redisTemplate.opsForHash().multiGet(PRODUCT_SKUS_KEY, productIds);
+        List<Object> revenues = redisTemplate.opsForHash().multiGet(ABANDONED_REVENUE_KEY, productIds);
+        
+        List<Map<String, Object>> result = new ArrayList<>();
+        int i = 0;
+        for (ZSetOperations.TypedTuple<String> tuple : top) {
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("productId", tuple.getValue());
+            entry.put("sku", skus.get(i));
+            entry.put("abandonedCount", tuple.getScore() != null ? tuple.getScore().longValue() : 0L);
+            entry.put("potentialRevenue", Money.ofMinor(toLong(revenues.get(i))).toBigDecimal());
+            result.add(entry);
+            i++;
+        }
+        return result;
+    }
+    
+    private void applyAbandonment(Cart cart, int direction) {
+        if (cart.getItems() == null || cart.getItems().isEmpty()) {
+            return;
+        }
+        
+        long cartTotal = 0;
+        for (Cart.CartItem item : cart.getItems()) {
+            long lineTotal = Money.of(item.getPriceSnapshot()).times(item.getQty()).minor();
+            cartTotal += lineTotal;
+            
+            try {
+                redisTemplate.opsForZSet().incrementScore(ABANDONED_PRODUCTS_KEY, item.getProductId(), direction);
+                if (direction > 0 && item.getSku() != null) {
+                    redisTemplate.opsForHash().putIfAbsent(PRODUCT_SKUS_KEY, item.getProductId(), item.getSku());
+                }
+            } catch (Exception e) {
+                log.warn("Failed to update abandoned product counter for {}: {}", item.getProductId(), e.getMessage());
+            }
+            increment(ABANDONED_REVENUE_KEY, item.getProductId(), direction * lineTotal);
+        }
+        
+        increment(COUNTERS_KEY, ABANDONED, direction);
+        increment(COUNTERS_KEY, POTENTIAL_REVENUE, direction * cartTotal);
+    }
+    
+    private void increment(String key, String field, long delta) {
+        try {
+            redisTemplate.opsForHash().increment(key, field, delta);
+        } catch (Exception e) {
+            // Analytics must never break the cart or checkout flow
+            log.warn("Failed to update cart analytics counter {}:{}: {}", key, field, e.getMessage());
+        }
+    }
+    
+    private long toLong(Object value) {
+        return value != null ? Long.parseLong(value.toString()) : 0L;
+    }
+}
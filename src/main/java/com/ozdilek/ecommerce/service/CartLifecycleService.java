@@ -0,0 +1,247 @@
+package com.ozdilek.ecommerce.service;
+
+import com.ozdilek.ecommerce.model.Cart;
+import com.ozdilek.ecommerce.model.CartArchive;
+import com.ozdilek.ecommerce.model.Money;
+import com.ozdilek.ecommerce.repository.CartArchiveRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexOptions;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Keeps the carts collection bounded.
+ * Guest carts (those with a sessionId) expire through a partial TTL index on updatedAt,
+ * abandoned user carts are compacted into {@link CartArchive} records by a sweeper that
+ * works in small batches so it never holds checkout traffic back.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CartLifecycleService {
+    
+    static final String GUEST_CART_TTL_INDEX = "guest_cart_ttl";
+    
+    private static final String SWEEP_LOCK_NAME = "user-cart-sweep";
+    
+    private final MongoTemplate mongoTemplate;
+    private final CartArchiveRepository cartArchiveRepository;
+    private final CacheManager cacheManager;
+    private final CartAnalyticsService cartAnalyticsService;
+    private final DistributedLockService distributedLockService;
+    
+    @Value("${app.cart.guest-idle-window:P7D}")
+    private Duration guestIdleWindow;
+    
+    @Value("${app.cart.abandoned-after:PT24H}")
+    private Duration abandonedAfter;
+    
+    @Value("${app.cart.user-abandoned-after:P30D}")
+    private Duration userAbandonedAfter;
+    
+    @Value("${app.cart.sweep-batch-size:200}")
+    private int sweepBatchSize;
+    
+    @Value("${app.cart.sweep-max-batches:10}")
+    private int sweepMaxBatches;
+    
+    @Value("${app.cart.sweep-batch-pause-ms:200}")
+    private long sweepBatchPauseMs;
+    
+    @Value("${app.cart.sweep-lock-ttl:PT10M}")
+    private Duration sweepLockTtl;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureGuestCartTtlIndex() {
+        IndexOperations indexOps = mongoTemplate.indexOps(Cart.class);
+        long expireAfterSeconds = guestIdleWindow.toSeconds();
+        
+        try {
+            Optional<IndexInfo> existing = indexOps.getIndexInfo().stream()
+                    .filter(index -> GUEST_CART_TTL_INDEX.equals(index.getName()))
+                    .findFirst();
+            
+            if (existing.isEmpty()) {
+                indexOps.createIndex(new Index()
+                        .on("updatedAt", Sort.Direction.ASC)
+                        .named(GUEST_CART_TTL_INDEX)
+                        .expire(guestIdleWindow)
+                        .partial(PartialIndexFilter.of(Criteria.where("sessionId").exists(true))));
+                log.info("Created guest cart TTL index with idle window {}", guestIdleWindow);
+            } else if (existing.get().getExpireAfter().map(Duration::toSeconds).orElse(-1L) != expireAfterSeconds) {
+                // TTL indexes can be retuned in place, no rebuild needed
+                indexOps.alterIndex(GUEST_CART_TTL_INDEX, IndexOptions.expireAfter(guestIdleWindow));
+                log.info("Updated guest cart TTL index to idle window {}", guestIdleWindow);
+            }
+        } catch (Exception e) {
+            log.error("Failed to ensure guest cart TTL index: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Flags carts that have been idle past the abandonment threshold and feeds them into
+     * the abandoned cart counters. Carts are flagged first and then read back by the
+     * flag timestamp, so a cart touched in between is never counted.
+     */
+    @Scheduled(fixedDelayString = "${app.cart.abandon-check-interval:PT5M}", initialDelayString = "${app.cart.sweep-initial-delay:PT1M}")
+    public void markAbandonedCarts() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(abandonedAfter);
+        int marked = 0;
+        
+        for (int batch = 0; batch < sweepMaxBatches; batch++) {
+            Query candidates = new Query(Criteria.where("abandonedAt").exists(false)
+                    .and("updatedAt").lt(cutoff)
+                    .and("items.0").exists(true))
+                    .with(Sort.by(Sort.Direction.ASC, "updatedAt"))
+                    .limit(sweepBatchSize);
+            candidates.fields().include("id");
+            
+            List<String> cartIds = mongoTemplate.find(candidates, Cart.class).stream()
+                    .map(Cart::getId)
+                    .toList();
+            if (cartIds.isEmpty()) {
+                break;
+            }
+            
+            LocalDateTime markedAt = LocalDateTime.now();
+            mongoTemplate.updateMulti(new Query(Criteria.where("id").in(cartIds)
+                            .and("abandonedAt").exists(false)
+                            .and("updatedAt").lt(cutoff)),
+                    new Update().set("abandonedAt", markedAt), Cart.class);
+            
+            List<Cart> flagged = mongoTemplate.find(new Query(Criteria.where("id").in(cartIds)
+                    .and("abandonedAt").is(markedAt)), Cart.class);
+            flagged.forEach(cartAnalyticsService::recordCartAbandoned);
+            marked += flagged.size();
+            
+            if (cartIds.size() < sweepBatchSize) {
+                break;
+            }
+        }
+        
+        if (marked > 0) {
+            log.info("Counted {} carts as abandoned (idle since before {})", marked, cutoff);
+        }
+    }
+    
+    /**
+     * Archives user carts that have been idle longer than the configured window.
+     * Each run processes at most sweepMaxBatches * sweepBatchSize carts and pauses between
+     * batches; whatever is left is picked up by the next run. Only one node sweeps at a time.
+     */
+    @Scheduled(fixedDelayString = "${app.cart.sweep-interval:PT15M}", initialDelayString = "${app.cart.sweep-initial-delay:PT1M}")
+    public void sweepAbandonedUserCarts() {
+        Optional<String> lock = distributedLockService.tryAcquire(SWEEP_LOCK_NAME, sweepLockTtl);
+        if (lock.isEmpty()) {
+            log.debug("User cart sweep is running on another node");
+            return;
+        }
+        
+        try {
+            LocalDateTime cutoff = LocalDateTime.now().minus(userAbandonedAfter);
+            int archived = 0;
+            
+            for (int batch = 0; batch < sweepMaxBatches; batch++) {
+                int processed = archiveBatch(cutoff);
+                archived += processed;
+                
+                if (processed < sweepBatchSize) {
+                    break;
+                }
+                
+                try {
+                    Thread.sleep(sweepBatchPauseMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            
+            if (archived > 0) {
+                log.info("Archived {} abandoned user carts idle since before {}", archived, cutoff);
+            }
+        } finally {
+            distributedLockService.release(SWEEP_LOCK_NAME, lock.get());
+        }
+    }
+    
+    private int archiveBatch(LocalDateTime cutoff) {
+        Query query = new Query(Criteria.where("userId").exists(true)
+                .and("updatedAt").lt(cutoff))
+                .with(Sort.by(Sort.Direction.ASC, "updatedAt"))
+                .limit(sweepBatchSize);
+        
+        List<Cart> carts = mongoTemplate.find(query, Cart.class);
+        if (carts.isEmpty()) {
+            return 0;
+        }
+        
+        // Empty carts carry no information worth keeping and are simply removed
+        LocalDateTime now = LocalDateTime.now();
+        List<CartArchive> archives = carts.stream()
+                .filter(cart -> !cart.getItems().isEmpty())
+                .map(cart -> toArchive(cart, now))
+                .toList();
+        
+        // Archive ids equal cart ids, so a retried batch overwrites instead of duplicating
+        cartArchiveRepository.saveAll(archives);
+        
+        List<String> cartIds = carts.stream().map(Cart::getId).toList();
+        mongoTemplate.remove(new Query(Criteria.where("id").in(cartIds)
+                .and("updatedAt").lt(cutoff)), Cart.class);
+        
+        Cache cartCache = cacheManager.getCache("carts");
+        if (cartCache != null) {
+            carts.forEach(cart -> cartCache.evict(cart.getUserId()));
+        }
+        
+        return carts.size();
+    }
+    
+    private CartArchive toArchive(Cart cart, LocalDateTime archivedAt) {
+        List<CartArchive.ArchivedItem> items = cart.getItems().stream()
+                .map(item -> CartArchive.ArchivedItem.builder()
+                        .productId(item.getProductId())
+                        .qty(item.getQty())
+                        .priceSnapshot(item.getPriceSnapshot())
+                        .build())
+                .toList();
+        
+        Money totalAmount = Money.ZERO;
+        for (Cart.CartItem item : cart.getItems()) {
+            totalAmount = totalAmount.plus(Money.of(item.getPriceSnapshot()).times(item.getQty()));
+        }
+        
+        return CartArchive.builder()
+                .id(cart.getId())
+                .userId(cart.getUserId())
+                .items(items)
+                .itemCount(items.size())
+                .totalQuantity(cart.getItems().stream().mapToInt(Cart.CartItem::getQty).sum())
+                .totalAmount(totalAmount.toBigDecimal())
+                .createdAt(cart.getCreatedAt())
+                .lastActivityAt(cart.getUpdatedAt())
+                .archivedAt(archivedAt)
+                .build();
+    }
+}
@@ -1,11 +1,14 @@
 package com.ozdilek.ecommerce.service;
 
 import com.ozdilek.ecommerce.dto.cart.AddToCartRequest;
+import com.ozdilek.ecommerce.dto.cart.BatchAddToCartRequest;
+import com.ozdilek.ecommerce.dto.cart.CartItemIssue;
 import com.ozdilek.ecommerce.dto.cart.CartResponse;
 import com.ozdilek.ecommerce.dto.cart.MergeCartRequest;
 import com.ozdilek.ecommerce.dto.cart.UpdateCartItemRequest;
 import com.ozdilek.ecommerce.model.Cart;
 import com.ozdilek.ecommerce.model.Cart.CartItem;
+import com.ozdilek.ecommerce.model.Money;
 import com.ozdilek.ecommerce.model.Product;
 import com.ozdilek.ecommerce.model.User;
 import com.ozdilek.ecommerce.repository.CartRepository;
@@ -15,15 +18,22 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
@@ -33,6 +43,11 @@ public class CartService {
     private final CartRepository cartRepository;
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
+    private final CartAnalyticsService cartAnalyticsService;
+    private final StockHoldService stockHoldService;
+    private final PromotionEngine promotionEngine;
+    private final PriceResolver priceResolver;
+    private final MongoTemplate mongoTemplate;
     
     @Cacheable(value = "carts", key = "#userId != null ? #userId : #sessionId")
     public CartResponse getCart(String userId, String sessionId) {
@@ -51,51 +66,144 @@ public class CartService {
         Product product = productRepository.findById(request.getProductId())
                 .orElseThrow(() -> new RuntimeException("Product not found"));
         
-        if (!product.getAvailable() || product.getStock() < request.getQuantity()) {
-            throw new RuntimeException("Product not available or insufficient stock");
-        }
+        Cart cart = loadCartForUpdate(userId, sessionId);
+        Map<String, Integer> previousQuantities = Map.of(product.getId(), lineQuantity(cart, product.getId()));
+        addItem(cart, product, request.getQuantity(), request.getAttributes());
+        holdStock(cart, Map.of(product.getId(), product), previousQuantities);
         
-        Cart cart = findOrCreateCart(userId, sessionId);
+        cart.setUpdatedAt(LocalDateTime.now());
+        cart = saveCart(cart);
         
-        // Check if product already exists in cart
-        Optional<CartItem> existingItem = cart.getItems().stream()
-                .filter(item -> item.getProductId().equals(request.getProductId()))
-                .findFirst();
+        return mapToCartResponse(cart);
+    }
+    
+    /**
+     * Adds several products in one round-trip. All products are loaded with a single
+     * findAllById and validated before the cart is touched, so the batch is all-or-nothing.
+     */
+    @CacheEvict(value = "carts", key = "#userId != null ? #userId : #sessionId")
+    @Transactional
+    public CartResponse addItemsToCart(String userId, String sessionId, BatchAddToCartRequest request) {
+        log.info("Adding {} items to cart - userId: {}, sessionId: {}", 
+                request.getItems().size(), userId, sessionId);
         
-        if (existingItem.isPresent()) {
-            // Update quantity
-            CartItem item = existingItem.get();
-            int newQuantity = item.getQty() + request.getQuantity();
-            if (newQuantity > product.getStock()) {
-                throw new RuntimeException("Insufficient stock");
+        Map<String, Product> products = loadProducts(request.getItems().stream()
+                .map(AddToCartRequest::getProductId)
+                .toList());
+        
+        // Validate the whole batch first, summing duplicate lines per product
+        Map<String, Integer> requestedTotals = new HashMap<>();
+        for (AddToCartRequest item : request.getItems()) {
+            Product product = products.get(item.getProductId());
+            if (product == null) {
+                throw new RuntimeException("Product not found: " + item.getProductId());
             }
-            item.setQty(newQuantity);
-        } else {
-            // Add new item
-            CartItem newItem = CartItem.builder()
-                    .productId(request.getProductId())
-                    .sku(product.getSku())
-                    .qty(request.getQuantity())
-                    .priceSnapshot(product.getPrice())
-                    .attributes((Map<String, Object>) (Map<?, ?>) request.getAttributes())
-                    .build();
-            
-            cart.getItems().add(newItem);
+            int requested = requestedTotals.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+            if (!product.getAvailable() || product.getStock() < requested) {
+                throw new RuntimeException("Product not available or insufficient stock: " + item.getProductId());
+            }
+        }
+        
+        Cart cart = loadCartForUpdate(userId, sessionId);
+        Map<String, Integer> previousQuantities = new HashMap<>();
+        for (String productId : products.keySet()) {
+            previousQuantities.put(productId, lineQuantity(cart, productId));
+        }
+        
+        for (AddToCartRequest item : request.getItems()) {
+            addItem(cart, products.get(item.getProductId()), item.getQuantity(), item.getAttributes());
         }
+        holdStock(cart, products, previousQuantities);
         
         cart.setUpdatedAt(LocalDateTime.now());
-        cart = cartRepository.save(cart);
+        cart = saveCart(cart);
         
         return mapToCartResponse(cart);
     }
     
+    /**
+     * Re-validates every cart line against current product data with a single findAllById,
+     * which also prices the response. Price snapshots are moved to the current price and
+     * changed or unavailable lines are reported in {@link CartResponse#getIssues()}.
+     * Unavailable lines are left in the cart but excluded from the total. A missing cart is
+     * reported as empty without being created.
+     */
+    @CacheEvict(value = "carts", key = "#userId != null ? #userId : #sessionId")
+    @Transactional
+    public CartResponse refreshCart(String userId, String sessionId) {
+        log.info("Refreshing cart - userId: {}, sessionId: {}", userId, sessionId);
+        
+        Optional<Cart> existing = findCart(userId, sessionId);
+        if (existing.isEmpty() || existing.get().getItems().isEmpty()) {
+            return mapToCartResponse(existing.orElseGet(() -> newCart(userId, sessionId)));
+        }
+        
+        // Refreshing is activity on the cart: recover it before the snapshots are repriced,
+        // so the recovery takes back exactly what was counted as abandoned
+        Cart cart = existing.get();
+        boolean changed = cart.getAbandonedAt() != null;
+        reviveIfAbandoned(cart);
+        
+        Map<String, Product> products = loadProducts(cart.getItems().stream()
+                .map(CartItem::getProductId)
+                .toList());
+        
+        List<CartItemIssue> issues = new ArrayList<>();
+        Set<String> excludedProductIds = new HashSet<>();
+        LocalDateTime now = LocalDateTime.now();
+        
+        for (CartItem item : cart.getItems()) {
+            Product product = products.get(item.getProductId());
+            
+            if (product == null) {
+                issues.add(issue(item, CartItemIssue.IssueType.NOT_FOUND).build());
+                excludedProductIds.add(item.getProductId());
+                continue;
+            }
+            
+            if (!product.getAvailable() || product.getStock() <= 0) {
+                issues.add(issue(item, CartItemIssue.IssueType.UNAVAILABLE)
+                        .availableQuantity(0)
+                        .build());
+                excludedProductIds.add(item.getProductId());
+                continue;
+            }
+            
+            int available = stockHoldService.getAvailableToSell(holderOf(cart), product);
+            if (available < item.getQty()) {
+                issues.add(issue(item, CartItemIssue.IssueType.INSUFFICIENT_STOCK)
+                        .availableQuantity(available)
+                        .build());
+            }
+            
+            BigDecimal currentPrice = priceResolver.resolve(product, now).price();
+            if (item.getPriceSnapshot() == null || item.getPriceSnapshot().compareTo(currentPrice) != 0) {
+                issues.add(issue(item, CartItemIssue.IssueType.PRICE_CHANGED)
+                        .previousPrice(item.getPriceSnapshot())
+                        .currentPrice(currentPrice)
+                        .build());
+                item.setPriceSnapshot(currentPrice);
+                changed = true;
+            }
+        }
+        
+        if (changed) {
+            cart.setUpdatedAt(LocalDateTime.now());
+            cart = cartRepository.save(cart);
+        }
+        
+        CartResponse response = mapToCartResponse(cart, excludedProductIds, products);
+        response.setIssues(issues);
+        return response;
+    }
+    
     @CacheEvict(value = "carts", key = "#userId != null ? #userId : #sessionId")
     @Transactional
     public CartResponse updateCartItem(String userId, String sessionId, UpdateCartItemRequest request) {
         log.info("Updating cart item - userId: {}, sessionId: {}, productId: {}, qty: {}", 
                 userId, sessionId, request.getProductId(), request.getQuantity());
         
-        Cart cart = findOrCreateCart(userId, sessionId);
+        Cart cart = loadCartForUpdate(userId, sessionId);
         
         Optional<CartItem> existingItem = cart.getItems().stream()
                 .filter(item -> item.getProductId().equals(request.getProductId()))
@@ -107,6 +215,7 @@ public class CartService {
             if (request.getQuantity() <= 0) {
                 // Remove item
                 cart.getItems().remove(item);
+                stockHoldService.release(holderOf(cart), item.getProductId());
             } else {
                 // Update quantity
                 Product product = productRepository.findById(request.getProductId())
@@ -116,18 +225,51 @@ public class CartService {
                     throw new RuntimeException("Insufficient stock");
                 }
                 
+                int previousQuantity = item.getQty();
                 item.setQty(request.getQuantity());
+                holdStock(cart, Map.of(product.getId(), product), Map.of(product.getId(), previousQuantity));
             }
         } else {
             throw new RuntimeException("Cart item not found");
         }
         
         cart.setUpdatedAt(LocalDateTime.now());
-        cart = cartRepository.save(cart);
+        cart = saveCart(cart);
         
         return mapToCartResponse(cart);
     }
     
+    /**
+     * Attaches a coupon code to the cart. Only codes of running promotions are accepted;
+     * whether the coupon actually lowers the total depends on the cart's contents.
+     */
+    @CacheEvict(value = "carts", key = "#userId != null ? #userId : #sessionId")
+    public CartResponse applyCoupon(String userId, String sessionId, String couponCode) {
+        log.info("Applying coupon {} - userId: {}, sessionId: {}", couponCode, userId, sessionId);
+        
+        if (!promotionEngine.isCouponLive(couponCode)) {
+            throw new RuntimeException("Invalid or expired coupon code: " + couponCode);
+        }
+        
+        Cart cart = loadCartForUpdate(userId, sessionId);
+        cart.setCouponCode(PromotionEngine.normalizeCoupon(couponCode));
+        cart.setUpdatedAt(LocalDateTime.now());
+        return mapToCartResponse(saveCart(cart));
+    }
+    
+    @CacheEvict(value = "carts", key = "#userId != null ? #userId : #sessionId")
+    public CartResponse removeCoupon(String userId, String sessionId) {
+        log.info("Removing coupon - userId: {}, sessionId: {}", userId, sessionId);
+        
+        Cart cart = loadCartForUpdate(userId, sessionId);
+        if (cart.getCouponCode() != null) {
+            cart.setCouponCode(null);
+            cart.setUpdatedAt(LocalDateTime.now());
+            cart = saveCart(cart);
+        }
+        return mapToCartResponse(cart);
+    }
+    
     @CacheEvict(value = "carts", allEntries = true)
     @Transactional
     public CartResponse mergeCart(String userId, MergeCartRequest request) {
@@ -139,6 +281,9 @@ public class CartService {
                 .orElse(null);
         
         if (guestCart != null && !guestCart.getItems().isEmpty()) {
+            reviveIfAbandoned(userCart);
+            reviveIfAbandoned(guestCart);
+            
             for (CartItem guestItem : guestCart.getItems()) {
                 // Check if product already exists in user cart
                 Optional<CartItem> existingItem = userCart.getItems().stream()
@@ -155,54 +300,220 @@ public class CartService {
                 }
             }
             
+            if (userCart.getCouponCode() == null) {
+                userCart.setCouponCode(guestCart.getCouponCode());
+            }
+            
             // Delete guest cart
             cartRepository.delete(guestCart);
             
             userCart.setUpdatedAt(LocalDateTime.now());
-            userCart = cartRepository.save(userCart);
+            userCart = saveCart(userCart);
+            
+            if (stockHoldService.isEnabled()) {
+                transferHolds(guestCart, userCart);
+            }
         }
         
         return mapToCartResponse(userCart);
     }
     
+    /**
+     * Loads the cart for a mutation. A cart that was already counted as abandoned
+     * is being recovered, so its abandonment is reversed before anything changes.
+     */
+    private Cart loadCartForUpdate(String userId, String sessionId) {
+        Cart cart = findOrCreateCart(userId, sessionId);
+        reviveIfAbandoned(cart);
+        return cart;
+    }
+    
+    private void reviveIfAbandoned(Cart cart) {
+        if (cart.getAbandonedAt() != null) {
+            cartAnalyticsService.recordCartRecovered(cart);
+            cart.setAbandonedAt(null);
+        }
+    }
+    
+    private Cart saveCart(Cart cart) {
+        boolean created = cart.getId() == null;
+        Cart saved = cartRepository.save(cart);
+        
+        if (created) {
+            cartAnalyticsService.recordCartCreated();
+        }
+        
+        return saved;
+    }
+    
+    private String holderOf(Cart cart) {
+        return StockHoldService.holderFor(cart.getUserId(), cart.getSessionId());
+    }
+    
+    private int lineQuantity(Cart cart, String productId) {
+        return cart.getItems().stream()
+                .filter(item -> item.getProductId().equals(productId))
+                .mapToInt(CartItem::getQty)
+                .sum();
+    }
+    
+    /**
+     * Moves the soft holds of the given products to their new cart quantities.
+     * Throws before the cart is saved when the extra quantity is held by other shoppers.
+     */
+    private void holdStock(Cart cart, Map<String, Product> products, Map<String, Integer> previousQuantities) {
+        Map<String, Integer> quantities = new HashMap<>();
+        products.keySet().forEach(productId -> quantities.put(productId, lineQuantity(cart, productId)));
+        stockHoldService.hold(holderOf(cart), quantities, products, previousQuantities);
+    }
+    
+    private void transferHolds(Cart guestCart, Cart userCart) {
+        List<String> productIds = guestCart.getItems().stream().map(CartItem::getProductId).toList();
+        
+        // Merging never fails on holds; lines that cannot be held are re-checked at checkout
+        Map<String, Product> products = loadProducts(productIds);
+        for (Product product : products.values()) {
+            try {
+                holdStock(userCart, Map.of(product.getId(), product), Map.of(product.getId(), 0));
+            } catch (RuntimeException e) {
+                log.warn("Could not hold merged cart line {}: {}", product.getId(), e.getMessage());
+            }
+        }
+        stockHoldService.releaseAll(holderOf(guestCart), productIds);
+    }
+    
     private Cart findOrCreateCart(String userId, String sessionId) {
-        Cart cart;
-        
-        if (userId != null) {
-            cart = cartRepository.findByUserId(userId)
-                    .orElse(Cart.builder()
-                            .userId(userId)
-                            .items(new ArrayList<>())
-                            .createdAt(LocalDateTime.now())
-                            .updatedAt(LocalDateTime.now())
-                            .build());
-        } else {
-            cart = cartRepository.findBySessionId(sessionId)
-                    .orElse(Cart.builder()
-                            .sessionId(sessionId)
-                            .items(new ArrayList<>())
-                            .createdAt(LocalDateTime.now())
-                            .updatedAt(LocalDateTime.now())
-                            .build());
+        return findCart(userId, sessionId).orElseGet(() -> newCart(userId, sessionId));
+    }
+    
+    private Optional<Cart> findCart(String userId, String sessionId) {
+        return userId != null ? cartRepository.findByUserId(userId) : cartRepository.findBySessionId(sessionId);
+    }
+    
+    private Cart newCart(String userId, String sessionId) {
+        return Cart.builder()
+                .userId(userId)
+                .sessionId(userId != null ? null : sessionId)
+                .items(new ArrayList<>())
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build();
+    }
+    
+    private void addItem(Cart cart, Product product, int quantity, Map<String, String> attributes) {
+        if (!product.getAvailable() || product.getStock() < quantity) {
+            throw new RuntimeException("Product not available or insufficient stock");
         }
         
-        return cart;
+        // Check if product already exists in cart
+        Optional<CartItem> existingItem = cart.getItems().stream()
+                .filter(item -> item.getProductId().equals(product.getId()))
+                .findFirst();
+        
+        if (existingItem.isPresent()) {
+            // Update quantity
+            CartItem item = existingItem.get();
+            int newQuantity = item.getQty() + quantity;
+            if (newQuantity > product.getStock()) {
+                throw new RuntimeException("Insufficient stock");
+            }
+            item.setQty(newQuantity);
+        } else {
+            // Add new item
+            CartItem newItem = CartItem.builder()
+                    .productId(product.getId())
+                    .sku(product.getSku())
+                    .qty(quantity)
+                    .priceSnapshot(priceResolver.resolve(product, LocalDateTime.now()).price())
+                    .attributes((Map<String, Object>) (Map<?, ?>) attributes)
+                    .build();
+            
+            cart.getItems().add(newItem);
+        }
+    }
+    
+    private Map<String, Product> loadProducts(Collection<String> productIds) {
+        Map<String, Product> products = new HashMap<>();
+        for (Product product : productRepository.findAllById(new HashSet<>(productIds))) {
+            products.put(product.getId(), product);
+        }
+        return products;
+    }
+    
+    private CartItemIssue.CartItemIssueBuilder issue(CartItem item, CartItemIssue.IssueType type) {
+        return CartItemIssue.builder()
+                .productId(item.getProductId())
+                .sku(item.getSku())
+                .type(type)
+                .requestedQuantity(item.getQty());
     }
     
     private CartResponse mapToCartResponse(Cart cart) {
-        BigDecimal totalAmount = cart.getItems().stream()
-                .map(item -> item.getPriceSnapshot().multiply(BigDecimal.valueOf(item.getQty())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return mapToCartResponse(cart, Set.of(),
+                loadPricingData(cart.getItems().stream().map(CartItem::getProductId).toList()));
+    }
+    
+    /**
+     * Prices the cart as checkout would: lines at the price the {@link PriceResolver} gives
+     * now (the snapshot is only a fallback for products that no longer load), then promotions.
+     * The response carries the next price boundary, which ends its cache entry.
+     *
+     * @param products the cart's products, at least with the fields {@link #loadPricingData} reads
+     */
+    private CartResponse mapToCartResponse(Cart cart, Set<String> excludedProductIds, Map<String, Product> products) {
+        List<CartItem> pricedItems = cart.getItems().stream()
+                .filter(item -> !excludedProductIds.contains(item.getProductId()))
+                .toList();
+        Map<String, PriceResolver.ResolvedPrice> prices = priceResolver.resolveAll(products.values(), LocalDateTime.now());
+        
+        Map<String, BigDecimal> unitPrices = new HashMap<>();
+        LocalDateTime priceValidUntil = null;
+        List<PromotionEngine.Line> lines = new ArrayList<>();
+        for (CartItem item : pricedItems) {
+            PriceResolver.ResolvedPrice price = prices.get(item.getProductId());
+            BigDecimal unitPrice = price != null ? price.price() : item.getPriceSnapshot();
+            unitPrices.put(item.getProductId(), unitPrice);
+            if (price != null && price.validUntil() != null
+                    && (priceValidUntil == null || price.validUntil().isBefore(priceValidUntil))) {
+                priceValidUntil = price.validUntil();
+            }
+            
+            Product product = products.get(item.getProductId());
+            lines.add(new PromotionEngine.Line(item.getProductId(), product != null ? product.getCategories() : null,
+                    item.getQty(), Money.of(unitPrice)));
+        }
+        PromotionEngine.Evaluation pricing = promotionEngine.evaluate(lines, cart.getCouponCode());
         
         return CartResponse.builder()
                 .id(cart.getId())
                 .userId(cart.getUserId())
                 .sessionId(cart.getSessionId())
                 .items(cart.getItems())
-                .totalAmount(totalAmount)
+                .unitPrices(unitPrices)
+                .subtotal(pricing.subtotal().toBigDecimal())
+                .discountTotal(pricing.discount().toBigDecimal())
+                .totalAmount(pricing.total().toBigDecimal())
+                .couponCode(cart.getCouponCode())
+                .appliedPromotions(pricing.applied())
+                .priceValidUntil(priceValidUntil)
                 .itemCount(cart.getItems().size())
                 .createdAt(cart.getCreatedAt())
                 .updatedAt(cart.getUpdatedAt())
                 .build();
     }
+    
+    /**
+     * Just what pricing needs (list price, SKU, categories), read with a projection.
+     */
+    private Map<String, Product> loadPricingData(Collection<String> productIds) {
+        if (productIds.isEmpty()) {
+            return Map.of();
+        }
+        Query query = new Query(Criteria.where("id").in(new HashSet<>(productIds)));
+        query.fields().include("id").include("sku").include("price").include("categories");
+        
+        Map<String, Product> products = new HashMap<>();
+        mongoTemplate.find(query, Product.class).forEach(product -> products.put(product.getId(), product));
+        return products;
+    }
 }
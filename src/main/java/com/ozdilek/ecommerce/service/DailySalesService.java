@@ -0,0 +1,478 @@
+package com.ozdilek.ecommerce.service;
+
+import com.ozdilek.ecommerce.model.DailySales;
+import com.ozdilek.ecommerce.model.Money;
+import com.ozdilek.ecommerce.model.Order;
+import com.ozdilek.ecommerce.model.Order.OrderStatus;
+import com.ozdilek.ecommerce.model.Product;
+import com.ozdilek.ecommerce.repository.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Maintains the daily_sales rollups behind the sales reports.
+ * <p>
+ * Checkout counts a new order in the bucket of its day and currency, and every
+ * {@link OrderStatusChangedEvent} moves orders between status counts. Revenue, units and
+ * category totals follow orders entering or leaving DELIVERED. All of it is $inc upserts,
+ * so updates commute and never read the bucket first.
+ * <p>
+ * The backfill rebuilds a range of days from the orders (all tiers) in parallel chunks,
+ * which also repairs increments that were lost. Checkout and status events keep
+ * incrementing while it runs, today's buckets and older ones alike, so a chunk does not
+ * replace its buckets: it reads them before aggregating and $incs the difference, keeping
+ * whatever landed in between. An increment whose order write the aggregation already saw
+ * is counted twice until the next backfill of that day.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DailySalesService {
+    
+    private static final String LOCK_NAME = "daily-sales-backfill";
+    
+    private final MongoTemplate mongoTemplate;
+    private final OrderRepository orderRepository;
+    private final DistributedLockService distributedLockService;
+    private final MonetaryFieldMigrationService monetaryFieldMigrationService;
+    private final Executor dailySalesExecutor;
+    
+    @Value("${app.analytics.daily-sales.backfill-chunk-days:7}")
+    private int chunkDays;
+    
+    @Value("${app.analytics.daily-sales.backfill-on-startup:true}")
+    private boolean backfillOnStartup;
+    
+    @Value("${app.analytics.daily-sales.lock-ttl:PT30M}")
+    private Duration lockTtl;
+    
+    /**
+     * Rollups between two days (inclusive), oldest first, every currency.
+     */
+    public List<DailySales> findBetween(LocalDate from, LocalDate to) {
+        Query query = new Query(Criteria.where("day").gte(from).lte(to))
+                .with(Sort.by(Sort.Direction.ASC, "day"));
+        return mongoTemplate.find(query, DailySales.class);
+    }
+    
+    /**
+     * Counts an order that was just placed. Best-effort: a failure is logged and left to
+     * the next backfill of that day.
+     */
+    public void recordPlaced(Order order) {
+        Map<String, Bucket> buckets = new HashMap<>();
+        Bucket bucket = bucketFor(buckets, order);
+        bucket.add("orders", 1);
+        bucket.add("statuses." + order.getStatus().name(), 1);
+        try {
+            apply(buckets);
+        } catch (Exception e) {
+            log.warn("Failed to count order {} in daily sales: {}", order.getId(), e.getMessage());
+        }
+    }
+    
+    @EventListener
+    public void onStatusChanged(OrderStatusChangedEvent event) {
+        Map<String, OrderStatus> moved = new HashMap<>();
+        event.previousStatuses().forEach((orderId, previous) -> {
+            if (previous != event.status()) {
+                moved.put(orderId, previous);
+            }
+        });
+        if (moved.isEmpty()) {
+            return;
+        }
+        
+        boolean sales = event.status() == OrderStatus.DELIVERED || moved.containsValue(OrderStatus.DELIVERED);
+        try {
+            Query query = new Query(Criteria.where("id").in(moved.keySet()));
+            query.fields().include("id").include("createdAt").include("total").include("payment.currency");
+            if (sales) {
+                query.fields().include("items");
+            }
+            List<Order> orders = mongoTemplate.find(query, Order.class);
+            Map<String, List<String>> categories = sales ? categoriesOf(productIdsOf(orders)) : Map.of();
+            
+            Map<String, Bucket> buckets = new HashMap<>();
+            for (Order order : orders) {
+                OrderStatus previous = moved.get(order.getId());
+                Bucket bucket = bucketFor(buckets, order);
+                bucket.add("statuses." + previous.name(), -1);
+                bucket.add("statuses." + event.status().name(), 1);
+                if (event.status() == OrderStatus.DELIVERED) {
+                    addSale(bucket, order, categories, 1);
+                } else if (previous == OrderStatus.DELIVERED) {
+                    addSale(bucket, order, categories, -1);
+                }
+            }
+            apply(buckets);
+        } catch (Exception e) {
+            // The rollup drifts until that day is backfilled; the orders themselves are fine
+            log.warn("Failed to update daily sales for {} orders moved to {}: {}",
+                    moved.size(), event.status(), e.getMessage());
+        }
+    }
+    
+    private void addSale(Bucket bucket, Order order, Map<String, List<String>> categories, int sign) {
+        bucket.add("revenueMinor", sign * Money.of(order.getTotal()).minor());
+        if (order.getItems() == null) {
+            return;
+        }
+        for (Order.OrderItem item : order.getItems()) {
+            long units = sign * item.getQty();
+            long lineTotal = sign * Money.of(item.getPrice()).times(item.getQty()).minor();
+            bucket.add("unitsSold", units);
+            for (String categoryId : categories.getOrDefault(item.getProductId(), List.of())) {
+                bucket.add("categories." + categoryId + ".revenueMinor", lineTotal);
+                bucket.add("categories." + categoryId + ".units", units);
+            }
+        }
+    }
+    
+    private void apply(Map<String, Bucket> buckets) {
+        if (buckets.isEmpty()) {
+            return;
+        }
+        
+        LocalDateTime now = LocalDateTime.now();
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DailySales.class);
+        buckets.forEach((id, bucket) -> {
+            Update update = new Update()
+                    .setOnInsert("day", bucket.day())
+                    .setOnInsert("currency", bucket.currency())
+                    .set("updatedAt", now);
+            bucket.increments().forEach(update::inc);
+            bulkOps.upsert(new Query(Criteria.where("id").is(id)), update);
+        });
+        bulkOps.execute();
+    }
+    
+    /**
+     * Runs a backfill of the whole order history when the rollups are still empty, e.g.
+     * right after they were introduced. While the Decimal128 migration still has amounts
+     * stored as strings, which $sum skips, it waits for
+     * {@link #onMonetaryMigrationCompleted} instead.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        if (!backfillOnStartup || mongoTemplate.exists(new Query(), DailySales.class)) {
+            return;
+        }
+        if (!monetaryFieldMigrationService.isComplete()) {
+            log.info("Daily sales backfill deferred until the Decimal128 migration finishes");
+            return;
+        }
+        backfillInBackground("Initial");
+    }
+    
+    /**
+     * Rebuilds every day once all amounts are Decimal128: rollups written before counted
+     * string amounts as 0. The backfill applies deltas, so live increments are kept.
+     */
+    @EventListener
+    public void onMonetaryMigrationCompleted(MonetaryMigrationCompletedEvent event) {
+        if (backfillOnStartup) {
+            backfillInBackground("Post-migration");
+        }
+    }
+    
+    private void backfillInBackground(String kind) {
+        // Off the caller's thread; the chunks themselves run on the backfill executor
+        CompletableFuture.runAsync(() -> backfill(null, null))
+                .exceptionally(e -> {
+                    log.warn("{} daily sales backfill failed: {}", kind, e.getMessage());
+                    return null;
+                });
+    }
+    
+    /**
+     * Rebuilds the rollups of every day between {@code from} and {@code to} (inclusive),
+     * chunk by chunk in parallel.
+     *
+     * @param from null for the day of the oldest order
+     * @param to   null for today
+     */
+    public Map<String, Object> backfill(LocalDate from, LocalDate to) {
+        Optional<String> lock = distributedLockService.tryAcquire(LOCK_NAME, lockTtl);
+        if (lock.isEmpty()) {
+            throw new RuntimeException("Daily sales backfill is already running on another node");
+        }
+        
+        try {
+            long startedAt = System.nanoTime();
+            LocalDate first = from != null ? from : oldestOrderDay();
+            LocalDate last = to != null ? to : LocalDate.now();
+            
+            List<CompletableFuture<Integer>> chunks = new ArrayList<>();
+            if (first != null) {
+                for (LocalDate chunkStart = first; !chunkStart.isAfter(last); chunkStart = chunkStart.plusDays(chunkDays)) {
+                    LocalDate start = chunkStart;
+                    LocalDate end = chunkStart.plusDays(chunkDays - 1L).isAfter(last) ? last : chunkStart.plusDays(chunkDays - 1L);
+                    chunks.add(CompletableFuture.supplyAsync(() -> rebuildChunk(start, end), dailySalesExecutor));
+                }
+            }
+            int documents = chunks.stream().mapToInt(CompletableFuture::join).sum();
+            
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("status", "COMPLETED");
+            result.put("from", first);
+            result.put("to", last);
+            result.put("chunks", chunks.size());
+            result.put("documents", documents);
+            result.put("elapsedMs", (System.nanoTime() - startedAt) / 1_000_000);
+            log.info("Rebuilt daily sales from {} to {}: {} documents in {} chunks", first, last, documents, chunks.size());
+            return result;
+        } finally {
+            distributedLockService.release(LOCK_NAME, lock.get());
+        }
+    }
+    
+    /**
+     * Rebuilds the days of one chunk from two aggregations per order tier: counts and
+     * totals by day, currency and status, then delivered lines by product for units and
+     * categories. Buckets of days that no longer have orders are zeroed.
+     */
+    private int rebuildChunk(LocalDate from, LocalDate to) {
+        Map<String, DailySales> current = new HashMap<>();
+        findBetween(from, to).forEach(rollup -> current.put(rollup.getId(), rollup));
+        
+        LocalDateTime start = from.atStartOfDay();
+        LocalDateTime end = to.plusDays(1).atStartOfDay();
+        Criteria range = Criteria.where("createdAt").gte(start).lt(end);
+        AggregationExpression currency = ConditionalOperators.ifNull("payment.currency").then(Money.DEFAULT_CURRENCY);
+        
+        List<String> collections = new ArrayList<>();
+        collections.add(mongoTemplate.getCollectionName(Order.class));
+        collections.addAll(orderRepository.archiveCollectionsBetween(start, end));
+        
+        Map<String, DailySales> rollups = new HashMap<>();
+        Map<String, Map<String, long[]>> productSales = new HashMap<>();
+        for (String collection : collections) {
+            List<Document> byStatus = mongoTemplate.aggregate(Aggregation.newAggregation(Order.class,
+                            Aggregation.match(range),
+                            Aggregation.project("status", "total")
+                                    .and(AggregationSupport.dayOf("createdAt")).as("day")
+                                    .and(currency).as("currency"),
+                            Aggregation.group("day", "currency", "status").count().as("orders").sum("total").as("total")),
+                    collection, Document.class).getMappedResults();
+            for (Document group : byStatus) {
+                Document key = group.get("_id", Document.class);
+                DailySales rollup = rollupFor(rollups, key);
+                long orders = AggregationSupport.longValue(group, "orders");
+                rollup.setOrders(rollup.getOrders() + orders);
+                rollup.getStatuses().merge(key.getString("status"), orders, Long::sum);
+                if (OrderStatus.DELIVERED.name().equals(key.getString("status"))) {
+                    rollup.setRevenueMinor(rollup.getRevenueMinor()
+                            + Money.of(AggregationSupport.amount(group, "total")).minor());
+                }
+            }
+            
+            List<Document> byProduct = mongoTemplate.aggregate(Aggregation.newAggregation(Order.class,
+                            Aggregation.match(new Criteria().andOperator(range,
+                                    Criteria.where("status").is(OrderStatus.DELIVERED.name()))),
+                            Aggregation.unwind("items"),
+                            Aggregation.project()
+                                    .and(AggregationSupport.dayOf("createdAt")).as("day")
+                                    .and(currency).as("currency")
+                                    .and("items.productId").as("productId")
+                                    .and("items.qty").as("qty")
+                                    .and(ArithmeticOperators.valueOf("items.price").multiplyBy("items.qty")).as("lineTotal"),
+                            Aggregation.group("day", "currency", "productId").sum("qty").as("units").sum("lineTotal").as("revenue")),
+                    collection, Document.class).getMappedResults();
+            for (Document group : byProduct) {
+                Document key = group.get("_id", Document.class);
+                long[] sales = productSales.computeIfAbsent(rollupFor(rollups, key).getId(), id -> new HashMap<>())
+                        .computeIfAbsent(key.getString("productId"), id -> new long[2]);
+                sales[0] += AggregationSupport.longValue(group, "units");
+                sales[1] += Money.of(AggregationSupport.amount(group, "revenue")).minor();
+            }
+        }
+        
+        Set<String> productIds = new HashSet<>();
+        productSales.values().forEach(products -> productIds.addAll(products.keySet()));
+        Map<String, List<String>> categories = categoriesOf(productIds);
+        productSales.forEach((id, products) -> {
+            DailySales rollup = rollups.get(id);
+            products.forEach((productId, sales) -> {
+                rollup.setUnitsSold(rollup.getUnitsSold() + sales[0]);
+                for (String categoryId : categories.getOrDefault(productId, List.of())) {
+                    DailySales.CategorySales category = rollup.getCategories().computeIfAbsent(categoryId,
+                            key -> DailySales.CategorySales.builder().revenueMinor(0L).units(0L).build());
+                    category.setUnits(category.getUnits() + sales[0]);
+                    category.setRevenueMinor(category.getRevenueMinor() + sales[1]);
+                }
+            });
+        });
+        
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DailySales.class);
+        int corrected = 0;
+        Set<String> ids = new HashSet<>(rollups.keySet());
+        ids.addAll(current.keySet());
+        for (String id : ids) {
+            DailySales target = rollups.get(id);
+            DailySales before = current.get(id);
+            DailySales known = target != null ? target : before;
+            Map<String, Long> deltas = deltas(target, before);
+            if (deltas.isEmpty()) {
+                continue;
+            }
+            Update update = new Update()
+                    .setOnInsert("day", known.getDay())
+                    .setOnInsert("currency", known.getCurrency())
+                    .set("updatedAt", LocalDateTime.now());
+            deltas.forEach(update::inc);
+            bulkOps.upsert(new Query(Criteria.where("id").is(id)), update);
+            corrected++;
+        }
+        if (corrected > 0) {
+            bulkOps.execute();
+        }
+        return rollups.size();
+    }
+    
+    /**
+     * Field-wise target - before, as $inc amounts; a missing side counts as zero.
+     */
+    static Map<String, Long> deltas(DailySales target, DailySales before) {
+        Map<String, Long> deltas = new LinkedHashMap<>();
+        Map<String, Long> targetValues = flatten(target);
+        Map<String, Long> beforeValues = flatten(before);
+        targetValues.forEach((field, value) -> deltas.put(field, value - beforeValues.getOrDefault(field, 0L)));
+        beforeValues.forEach((field, value) -> deltas.putIfAbsent(field, -value));
+        deltas.values().removeIf(delta -> delta == 0);
+        return deltas;
+    }
+    
+    private static Map<String, Long> flatten(DailySales rollup) {
+        Map<String, Long> values = new HashMap<>();
+        if (rollup == null) {
+            return values;
+        }
+        values.put("orders", valueOf(rollup.getOrders()));
+        values.put("revenueMinor", valueOf(rollup.getRevenueMinor()));
+        values.put("unitsSold", valueOf(rollup.getUnitsSold()));
+        if (rollup.getStatuses() != null) {
+            rollup.getStatuses().forEach((status, count) -> values.put("statuses." + status, valueOf(count)));
+        }
+        if (rollup.getCategories() != null) {
+            rollup.getCategories().forEach((categoryId, sales) -> {
+                values.put("categories." + categoryId + ".revenueMinor", valueOf(sales.getRevenueMinor()));
+                values.put("categories." + categoryId + ".units", valueOf(sales.getUnits()));
+            });
+        }
+        return values;
+    }
+    
+    private static long valueOf(Long value) {
+        return value != null ? value : 0L;
+    }
+    
+    private DailySales rollupFor(Map<String, DailySales> rollups, Document key) {
+        LocalDate day = LocalDate.parse(key.getString("day"));
+        String currency = key.getString("currency");
+        return rollups.computeIfAbsent(DailySales.idFor(day, currency), id -> DailySales.builder()
+                .id(id)
+                .day(day)
+                .currency(currency)
+                .orders(0L)
+                .statuses(new HashMap<>())
+                .revenueMinor(0L)
+                .unitsSold(0L)
+                .categories(new HashMap<>())
+                .updatedAt(LocalDateTime.now())
+                .build());
+    }
+    
+    private LocalDate oldestOrderDay() {
+        Query oldest = new Query().with(Sort.by(Sort.Direction.ASC, "createdAt")).limit(1);
+        oldest.fields().include("createdAt");
+        
+        List<String> collections = new ArrayList<>();
+        collections.add(mongoTemplate.getCollectionName(Order.class));
+        collections.addAll(orderRepository.archiveCollectionsBetween(null, null));
+        
+        LocalDateTime first = null;
+        for (String collection : collections) {
+            Order order = mongoTemplate.findOne(oldest, Order.class, collection);
+            if (order != null && order.getCreatedAt() != null && (first == null || order.getCreatedAt().isBefore(first))) {
+                first = order.getCreatedAt();
+            }
+        }
+        return first != null ? first.toLocalDate() : null;
+    }
+    
+    private Set<String> productIdsOf(List<Order> orders) {
+        Set<String> productIds = new HashSet<>();
+        for (Order order : orders) {
+            if (order.getItems() != null) {
+                order.getItems().forEach(item -> productIds.add(item.getProductId()));
+            }
+        }
+        return productIds;
+    }
+    
+    private Map<String, List<String>> categoriesOf(Collection<String> productIds) {
+        if (productIds.isEmpty()) {
+            return Map.of();
+        }
+        
+        Query query = new Query(Criteria.where("id").in(productIds));
+        query.fields().include("id").include("categories");
+        Map<String, List<String>> categories = new HashMap<>();
+        mongoTemplate.find(query, Product.class).forEach(product -> {
+            if (product.getCategories() != null) {
+                categories.put(product.getId(), product.getCategories());
+            }
+        });
+        return categories;
+    }
+    
+    private static Bucket bucketFor(Map<String, Bucket> buckets, Order order) {
+        LocalDate day = order.getCreatedAt().toLocalDate();
+        String currency = order.getPayment() != null && order.getPayment().getCurrency() != null
+                ? order.getPayment().getCurrency()
+                : Money.DEFAULT_CURRENCY;
+        return buckets.computeIfAbsent(DailySales.idFor(day, currency),
+                id -> new Bucket(day, currency, new LinkedHashMap<>()));
+    }
+    
+    /**
+     * Pending $inc amounts for one rollup document.
+     */
+    private record Bucket(LocalDate day, String currency, Map<String, Long> increments) {
+        
+        void add(String field, long delta) {
+            increments.merge(field, delta, Long::sum);
+        }
+    }
+}
@@ -0,0 +1,659 @@
+package com.ozdilek.ecommerce.service;
+
+import com.ozdilek.ecommerce.model.Money;
+import com.ozdilek.ecommerce.model.Order;
+import com.ozdilek.ecommerce.model.Order.OrderStatus;
+import com.ozdilek.ecommerce.model.Product;
+import com.ozdilek.ecommerce.model.User;
+import com.ozdilek.ecommerce.repository.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.BooleanOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Dashboard counters (users, products, orders by status, revenue) kept in Redis and
+ * updated as the writes happen, so the admin dashboard is a handful of hash reads.
+ * <p>
+ * Users and orders are counted from the write itself: registration, ban/soft delete,
+ * restore, verification, hard delete, checkout and every {@link OrderStatusChangedEvent}.
+ * Stock moves through many bulk paths that do not know the previous value, so stock
+ * writers only mark products dirty; a short scheduled flush reads their stock and
+ * availability and moves them between buckets, remembering each product's bucket in
+ * a state hash. "This month" figures come from per-day hashes summed over the window.
+ * <p>
+ * Every counter is an increment, so the order of updates does not matter, but a crash
+ * between a write and its increment leaves drift. A periodic reconciliation recomputes
+ * everything from the collections (all order tiers included) and logs the drift it
+ * corrected. The scan takes a while and the increments keep coming, so it does not
+ * overwrite the counters: it adds the difference between the snapshot and the counters
+ * read when the snapshot started, which keeps whatever landed in between. Product
+ * buckets are only moved by the flush, which pauses while the snapshot is taken; the
+ * products touched meanwhile stay dirty and are flushed afterwards.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DashboardStatsService {
+    
+    public static final int LOW_STOCK_THRESHOLD = 10;
+    
+    private static final String LOCK_NAME = "dashboard-stats-reconcile";
+    
+    private static final String COUNTERS_KEY = "dashboard_stats";
+    private static final String PRODUCT_STATES_KEY = "dashboard_stats:product_states";
+    private static final String DIRTY_PRODUCTS_KEY = "dashboard_stats:dirty_products";
+    private static final String NEW_USERS_KEY = "dashboard_stats:new_users";
+    private static final String REVENUE_BY_DAY_KEY = "dashboard_stats:revenue_by_day";
+    private static final String RECONCILING_KEY = "dashboard_stats:reconciling";
+    private static final String REBUILD_SUFFIX = ":rebuild";
+    
+    private static final String USERS_TOTAL = "users.total";
+    private static final String USERS_ACTIVE = "users.active";
+    private static final String USERS_VERIFIED = "users.verified";
+    private static final String PRODUCTS_TOTAL = "products.total";
+    private static final String PRODUCTS_AVAILABLE = "products.available";
+    private static final String PRODUCTS_OUT_OF_STOCK = "products.outOfStock";
+    private static final String PRODUCTS_LOW_STOCK = "products.lowStock";
+    private static final String ORDERS_PREFIX = "orders.";
+    private static final String ORDERS_REVENUE = "orders.revenue";
+    
+    // Days kept in the per-day hashes; covers "this month" whatever the month length
+    private static final int DAILY_WINDOW_DAYS = 31;
+    private static final int FLUSH_BATCH_SIZE = 500;
+    private static final int REBUILD_BATCH_SIZE = 1000;
+    
+    // Moves products between buckets. A state is availability (A/U) plus stock band
+    // (O out, L low, N neither); an empty state means the product is gone.
+    private static final RedisScript<Long> APPLY_STATES = new DefaultRedisScript<>("""
+            local function count(state, sign)
+                if not state or state == '' then
+                    return
+                end
+                redis.call('HINCRBY', KEYS[2], 'products.total', sign)
+                if string.sub(state, 1, 1) == 'A' then
+                    redis.call('HINCRBY', KEYS[2], 'products.available', sign)
+                end
+                local band = string.sub(state, 2, 2)
+                if band == 'O' then
+                    redis.call('HINCRBY', KEYS[2], 'products.outOfStock', sign)
+                elseif band == 'L' then
+                    redis.call('HINCRBY', KEYS[2], 'products.lowStock', sign)
+                end
+            end
+            local moved = 0
+            for i = 1, #ARGV, 2 do
+                local previous = redis.call('HGET', KEYS[1], ARGV[i])
+                local state = ARGV[i + 1]
+                if (previous or '') ~= state then
+                    count(previous, -1)
+                    count(state, 1)
+                    if state == '' then
+                        redis.call('HDEL', KEYS[1], ARGV[i])
+                    else
+                        redis.call('HSET', KEYS[1], ARGV[i], state)
+                    end
+                    moved = moved + 1
+                end
+            end
+            return moved
+            """, Long.class);
+    
+    // Swaps the rebuilt product states in and sets the product counters in one step
+    private static final RedisScript<Long> SWAP_PRODUCTS = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[3]) == 1 then
+                redis.call('RENAME', KEYS[3], KEYS[2])
+            else
+                redis.call('DEL', KEYS[2])
+            end
+            redis.call('HSET', KEYS[1], unpack(ARGV))
+            return 1
+            """, Long.class);
+    
+    private static final List<String> PRODUCT_COUNTERS = List.of(PRODUCTS_TOTAL, PRODUCTS_AVAILABLE,
+            PRODUCTS_OUT_OF_STOCK, PRODUCTS_LOW_STOCK);
+    
+    private final MongoTemplate mongoTemplate;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final OrderRepository orderRepository;
+    private final DistributedLockService distributedLockService;
+    
+    private volatile Map<String, Object> lastReconciliation;
+    
+    private final AtomicBoolean initializing = new AtomicBoolean();
+    
+    @Value("${app.stats.reconcile-lock-ttl:PT10M}")
+    private Duration lockTtl;
+    
+    /**
+     * The dashboard overview from the counters; never scans the collections. Before the
+     * first reconciliation the counters are empty: one is started in the background and
+     * zeros are returned with status INITIALIZING. UNAVAILABLE when Redis is down.
+     */
+    public Map<String, Object> getOverview() {
+        try {
+            Map<Object, Object> counters = redisTemplate.opsForHash().entries(COUNTERS_KEY);
+            if (counters.isEmpty()) {
+                initializeInBackground();
+                return toOverview(Map.of(), 0, 0, "INITIALIZING");
+            }
+            Map<String, Long> values = new HashMap<>();
+            counters.forEach((field, value) -> values.put(field.toString(), parseLong(value)));
+            return toOverview(values,
+                    sumSince(redisTemplate.opsForHash().entries(NEW_USERS_KEY)),
+                    sumSince(redisTemplate.opsForHash().entries(REVENUE_BY_DAY_KEY)),
+                    "READY");
+        } catch (Exception e) {
+            log.warn("Dashboard counters unavailable: {}", e.getMessage());
+            return toOverview(Map.of(), 0, 0, "UNAVAILABLE");
+        }
+    }
+    
+    private void initializeInBackground() {
+        if (!initializing.compareAndSet(false, true)) {
+            return;
+        }
+        CompletableFuture.runAsync(this::reconcileNow)
+                .whenComplete((run, e) -> {
+                    initializing.set(false);
+                    if (e != null) {
+                        log.warn("Initial dashboard stats reconciliation failed: {}", e.getMessage());
+                    }
+                });
+    }
+    
+    public Map<String, Object> getLastReconciliation() {
+        return lastReconciliation != null ? lastReconciliation : Map.of("status", "NEVER_RUN");
+    }
+    
+    public void recordUserRegistered(User user) {
+        applyUser(user, 1);
+        if (user.getCreatedAt() != null) {
+            incrementDay(NEW_USERS_KEY, user.getCreatedAt().toLocalDate(), 1);
+        }
+    }
+    
+    /**
+     * Hard delete. Pass the user as it was stored.
+     */
+    public void recordUserRemoved(User user) {
+        applyUser(user, -1);
+        if (user.getCreatedAt() != null) {
+            incrementDay(NEW_USERS_KEY, user.getCreatedAt().toLocalDate(), -1);
+        }
+    }
+    
+    /**
+     * Ban or soft delete of a user that was active.
+     */
+    public void recordUserDeactivated(User user) {
+        increment(USERS_ACTIVE, -1);
+        if (Boolean.TRUE.equals(user.getIsVerified())) {
+            increment(USERS_VERIFIED, -1);
+        }
+    }
+    
+    /**
+     * Unban or restore of a user that was deleted.
+     */
+    public void recordUserReactivated(User user) {
+        increment(USERS_ACTIVE, 1);
+        if (Boolean.TRUE.equals(user.getIsVerified())) {
+            increment(USERS_VERIFIED, 1);
+        }
+    }
+    
+    /**
+     * A user that was not verified before.
+     */
+    public void recordUserVerified(User user) {
+        if (!Boolean.TRUE.equals(user.getDeleted())) {
+            increment(USERS_VERIFIED, 1);
+        }
+    }
+    
+    private void applyUser(User user, int sign) {
+        increment(USERS_TOTAL, sign);
+        if (!Boolean.TRUE.equals(user.getDeleted())) {
+            increment(USERS_ACTIVE, sign);
+            if (Boolean.TRUE.equals(user.getIsVerified())) {
+                increment(USERS_VERIFIED, sign);
+            }
+        }
+    }
+    
+    /**
+     * Marks products whose stock, availability or existence may have changed. Cheap enough
+     * for the checkout path: one SADD, the bucket update happens in the scheduled flush.
+     */
+    public void recordProductsTouched(Collection<String> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        try {
+            redisTemplate.opsForSet().add(DIRTY_PRODUCTS_KEY, productIds.toArray(new String[0]));
+        } catch (Exception e) {
+            // Counted again by the next reconciliation
+            log.warn("Failed to mark {} products for dashboard stats: {}", productIds.size(), e.getMessage());
+        }
+    }
+    
+    public void recordProductTouched(String productId) {
+        recordProductsTouched(List.of(productId));
+    }
+    
+    /**
+     * Moves dirty products into their current stock buckets. Nodes pop disjoint ids,
+     * so no lock is needed.
+     */
+    @Scheduled(fixedDelayString = "${app.stats.product-flush-interval:PT5S}")
+    public void flushDirtyProducts() {
+        try {
+            if (Boolean.TRUE.equals(redisTemplate.hasKey(RECONCILING_KEY))) {
+                return;
+            }
+            List<String> productIds;
+            do {
+                productIds = redisTemplate.opsForSet().pop(DIRTY_PRODUCTS_KEY, FLUSH_BATCH_SIZE);
+                if (productIds == null || productIds.isEmpty()) {
+                    return;
+                }
+                applyProductStates(productIds);
+            } while (productIds.size() == FLUSH_BATCH_SIZE);
+        } catch (Exception e) {
+            log.warn("Failed to flush dashboard product stats: {}", e.getMessage());
+        }
+    }
+    
+    private void applyProductStates(List<String> productIds) {
+        Query query = new Query(Criteria.where("id").in(productIds));
+        query.fields().include("id").include("available").include("stock");
+        Map<String, String> states = new HashMap<>();
+        mongoTemplate.find(query, Product.class).forEach(product -> states.put(product.getId(), stateOf(product)));
+        
+        List<String> args = new ArrayList<>(productIds.size() * 2);
+        for (String productId : productIds) {
+            args.add(productId);
+            args.add(states.getOrDefault(productId, ""));
+        }
+        try {
+            redisTemplate.execute(APPLY_STATES, List.of(PRODUCT_STATES_KEY, COUNTERS_KEY), args.toArray());
+        } catch (Exception e) {
+            recordProductsTouched(productIds);
+            throw e;
+        }
+    }
+    
+    private static String stateOf(Product product) {
+        char availability = Boolean.TRUE.equals(product.getAvailable()) ? 'A' : 'U';
+        Integer stock = product.getStock();
+        char band = stock == null ? 'N' : stock == 0 ? 'O' : stock > 0 && stock <= LOW_STOCK_THRESHOLD ? 'L' : 'N';
+        return String.valueOf(availability) + band;
+    }
+    
+    public void recordOrderPlaced(Order order) {
+        increment(ORDERS_PREFIX + order.getStatus().name(), 1);
+    }
+    
+    /**
+     * Moves the orders between status counters. Revenue follows orders entering or
+     * leaving DELIVERED; only those are read back, for their totals.
+     */
+    @EventListener
+    public void onStatusChanged(OrderStatusChangedEvent event) {
+        Map<OrderStatus, Long> left = new HashMap<>();
+        List<String> delivered = new ArrayList<>();
+        List<String> undelivered = new ArrayList<>();
+        event.previousStatuses().forEach((orderId, previous) -> {
+            if (previous == event.status()) {
+                return;
+            }
+            left.merge(previous, 1L, Long::sum);
+            if (event.status() == OrderStatus.DELIVERED) {
+                delivered.add(orderId);
+            } else if (previous == OrderStatus.DELIVERED) {
+                undelivered.add(orderId);
+            }
+        });
+        
+        left.forEach((previous, count) -> increment(ORDERS_PREFIX + previous.name(), -count));
+        increment(ORDERS_PREFIX + event.status().name(), left.values().stream().mapToLong(Long::longValue).sum());
+        
+        try {
+            applyRevenue(delivered, 1);
+            applyRevenue(undelivered, -1);
+        } catch (Exception e) {
+            log.warn("Failed to update dashboard revenue for {} orders: {}", delivered.size() + undelivered.size(), e.getMessage());
+        }
+    }
+    
+    private void applyRevenue(List<String> orderIds, int sign) {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        
+        Query query = new Query(Criteria.where("id").in(orderIds));
+        query.fields().include("id").include("total").include("createdAt");
+        long revenue = 0;
+        for (Order order : mongoTemplate.find(query, Order.class)) {
+            long total = Money.of(order.getTotal()).minor();
+            revenue += total;
+            incrementDay(REVENUE_BY_DAY_KEY, order.getCreatedAt().toLocalDate(), sign * total);
+        }
+        increment(ORDERS_REVENUE, sign * revenue);
+    }
+    
+    @Scheduled(fixedDelayString = "${app.stats.reconcile-interval:PT1H}", initialDelayString = "${app.stats.reconcile-initial-delay:PT1M}")
+    public void reconcile() {
+        try {
+            reconcileNow();
+        } catch (Exception e) {
+            log.warn("Dashboard stats reconciliation failed: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Recomputes every counter from the collections and moves the Redis state onto it.
+     * An increment whose write the scan already saw is counted twice; the next run
+     * corrects it and reports it as drift.
+     */
+    public Map<String, Object> reconcileNow() {
+        Optional<String> lock = distributedLockService.tryAcquire(LOCK_NAME, lockTtl);
+        if (lock.isEmpty()) {
+            log.debug("Dashboard stats reconciliation is running on another node");
+            return Map.of("status", "SKIPPED", "reason", "Reconciliation is running on another node");
+        }
+        
+        try {
+            long startedAt = System.nanoTime();
+            // Pauses the product flush; expires with the lock if this node dies
+            redisTemplate.opsForValue().set(RECONCILING_KEY, "1", lockTtl);
+            Map<Object, Object> previous = redisTemplate.opsForHash().entries(COUNTERS_KEY);
+            Map<Object, Object> previousNewUsers = redisTemplate.opsForHash().entries(NEW_USERS_KEY);
+            Map<Object, Object> previousRevenueByDay = redisTemplate.opsForHash().entries(REVENUE_BY_DAY_KEY);
+            Snapshot snapshot = takeSnapshot();
+            
+            // Product states go to a side key first; the swap makes them live with the counters
+            String statesRebuild = PRODUCT_STATES_KEY + REBUILD_SUFFIX;
+            redisTemplate.delete(statesRebuild);
+            Map<String, String> batch = new HashMap<>();
+            for (Map.Entry<String, String> state : snapshot.productStates().entrySet()) {
+                batch.put(state.getKey(), state.getValue());
+                if (batch.size() == REBUILD_BATCH_SIZE) {
+                    redisTemplate.opsForHash().putAll(statesRebuild, batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                redisTemplate.opsForHash().putAll(statesRebuild, batch);
+            }
+            
+            List<String> productArgs = new ArrayList<>();
+            Map<String, Long> otherCounters = new LinkedHashMap<>();
+            snapshot.counters().forEach((field, value) -> {
+                if (PRODUCT_COUNTERS.contains(field)) {
+                    productArgs.add(field);
+                    productArgs.add(String.valueOf(value));
+                } else {
+                    otherCounters.put(field, value);
+                }
+            });
+            redisTemplate.execute(SWAP_PRODUCTS, List.of(COUNTERS_KEY, PRODUCT_STATES_KEY, statesRebuild), productArgs.toArray());
+            
+            Map<String, Long> drift = new LinkedHashMap<>();
+            PRODUCT_COUNTERS.forEach(field -> {
+                long counted = parseLong(previous.get(field));
+                if (counted != snapshot.counters().get(field)) {
+                    drift.put(field, counted - snapshot.counters().get(field));
+                }
+            });
+            applyDeltas(COUNTERS_KEY, previous, otherCounters).forEach((field, delta) -> drift.put(field, -delta));
+            String windowStart = LocalDate.now().minusDays(DAILY_WINDOW_DAYS).toString();
+            applyDeltas(NEW_USERS_KEY, dropDaysBefore(NEW_USERS_KEY, previousNewUsers, windowStart), snapshot.newUsersByDay());
+            applyDeltas(REVENUE_BY_DAY_KEY, dropDaysBefore(REVENUE_BY_DAY_KEY, previousRevenueByDay, windowStart), snapshot.revenueByDay());
+            
+            if (previous.isEmpty()) {
+                drift.clear();
+            }
+            if (!drift.isEmpty()) {
+                log.info("Dashboard stats reconciliation corrected drift: {}", drift);
+            }
+            
+            Map<String, Object> run = new LinkedHashMap<>();
+            run.put("status", "COMPLETED");
+            run.put("initialized", previous.isEmpty());
+            run.put("drift", drift);
+            run.put("products", snapshot.productStates().size());
+            run.put("elapsedMs", (System.nanoTime() - startedAt) / 1_000_000);
+            run.put("finishedAt", LocalDateTime.now());
+            lastReconciliation = run;
+            return run;
+        } finally {
+            redisTemplate.delete(RECONCILING_KEY);
+            distributedLockService.release(LOCK_NAME, lock.get());
+        }
+    }
+    
+    /**
+     * Adds target - previous to every field, so increments made since {@code previous} was
+     * read are kept. Returns the non-zero deltas.
+     */
+    private Map<String, Long> applyDeltas(String key, Map<Object, Object> previous, Map<String, Long> target) {
+        Map<String, Long> deltas = new LinkedHashMap<>();
+        target.forEach((field, value) -> deltas.put(field, value - parseLong(previous.get(field))));
+        previous.forEach((field, value) -> deltas.putIfAbsent(field.toString(), -parseLong(value)));
+        deltas.values().removeIf(delta -> delta == 0);
+        deltas.forEach((field, delta) -> increment(key, field, delta));
+        return deltas;
+    }
+    
+    /**
+     * Deletes the days that left the window and returns the remaining ones.
+     */
+    private Map<Object, Object> dropDaysBefore(String key, Map<Object, Object> days, String windowStart) {
+        Map<Object, Object> kept = new HashMap<>();
+        List<Object> expired = new ArrayList<>();
+        days.forEach((day, value) -> {
+            if (day.toString().compareTo(windowStart) < 0) {
+                expired.add(day);
+            } else {
+                kept.put(day, value);
+            }
+        });
+        if (!expired.isEmpty()) {
+            redisTemplate.opsForHash().delete(key, expired.toArray());
+        }
+        return kept;
+    }
+    
+    private Snapshot takeSnapshot() {
+        Map<String, Long> counters = new LinkedHashMap<>();
+        Map<String, Long> newUsersByDay = new HashMap<>();
+        Map<String, Long> revenueByDay = new HashMap<>();
+        Map<String, String> productStates = new HashMap<>();
+        LocalDateTime since = LocalDate.now().minusDays(DAILY_WINDOW_DAYS).atStartOfDay();
+        
+        // Users: one $group, plus signups per day inside the window
+        AggregationExpression notDeleted = ComparisonOperators.valueOf("deleted").notEqualToValue(true);
+        Document users = mongoTemplate.aggregate(Aggregation.newAggregation(User.class,
+                Aggregation.group()
+                        .count().as("total")
+                        .sum(AggregationSupport.countIf(notDeleted)).as("active")
+                        .sum(AggregationSupport.countIf(BooleanOperators.And.and(
+                                ComparisonOperators.valueOf("isVerified").equalToValue(true), notDeleted))).as("verified")),
+                Document.class).getUniqueMappedResult();
+        counters.put(USERS_TOTAL, AggregationSupport.longValue(users, "total"));
+        counters.put(USERS_ACTIVE, AggregationSupport.longValue(users, "active"));
+        counters.put(USERS_VERIFIED, AggregationSupport.longValue(users, "verified"));
+        
+        mongoTemplate.aggregate(Aggregation.newAggregation(User.class,
+                        Aggregation.match(Criteria.where("createdAt").gte(since)),
+                        Aggregation.project().and(AggregationSupport.dayOf("createdAt")).as("day"),
+                        Aggregation.group("day").count().as("count")),
+                Document.class).getMappedResults()
+                .forEach(day -> newUsersByDay.put(day.getString("_id"), AggregationSupport.longValue(day, "count")));
+        
+        // Products: a projected scan that also yields the per-product states
+        Query productQuery = new Query();
+        productQuery.fields().include("id").include("available").include("stock");
+        long total = 0;
+        long available = 0;
+        long outOfStock = 0;
+        long lowStock = 0;
+        try (Stream<Product> products = mongoTemplate.stream(productQuery, Product.class)) {
+            for (Product product : (Iterable<Product>) products::iterator) {
+                String state = stateOf(product);
+                productStates.put(product.getId(), state);
+                total++;
+                available += state.charAt(0) == 'A' ? 1 : 0;
+                outOfStock += state.charAt(1) == 'O' ? 1 : 0;
+                lowStock += state.charAt(1) == 'L' ? 1 : 0;
+            }
+        }
+        counters.put(PRODUCTS_TOTAL, total);
+        counters.put(PRODUCTS_AVAILABLE, available);
+        counters.put(PRODUCTS_OUT_OF_STOCK, outOfStock);
+        counters.put(PRODUCTS_LOW_STOCK, lowStock);
+        
+        // Orders: every tier, so archiving does not change the totals
+        for (OrderStatus status : OrderStatus.values()) {
+            counters.put(ORDERS_PREFIX + status.name(), 0L);
+        }
+        long revenueMinor = 0;
+        List<String> collections = new ArrayList<>();
+        collections.add(mongoTemplate.getCollectionName(Order.class));
+        collections.addAll(orderRepository.archiveCollectionsBetween(null, null));
+        for (String collection : collections) {
+            Document orders = mongoTemplate.aggregate(Aggregation.newAggregation(Order.class,
+                            Aggregation.facet(Aggregation.group("status").count().as("count")).as("byStatus")
+                                    .and(Aggregation.match(Criteria.where("status").is(OrderStatus.DELIVERED.name())),
+                                            Aggregation.group().sum("total").as("revenue")).as("revenue")
+                                    .and(Aggregation.match(Criteria.where("status").is(OrderStatus.DELIVERED.name())
+                                                    .and("createdAt").gte(since)),
+                                            Aggregation.project("total").and(AggregationSupport.dayOf("createdAt")).as("day"),
+                                            Aggregation.group("day").sum("total").as("revenue")).as("revenueByDay")),
+                    collection, Document.class).getUniqueMappedResult();
+            if (orders == null) {
+                continue;
+            }
+            
+            for (Document bucket : orders.getList("byStatus", Document.class)) {
+                counters.merge(ORDERS_PREFIX + bucket.get("_id"), AggregationSupport.longValue(bucket, "count"), Long::sum);
+            }
+            for (Document bucket : orders.getList("revenue", Document.class)) {
+                revenueMinor += Money.of(AggregationSupport.amount(bucket, "revenue")).minor();
+            }
+            for (Document day : orders.getList("revenueByDay", Document.class)) {
+                revenueByDay.merge(day.getString("_id"), Money.of(AggregationSupport.amount(day, "revenue")).minor(), Long::sum);
+            }
+        }
+        counters.put(ORDERS_REVENUE, revenueMinor);
+        
+        return new Snapshot(counters, newUsersByDay, revenueByDay, productStates);
+    }
+    
+    private static Map<String, Object> toOverview(Map<String, Long> counters, long newUsersThisMonth, long revenueThisMonthMinor,
+                                                  String countersStatus) {
+        long totalOrders = 0;
+        for (OrderStatus status : OrderStatus.values()) {
+            totalOrders += counters.getOrDefault(ORDERS_PREFIX + status.name(), 0L);
+        }
+        
+        return Map.of(
+            "status", countersStatus,
+            "users", Map.of(
+                "total", counters.getOrDefault(USERS_TOTAL, 0L),
+                "active", counters.getOrDefault(USERS_ACTIVE, 0L),
+                "verified", counters.getOrDefault(USERS_VERIFIED, 0L),
+                "newThisMonth", newUsersThisMonth
+            ),
+            "products", Map.of(
+                "total", counters.getOrDefault(PRODUCTS_TOTAL, 0L),
+                "available", counters.getOrDefault(PRODUCTS_AVAILABLE, 0L),
+                "outOfStock", counters.getOrDefault(PRODUCTS_OUT_OF_STOCK, 0L),
+                "lowStock", counters.getOrDefault(PRODUCTS_LOW_STOCK, 0L)
+            ),
+            "orders", Map.of(
+                "total", totalOrders,
+                "pending", counters.getOrDefault(ORDERS_PREFIX + OrderStatus.PENDING.name(), 0L),
+                "delivered", counters.getOrDefault(ORDERS_PREFIX + OrderStatus.DELIVERED.name(), 0L),
+                "totalRevenue", Money.ofMinor(counters.getOrDefault(ORDERS_REVENUE, 0L)).toBigDecimal(),
+                "thisMonthRevenue", Money.ofMinor(revenueThisMonthMinor).toBigDecimal()
+            )
+        );
+    }
+    
+    /**
+     * Sum of the per-day values from one month ago on. Days are ISO strings, so they
+     * compare as dates.
+     */
+    private static long sumSince(Map<?, ?> days) {
+        String since = LocalDate.now().minusMonths(1).toString();
+        long sum = 0;
+        for (Map.Entry<?, ?> day : days.entrySet()) {
+            if (day.getKey().toString().compareTo(since) >= 0) {
+                sum += parseLong(day.getValue());
+            }
+        }
+        return sum;
+    }
+    
+    private void incrementDay(String key, LocalDate day, long delta) {
+        if (delta != 0 && !day.isBefore(LocalDate.now().minusDays(DAILY_WINDOW_DAYS))) {
+            increment(key, day.toString(), delta);
+        }
+    }
+    
+    private void increment(String field, long delta) {
+        increment(COUNTERS_KEY, field, delta);
+    }
+    
+    private void increment(String key, String field, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        try {
+            redisTemplate.opsForHash().increment(key, field, delta);
+        } catch (Exception e) {
+            // Stats must never fail the write they describe; reconciliation catches up
+            log.warn("Failed to update dashboard counter {}:{}: {}", key, field, e.getMessage());
+        }
+    }
+    
+    private static long parseLong(Object value) {
+        return value != null ? Long.parseLong(value.toString()) : 0L;
+    }
+    
+    private record Snapshot(Map<String, Long> counters,
+                            Map<String, Long> newUsersByDay,
+                            Map<String, Long> revenueByDay,
+                            Map<String, String> productStates) {
+    }
+}
@@ -0,0 +1,53 @@
+package com.ozdilek.ecommerce.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Cluster-wide mutual exclusion for scheduled jobs, backed by Redis SET NX with a TTL.
+ * The lock holds a random token and is only released by its owner, so a node whose lock
+ * expired mid-run can never drop the lock of the node that took over.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DistributedLockService {
+    
+    private static final String KEY_PREFIX = "lock:";
+    
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+    
+    private final RedisTemplate<String, String> redisTemplate;
+    
+    /**
+     * @return the owner token when the lock was acquired, empty when another node holds it
+     */
+    public Optional<String> tryAcquire(String name, Duration ttl) {
+        String token = UUID.randomUUID().toString();
+        Boolean acquired = redisTemplate.opsForValue().setIfAbsent(KEY_PREFIX + name, token, ttl);
+        return Boolean.TRUE.equals(acquired) ? Optional.of(token) : Optional.empty();
+    }
+    
+    public void release(String name, String token) {
+        try {
+            redisTemplate.execute(RELEASE, List.of(KEY_PREFIX + name), token);
+        } catch (Exception e) {
+            // The lock runs out on its own
+            log.warn("Failed to release lock {}: {}", name, e.getMessage());
+        }
+    }
+}
@@ -19,6 +19,7 @@ public class EmailVerificationService {
     
     private final EmailVerificationTokenRepository tokenRepository;
     private final UserRepository userRepository;
+    private final DashboardStatsService dashboardStatsService;
     
     private static final int TOKEN_EXPIRATION_HOURS = 24;
     
@@ -67,8 +68,12 @@ public class EmailVerificationService {
         User user = userRepository.findById(verificationToken.getUserId())
                 .orElseThrow(() -> new RuntimeException("User not found"));
         
+        boolean wasVerified = Boolean.TRUE.equals(user.getIsVerified());
         user.setIsVerified(true);
         userRepository.save(user);
+        if (!wasVerified) {
+            dashboardStatsService.recordUserVerified(user);
+        }
         
         log.info("Email verified successfully for user: {}", user.getEmail());
         return true;
@@ -0,0 +1,329 @@
+package com.ozdilek.ecommerce.service;
+
+import com.ozdilek.ecommerce.model.Product;
+import com.ozdilek.ecommerce.model.StockShard;
+import com.ozdilek.ecommerce.repository.ProductRepository;
+import com.ozdilek.ecommerce.repository.StockShardRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Opt-in "hot SKU" mode for flash sales.
+ * <p>
+ * A hot product's stock is split across N {@link StockShard} documents so concurrent
+ * checkouts decrement different documents instead of queueing on one. A reservation
+ * starts at a random shard and probes its neighbours; only when no single shard can
+ * cover the quantity does it gather from several shards. A scheduled rebalancer evens
+ * the shards out and writes the total back to Product.stock.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class HotSkuStockService {
+    
+    static final int MAX_SHARDS = 64;
+    
+    private static final String LOCK_NAME = "hot-sku-rebalance";
+    
+    private final MongoTemplate mongoTemplate;
+    private final ProductRepository productRepository;
+    private final StockShardRepository stockShardRepository;
+    private final DashboardStatsService dashboardStatsService;
+    private final DistributedLockService distributedLockService;
+    
+    @Value("${app.inventory.hot-sku.max-probes:3}")
+    private int maxProbes;
+    
+    @Value("${app.inventory.hot-sku.rebalance-lock-ttl:PT1M}")
+    private Duration lockTtl;
+    
+    public Map<String, Object> enableHotSku(String productId, int shards) {
+        if (shards < 2 || shards > MAX_SHARDS) {
+            throw new RuntimeException("Shard count must be between 2 and " + MAX_SHARDS);
+        }
+        
+        // Flip the flag and zero Product.stock in one step; checkouts already past the
+        // routing decision then fail their conditional decrement instead of overselling
+        Product before = mongoTemplate.findAndModify(
+                new Query(Criteria.where("id").is(productId).and("stockShards").exists(false)),
+                new Update().set("stockShards", shards).set("stock", 0).set("updatedAt", LocalDateTime.now()),
+                Product.class);
+        if (before == null) {
+            throw new RuntimeException(productRepository.existsById(productId)
+                    ? "Product is already in hot SKU mode: " + productId
+                    : "Product not found with id: " + productId);
+        }
+        
+        int stock = before.getStock() != null ? before.getStock() : 0;
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, StockShard.class);
+        for (int shard = 0; shard < shards; shard++) {
+            int share = stock / shards + (shard < stock % shards ? 1 : 0);
+            bulkOps.upsert(new Query(Criteria.where("id").is(StockShard.idFor(productId, shard))),
+                    new Update().inc("stock", share)
+                            .setOnInsert("productId", productId)
+                            .setOnInsert("shard", shard)
+                            .set("updatedAt", LocalDateTime.now()));
+        }
+        bulkOps.execute();
+        
+        refreshProductStock(productId);
+        log.info("Enabled hot SKU mode for product {} with {} shards ({} units)", productId, shards, stock);
+        return getHotSkuStatus(productId);
+    }
+    
+    public Map<String, Object> disableHotSku(String productId) {
+        Product before = mongoTemplate.findAndModify(
+                new Query(Criteria.where("id").is(productId).and("stockShards").exists(true)),
+                new Update().unset("stockShards").set("stock", 0).set("updatedAt", LocalDateTime.now()),
+                Product.class);
+        if (before == null) {
+            throw new RuntimeException("Product is not in hot SKU mode: " + productId);
+        }
+        
+        // findAndRemove hands back the exact remaining units of each shard, even if a
+        // reservation raced with the removal
+        int total = 0;
+        for (int shard = 0; shard < before.getStockShards(); shard++) {
+            StockShard removed = mongoTemplate.findAndRemove(
+                    new Query(Criteria.where("id").is(StockShard.idFor(productId, shard))), StockShard.class);
+            if (removed != null) {
+                total += removed.getStock();
+            }
+        }
+        
+        mongoTemplate.updateFirst(new Query(Criteria.where("id").is(productId)),
+                new Update().inc("stock", total), Product.class);
+        dashboardStatsService.recordProductTouched(productId);
+        log.info("Disabled hot SKU mode for product {}, collapsed {} units back into the product", productId, total);
+        return getHotSkuStatus(productId);
+    }
+    
+    public Map<String, Object> getHotSkuStatus(String productId) {
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new RuntimeException("Product not found with id: " + productId));
+        
+        Map<String, Object> status = new HashMap<>();
+        status.put("productId", productId);
+        status.put("hotSku", product.getStockShards() != null);
+        status.put("stock", product.getStock());
+        if (product.getStockShards() != null) {
+            List<StockShard> shards = stockShardRepository.findByProductIdOrderByShardAsc(productId);
+            status.put("shardCount", product.getStockShards());
+            status.put("shardStock", shards.stream().map(StockShard::getStock).toList());
+            status.put("liveStock", shards.stream().mapToInt(StockShard::getStock).sum());
+        }
+        return status;
+    }
+    
+    /**
+     * Overwrites the stock of a hot product, spreading it evenly over its shards.
+     */
+    public void setStock(String productId, int shards, int stock) {
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, StockShard.class);
+        for (int shard = 0; shard < shards; shard++) {
+            int share = stock / shards + (shard < stock % shards ? 1 : 0);
+            bulkOps.upsert(new Query(Criteria.where("id").is(StockShard.idFor(productId, shard))),
+                    new Update().set("stock", share)
+                            .setOnInsert("productId", productId)
+                            .setOnInsert("shard", shard)
+                            .set("updatedAt", LocalDateTime.now()));
+        }
+        bulkOps.execute();
+        refreshProductStock(productId);
+    }
+    
+    public boolean reserve(String productId, int quantity, int shards) {
+        return reserve(mongoTemplate, productId, quantity, shards);
+    }
+    
+    /**
+     * Reserves through the given operations, e.g. a session-bound template inside a transaction.
+     */
+    public boolean reserve(MongoOperations ops, String productId, int quantity, int shards) {
+        int start = ThreadLocalRandom.current().nextInt(shards);
+        
+        // Fast path: one shard covers the whole line
+        for (int probe = 0; probe < Math.min(maxProbes, shards); probe++) {
+            if (decrement(ops, productId, (start + probe) % shards, quantity)) {
+                return true;
+            }
+        }
+        
+        // Slow path: the neighbours are thin, gather the quantity from the fullest shards
+        Query query = new Query(Criteria.where("productId").is(productId).and("stock").gt(0))
+                .with(Sort.by(Sort.Direction.DESC, "stock"));
+        List<StockShard> candidates = ops.find(query, StockShard.class);
+        if (candidates.stream().mapToInt(StockShard::getStock).sum() < quantity) {
+            return false;
+        }
+        
+        int remaining = quantity;
+        Map<Integer, Integer> taken = new LinkedHashMap<>();
+        for (StockShard candidate : candidates) {
+            if (remaining == 0) {
+                break;
+            }
+            int take = Math.min(candidate.getStock(), remaining);
+            if (decrement(ops, productId, candidate.getShard(), take)) {
+                taken.merge(candidate.getShard(), take, Integer::sum);
+                remaining -= take;
+            }
+        }
+        
+        if (remaining > 0) {
+            taken.forEach((shard, qty) -> increment(ops, productId, shard, qty));
+            return false;
+        }
+        return true;
+    }
+    
+    public void release(String productId, int quantity, int shards) {
+        increment(mongoTemplate, productId, ThreadLocalRandom.current().nextInt(shards), quantity);
+    }
+    
+    /**
+     * Feeds each hot product's total back into Product.stock and moves units from full
+     * shards to ones that are running dry, so the fast path keeps hitting. A Redis lock
+     * keeps it to one node at a time.
+     */
+    @Scheduled(fixedDelayString = "${app.inventory.hot-sku.rebalance-interval:PT10S}")
+    public void rebalanceHotSkus() {
+        Optional<String> lock = distributedLockService.tryAcquire(LOCK_NAME, lockTtl);
+        if (lock.isEmpty()) {
+            log.debug("Hot SKU rebalance is running on another node");
+            return;
+        }
+        
+        try {
+            Query hotProducts = new Query(Criteria.where("stockShards").exists(true));
+            hotProducts.fields().include("id").include("stockShards");
+            
+            for (Product product : mongoTemplate.find(hotProducts, Product.class)) {
+                try {
+                    rebalance(product.getId(), product.getStockShards());
+                } catch (Exception e) {
+                    log.warn("Failed to rebalance hot SKU {}: {}", product.getId(), e.getMessage());
+                }
+            }
+        } finally {
+            distributedLockService.release(LOCK_NAME, lock.get());
+        }
+    }
+    
+    private void rebalance(String productId, int shards) {
+        int[] stock = new int[shards];
+        for (StockShard shard : stockShardRepository.findByProductIdOrderByShardAsc(productId)) {
+            if (shard.getShard() < shards) {
+                stock[shard.getShard()] = shard.getStock();
+            }
+        }
+        
+        int total = refreshProductStock(productId);
+        int target = total / shards;
+        
+        // Move from the fullest to the emptiest shard; decrement first so a crash between
+        // the two writes can only under-sell, never over-sell
+        for (int move = 0; move < shards; move++) {
+            int fullest = 0;
+            int emptiest = 0;
+            for (int shard = 1; shard < shards; shard++) {
+                if (stock[shard] > stock[fullest]) fullest = shard;
+                if (stock[shard] < stock[emptiest]) emptiest = shard;
+            }
+            
+            int amount = Math.min(stock[fullest] - target, target - stock[emptiest]);
+            if (amount <= 0 || stock[emptiest] >= target / 2) {
+                break;
+            }
+            if (!decrement(mongoTemplate, productId, fullest, amount)) {
+                break;
+            }
+            increment(mongoTemplate, productId, emptiest, amount);
+            stock[fullest] -= amount;
+            stock[emptiest] += amount;
+        }
+    }
+    
+    /**
+     * Mirrors the shard total into Product.stock. In hot SKU mode nothing else writes that
+     * field (regular-path writes are guarded by the flag), and the write is a compare-and-set
+     * on the value read before the shards, so a total computed from an older read never
+     * lands over a newer one or over an enable/disable that happened in between.
+     */
+    private int refreshProductStock(String productId) {
+        int total = 0;
+        for (int attempt = 0; attempt < 3; attempt++) {
+            Query hotProduct = new Query(Criteria.where("id").is(productId).and("stockShards").exists(true));
+            hotProduct.fields().include("id").include("stock");
+            Product product = mongoTemplate.findOne(hotProduct, Product.class);
+            if (product == null) {
+                return total;
+            }
+            
+            total = stockShardRepository.findByProductIdOrderByShardAsc(productId).stream()
+                    .mapToInt(StockShard::getStock)
+                    .sum();
+            Query unchanged = new Query(Criteria.where("id").is(productId)
+                    .and("stockShards").exists(true)
+                    .and("stock").is(product.getStock()));
+            if (mongoTemplate.updateFirst(unchanged, new Update().set("stock", total), Product.class).getMatchedCount() == 1) {
+                dashboardStatsService.recordProductTouched(productId);
+                return total;
+            }
+        }
+        
+        // Another refresh keeps winning; it wrote a total at least as fresh as ours
+        log.debug("Gave up mirroring stock of hot SKU {} after concurrent updates", productId);
+        return total;
+    }
+    
+    private boolean decrement(MongoOperations ops, String productId, int shard, int quantity) {
+        Query query = new Query(Criteria.where("id").is(StockShard.idFor(productId, shard))
+                .and("stock").gte(quantity));
+        return ops.updateFirst(query, new Update().inc("stock", -quantity), StockShard.class)
+                .getModifiedCount() == 1;
+    }
+    
+    /**
+     * Adds units to an existing shard. A shard removed by {@link #disableHotSku} meanwhile
+     * is not recreated: the units go to the product, which is out of hot SKU mode by then,
+     * instead of an orphan shard nothing reads. A product re-enabled since with fewer
+     * shards takes them on shard 0.
+     */
+    private void increment(MongoOperations ops, String productId, int shard, int quantity) {
+        Update update = new Update().inc("stock", quantity);
+        if (ops.updateFirst(new Query(Criteria.where("id").is(StockShard.idFor(productId, shard))), update, StockShard.class)
+                .getMatchedCount() == 1) {
+            return;
+        }
+        
+        Query regular = new Query(Criteria.where("id").is(productId).and("stockShards").exists(false));
+        if (ops.updateFirst(regular, update, Product.class).getMatchedCount() == 1) {
+            dashboardStatsService.recordProductTouched(productId);
+            return;
+        }
+        if (ops.updateFirst(new Query(Criteria.where("id").is(StockShard.idFor(productId, 0))), update, StockShard.class)
+                .getMatchedCount() == 0) {
+            log.warn("Could not return {} units of product {}: shard {} and the product are gone", quantity, productId, shard);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.ozdilek.ecommerce.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ozdilek.ecommerce.exception.IdempotencyConflictException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Supplier;
+
+/**
+ * Generic Idempotency-Key support for mutating endpoints.
+ * <p>
+ * The first request with a key claims it in Redis (SET NX) and runs; its response is
+ * stored under the key for the configured TTL and replayed to any duplicate. Duplicates
+ * that arrive while the first request is still running wait for it instead of executing
+ * again. Reusing a key with a different request body is rejected with 409.
+ * <p>
+ * The claim carries a random owner token and is renewed while the action runs, so a slow
+ * request never loses its key to a retry. Releasing and completing only touch the key while
+ * it still holds that exact claim, like {@link DistributedLockService}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyService {
+    
+    private static final String KEY_PREFIX = "idempotency:";
+    private static final long MAX_POLL_INTERVAL_MS = 200;
+    private static final int COMPLETE_ATTEMPTS = 3;
+    
+    // ARGV: claim, new ttl ms
+    private static final RedisScript<Long> RENEW = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            end
+            return 0
+            """, Long.class);
+    
+    // ARGV: claim
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+    
+    // ARGV: claim, completed record, ttl ms
+    private static final RedisScript<Long> COMPLETE = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3])
+                return 1
+            end
+            return 0
+            """, Long.class);
+    
+    private final RedisTemplate<String, String> redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final TaskScheduler taskScheduler;
+    
+    @Value("${app.idempotency.ttl:PT24H}")
+    private Duration ttl;
+    
+    @Value("${app.idempotency.in-flight-ttl:PT2M}")
+    private Duration inFlightTtl;
+    
+    @Value("${app.idempotency.wait-timeout:PT10S}")
+    private Duration waitTimeout;
+    
+    /**
+     * Runs the action at most once per (scope, key). Without a key the action simply runs.
+     *
+     * @param scope caller-specific namespace, e.g. "checkout:" + userId, so keys never collide across users
+     */
+    public <T> T execute(String scope, String idempotencyKey, Object request, Class<T> responseType, Supplier<T> action) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return action.get();
+        }
+        
+        String key = KEY_PREFIX + scope + ":" + idempotencyKey;
+        String fingerprint = fingerprint(request);
+        long deadline = System.currentTimeMillis() + waitTimeout.toMillis();
+        long pollInterval = 20;
+        
+        while (true) {
+            String claim = write(new IdempotencyRecord(Status.IN_FLIGHT, fingerprint, null, UUID.randomUUID().toString()));
+            Boolean claimed = redisTemplate.opsForValue().setIfAbsent(key, claim, inFlightTtl);
+            if (Boolean.TRUE.equals(claimed)) {
+                return runAndStore(key, claim, fingerprint, action);
+            }
+            
+            String stored = redisTemplate.opsForValue().get(key);
+            if (stored != null) {
+                IdempotencyRecord record = read(stored);
+                if (!fingerprint.equals(record.getFingerprint())) {
+                    throw new IdempotencyConflictException("Idempotency-Key was already used for a different request");
+                }
+                if (record.getStatus() == Status.COMPLETED) {
+                    log.info("Replaying stored response for idempotency key {}", key);
+                    return read(record.getResponse(), responseType);
+                }
+            }
+            // stored == null: the first attempt failed and released the key, so claim it again
+            
+            if (System.currentTimeMillis() >= deadline) {
+                throw new IdempotencyConflictException("A request with this Idempotency-Key is still being processed");
+            }
+            sleep(pollInterval);
+            pollInterval = Math.min(pollInterval * 2, MAX_POLL_INTERVAL_MS);
+        }
+    }
+    
+    private <T> T runAndStore(String key, String claim, String fingerprint, Supplier<T> action) {
+        Duration renewEvery = inFlightTtl.dividedBy(3);
+        ScheduledFuture<?> renewal = taskScheduler.scheduleAtFixedRate(() -> renew(key, claim),
+                Instant.now().plus(renewEvery), renewEvery);
+        
+        T response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            renewal.cancel(false);
+            // Failed attempts are not remembered, so the client may retry with the same key
+            release(key, claim);
+            throw e;
+        }
+        
+        renewal.cancel(false);
+        complete(key, claim, write(new IdempotencyRecord(Status.COMPLETED, fingerprint, write(response), null)));
+        return response;
+    }
+    
+    private void renew(String key, String claim) {
+        try {
+            redisTemplate.execute(RENEW, List.of(key), claim, String.valueOf(inFlightTtl.toMillis()));
+        } catch (Exception e) {
+            log.warn("Failed to renew idempotency key {}: {}", key, e.getMessage());
+        }
+    }
+    
+    private void release(String key, String claim) {
+        try {
+            redisTemplate.execute(RELEASE, List.of(key), claim);
+        } catch (Exception e) {
+            // The claim runs out on its own after the in-flight TTL
+            log.warn("Failed to release idempotency key {}: {}", key, e.getMessage());
+        }
+    }
+    
+    /**
+     * Stores the response over our claim. If that keeps failing, the claim is stretched to
+     * the full TTL instead: duplicates then get a 409 rather than running the action again.
+     */
+    private void complete(String key, String claim, String completed) {
+        for (int attempt = 1; attempt <= COMPLETE_ATTEMPTS; attempt++) {
+            try {
+                Long stored = redisTemplate.execute(COMPLETE, List.of(key), claim, completed, String.valueOf(ttl.toMillis()));
+                if (!Long.valueOf(1).equals(stored)) {
+                    log.warn("Idempotency key {} was no longer held when its response was stored", key);
+                }
+                return;
+            } catch (Exception e) {
+                log.warn("Failed to store response for idempotency key {} (attempt {}): {}", key, attempt, e.getMessage());
+            }
+        }
+        
+        try {
+            redisTemplate.execute(RENEW, List.of(key), claim, String.valueOf(ttl.toMillis()));
+        } catch (Exception e) {
+            log.error("Idempotency key {} could neither be completed nor kept; a retry may run again", key);
+        }
+    }
+    
+    private String fingerprint(Object request) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(write(request).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    private String write(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize idempotency record", e);
+        }
+    }
+    
+    private IdempotencyRecord read(String value) {
+        return read(value, IdempotencyRecord.class);
+    }
+    
+    private <T> T read(String value, Class<T> type) {
+        try {
+            return objectMapper.readValue(value, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to read idempotency record", e);
+        }
+    }
+    
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException("Interrupted while waiting for the original request");
+        }
+    }
+    
+    enum Status {
+        IN_FLIGHT, COMPLETED
+    }
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class IdempotencyRecord {
+        private Status status;
+        private String fingerprint;
+        private String response;
+        private String owner; // makes every in-flight claim unique
+    }
+}
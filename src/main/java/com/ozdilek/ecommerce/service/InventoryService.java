@@ -2,8 +2,13 @@ package com.ozdilek.ecommerce.service;
 
 import com.ozdilek.ecommerce.model.Product;
 import com.ozdilek.ecommerce.repository.ProductRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
@@ -12,66 +17,386 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class InventoryService {
     
+    // Tokens of the bulk stock writes in flight on a product, to tell which lines applied
+    private static final String RESERVATION_TOKENS = "stockReservations";
+    
     private final ProductRepository productRepository;
     private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+    private final HotSkuStockService hotSkuStockService;
+    private final DashboardStatsService dashboardStatsService;
+    
+    /**
+     * Reserves stock for multiple products, all or nothing.
+     * <p>
+     * Every line is a conditional decrement ({@code stock >= qty, available}) without upsert,
+     * so a product deleted meanwhile is never recreated. All lines go out in one unordered
+     * bulkWrite; when fewer lines match than were sent, or the bulk throws, the applied lines
+     * are found by the reservation token they carry and compensated with a second bulk, so
+     * a failed reservation never leaks stock. Products in hot SKU mode are reserved against
+     * their stock shards instead.
+     */
+    @Transactional
+    public ReservationResult reserveStock(Map<String, Integer> productQuantities) {
+        if (productQuantities.isEmpty()) {
+            return ReservationResult.reserved();
+        }
+        return reserveStock(productQuantities, loadStockModes(productQuantities.keySet()));
+    }
     
     /**
-     * Atomically reserves stock for multiple products
-     * This prevents race conditions when multiple orders are placed simultaneously
+     * Same as {@link #reserveStock(Map)} for callers that already loaded the products,
+     * which saves the lookup round-trip. Only id, available and stockShards are read.
      */
     @Transactional
-    public Map<String, Boolean> reserveStock(Map<String, Integer> productQuantities) {
+    public ReservationResult reserveStock(Map<String, Integer> productQuantities, Map<String, Product> products) {
         log.info("Reserving stock for products: {}", productQuantities);
         
-        Map<String, Boolean> reservationResults = new HashMap<>();
+        if (productQuantities.isEmpty()) {
+            return ReservationResult.reserved();
+        }
+        
+        long startedAt = System.nanoTime();
+        ReservationResult result = ReservationResult.reserved();
+        
+        try {
+            // Unknown ids cannot be split into regular and hot lines, so they fail up front
+            String missingProductId = productQuantities.keySet().stream()
+                    .filter(id -> !products.containsKey(id))
+                    .findFirst()
+                    .orElse(null);
+            if (missingProductId != null) {
+                log.warn("Cannot reserve stock for unknown product: {}", missingProductId);
+                result = ReservationResult.failed(missingProductId);
+                return result;
+            }
+            
+            LinkedHashMap<String, Integer> regular = new LinkedHashMap<>();
+            LinkedHashMap<String, Integer> hot = new LinkedHashMap<>();
+            productQuantities.forEach((productId, quantity) ->
+                    (isHotSku(products.get(productId)) ? hot : regular).put(productId, quantity));
+            
+            result = regular.isEmpty() ? ReservationResult.reserved() : reserveRegularStock(regular);
+            if (result.isSuccess()) {
+                dashboardStatsService.recordProductsTouched(regular.keySet());
+            }
+            if (result.isSuccess() && !hot.isEmpty()) {
+                try {
+                    result = reserveHotSkus(hot, products);
+                } catch (RuntimeException e) {
+                    releaseRegularStock(regular);
+                    throw e;
+                }
+                if (!result.isSuccess()) {
+                    releaseRegularStock(regular);
+                }
+            }
+            return result;
+        } finally {
+            recordReservationLatency(productQuantities.size(), result.isSuccess(), "bulk", System.nanoTime() - startedAt);
+        }
+    }
+    
+    /**
+     * Reserves stock through a session-bound template inside a Mongo transaction. No
+     * compensation is needed: on failure the caller aborts and every decrement rolls back.
+     * Lines are one unordered bulk of conditional decrements; a matched count short of the
+     * line count means some product lacked stock.
+     */
+    public ReservationResult reserveStockInTransaction(MongoOperations ops, Map<String, Integer> productQuantities,
+                                                       Map<String, Product> products) {
+        long startedAt = System.nanoTime();
+        ReservationResult result = ReservationResult.reserved();
         
-        for (Map.Entry<String, Integer> entry : productQuantities.entrySet()) {
-            String productId = entry.getKey();
-            Integer requestedQuantity = entry.getValue();
+        try {
+            Map<String, Integer> regular = new LinkedHashMap<>();
+            for (Map.Entry<String, Integer> line : productQuantities.entrySet()) {
+                Product product = products.get(line.getKey());
+                if (product == null) {
+                    result = ReservationResult.failed(line.getKey());
+                    return result;
+                }
+                if (isHotSku(product)) {
+                    if (!Boolean.TRUE.equals(product.getAvailable())
+                            || !hotSkuStockService.reserve(ops, line.getKey(), line.getValue(), product.getStockShards())) {
+                        result = ReservationResult.failed(line.getKey());
+                        return result;
+                    }
+                } else {
+                    regular.put(line.getKey(), line.getValue());
+                }
+            }
             
-            try {
-                boolean reserved = reserveProductStock(productId, requestedQuantity);
-                reservationResults.put(productId, reserved);
+            if (!regular.isEmpty()) {
+                BulkOperations bulkOps = ops.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+                regular.forEach((productId, quantity) -> bulkOps.updateOne(
+                        new Query(Criteria.where("id").is(productId)
+                                .and("stock").gte(quantity)
+                                .and("available").is(true)
+                                .and("stockShards").exists(false)),
+                        new Update().inc("stock", -quantity)));
                 
-                if (!reserved) {
-                    log.warn("Failed to reserve stock for product: {} (requested: {})", productId, requestedQuantity);
+                if (bulkOps.execute().getMatchedCount() != regular.size()) {
+                    result = ReservationResult.failed(findShortProductId(ops, regular));
+                } else {
+                    // Flushed after the commit is likely done; an aborted one just recounts the same stock
+                    dashboardStatsService.recordProductsTouched(regular.keySet());
                 }
-            } catch (Exception e) {
-                log.error("Error reserving stock for product: {}", productId, e);
-                reservationResults.put(productId, false);
             }
+            return result;
+        } finally {
+            recordReservationLatency(productQuantities.size(), result.isSuccess(), "transaction", System.nanoTime() - startedAt);
         }
+    }
+    
+    private String findShortProductId(MongoOperations ops, Map<String, Integer> lines) {
+        // Unmatched lines were not applied, so the snapshot still shows the original stock
+        Query query = new Query(Criteria.where("id").in(lines.keySet()));
+        query.fields().include("id").include("stock").include("available");
         
-        return reservationResults;
+        return ops.find(query, Product.class).stream()
+                .filter(product -> !Boolean.TRUE.equals(product.getAvailable())
+                        || product.getStock() < lines.get(product.getId()))
+                .map(Product::getId)
+                .findFirst()
+                .orElse(lines.keySet().iterator().next());
+    }
+    
+    private ReservationResult reserveHotSkus(Map<String, Integer> lines, Map<String, Product> products) {
+        Map<String, Integer> reserved = new LinkedHashMap<>();
+        String failedProductId = null;
+        try {
+            for (Map.Entry<String, Integer> line : lines.entrySet()) {
+                Product product = products.get(line.getKey());
+                if (!Boolean.TRUE.equals(product.getAvailable())
+                        || !hotSkuStockService.reserve(line.getKey(), line.getValue(), product.getStockShards())) {
+                    failedProductId = line.getKey();
+                    break;
+                }
+                reserved.put(line.getKey(), line.getValue());
+            }
+        } catch (RuntimeException e) {
+            releaseHotSkus(reserved, products);
+            throw e;
+        }
+        
+        if (failedProductId != null) {
+            log.warn("Insufficient stock for hot SKU: {} (requested: {})", failedProductId, lines.get(failedProductId));
+            releaseHotSkus(reserved, products);
+            return ReservationResult.failed(failedProductId);
+        }
+        return ReservationResult.reserved();
+    }
+    
+    private void releaseHotSkus(Map<String, Integer> reserved, Map<String, Product> products) {
+        reserved.forEach((productId, quantity) ->
+                hotSkuStockService.release(productId, quantity, products.get(productId).getStockShards()));
     }
     
     /**
-     * Atomically reserves stock for a single product using MongoDB's findAndModify
-     * This ensures atomicity and prevents race conditions
+     * Decrements all lines in one unordered bulkWrite. A short matched count (missing,
+     * unavailable or short product) or an exception ends the reservation and the lines
+     * still carrying the token are returned; the first line without it is reported.
      */
-    private boolean reserveProductStock(String productId, Integer requestedQuantity) {
-        Query query = new Query(Criteria.where("id").is(productId)
-                .and("stock").gte(requestedQuantity)
-                .and("available").is(true));
+    private ReservationResult reserveRegularStock(LinkedHashMap<String, Integer> productQuantities) {
+        String token = UUID.randomUUID().toString();
+        Set<String> applied;
+        try {
+            applied = incrementStock(productQuantities, -1, token);
+        } catch (RuntimeException e) {
+            // Whatever was applied carries the token, so every line can be offered back
+            log.error("Stock reservation of {} lines failed: {}", productQuantities.size(), e.getMessage());
+            returnReserved(productQuantities, token);
+            throw e;
+        }
         
-        Update update = new Update().inc("stock", -requestedQuantity);
+        if (applied.size() != productQuantities.size()) {
+            String failedProductId = productQuantities.keySet().stream()
+                    .filter(productId -> !applied.contains(productId))
+                    .findFirst()
+                    .orElseThrow();
+            log.warn("Insufficient stock for product: {} (requested: {})", failedProductId, productQuantities.get(failedProductId));
+            Map<String, Integer> reserved = new LinkedHashMap<>(productQuantities);
+            reserved.keySet().retainAll(applied);
+            returnReserved(reserved, token);
+            return ReservationResult.failed(failedProductId);
+        }
         
-        Product updatedProduct = mongoTemplate.findAndModify(query, update, Product.class);
+        clearToken(applied, token);
+        log.info("Successfully reserved stock for {} products", productQuantities.size());
+        return ReservationResult.reserved();
+    }
+    
+    /**
+     * One unordered bulkWrite of guarded stock increments ({@code sign} -1 reserves, 1
+     * returns), each also pushing {@code token} onto the product. Bulk updates report only
+     * a matched total, so when it falls short the applied lines are the products carrying
+     * the token. Lines on products in hot SKU mode never match: reserving them would take
+     * the mirrored total and returning them would be overwritten by the rebalancer.
+     *
+     * @return ids of the lines that were applied
+     */
+    private Set<String> incrementStock(Map<String, Integer> lines, int sign, String token) {
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        lines.forEach((productId, quantity) -> {
+            Criteria criteria = Criteria.where("id").is(productId).and("stockShards").exists(false);
+            if (sign < 0) {
+                criteria = criteria.and("stock").gte(quantity).and("available").is(true);
+            }
+            bulkOps.updateOne(new Query(criteria), new Update().inc("stock", sign * quantity).push(RESERVATION_TOKENS, token));
+        });
         
-        if (updatedProduct != null) {
-            log.info("Successfully reserved {} units of product: {}", requestedQuantity, productId);
-            return true;
-        } else {
-            log.warn("Insufficient stock for product: {} (requested: {})", productId, requestedQuantity);
+        if (bulkOps.execute().getMatchedCount() == lines.size()) {
+            return lines.keySet();
+        }
+        return idsWithToken(lines.keySet(), token);
+    }
+    
+    /**
+     * Gives back the reserved lines that still carry {@code token}, in one bulkWrite that
+     * also removes it. Lines whose product switched to hot SKU mode since go to its shards.
+     */
+    private void returnReserved(Map<String, Integer> lines, String token) {
+        try {
+            BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+            lines.forEach((productId, quantity) -> bulkOps.updateOne(
+                    new Query(Criteria.where("id").is(productId).and(RESERVATION_TOKENS).is(token)
+                            .and("stockShards").exists(false)),
+                    new Update().inc("stock", quantity).pull(RESERVATION_TOKENS, token)));
+            long returned = bulkOps.execute().getMatchedCount();
+            
+            if (returned != lines.size()) {
+                Set<String> remaining = idsWithToken(lines.keySet(), token);
+                Map<String, Product> products = loadStockModes(remaining);
+                remaining.forEach(productId -> {
+                    Product product = products.get(productId);
+                    if (product != null && isHotSku(product)) {
+                        hotSkuStockService.release(productId, lines.get(productId), product.getStockShards());
+                    }
+                });
+                clearToken(remaining, token);
+            }
+            dashboardStatsService.recordProductsTouched(lines.keySet());
+        } catch (RuntimeException e) {
+            // Must not hide the failure that caused the return; the token marks what leaked
+            log.error("Failed to return reserved stock for {} products (token {}): {}", lines.size(), token, e.getMessage());
+        }
+    }
+    
+    private Set<String> idsWithToken(Set<String> productIds, String token) {
+        Query query = new Query(Criteria.where("id").in(productIds).and(RESERVATION_TOKENS).is(token));
+        query.fields().include("id");
+        
+        Set<String> ids = new HashSet<>();
+        mongoTemplate.find(query, Product.class).forEach(product -> ids.add(product.getId()));
+        return ids;
+    }
+    
+    private void clearToken(Set<String> productIds, String token) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        try {
+            mongoTemplate.updateMulti(new Query(Criteria.where("id").in(productIds)),
+                    new Update().pull(RESERVATION_TOKENS, token), Product.class);
+        } catch (RuntimeException e) {
+            // A leftover token only takes a few bytes; it never matches another reservation
+            log.warn("Failed to clear reservation token {}: {}", token, e.getMessage());
+        }
+    }
+    
+    private Map<String, Product> loadStockModes(Set<String> productIds) {
+        Query query = new Query(Criteria.where("id").in(productIds));
+        query.fields().include("id").include("available").include("stockShards");
+        
+        Map<String, Product> products = new HashMap<>();
+        mongoTemplate.find(query, Product.class).forEach(product -> products.put(product.getId(), product));
+        return products;
+    }
+    
+    private boolean isHotSku(Product product) {
+        return product.getStockShards() != null && product.getStockShards() > 0;
+    }
+    
+    /**
+     * Returns stock for several products in one unordered bulkWrite, plus a write clearing
+     * its token; hot SKU lines go to their shards. Used for reservation compensation and
+     * when orders are cancelled.
+     */
+    @Transactional
+    public void releaseStock(Map<String, Integer> productQuantities) {
+        if (productQuantities.isEmpty()) {
+            return;
+        }
+        
+        log.info("Releasing stock for products: {}", productQuantities);
+        
+        Map<String, Product> products = loadStockModes(productQuantities.keySet());
+        Map<String, Integer> regular = new LinkedHashMap<>();
+        productQuantities.forEach((productId, quantity) -> {
+            Product product = products.get(productId);
+            if (product != null && isHotSku(product)) {
+                hotSkuStockService.release(productId, quantity, product.getStockShards());
+            } else {
+                regular.put(productId, quantity);
+            }
+        });
+        releaseRegularStock(regular);
+    }
+    
+    /**
+     * Returns units to products outside hot SKU mode in one bulkWrite. Each increment is
+     * guarded by the mode, so a product switched to hot SKU mode since it was routed gets
+     * its units on a shard instead of on Product.stock, where the rebalancer's mirror would
+     * overwrite them. Only when some lines do not match are the products read, once.
+     */
+    private void releaseRegularStock(Map<String, Integer> productQuantities) {
+        if (productQuantities.isEmpty()) {
+            return;
+        }
+        
+        String token = UUID.randomUUID().toString();
+        Set<String> applied = incrementStock(productQuantities, 1, token);
+        int released = applied.size();
+        if (released != productQuantities.size()) {
+            Set<String> unmatched = new HashSet<>(productQuantities.keySet());
+            unmatched.removeAll(applied);
+            Map<String, Product> products = loadStockModes(unmatched);
+            for (String productId : unmatched) {
+                Product product = products.get(productId);
+                if (product != null && isHotSku(product)) {
+                    hotSkuStockService.release(productId, productQuantities.get(productId), product.getStockShards());
+                    released++;
+                }
+            }
+        }
+        clearToken(applied, token);
+        
+        dashboardStatsService.recordProductsTouched(productQuantities.keySet());
+        if (released != productQuantities.size()) {
+            log.warn("Released stock for {} of {} products, the rest no longer exist", released, productQuantities.size());
+        }
+    }
+    
+    private boolean releaseToShards(String productId, int quantity) {
+        Product product = loadStockModes(Set.of(productId)).get(productId);
+        if (product == null || !isHotSku(product)) {
             return false;
         }
+        hotSkuStockService.release(productId, quantity, product.getStockShards());
+        return true;
     }
     
     /**
@@ -81,12 +406,19 @@ public class InventoryService {
     public boolean releaseStock(String productId, Integer quantity) {
         log.info("Releasing stock for product: {} (quantity: {})", productId, quantity);
         
-        Query query = new Query(Criteria.where("id").is(productId));
+        Product hotProduct = loadStockModes(Set.of(productId)).get(productId);
+        if (hotProduct != null && isHotSku(hotProduct)) {
+            hotSkuStockService.release(productId, quantity, hotProduct.getStockShards());
+            return true;
+        }
+        
+        Query query = new Query(Criteria.where("id").is(productId).and("stockShards").exists(false));
         Update update = new Update().inc("stock", quantity);
         
         Product updatedProduct = mongoTemplate.findAndModify(query, update, Product.class);
         
-        if (updatedProduct != null) {
+        if (updatedProduct != null || releaseToShards(productId, quantity)) {
+            dashboardStatsService.recordProductTouched(productId);
             log.info("Successfully released {} units of product: {}", quantity, productId);
             return true;
         } else {
@@ -112,4 +444,38 @@ public class InventoryService {
                 .map(Product::getStock)
                 .orElse(0);
     }
+    
+    private void recordReservationLatency(int cartSize, boolean success, String mode, long nanos) {
+        Timer.builder("inventory.stock.reservation")
+                .description("Latency of bulk stock reservation by cart size")
+                .tag("cartSize", cartSizeBucket(cartSize))
+                .tag("outcome", success ? "reserved" : "rejected")
+                .tag("mode", mode)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+    
+    private String cartSizeBucket(int cartSize) {
+        if (cartSize <= 1) return "1";
+        if (cartSize <= 5) return "2-5";
+        if (cartSize <= 10) return "6-10";
+        if (cartSize <= 20) return "11-20";
+        return "21+";
+    }
+    
+    @Getter
+    @RequiredArgsConstructor
+    public static class ReservationResult {
+        private final boolean success;
+        private final String failedProductId;
+        
+        static ReservationResult reserved() {
+            return new ReservationResult(true, null);
+        }
+        
+        static ReservationResult failed(String productId) {
+            return new ReservationResult(false, productId);
+        }
+    }
 }
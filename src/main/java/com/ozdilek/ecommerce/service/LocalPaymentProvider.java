@@ -0,0 +1,46 @@
+package com.ozdilek.ecommerce.service;
+
+import com.ozdilek.ecommerce.model.Order;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Local stand-in for a real payment gateway. Simulates network latency and an optional
+ * decline rate so the pipeline can be exercised end to end without external services.
+ */
+@Service
+@Slf4j
+public class LocalPaymentProvider implements PaymentProvider {
+    
+    @Value("${app.payment.local.latency-ms:50}")
+    private long latencyMs;
+    
+    @Value("${app.payment.local.decline-rate:0.0}")
+    private double declineRate;
+    
+    @Override
+    public PaymentResult authorize(Order order) {
+        try {
+            Thread.sleep(latencyMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while authorizing payment", e);
+        }
+        
+        if (ThreadLocalRandom.current().nextDouble() < declineRate) {
+            log.info("Local payment provider declined order {}", order.getId());
+            return new PaymentResult(false, null, "Payment declined by issuer");
+        }
+        
+        return new PaymentResult(true, "local_" + UUID.randomUUID(), "Payment authorized");
+    }
+    
+    @Override
+    public void voidAuthorization(Order order) {
+        log.info("Local payment provider voided the authorization of order {}", order.getId());
+    }
+}
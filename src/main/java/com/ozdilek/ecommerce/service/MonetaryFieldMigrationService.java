@@ -0,0 +1,357 @@
+package com.ozdilek.ecommerce.service;
+
+import com.mongodb.ExplainVerbosity;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.Decimal128;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Rewrites monetary fields stored as strings (Spring Data's old BigDecimal mapping) or doubles
+ * into Decimal128, collection by collection, in _id order.
+ * <p>
+ * Online and resumable: each batch is a bulk of conditional updates that only match while
+ * the converted fields still hold the values that were read, so a document the application
+ * rewrote in the meantime (already as Decimal128, see MongoConfig) is left alone. The last
+ * _id of every batch is checkpointed in the migrations collection; a run continues where the
+ * previous one stopped and a finished collection is skipped. A Redis lock keeps it to one
+ * node at a time. The run that finishes the last collection publishes a
+ * {@link MonetaryMigrationCompletedEvent}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MonetaryFieldMigrationService {
+    
+    private static final String LOCK_NAME = "decimal128-migration";
+    private static final String CHECKPOINTS = "migrations";
+    private static final String CHECKPOINT_PREFIX = "decimal128:";
+    private static final String ORDERS_ARCHIVE = "orders_archive";
+    
+    // Dotted paths walk into sub-documents and through arrays
+    private static final Map<String, List<String>> MONETARY_FIELDS = monetaryFields();
+    
+    private final MongoTemplate mongoTemplate;
+    private final DistributedLockService distributedLockService;
+    private final ApplicationEventPublisher eventPublisher;
+    
+    @Value("${app.migrations.decimal128.batch-size:500}")
+    private int batchSize;
+    
+    @Value("${app.migrations.decimal128.lock-ttl:PT30M}")
+    private Duration lockTtl;
+    
+    /**
+     * Migrates up to {@code maxBatches} batches across all collections and returns the
+     * progress of each. Call again until every collection reports done.
+     */
+    public Map<String, Object> run(int maxBatches) {
+        Optional<String> token = distributedLockService.tryAcquire(LOCK_NAME, lockTtl);
+        if (token.isEmpty()) {
+            throw new RuntimeException("Decimal128 migration is already running on another node");
+        }
+        
+        try {
+            Map<String, Object> result = new LinkedHashMap<>();
+            int batchesLeft = maxBatches;
+            boolean finishedAny = false;
+            boolean allDone = true;
+            for (Map.Entry<String, List<String>> entry : collections().entrySet()) {
+                Document checkpoint = loadCheckpoint(entry.getKey());
+                if (batchesLeft > 0 && !checkpoint.getBoolean("done", false)) {
+                    batchesLeft -= migrateCollection(entry.getKey(), entry.getValue(), checkpoint, batchesLeft);
+                    finishedAny |= checkpoint.getBoolean("done", false);
+                }
+                allDone &= checkpoint.getBoolean("done", false);
+                result.put(entry.getKey(), withoutId(checkpoint));
+            }
+            if (finishedAny && allDone) {
+                eventPublisher.publishEvent(new MonetaryMigrationCompletedEvent(LocalDateTime.now()));
+            }
+            return result;
+        } finally {
+            distributedLockService.release(LOCK_NAME, token.get());
+        }
+    }
+    
+    /**
+     * Checkpoints plus how many documents still hold a non-Decimal128 amount.
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        collections().forEach((collection, paths) -> {
+            Map<String, Object> progress = withoutId(loadCheckpoint(collection));
+            progress.put("remaining", mongoTemplate.getCollection(collection).countDocuments(unmigrated(paths)));
+            status.put(collection, progress);
+        });
+        return status;
+    }
+    
+    /**
+     * Whether no document holds a non-Decimal128 amount any more. Finished collections are
+     * taken from their checkpoint, the others are probed for one unmigrated document, so a
+     * database that never had legacy amounts needs no migration run.
+     */
+    public boolean isComplete() {
+        return collections().entrySet().stream().allMatch(entry ->
+                loadCheckpoint(entry.getKey()).getBoolean("done", false)
+                        || mongoTemplate.getCollection(entry.getKey()).find(unmigrated(entry.getValue())).limit(1).first() == null);
+    }
+    
+    /**
+     * Runs the storefront price-range query through explain, so the plan can be checked
+     * after the migration: an IXSCAN on the price index, keys examined close to returned.
+     */
+    public Map<String, Object> explainPriceRange(BigDecimal minPrice, BigDecimal maxPrice) {
+        Bson filter = Filters.and(
+                Filters.eq("available", true),
+                Filters.gte("price", new Decimal128(minPrice)),
+                Filters.lte("price", new Decimal128(maxPrice)),
+                Filters.gt("stock", 0));
+        Document explain = mongoTemplate.getCollection("products").find(filter)
+                .explain(ExplainVerbosity.EXECUTION_STATS);
+        
+        Document queryPlanner = explain.get("queryPlanner", Document.class);
+        Document executionStats = explain.get("executionStats", Document.class);
+        
+        List<String> stages = new ArrayList<>();
+        String indexName = null;
+        Document stage = queryPlanner != null ? queryPlanner.get("winningPlan", Document.class) : null;
+        while (stage != null) {
+            // Newer servers wrap the classic plan in queryPlan
+            Document inner = stage.get("queryPlan", Document.class);
+            if (inner != null) {
+                stage = inner;
+                continue;
+            }
+            stages.add(stage.getString("stage"));
+            if (stage.containsKey("indexName")) {
+                indexName = stage.getString("indexName");
+            }
+            stage = stage.get("inputStage", Document.class);
+        }
+        
+        Map<String, Object> plan = new LinkedHashMap<>();
+        plan.put("stages", stages);
+        plan.put("indexName", indexName);
+        plan.put("usesIndex", stages.contains("IXSCAN"));
+        if (executionStats != null) {
+            plan.put("nReturned", executionStats.get("nReturned"));
+            plan.put("totalKeysExamined", executionStats.get("totalKeysExamined"));
+            plan.put("totalDocsExamined", executionStats.get("totalDocsExamined"));
+            plan.put("executionTimeMillis", executionStats.get("executionTimeMillis"));
+        }
+        return plan;
+    }
+    
+    /**
+     * @return the number of batches used
+     */
+    private int migrateCollection(String collectionName, List<String> paths, Document checkpoint, int maxBatches) {
+        MongoCollection<Document> collection = mongoTemplate.getCollection(collectionName);
+        Set<String> topFields = new LinkedHashSet<>();
+        paths.forEach(path -> topFields.add(path.split("\\.")[0]));
+        
+        int batches = 0;
+        while (batches < maxBatches) {
+            Object lastId = checkpoint.get("lastId");
+            Bson filter = lastId != null ? Filters.gt("_id", lastId) : new Document();
+            List<Document> batch = collection.find(filter)
+                    .projection(Projections.include(new ArrayList<>(topFields)))
+                    .sort(Sorts.ascending("_id"))
+                    .limit(batchSize)
+                    .into(new ArrayList<>());
+            batches++;
+            
+            List<WriteModel<Document>> updates = new ArrayList<>();
+            for (Document document : batch) {
+                toUpdate(document, paths).ifPresent(updates::add);
+            }
+            
+            long modified = 0;
+            if (!updates.isEmpty()) {
+                BulkWriteResult result = collection.bulkWrite(updates, new BulkWriteOptions().ordered(false));
+                modified = result.getModifiedCount();
+            }
+            
+            checkpoint.put("scanned", checkpoint.get("scanned", 0L) + batch.size());
+            checkpoint.put("migrated", checkpoint.get("migrated", 0L) + modified);
+            // Rewritten by the application between our read and write
+            checkpoint.put("skipped", checkpoint.get("skipped", 0L) + updates.size() - modified);
+            if (!batch.isEmpty()) {
+                checkpoint.put("lastId", batch.get(batch.size() - 1).get("_id"));
+            }
+            checkpoint.put("done", batch.size() < batchSize);
+            checkpoint.put("updatedAt", LocalDateTime.now());
+            saveCheckpoint(checkpoint);
+            
+            if (checkpoint.getBoolean("done")) {
+                log.info("Decimal128 migration of {} finished: {} documents migrated",
+                        collectionName, checkpoint.get("migrated"));
+                break;
+            }
+        }
+        return batches;
+    }
+    
+    /**
+     * A $set of the converted top-level fields, matching only while they are unchanged.
+     */
+    private Optional<WriteModel<Document>> toUpdate(Document document, List<String> paths) {
+        Document match = new Document("_id", document.get("_id"));
+        List<Bson> sets = new ArrayList<>();
+        Set<String> handled = new LinkedHashSet<>();
+        
+        for (String path : paths) {
+            String[] parts = path.split("\\.");
+            String top = parts[0];
+            Object original = document.get(top);
+            Object converted = convert(original, parts, 1);
+            if (converted != original) {
+                document.put(top, converted); // later paths under the same field build on this
+                if (handled.add(top)) {
+                    match.put(top, original);
+                }
+            }
+        }
+        handled.forEach(top -> sets.add(Updates.set(top, document.get(top))));
+        
+        if (sets.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(new UpdateOneModel<>(match, Updates.combine(sets)));
+    }
+    
+    /**
+     * Returns {@code value} itself when nothing under it needed converting, a converted copy otherwise.
+     */
+    private Object convert(Object value, String[] path, int depth) {
+        if (value instanceof List<?> list) {
+            List<Object> copy = null;
+            for (int i = 0; i < list.size(); i++) {
+                Object converted = convert(list.get(i), path, depth);
+                if (converted != list.get(i)) {
+                    if (copy == null) {
+                        copy = new ArrayList<>(list);
+                    }
+                    copy.set(i, converted);
+                }
+            }
+            return copy != null ? copy : value;
+        }
+        if (depth == path.length) {
+            return toDecimal128(value);
+        }
+        if (value instanceof Document document) {
+            Object child = document.get(path[depth]);
+            Object converted = convert(child, path, depth + 1);
+            if (converted == child) {
+                return value;
+            }
+            Document copy = new Document(document);
+            copy.put(path[depth], converted);
+            return copy;
+        }
+        return value;
+    }
+    
+    private Object toDecimal128(Object value) {
+        try {
+            if (value instanceof String text) {
+                return new Decimal128(new BigDecimal(text.trim()));
+            }
+            if (value instanceof Double number) {
+                return new Decimal128(BigDecimal.valueOf(number));
+            }
+            if (value instanceof Integer || value instanceof Long) {
+                return new Decimal128(new BigDecimal(value.toString()));
+            }
+        } catch (NumberFormatException e) {
+            log.warn("Leaving non-numeric amount as is: {}", value);
+        }
+        return value;
+    }
+    
+    private Bson unmigrated(List<String> paths) {
+        List<Bson> anyLegacy = new ArrayList<>();
+        paths.forEach(path -> anyLegacy.add(Filters.type(path, "string")));
+        paths.forEach(path -> anyLegacy.add(Filters.type(path, "double")));
+        return Filters.or(anyLegacy);
+    }
+    
+    /**
+     * The fixed collections plus every archive collection that exists, monthly ones included.
+     */
+    private Map<String, List<String>> collections() {
+        Map<String, List<String>> collections = new LinkedHashMap<>(MONETARY_FIELDS);
+        mongoTemplate.getCollectionNames().stream()
+                .filter(name -> name.startsWith(ORDERS_ARCHIVE))
+                .sorted()
+                .forEach(name -> collections.put(name, MONETARY_FIELDS.get("orders")));
+        return collections;
+    }
+    
+    private Document loadCheckpoint(String collection) {
+        Document checkpoint = mongoTemplate.getCollection(CHECKPOINTS)
+                .find(Filters.eq("_id", CHECKPOINT_PREFIX + collection)).first();
+        return checkpoint != null ? checkpoint : new Document("_id", CHECKPOINT_PREFIX + collection)
+                .append("collection", collection)
+                .append("done", false);
+    }
+    
+    private void saveCheckpoint(Document checkpoint) {
+        mongoTemplate.getCollection(CHECKPOINTS).replaceOne(Filters.eq("_id", checkpoint.get("_id")), checkpoint,
+                new ReplaceOptions().upsert(true));
+    }
+    
+    private Map<String, Object> withoutId(Document checkpoint) {
+        Map<String, Object> progress = new LinkedHashMap<>(checkpoint);
+        progress.remove("_id");
+        if (progress.get("lastId") != null) {
+            progress.put("lastId", progress.get("lastId").toString());
+        }
+        return progress;
+    }
+    
+    private static Map<String, List<String>> monetaryFields() {
+        List<String> orderFields = List.of("subtotal", "discount", "shipping", "total",
+                "items.price", "payment.amount", "promotions.discount");
+        
+        Map<String, List<String>> fields = new LinkedHashMap<>();
+        fields.put("products", List.of("price"));
+        fields.put("carts", List.of("items.priceSnapshot"));
+        fields.put("carts_archive", List.of("totalAmount", "items.priceSnapshot"));
+        fields.put("orders", orderFields);
+        fields.put("order_summaries", List.of("total"));
+        fields.put("promotions", List.of("percent", "amount", "minSubtotal"));
+        fields.put("price_books", List.of("entries.price", "entries.percentOff"));
+        fields.put("price_history", List.of("changes.price", "changes.previousPrice"));
+        return fields;
+    }
+}
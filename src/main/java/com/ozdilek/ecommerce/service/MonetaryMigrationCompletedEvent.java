@@ -0,0 +1,10 @@
+package com.ozdilek.ecommerce.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published by {@link MonetaryFieldMigrationService} when a run finishes the last
+ * collection, i.e. every monetary amount is stored as Decimal128 from {@code at} on.
+ */
+public record MonetaryMigrationCompletedEvent(LocalDateTime at) {
+}
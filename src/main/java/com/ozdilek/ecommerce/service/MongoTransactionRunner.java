@@ -0,0 +1,119 @@
+package com.ozdilek.ecommerce.service;
+
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.MongoException;
+import com.mongodb.ReadConcern;
+import com.mongodb.TransactionOptions;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.ClientSession;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Runs work inside a real multi-document Mongo transaction (requires a replica set).
+ * <p>
+ * The application has no MongoTransactionManager, so {@code @Transactional} does not make
+ * Mongo writes atomic; callers that need atomicity pass their work here instead. The whole
+ * transaction is retried on TransientTransactionError and the commit alone is retried on
+ * UnknownTransactionCommitResult, both with bounded, jittered exponential backoff.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MongoTransactionRunner {
+    
+    private final MongoDatabaseFactory mongoDatabaseFactory;
+    private final MongoTemplate mongoTemplate;
+    
+    @Value("${app.checkout.transaction.max-attempts:5}")
+    private int maxAttempts;
+    
+    @Value("${app.checkout.transaction.backoff-initial-ms:10}")
+    private long initialBackoffMs;
+    
+    @Value("${app.checkout.transaction.backoff-max-ms:200}")
+    private long maxBackoffMs;
+    
+    public <T> T inTransaction(Function<MongoOperations, T> work) {
+        TransactionOptions options = TransactionOptions.builder()
+                .readConcern(ReadConcern.SNAPSHOT)
+                .writeConcern(WriteConcern.MAJORITY)
+                .build();
+        
+        for (int attempt = 1; ; attempt++) {
+            try (ClientSession session = mongoDatabaseFactory.getSession(ClientSessionOptions.builder()
+                    .causallyConsistent(true)
+                    .build())) {
+                session.startTransaction(options);
+                try {
+                    T result = work.apply(mongoTemplate.withSession(session));
+                    commitWithRetry(session);
+                    return result;
+                } catch (RuntimeException e) {
+                    abortQuietly(session);
+                    if (attempt < maxAttempts && hasErrorLabel(e, MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)) {
+                        log.debug("Transient transaction error on attempt {}, retrying: {}", attempt, e.getMessage());
+                        backoff(attempt);
+                        continue;
+                    }
+                    throw e;
+                }
+            }
+        }
+    }
+    
+    private void commitWithRetry(ClientSession session) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                session.commitTransaction();
+                return;
+            } catch (MongoException e) {
+                if (attempt < maxAttempts && e.hasErrorLabel(MongoException.UNKNOWN_TRANSACTION_COMMIT_RESULT_LABEL)) {
+                    log.debug("Unknown commit result on attempt {}, retrying commit: {}", attempt, e.getMessage());
+                    backoff(attempt);
+                    continue;
+                }
+                throw e;
+            }
+        }
+    }
+    
+    private void abortQuietly(ClientSession session) {
+        try {
+            if (session.hasActiveTransaction()) {
+                session.abortTransaction();
+            }
+        } catch (MongoException e) {
+            // The server aborts on its own when the session ends
+            log.debug("Failed to abort transaction: {}", e.getMessage());
+        }
+    }
+    
+    private boolean hasErrorLabel(Throwable error, String label) {
+        // MongoTemplate wraps driver exceptions in Spring's DataAccessException hierarchy
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoException mongoException && mongoException.hasErrorLabel(label)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 16));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while backing off a Mongo transaction", e);
+        }
+    }
+}
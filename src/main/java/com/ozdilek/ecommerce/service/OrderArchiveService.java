@@ -0,0 +1,236 @@
+package com.ozdilek.ecommerce.service;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.ozdilek.ecommerce.model.Order;
+import com.ozdilek.ecommerce.model.Order.OrderStatus;
+import com.ozdilek.ecommerce.repository.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Moves closed orders (DELIVERED, CANCELLED, REFUNDED) older than the archive window out of
+ * the hot orders collection into a compressed archive tier, optionally one collection per
+ * createdAt month. Reads that need the archive go through {@link OrderRepository}'s
+ * *InAnyTier methods.
+ * <p>
+ * Each batch is copied with idempotent upserts first and only then deleted from the hot
+ * collection, conditional on the status and eventSeq that were copied. An order that
+ * changed in between stays hot and is archived again by a later run. order_events and
+ * order_summaries are not touched, so timelines and "my orders" keep working; legacy
+ * orders that still embed their events are migrated into order_events before the copy.
+ * A Redis lock keeps the job to one node at a time.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderArchiveService {
+    
+    private static final String LOCK_NAME = "order-archive";
+    
+    private static final Set<OrderStatus> CLOSED = Set.of(OrderStatus.DELIVERED, OrderStatus.CANCELLED, OrderStatus.REFUNDED);
+    
+    private final MongoTemplate mongoTemplate;
+    private final OrderRepository orderRepository;
+    private final DistributedLockService distributedLockService;
+    private final OrderEventService orderEventService;
+    
+    private final Set<String> preparedCollections = ConcurrentHashMap.newKeySet();
+    
+    private volatile Map<String, Object> lastRun;
+    
+    @Value("${app.orders.archive.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${app.orders.archive.after:P90D}")
+    private Duration archiveAfter;
+    
+    @Value("${app.orders.archive.compressor:zstd}")
+    private String compressor;
+    
+    @Value("${app.orders.archive.batch-size:500}")
+    private int batchSize;
+    
+    @Value("${app.orders.archive.max-batches:20}")
+    private int maxBatches;
+    
+    @Value("${app.orders.archive.lock-ttl:PT30M}")
+    private Duration lockTtl;
+    
+    @Scheduled(fixedDelayString = "${app.orders.archive.interval:PT1H}", initialDelayString = "${app.orders.archive.initial-delay:PT5M}")
+    public void archiveClosedOrders() {
+        if (enabled) {
+            archiveNow();
+        }
+    }
+    
+    /**
+     * Runs one archive pass and records the hot collection's size before and after it.
+     */
+    public Map<String, Object> archiveNow() {
+        Optional<String> lock = distributedLockService.tryAcquire(LOCK_NAME, lockTtl);
+        if (lock.isEmpty()) {
+            log.debug("Order archiving is running on another node");
+            return Map.of("status", "SKIPPED", "reason", "Archiving is running on another node");
+        }
+        
+        try {
+            long startedAt = System.nanoTime();
+            LocalDateTime cutoff = LocalDateTime.now().minus(archiveAfter);
+            Map<String, Object> hotBefore = collectionStats(mongoTemplate.getCollectionName(Order.class));
+            int archived = 0;
+            int skipped = 0;
+            
+            for (int batch = 0; batch < maxBatches; batch++) {
+                BatchResult result = archiveBatch(cutoff);
+                archived += result.archived();
+                skipped += result.scanned() - result.archived();
+                
+                if (result.scanned() < batchSize) {
+                    break;
+                }
+            }
+            
+            Map<String, Object> run = new LinkedHashMap<>();
+            run.put("status", "COMPLETED");
+            run.put("cutoff", cutoff);
+            run.put("archived", archived);
+            run.put("changedDuringRun", skipped);
+            run.put("elapsedMs", (System.nanoTime() - startedAt) / 1_000_000);
+            run.put("hotBefore", hotBefore);
+            run.put("hotAfter", collectionStats(mongoTemplate.getCollectionName(Order.class)));
+            run.put("finishedAt", LocalDateTime.now());
+            lastRun = run;
+            
+            if (archived > 0) {
+                log.info("Archived {} closed orders created before {}; hot orders {} -> {}", archived, cutoff,
+                        hotBefore.get("count"), ((Map<?, ?>) run.get("hotAfter")).get("count"));
+            }
+            return run;
+        } finally {
+            distributedLockService.release(LOCK_NAME, lock.get());
+        }
+    }
+    
+    /**
+     * Size of the hot collection and of every archive collection, plus the last run.
+     * Query latency per tier is published as the orders.query timer.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> archive = new LinkedHashMap<>();
+        orderRepository.archiveCollectionsBetween(null, null)
+                .forEach(collection -> archive.put(collection, collectionStats(collection)));
+        
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hot", collectionStats(mongoTemplate.getCollectionName(Order.class)));
+        stats.put("archive", archive);
+        stats.put("archiveAfter", archiveAfter);
+        stats.put("lastRun", lastRun);
+        return stats;
+    }
+    
+    private BatchResult archiveBatch(LocalDateTime cutoff) {
+        Query candidates = new Query(Criteria.where("status").in(CLOSED)
+                .and("createdAt").lt(cutoff))
+                .with(Sort.by(Sort.Direction.ASC, "createdAt"))
+                .limit(batchSize);
+        List<Order> orders = mongoTemplate.find(candidates, Order.class);
+        if (orders.isEmpty()) {
+            return new BatchResult(0, 0);
+        }
+        
+        // Embedded events of legacy orders would not survive the copy, move them out first
+        List<String> unsequenced = orders.stream()
+                .filter(order -> order.getEventSeq() == null)
+                .map(Order::getId)
+                .toList();
+        if (!unsequenced.isEmpty() && orderEventService.migrateLegacy(unsequenced) > 0) {
+            orders = mongoTemplate.find(candidates, Order.class);
+        }
+        
+        // Archive ids equal order ids, so a retried batch overwrites instead of duplicating
+        Map<String, List<Order>> byCollection = orders.stream()
+                .collect(Collectors.groupingBy(order -> orderRepository.archiveCollectionFor(order.getCreatedAt())));
+        byCollection.forEach((collection, archived) -> {
+            prepareArchiveCollection(collection);
+            BulkOperations copy = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Order.class, collection);
+            archived.forEach(order -> copy.replaceOne(new Query(Criteria.where("id").is(order.getId())),
+                    order, FindAndReplaceOptions.options().upsert()));
+            copy.execute();
+        });
+        
+        BulkOperations remove = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Order.class);
+        orders.forEach(order -> remove.remove(new Query(Criteria.where("id").is(order.getId())
+                .and("status").is(order.getStatus())
+                .and("eventSeq").is(order.getEventSeq()))));
+        BulkWriteResult result = remove.execute();
+        
+        return new BatchResult(orders.size(), result.getDeletedCount());
+    }
+    
+    /**
+     * Creates the archive collection with block compression and the indexes the router's
+     * reads need. Compression can only be chosen at creation time.
+     */
+    private void prepareArchiveCollection(String collection) {
+        if (preparedCollections.contains(collection)) {
+            return;
+        }
+        
+        if (!mongoTemplate.collectionExists(collection)) {
+            try {
+                mongoTemplate.getDb().runCommand(new Document("create", collection)
+                        .append("storageEngine", new Document("wiredTiger",
+                                new Document("configString", "block_compressor=" + compressor))));
+                log.info("Created order archive collection {} with {} compression", collection, compressor);
+            } catch (Exception e) {
+                // Created concurrently, or a storage engine without wiredTiger options
+                log.warn("Could not create {} with {} compression: {}", collection, compressor, e.getMessage());
+            }
+        }
+        
+        IndexOperations indexOps = mongoTemplate.indexOps(collection);
+        indexOps.createIndex(new Index().on("userId", Sort.Direction.ASC).on("createdAt", Sort.Direction.DESC));
+        indexOps.createIndex(new Index().on("createdAt", Sort.Direction.ASC));
+        indexOps.createIndex(new Index().on("orderNumber", Sort.Direction.ASC).sparse());
+        preparedCollections.add(collection);
+    }
+    
+    private Map<String, Object> collectionStats(String collection) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        try {
+            Document collStats = mongoTemplate.getDb().runCommand(new Document("collStats", collection));
+            for (String key : List.of("count", "size", "storageSize", "totalIndexSize")) {
+                Object value = collStats.get(key);
+                stats.put(key, value instanceof Number number ? number.longValue() : 0L);
+            }
+        } catch (Exception e) {
+            stats.put("error", e.getMessage());
+        }
+        return stats;
+    }
+    
+    private record BatchResult(int scanned, int archived) {
+    }
+}
@@ -0,0 +1,421 @@
+package com.ozdilek.ecommerce.service;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.ozdilek.ecommerce.model.Order;
+import com.ozdilek.ecommerce.model.Order.OrderStatus;
+import com.ozdilek.ecommerce.model.OrderEvent;
+import com.ozdilek.ecommerce.repository.OrderEventRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Owns the order history in order_events; the Order document only keeps the current
+ * snapshot plus the sequence of its last event (Order.eventSeq).
+ * <p>
+ * A change is recorded in two writes. Inserting event seq+1 claims the slot (its id is
+ * orderId:seq, so only one writer can win it), then the snapshot is advanced with an
+ * update conditional on eventSeq == seq. If a writer dies between the two, the next writer
+ * trips over the orphaned event, rolls the snapshot forward from it and retries, so the
+ * event log is always the source of truth. Every snapshot move is announced with an
+ * {@link OrderStatusChangedEvent}.
+ * <p>
+ * Orders written before the split still carry an embedded events array; they are moved
+ * into order_events the first time they are touched, or in bulk through
+ * {@link #migrateEmbeddedEvents(int)}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderEventService {
+    
+    private static final int MAX_ATTEMPTS = 5;
+    private static final int MAX_PAGE_SIZE = 200;
+    
+    private final MongoTemplate mongoTemplate;
+    private final OrderEventRepository orderEventRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    
+    /**
+     * Records the first event of a new order. Call with the ops that insert the order.
+     */
+    public void recordPlaced(MongoOperations ops, Order order) {
+        ops.insert(OrderEvent.builder()
+                .id(OrderEvent.idFor(order.getId(), 1))
+                .orderId(order.getId())
+                .seq(1L)
+                .status(order.getStatus())
+                .at(order.getCreatedAt())
+                .message("Order placed")
+                .build());
+    }
+    
+    /**
+     * Moves the order from {@code from} to {@code to}, setting {@code fields} on the
+     * snapshot as well.
+     *
+     * @return the new snapshot, or null when the order is not in {@code from}
+     */
+    public Order transition(String orderId, OrderStatus from, OrderStatus to, String message,
+                            Map<String, Object> meta, Map<String, Object> fields) {
+        return record(orderId, from, to, message, meta, fields);
+    }
+    
+    /**
+     * Appends an informational event without changing the status.
+     */
+    public Order append(String orderId, String message, Map<String, Object> meta) {
+        return record(orderId, null, null, message, meta, null);
+    }
+    
+    /**
+     * Loads snapshots (id, status, eventSeq plus the given fields) for a batch of orders,
+     * migrating any that still embed their events. The result feeds {@link #transitionAll}.
+     */
+    public Map<String, Order> loadSnapshots(Collection<String> orderIds, String... fields) {
+        migrateLegacy(orderIds);
+        
+        Query query = new Query(Criteria.where("id").in(orderIds));
+        query.fields().include("id").include("status").include("eventSeq");
+        for (String field : fields) {
+            query.fields().include(field);
+        }
+        
+        Map<String, Order> snapshots = new HashMap<>();
+        mongoTemplate.find(query, Order.class).forEach(order -> snapshots.put(order.getId(), order));
+        return snapshots;
+    }
+    
+    /**
+     * Moves the embedded events of those given orders that still have them into
+     * order_events. The Order mapping has no events field, so this must run before such
+     * an order is copied anywhere through it, e.g. into the archive.
+     *
+     * @return how many orders were migrated
+     */
+    public int migrateLegacy(Collection<String> orderIds) {
+        Query legacy = new Query(Criteria.where("id").in(orderIds)
+                .and("eventSeq").exists(false)
+                .and("events").exists(true));
+        legacy.fields().include("id");
+        List<Document> orders = mongoTemplate.find(legacy, Document.class, collection());
+        orders.forEach(doc -> migrate(doc.get("_id").toString()));
+        return orders.size();
+    }
+    
+    /**
+     * Applies many transitions with two unordered bulkWrites: one inserting the events,
+     * one advancing the snapshots whose event slot was won. Each snapshot must come from
+     * {@link #loadSnapshots}; a snapshot that changed since then loses its slot.
+     * {@code fields} (may be null) are set on every moved snapshot.
+     *
+     * @return ids of the orders that were moved
+     */
+    public Set<String> transitionAll(Collection<Order> snapshots, OrderStatus to, Map<String, Object> fields,
+                                     Function<Order, String> message, Function<Order, Map<String, Object>> meta) {
+        if (snapshots.isEmpty()) {
+            return Set.of();
+        }
+        
+        LocalDateTime now = LocalDateTime.now();
+        List<Order> candidates = new ArrayList<>(snapshots);
+        BulkOperations inserts = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, OrderEvent.class);
+        for (Order snapshot : candidates) {
+            long seq = seqOf(snapshot) + 1;
+            inserts.insert(OrderEvent.builder()
+                    .id(OrderEvent.idFor(snapshot.getId(), seq))
+                    .orderId(snapshot.getId())
+                    .seq(seq)
+                    .status(to)
+                    .previousStatus(snapshot.getStatus())
+                    .at(now)
+                    .message(message.apply(snapshot))
+                    .meta(meta.apply(snapshot))
+                    .build());
+        }
+        
+        Set<Integer> lost = new HashSet<>();
+        try {
+            inserts.execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                if (!isDuplicateKey(error)) {
+                    throw e;
+                }
+                lost.add(error.getIndex());
+            }
+        }
+        
+        Map<String, OrderStatus> moved = new HashMap<>();
+        BulkOperations updates = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Order.class);
+        for (int i = 0; i < candidates.size(); i++) {
+            if (lost.contains(i)) {
+                continue;
+            }
+            Order snapshot = candidates.get(i);
+            long seq = seqOf(snapshot) + 1;
+            Update update = snapshotUpdate(to, seq, now);
+            if (fields != null) {
+                fields.forEach(update::set);
+            }
+            updates.updateOne(snapshotQuery(snapshot.getId(), seq - 1), update);
+            moved.put(snapshot.getId(), snapshot.getStatus());
+        }
+        if (!moved.isEmpty()) {
+            // A snapshot left behind here is rolled forward by the next writer
+            updates.execute();
+            eventPublisher.publishEvent(new OrderStatusChangedEvent(moved, to, now));
+        }
+        return moved.keySet();
+    }
+    
+    /**
+     * One page of an order's timeline, oldest first, continuing after {@code afterSeq}.
+     */
+    public Map<String, Object> getTimeline(String orderId, long afterSeq, int limit) {
+        migrateIfNeeded(orderId);
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<OrderEvent> events = orderEventRepository.findByOrderIdAndSeqGreaterThanOrderBySeqAsc(
+                orderId, afterSeq, PageRequest.of(0, pageSize));
+        
+        Map<String, Object> timeline = new LinkedHashMap<>();
+        timeline.put("orderId", orderId);
+        timeline.put("events", events);
+        timeline.put("nextAfterSeq", events.size() == pageSize ? events.get(events.size() - 1).getSeq() : null);
+        return timeline;
+    }
+    
+    /**
+     * Rebuilds the order's status from its events up to {@code uptoSeq} (all when null)
+     * and compares a full replay with the stored snapshot.
+     */
+    public Map<String, Object> replay(String orderId, Long uptoSeq) {
+        migrateIfNeeded(orderId);
+        Order snapshot = mongoTemplate.findById(orderId, Order.class);
+        if (snapshot == null) {
+            throw new RuntimeException("Order not found with id: " + orderId);
+        }
+        
+        List<OrderEvent> events = orderEventRepository.findByOrderIdAndSeqLessThanEqualOrderBySeqAsc(
+                orderId, uptoSeq != null ? uptoSeq : Long.MAX_VALUE);
+        
+        OrderStatus status = null;
+        LocalDateTime at = null;
+        List<Map<String, Object>> transitions = new ArrayList<>();
+        for (OrderEvent event : events) {
+            if (event.getStatus() != status) {
+                Map<String, Object> transition = new LinkedHashMap<>();
+                transition.put("seq", event.getSeq());
+                transition.put("from", status);
+                transition.put("to", event.getStatus());
+                transition.put("at", event.getAt());
+                transitions.add(transition);
+            }
+            status = event.getStatus();
+            at = event.getAt();
+        }
+        
+        long lastSeq = events.isEmpty() ? 0 : events.get(events.size() - 1).getSeq();
+        Map<String, Object> replay = new LinkedHashMap<>();
+        replay.put("orderId", orderId);
+        replay.put("seq", lastSeq);
+        replay.put("status", status);
+        replay.put("at", at);
+        replay.put("transitions", transitions);
+        if (uptoSeq == null) {
+            replay.put("snapshotSeq", seqOf(snapshot));
+            replay.put("snapshotStatus", snapshot.getStatus());
+            replay.put("consistent", lastSeq == seqOf(snapshot) && status == snapshot.getStatus());
+        }
+        return replay;
+    }
+    
+    /**
+     * Moves embedded events of up to {@code batchSize} legacy orders into order_events.
+     */
+    public Map<String, Object> migrateEmbeddedEvents(int batchSize) {
+        Query legacy = new Query(Criteria.where("eventSeq").exists(false).and("events").exists(true))
+                .limit(batchSize);
+        legacy.fields().include("id");
+        
+        List<Document> orders = mongoTemplate.find(legacy, Document.class, collection());
+        orders.forEach(doc -> migrate(doc.get("_id").toString()));
+        
+        long remaining = mongoTemplate.count(new Query(Criteria.where("eventSeq").exists(false)
+                .and("events").exists(true)), collection());
+        log.info("Migrated embedded events of {} orders, {} left", orders.size(), remaining);
+        return Map.of("migrated", orders.size(), "remaining", remaining);
+    }
+    
+    private Order record(String orderId, OrderStatus from, OrderStatus to, String message,
+                         Map<String, Object> meta, Map<String, Object> fields) {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            Order snapshot = loadSnapshots(List.of(orderId)).get(orderId);
+            if (snapshot == null) {
+                throw new RuntimeException("Order not found with id: " + orderId);
+            }
+            if (from != null && snapshot.getStatus() != from) {
+                return null;
+            }
+            
+            long seq = seqOf(snapshot) + 1;
+            OrderStatus status = to != null ? to : snapshot.getStatus();
+            LocalDateTime now = LocalDateTime.now();
+            try {
+                mongoTemplate.insert(OrderEvent.builder()
+                        .id(OrderEvent.idFor(orderId, seq))
+                        .orderId(orderId)
+                        .seq(seq)
+                        .status(status)
+                        .previousStatus(snapshot.getStatus())
+                        .at(now)
+                        .message(message)
+                        .meta(meta)
+                        .build());
+            } catch (DuplicateKeyException e) {
+                // Slot taken: either a concurrent writer or one that died half-way
+                rollForward(orderId, seq);
+                continue;
+            }
+            
+            Update update = snapshotUpdate(status, seq, now);
+            if (fields != null) {
+                fields.forEach(update::set);
+            }
+            Order updated = mongoTemplate.findAndModify(snapshotQuery(orderId, seq - 1), update,
+                    FindAndModifyOptions.options().returnNew(true), Order.class);
+            if (updated != null) {
+                if (status != snapshot.getStatus()) {
+                    eventPublisher.publishEvent(new OrderStatusChangedEvent(
+                            Map.of(orderId, snapshot.getStatus()), status, now));
+                }
+                return updated;
+            }
+            
+            // Someone rolled the snapshot forward from our event first; only the fields are left
+            if (fields != null && !fields.isEmpty()) {
+                Update remaining = new Update();
+                fields.forEach(remaining::set);
+                mongoTemplate.updateFirst(new Query(Criteria.where("id").is(orderId)), remaining, Order.class);
+            }
+            return mongoTemplate.findById(orderId, Order.class);
+        }
+        throw new RuntimeException("Could not record event for order " + orderId + ", too much contention");
+    }
+    
+    /**
+     * Advances a snapshot that is behind the event in slot {@code seq}.
+     */
+    private void rollForward(String orderId, long seq) {
+        OrderEvent event = mongoTemplate.findById(OrderEvent.idFor(orderId, seq), OrderEvent.class);
+        if (event == null) {
+            return;
+        }
+        
+        boolean moved = mongoTemplate.updateFirst(snapshotQuery(orderId, seq - 1),
+                snapshotUpdate(event.getStatus(), seq, event.getAt()), Order.class).getModifiedCount() == 1;
+        if (moved && event.getPreviousStatus() != null && event.getPreviousStatus() != event.getStatus()) {
+            // The writer of this event died before announcing it
+            eventPublisher.publishEvent(new OrderStatusChangedEvent(
+                    Map.of(orderId, event.getPreviousStatus()), event.getStatus(), event.getAt()));
+        }
+    }
+    
+    private void migrateIfNeeded(String orderId) {
+        if (mongoTemplate.exists(new Query(Criteria.where("id").is(orderId)
+                .and("eventSeq").exists(false)
+                .and("events").exists(true)), collection())) {
+            migrate(orderId);
+        }
+    }
+    
+    /**
+     * Copies an order's embedded events into order_events as seq 1..n, then drops the
+     * array. Event ids are deterministic, so a repeated or concurrent run is harmless.
+     */
+    private void migrate(String orderId) {
+        Query query = new Query(Criteria.where("id").is(orderId).and("eventSeq").exists(false));
+        query.fields().include("events");
+        Document order = mongoTemplate.findOne(query, Document.class, collection());
+        if (order == null) {
+            return;
+        }
+        
+        List<Document> embedded = order.getList("events", Document.class, List.of());
+        if (!embedded.isEmpty()) {
+            BulkOperations inserts = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, OrderEvent.class);
+            OrderStatus previous = null;
+            for (int i = 0; i < embedded.size(); i++) {
+                OrderEvent event = mongoTemplate.getConverter().read(OrderEvent.class, embedded.get(i));
+                long seq = i + 1;
+                event.setId(OrderEvent.idFor(orderId, seq));
+                event.setOrderId(orderId);
+                event.setSeq(seq);
+                event.setPreviousStatus(previous);
+                previous = event.getStatus();
+                inserts.insert(event);
+            }
+            try {
+                inserts.execute();
+            } catch (BulkOperationException e) {
+                if (!e.getErrors().stream().allMatch(this::isDuplicateKey)) {
+                    throw e;
+                }
+            }
+        }
+        
+        Update update = new Update().unset("events");
+        if (!embedded.isEmpty()) {
+            update.set("eventSeq", (long) embedded.size());
+        }
+        mongoTemplate.updateFirst(new Query(Criteria.where("id").is(orderId).and("eventSeq").exists(false)),
+                update, collection());
+    }
+    
+    private Query snapshotQuery(String orderId, long seq) {
+        Criteria criteria = Criteria.where("id").is(orderId);
+        return new Query(seq == 0 ? criteria.and("eventSeq").exists(false) : criteria.and("eventSeq").is(seq));
+    }
+    
+    private Update snapshotUpdate(OrderStatus status, long seq, LocalDateTime at) {
+        return new Update()
+                .set("status", status)
+                .set("eventSeq", seq)
+                .set("updatedAt", at);
+    }
+    
+    private long seqOf(Order snapshot) {
+        return snapshot.getEventSeq() != null ? snapshot.getEventSeq() : 0L;
+    }
+    
+    private boolean isDuplicateKey(BulkWriteError error) {
+        return error.getCode() == 11000;
+    }
+    
+    private String collection() {
+        return mongoTemplate.getCollectionName(Order.class);
+    }
+}
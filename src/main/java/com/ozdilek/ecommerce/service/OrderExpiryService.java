@@ -0,0 +1,132 @@
+package com.ozdilek.ecommerce.service;
+
+import com.ozdilek.ecommerce.model.Order;
+import com.ozdilek.ecommerce.model.Order.OrderStatus;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Cancels orders that stayed PENDING (unpaid) past the payment window and gives their
+ * reserved stock back.
+ * <p>
+ * Candidates come off the {status, createdAt} index oldest first, in bounded batches.
+ * Each batch is cancelled through {@link OrderEventService#transitionAll}, whose writes
+ * are conditional on the snapshot that was read, so an order paid in the meantime is
+ * never cancelled and its stock never released. The stock of the whole batch goes back
+ * in one bulkWrite.
+ * A Redis lock keeps the sweep to one node at a time.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderExpiryService {
+    
+    private static final String LOCK_NAME = "order-expiry-sweep";
+    
+    private final MongoTemplate mongoTemplate;
+    private final InventoryService inventoryService;
+    private final DistributedLockService distributedLockService;
+    private final OrderEventService orderEventService;
+    
+    @Value("${app.orders.pending-expiry.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${app.orders.pending-expiry.after:PT30M}")
+    private Duration expireAfter;
+    
+    @Value("${app.orders.pending-expiry.batch-size:200}")
+    private int batchSize;
+    
+    @Value("${app.orders.pending-expiry.max-batches:10}")
+    private int maxBatches;
+    
+    @Value("${app.orders.pending-expiry.lock-ttl:PT5M}")
+    private Duration lockTtl;
+    
+    @Scheduled(fixedDelayString = "${app.orders.pending-expiry.interval:PT1M}", initialDelayString = "${app.orders.pending-expiry.initial-delay:PT1M}")
+    public void expirePendingOrders() {
+        if (!enabled) {
+            return;
+        }
+        
+        Optional<String> lock = distributedLockService.tryAcquire(LOCK_NAME, lockTtl);
+        if (lock.isEmpty()) {
+            log.debug("Pending order sweep is running on another node");
+            return;
+        }
+        
+        try {
+            LocalDateTime cutoff = LocalDateTime.now().minus(expireAfter);
+            int expired = 0;
+            
+            for (int batch = 0; batch < maxBatches; batch++) {
+                BatchResult result = expireBatch(cutoff);
+                expired += result.cancelled();
+                
+                if (result.scanned() < batchSize) {
+                    break;
+                }
+            }
+            
+            if (expired > 0) {
+                log.info("Cancelled {} unpaid orders created before {}", expired, cutoff);
+            }
+        } finally {
+            distributedLockService.release(LOCK_NAME, lock.get());
+        }
+    }
+    
+    private BatchResult expireBatch(LocalDateTime cutoff) {
+        Query candidates = new Query(Criteria.where("status").is(OrderStatus.PENDING)
+                .and("createdAt").lt(cutoff))
+                .with(Sort.by(Sort.Direction.ASC, "createdAt"))
+                .limit(batchSize);
+        candidates.fields().include("id");
+        
+        List<String> orderIds = mongoTemplate.find(candidates, Order.class).stream()
+                .map(Order::getId)
+                .toList();
+        if (orderIds.isEmpty()) {
+            return new BatchResult(0, 0);
+        }
+        
+        List<Order> pending = orderEventService.loadSnapshots(orderIds, "items").values().stream()
+                .filter(order -> order.getStatus() == OrderStatus.PENDING)
+                .toList();
+        Set<String> cancelled = orderEventService.transitionAll(pending, OrderStatus.CANCELLED,
+                Map.of("payment.status", "EXPIRED"),
+                order -> "Payment window expired",
+                order -> Map.of("reason", "PAYMENT_TIMEOUT"));
+        
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        for (Order order : pending) {
+            if (!cancelled.contains(order.getId())) {
+                continue;
+            }
+            if (order.getItems() != null) {
+                order.getItems().forEach(item -> quantities.merge(item.getProductId(), item.getQty(), Integer::sum));
+            }
+        }
+        inventoryService.releaseStock(quantities);
+        
+        return new BatchResult(orderIds.size(), cancelled.size());
+    }
+    
+    private record BatchResult(int scanned, int cancelled) {
+    }
+}
@@ -0,0 +1,134 @@
+package com.ozdilek.ecommerce.service;
+
+import com.ozdilek.ecommerce.model.Counter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands out short sequential order numbers without a per-order counter write.
+ * <p>
+ * The node leases a block of numbers from the order_number counter with one
+ * findAndModify $inc and serves it from memory with an AtomicLong. When the block is
+ * partly used the next one is leased in the background, so checkout normally never waits
+ * on Mongo for a number. Numbers increase on each node and are unique across nodes, but
+ * nodes interleave in blocks and numbers left in a block at shutdown are skipped.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderNumberGenerator {
+    
+    private static final String COUNTER_ID = "order_number";
+    
+    private final MongoTemplate mongoTemplate;
+    private final Executor checkoutExecutor;
+    
+    private final AtomicReference<Segment> current = new AtomicReference<>(Segment.EMPTY);
+    private final AtomicReference<CompletableFuture<Segment>> prefetch = new AtomicReference<>();
+    
+    @Value("${app.orders.number.block-size:1000}")
+    private int blockSize;
+    
+    @Value("${app.orders.number.prefetch-ratio:0.2}")
+    private double prefetchRatio;
+    
+    @Value("${app.orders.number.prefix:OZ}")
+    private String prefix;
+    
+    /**
+     * @return the next order number, e.g. OZ-000012345
+     */
+    public String next() {
+        return format(nextValue());
+    }
+    
+    public String format(long value) {
+        return String.format("%s-%09d", prefix, value);
+    }
+    
+    long nextValue() {
+        while (true) {
+            Segment segment = current.get();
+            long value = segment.next.getAndIncrement();
+            if (value <= segment.end) {
+                if (segment.end - value == segment.prefetchAt) {
+                    startPrefetch();
+                }
+                return value;
+            }
+            advance(segment);
+        }
+    }
+    
+    /**
+     * Replaces an exhausted segment. Only this slow path synchronizes, once per block.
+     */
+    private synchronized void advance(Segment exhausted) {
+        if (current.get() != exhausted) {
+            return;
+        }
+        
+        CompletableFuture<Segment> pending = prefetch.getAndSet(null);
+        Segment next = null;
+        if (pending != null) {
+            try {
+                next = pending.join();
+            } catch (RuntimeException e) {
+                log.warn("Prefetching order numbers failed, leasing synchronously: {}", e.getMessage());
+            }
+        }
+        current.set(next != null ? next : lease());
+    }
+    
+    private void startPrefetch() {
+        CompletableFuture<Segment> future = new CompletableFuture<>();
+        if (prefetch.compareAndSet(null, future)) {
+            checkoutExecutor.execute(() -> {
+                try {
+                    future.complete(lease());
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        }
+    }
+    
+    private Segment lease() {
+        Counter counter = mongoTemplate.findAndModify(
+                new Query(Criteria.where("id").is(COUNTER_ID)),
+                new Update().inc("value", (long) blockSize).set("updatedAt", LocalDateTime.now()),
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                Counter.class);
+        long end = counter.getValue();
+        log.info("Leased order numbers {} to {}", end - blockSize + 1, end);
+        return new Segment(end - blockSize + 1, end, (long) (blockSize * prefetchRatio));
+    }
+    
+    private static final class Segment {
+        
+        static final Segment EMPTY = new Segment(1, 0, -1);
+        
+        final AtomicLong next;
+        final long end;
+        final long prefetchAt; // remaining count at which the next block is leased
+        
+        Segment(long start, long end, long prefetchAt) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+            this.prefetchAt = prefetchAt;
+        }
+    }
+}
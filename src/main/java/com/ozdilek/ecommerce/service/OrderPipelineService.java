@@ -0,0 +1,297 @@
+package com.ozdilek.ecommerce.service;
+
+import com.ozdilek.ecommerce.model.Order;
+import com.ozdilek.ecommerce.model.Order.OrderStatus;
+import com.ozdilek.ecommerce.model.OrderEvent;
+import com.ozdilek.ecommerce.model.OrderOutbox;
+import com.ozdilek.ecommerce.model.User;
+import com.ozdilek.ecommerce.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives orders through payment authorization, confirmation and customer notification
+ * after checkout has returned.
+ * <p>
+ * Steps live in the order_outbox collection. A dispatcher claims due steps with
+ * findAndModify (a lease, so a crashed worker's step is picked up again) and hands them to
+ * the worker pool. Every step is idempotent: order transitions are conditional on the
+ * expected current status, and the next step is enqueued with a deterministic id.
+ * Each transition is recorded through the {@link OrderEventService}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderPipelineService {
+    
+    private static final String CUSTOMER_NOTIFIED = "Customer notified";
+    private static final String PAYMENT_VOIDED = "Payment authorization voided";
+    
+    private final MongoTemplate mongoTemplate;
+    private final PaymentProvider paymentProvider;
+    private final InventoryService inventoryService;
+    private final UserRepository userRepository;
+    private final OrderEventService orderEventService;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService orderPipelineExecutor;
+    
+    private final AtomicInteger inFlight = new AtomicInteger();
+    
+    @Value("${app.orders.pipeline.max-in-flight:64}")
+    private int maxInFlight;
+    
+    @Value("${app.orders.pipeline.lease:PT1M}")
+    private Duration lease;
+    
+    @Value("${app.orders.pipeline.max-attempts:5}")
+    private int maxAttempts;
+    
+    @Value("${app.orders.pipeline.retry-backoff:PT5S}")
+    private Duration retryBackoff;
+    
+    /**
+     * Enqueues a pipeline step. Safe to call repeatedly; only the first call inserts.
+     * Pass a session-bound template to enqueue inside a transaction.
+     */
+    public void enqueue(MongoOperations ops, String orderId, OrderOutbox.Step step) {
+        LocalDateTime now = LocalDateTime.now();
+        ops.upsert(new Query(Criteria.where("id").is(OrderOutbox.idFor(orderId, step))),
+                new Update()
+                        .setOnInsert("orderId", orderId)
+                        .setOnInsert("type", step)
+                        .setOnInsert("status", OrderOutbox.Status.PENDING)
+                        .setOnInsert("attempts", 0)
+                        .setOnInsert("availableAt", now)
+                        .setOnInsert("createdAt", now)
+                        .setOnInsert("updatedAt", now),
+                OrderOutbox.class);
+    }
+    
+    @Scheduled(fixedDelayString = "${app.orders.pipeline.poll-interval:PT0.5S}")
+    public void dispatch() {
+        while (inFlight.get() < maxInFlight) {
+            OrderOutbox step = claimNext();
+            if (step == null) {
+                return;
+            }
+            
+            inFlight.incrementAndGet();
+            try {
+                orderPipelineExecutor.execute(() -> {
+                    try {
+                        process(step);
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                });
+            } catch (RuntimeException e) {
+                // Executor is shutting down; the lease expires and the step is claimed again
+                inFlight.decrementAndGet();
+                return;
+            }
+        }
+    }
+    
+    private OrderOutbox claimNext() {
+        LocalDateTime now = LocalDateTime.now();
+        Query query = new Query(new Criteria().orOperator(
+                Criteria.where("status").is(OrderOutbox.Status.PENDING).and("availableAt").lte(now),
+                Criteria.where("status").is(OrderOutbox.Status.PROCESSING).and("lockedUntil").lt(now)))
+                .with(Sort.by(Sort.Direction.ASC, "availableAt"));
+        
+        Update claim = new Update()
+                .set("status", OrderOutbox.Status.PROCESSING)
+                .set("lockedUntil", now.plus(lease))
+                .set("updatedAt", now)
+                .inc("attempts", 1);
+        
+        return mongoTemplate.findAndModify(query, claim, FindAndModifyOptions.options().returnNew(true), OrderOutbox.class);
+    }
+    
+    private void process(OrderOutbox step) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "done";
+        try {
+            switch (step.getType()) {
+                case AUTHORIZE_PAYMENT -> authorizePayment(step.getOrderId());
+                case CONFIRM_ORDER -> confirmOrder(step.getOrderId());
+                case NOTIFY_CUSTOMER -> notifyCustomer(step.getOrderId());
+            }
+            finish(step, OrderOutbox.Status.DONE, null, null);
+        } catch (Exception e) {
+            boolean exhausted = step.getAttempts() >= maxAttempts;
+            outcome = exhausted ? "failed" : "retry";
+            log.warn("Order pipeline step {} failed (attempt {}): {}", step.getId(), step.getAttempts(), e.getMessage());
+            finish(step,
+                    exhausted ? OrderOutbox.Status.FAILED : OrderOutbox.Status.PENDING,
+                    LocalDateTime.now().plus(retryBackoff.multipliedBy(step.getAttempts())),
+                    e.getMessage());
+        } finally {
+            sample.stop(Timer.builder("orders.pipeline.step")
+                    .description("Latency of order pipeline steps")
+                    .tag("step", step.getType().name())
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+    
+    /**
+     * The order id is the payment reference, so a gateway that deduplicates by reference
+     * never charges twice when this step is retried. An order cancelled by the pending
+     * order expiry while the authorization was in flight gets the authorization voided.
+     */
+    private void authorizePayment(String orderId) {
+        Order order = loadOrder(orderId);
+        if (order.getStatus() != OrderStatus.PENDING) {
+            // Already decided, possibly by an earlier attempt that died before finishing
+            if (order.getStatus() == OrderStatus.PAID) {
+                enqueue(mongoTemplate, orderId, OrderOutbox.Step.CONFIRM_ORDER);
+            } else if (order.getStatus() == OrderStatus.CANCELLED && !isSettled(order.getPayment())) {
+                // An earlier attempt may have authorized just before dying
+                voidAuthorization(order);
+            }
+            return;
+        }
+        
+        PaymentProvider.PaymentResult result = paymentProvider.authorize(order);
+        LocalDateTime now = LocalDateTime.now();
+        
+        if (result.approved()) {
+            Map<String, Object> payment = Map.of(
+                    "payment.status", "AUTHORIZED",
+                    "payment.transactionId", result.transactionId(),
+                    "payment.amount", order.getTotal(),
+                    "payment.currency", "TRY",
+                    "payment.processedAt", now);
+            if (transition(orderId, OrderStatus.PENDING, OrderStatus.PAID, result.message(),
+                    Map.of("transactionId", result.transactionId()), payment)) {
+                enqueue(mongoTemplate, orderId, OrderOutbox.Step.CONFIRM_ORDER);
+            } else if (loadOrder(orderId).getStatus() == OrderStatus.CANCELLED) {
+                voidAuthorization(order);
+            }
+        } else {
+            Map<String, Object> payment = Map.of(
+                    "payment.status", "DECLINED",
+                    "payment.processedAt", now);
+            if (transition(orderId, OrderStatus.PENDING, OrderStatus.CANCELLED, result.message(), null, payment)) {
+                inventoryService.releaseStock(reservedQuantities(order));
+            }
+        }
+    }
+    
+    private void confirmOrder(String orderId) {
+        Order order = loadOrder(orderId);
+        if (order.getStatus() == OrderStatus.PAID) {
+            transition(orderId, OrderStatus.PAID, OrderStatus.CONFIRMED, "Order confirmed", null, null);
+        } else if (order.getStatus() != OrderStatus.CONFIRMED) {
+            return;
+        }
+        enqueue(mongoTemplate, orderId, OrderOutbox.Step.NOTIFY_CUSTOMER);
+    }
+    
+    /**
+     * Voids the order's authorization and records it once; the void itself is idempotent
+     * at the gateway, so a retry after a crash just repeats it.
+     */
+    private void voidAuthorization(Order order) {
+        paymentProvider.voidAuthorization(order);
+        mongoTemplate.updateFirst(new Query(Criteria.where("id").is(order.getId())),
+                new Update().set("payment.status", "VOIDED").set("payment.processedAt", LocalDateTime.now()), Order.class);
+        if (!hasEvent(order.getId(), PAYMENT_VOIDED)) {
+            orderEventService.append(order.getId(), PAYMENT_VOIDED, null);
+        }
+        log.info("Voided payment authorization of cancelled order {}", order.getId());
+    }
+    
+    private boolean isSettled(Order.Payment payment) {
+        return payment != null && ("DECLINED".equals(payment.getStatus()) || "VOIDED".equals(payment.getStatus()));
+    }
+    
+    /**
+     * Sends the notification unless an earlier attempt already recorded it, so a lease that
+     * expires after the event was written does not notify (and record) a second time.
+     */
+    private void notifyCustomer(String orderId) {
+        if (hasEvent(orderId, CUSTOMER_NOTIFIED)) {
+            return;
+        }
+        
+        Order order = loadOrder(orderId);
+        String email = userRepository.findById(order.getUserId())
+                .map(User::getEmail)
+                .orElse(null);
+        
+        // Stand-in for the e-mail/SMS gateway
+        log.info("Notifying {} that order {} is {}", email, orderId, order.getStatus());
+        
+        orderEventService.append(orderId, CUSTOMER_NOTIFIED, null);
+    }
+    
+    private boolean hasEvent(String orderId, String message) {
+        return mongoTemplate.exists(new Query(Criteria.where("orderId").is(orderId).and("message").is(message)),
+                OrderEvent.class);
+    }
+    
+    private Order loadOrder(String orderId) {
+        Order order = mongoTemplate.findById(orderId, Order.class);
+        if (order == null) {
+            // In standard checkout the step is written just before the order itself
+            throw new IllegalStateException("Order not found yet: " + orderId);
+        }
+        return order;
+    }
+    
+    private boolean transition(String orderId, OrderStatus from, OrderStatus to, String message,
+                               Map<String, Object> meta, Map<String, Object> fields) {
+        boolean moved = orderEventService.transition(orderId, from, to, message, meta, fields) != null;
+        if (moved) {
+            log.info("Order {} moved from {} to {}", orderId, from, to);
+        }
+        return moved;
+    }
+    
+    private void finish(OrderOutbox step, OrderOutbox.Status status, LocalDateTime availableAt, String error) {
+        Update update = new Update()
+                .set("status", status)
+                .set("updatedAt", LocalDateTime.now())
+                .unset("lockedUntil");
+        if (availableAt != null) {
+            update.set("availableAt", availableAt);
+        }
+        if (error != null) {
+            update.set("lastError", error);
+        }
+        // Only the current lease holder may finish the step
+        mongoTemplate.updateFirst(new Query(Criteria.where("id").is(step.getId())
+                .and("lockedUntil").is(step.getLockedUntil())), update, OrderOutbox.class);
+    }
+    
+    private Map<String, Integer> reservedQuantities(Order order) {
+        Map<String, Integer> quantities = new HashMap<>();
+        if (order.getItems() != null) {
+            for (Order.OrderItem item : order.getItems()) {
+                quantities.merge(item.getProductId(), item.getQty(), Integer::sum);
+            }
+        }
+        return quantities;
+    }
+}
@@ -7,16 +7,19 @@ import com.ozdilek.ecommerce.model.Order.OrderItem;
 import com.ozdilek.ecommerce.model.Order.OrderStatus;
 import com.ozdilek.ecommerce.model.Order.Address;
 import com.ozdilek.ecommerce.model.Order.Payment;
-import com.ozdilek.ecommerce.model.Order.OrderEvent;
 import com.ozdilek.ecommerce.repository.CartRepository;
 import com.ozdilek.ecommerce.repository.OrderRepository;
 import com.ozdilek.ecommerce.repository.ProductRepository;
 import com.ozdilek.ecommerce.repository.UserRepository;
-import com.ozdilek.ecommerce.service.InventoryService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -24,33 +27,73 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class OrderService {
     
+    private static final String TRANSACTIONAL_MODE = "transactional";
+    private static final Money FREE_SHIPPING_THRESHOLD = Money.ofMinor(50_000);
+    private static final Money STANDARD_SHIPPING = Money.ofMinor(5_000);
+    
     private final OrderRepository orderRepository;
     private final CartRepository cartRepository;
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
     private final InventoryService inventoryService;
+    private final CartAnalyticsService cartAnalyticsService;
+    private final DashboardStatsService dashboardStatsService;
+    private final DailySalesService dailySalesService;
+    private final StockHoldService stockHoldService;
+    private final MeterRegistry meterRegistry;
+    private final Executor checkoutExecutor;
+    private final MongoTransactionRunner mongoTransactionRunner;
+    private final OrderPipelineService orderPipelineService;
+    private final MongoTemplate mongoTemplate;
+    private final OrderNumberGenerator orderNumberGenerator;
+    private final OrderEventService orderEventService;
+    private final OrderSummaryService orderSummaryService;
+    private final UserLookupService userLookupService;
+    private final PromotionEngine promotionEngine;
+    private final PriceResolver priceResolver;
+    
+    @Value("${app.checkout.mode:standard}")
+    private String checkoutMode;
     
+    /**
+     * Checkout in a fixed number of round-trips regardless of cart size: the user and the
+     * cart (followed by one findAllById for its products) load concurrently, stock is
+     * reserved in one bulkWrite (plus one write clearing its reservation token) using the
+     * loaded products, and the order is built from the same product data. Lines are priced
+     * by the {@link PriceResolver} and promotions are evaluated on the same data by the
+     * {@link PromotionEngine}. Each stage is timed as checkout.stage.
+     * With app.checkout.mode=transactional the reservation, order insert and cart delete
+     * run in a single Mongo transaction instead.
+     * The order is returned as PENDING; payment, confirmation and notification run
+     * afterwards in the {@link OrderPipelineService}.
+     */
     @Transactional
     public OrderResponse createOrder(String userId, CheckoutRequest request) {
         log.info("Creating order for userId: {}, cartId: {}", userId, request.getCartId());
         
-        User user = userRepository.findByEmail(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        
-        Cart cart = cartRepository.findById(request.getCartId())
-                .orElseThrow(() -> new RuntimeException("Cart not found"));
+        CheckoutData data = timed("load", () -> loadCheckoutData(userId, request.getCartId()));
+        User user = data.user();
+        Cart cart = data.cart();
+        Map<String, Product> products = data.products();
         
-        if (!cart.getUserId().equals(user.getId())) {
+        // Carts are keyed by the authenticated principal (email), not the user document id
+        if (!user.getEmail().equals(cart.getUserId())) {
             throw new RuntimeException("Cart does not belong to user");
         }
         
@@ -59,127 +102,278 @@ public class OrderService {
         }
         
         // Prepare stock reservation map
-        Map<String, Integer> stockReservationMap = new HashMap<>();
+        Map<String, Integer> stockReservationMap = new LinkedHashMap<>();
         for (Cart.CartItem cartItem : cart.getItems()) {
-            stockReservationMap.put(cartItem.getProductId(), cartItem.getQty());
-        }
-        
-        // Atomically reserve stock for all products
-        Map<String, Boolean> stockReservationResults = inventoryService.reserveStock(stockReservationMap);
-        
-        // Check if all stock reservations were successful
-        for (Map.Entry<String, Boolean> entry : stockReservationResults.entrySet()) {
-            if (!entry.getValue()) {
-                throw new RuntimeException("Insufficient stock for product: " + entry.getKey());
+            if (!products.containsKey(cartItem.getProductId())) {
+                throw new RuntimeException("Product not found: " + cartItem.getProductId());
             }
+            stockReservationMap.merge(cartItem.getProductId(), cartItem.getQty(), Integer::sum);
         }
         
-        // Calculate totals
+        // Calculate totals at the prices in effect now, as the cart showed them
+        Map<String, PriceResolver.ResolvedPrice> prices = priceResolver.resolveAll(products.values(), LocalDateTime.now());
         List<OrderItem> orderItems = new ArrayList<>();
-        BigDecimal subtotal = BigDecimal.ZERO;
+        List<PromotionEngine.Line> lines = new ArrayList<>();
+        Money subtotal = Money.ZERO;
         
         for (Cart.CartItem cartItem : cart.getItems()) {
-            Product product = productRepository.findById(cartItem.getProductId())
-                    .orElseThrow(() -> new RuntimeException("Product not found: " + cartItem.getProductId()));
+            Product product = products.get(cartItem.getProductId());
+            BigDecimal unitPrice = prices.get(cartItem.getProductId()).price();
+            Money unitAmount = Money.of(unitPrice);
             
             OrderItem orderItem = OrderItem.builder()
                     .productId(cartItem.getProductId())
                     .sku(cartItem.getSku())
                     .title(product.getTitle())
                     .qty(cartItem.getQty())
-                    .price(cartItem.getPriceSnapshot())
+                    .price(unitPrice)
                     .attributes(cartItem.getAttributes())
                     .build();
             
             orderItems.add(orderItem);
-            subtotal = subtotal.add(cartItem.getPriceSnapshot().multiply(BigDecimal.valueOf(cartItem.getQty())));
+            lines.add(new PromotionEngine.Line(cartItem.getProductId(), product.getCategories(), cartItem.getQty(), unitAmount));
+            subtotal = subtotal.plus(unitAmount.times(cartItem.getQty()));
         }
         
+        PromotionEngine.Evaluation pricing = promotionEngine.evaluate(lines, cart.getCouponCode());
+        if (!pricing.couponValid()) {
+            throw new RuntimeException("Coupon " + cart.getCouponCode() + " is no longer valid, please remove it");
+        }
+        Money discountedSubtotal = subtotal.minus(pricing.discount());
+        
         // Calculate shipping (mock calculation)
-        BigDecimal shipping = calculateShipping(subtotal);
-        BigDecimal total = subtotal.add(shipping);
+        Money shipping = calculateShipping(discountedSubtotal);
+        BigDecimal total = discountedSubtotal.plus(shipping).toBigDecimal();
         
         // Create order
-        Order order = Order.builder()
+        Order newOrder = Order.builder()
+                .id(new ObjectId().toHexString())
+                .orderNumber(orderNumberGenerator.next())
                 .userId(user.getId())
                 .items(orderItems)
-                .subtotal(subtotal)
-                .shipping(shipping)
+                .subtotal(subtotal.toBigDecimal())
+                .discount(pricing.discount().toBigDecimal())
+                .promotions(pricing.applied())
+                .couponCode(pricing.couponCode())
+                .shipping(shipping.toBigDecimal())
                 .total(total)
                 .status(OrderStatus.PENDING)
                 .shippingAddress(request.getShippingAddress())
                 .billingAddress(request.getBillingAddress())
                 .payment(Payment.builder()
                         .provider(request.getPaymentMethod().getProvider())
-                        .transactionId("mock_" + UUID.randomUUID().toString())
                         .status("PENDING")
+                        .amount(total)
+                        .currency("TRY")
                         .build())
-                .events(List.of(OrderEvent.builder()
-                        .status(OrderStatus.PENDING)
-                        .at(LocalDateTime.now())
-                        .meta(null)
-                        .build()))
+                .eventSeq(1L)
                 .createdAt(LocalDateTime.now())
                 .updatedAt(LocalDateTime.now())
                 .build();
         
-        order = orderRepository.save(order);
+        // Soft holds (when enabled) must still cover the cart before stock is taken
+        String holder = StockHoldService.holderFor(cart.getUserId(), cart.getSessionId());
+        stockHoldService.confirmHolds(holder, stockReservationMap, products);
+        
+        Order order = TRANSACTIONAL_MODE.equals(checkoutMode)
+                ? timed("transaction", () -> placeOrderInTransaction(newOrder, cart, stockReservationMap, products))
+                : placeOrder(newOrder, cart, stockReservationMap, products);
         
-        // Clear cart (stock already reserved atomically)
-        cartRepository.delete(cart);
+        // Redis bookkeeping is best-effort and stays off the response path
+        checkoutExecutor.execute(() -> {
+            stockHoldService.releaseAll(holder, stockReservationMap.keySet());
+            cartAnalyticsService.recordCartConverted(cart);
+            dashboardStatsService.recordOrderPlaced(order);
+            dailySalesService.recordPlaced(order);
+        });
         
         log.info("Order created successfully with ID: {}", order.getId());
         return mapToOrderResponse(order);
     }
     
-    public Page<OrderResponse> getUserOrders(String userId, Pageable pageable) {
-        log.info("Getting orders for userId: {}", userId);
+    /**
+     * Standard mode: stock is reserved with one compensating bulkWrite, then the pipeline
+     * step, the order and the cart delete follow as separate writes. If any of them fails
+     * the order is discarded and the reserved stock released before the error propagates.
+     */
+    private Order placeOrder(Order order, Cart cart, Map<String, Integer> quantities, Map<String, Product> products) {
+        // Atomically reserve stock for all products (all-or-nothing, compensated on failure)
+        InventoryService.ReservationResult reservation = timed("reserve",
+                () -> inventoryService.reserveStock(quantities, products));
+        if (!reservation.isSuccess()) {
+            throw new RuntimeException("Insufficient stock for product: " + reservation.getFailedProductId());
+        }
+        
+        return timed("persist", () -> {
+            try {
+                // The pipeline step goes first so no order can exist without one; a step whose
+                // order never arrives is retried and then parked as FAILED
+                orderPipelineService.enqueue(mongoTemplate, order.getId(), OrderOutbox.Step.AUTHORIZE_PAYMENT);
+                Order saved = orderRepository.save(order);
+                orderEventService.recordPlaced(mongoTemplate, saved);
+                orderSummaryService.recordPlaced(mongoTemplate, saved, products);
+                // Clear cart (stock already reserved atomically)
+                cartRepository.delete(cart);
+                return saved;
+            } catch (RuntimeException e) {
+                log.error("Failed to persist order {}: {}", order.getId(), e.getMessage());
+                if (discardPlaced(order.getId())) {
+                    inventoryService.releaseStock(quantities);
+                }
+                throw e;
+            }
+        });
+    }
+    
+    /**
+     * Removes what a failed checkout wrote so its stock can be released. An order the
+     * pipeline already moved past PENDING, or one that cannot be removed, keeps its stock:
+     * it is confirmed, or cancelled with its stock returned, like any other order.
+     *
+     * @return whether no order is left holding the stock
+     */
+    private boolean discardPlaced(String orderId) {
+        try {
+            Query pending = new Query(Criteria.where("id").is(orderId).and("status").is(OrderStatus.PENDING));
+            if (mongoTemplate.remove(pending, Order.class).getDeletedCount() == 0
+                    && mongoTemplate.exists(new Query(Criteria.where("id").is(orderId)), Order.class)) {
+                return false;
+            }
+            mongoTemplate.remove(new Query(Criteria.where("id").is(orderId)), OrderSummary.class);
+            mongoTemplate.remove(new Query(Criteria.where("orderId").is(orderId)), OrderEvent.class);
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Could not discard order {}, its stock stays reserved until it expires: {}", orderId, e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Transactional mode: reservation, order insert, pipeline step and cart delete commit
+     * or roll back together. Needs a replica set; transient conflicts are retried by the runner.
+     */
+    private Order placeOrderInTransaction(Order order, Cart cart, Map<String, Integer> quantities,
+                                          Map<String, Product> products) {
+        return mongoTransactionRunner.inTransaction(ops -> {
+            InventoryService.ReservationResult reservation =
+                    inventoryService.reserveStockInTransaction(ops, quantities, products);
+            if (!reservation.isSuccess()) {
+                throw new RuntimeException("Insufficient stock for product: " + reservation.getFailedProductId());
+            }
+            
+            Order saved = ops.insert(order);
+            orderEventService.recordPlaced(ops, saved);
+            orderSummaryService.recordPlaced(ops, saved, products);
+            orderPipelineService.enqueue(ops, saved.getId(), OrderOutbox.Step.AUTHORIZE_PAYMENT);
+            ops.remove(cart);
+            return saved;
+        });
+    }
+    
+    private CheckoutData loadCheckoutData(String userId, String cartId) {
+        CompletableFuture<User> userFuture = CompletableFuture.supplyAsync(() -> userRepository.findByEmail(userId)
+                .orElseThrow(() -> new RuntimeException("User not found")), checkoutExecutor);
+        
+        CompletableFuture<Cart> cartFuture = CompletableFuture.supplyAsync(() -> cartRepository.findById(cartId)
+                .orElseThrow(() -> new RuntimeException("Cart not found")), checkoutExecutor);
         
-        User user = userRepository.findByEmail(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        CompletableFuture<Map<String, Product>> productsFuture = cartFuture.thenApplyAsync(cart -> {
+            Map<String, Product> products = new HashMap<>();
+            Set<String> productIds = cart.getItems().stream()
+                    .map(Cart.CartItem::getProductId)
+                    .collect(Collectors.toSet());
+            productRepository.findAllById(productIds).forEach(product -> products.put(product.getId(), product));
+            return products;
+        }, checkoutExecutor);
         
-        Page<Order> orders = orderRepository.findByUserIdOrderByCreatedAtDesc(user.getId(), pageable);
-        return orders.map(this::mapToOrderResponse);
+        try {
+            return new CheckoutData(userFuture.join(), cartFuture.join(), productsFuture.join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+    
+    private <T> T timed(String stage, Supplier<T> action) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+        try {
+            return action.get();
+        } catch (RuntimeException e) {
+            outcome = "failure";
+            throw e;
+        } finally {
+            sample.stop(Timer.builder("checkout.stage")
+                    .description("Latency of each checkout stage")
+                    .tag("stage", stage)
+                    .tag("outcome", outcome)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry));
+        }
+    }
+    
+    private record CheckoutData(User user, Cart cart, Map<String, Product> products) {
+    }
+    
+    /**
+     * "My orders": one keyset page of the order_summaries read model.
+     */
+    public Map<String, Object> getUserOrders(String userId, String cursor, int limit) {
+        log.info("Getting orders for userId: {}", userId);
+        return orderSummaryService.getUserOrders(userLookupService.getUserIdByEmail(userId), cursor, limit);
     }
     
     public OrderResponse getOrderById(String orderId, String userId) {
         log.info("Getting order by ID: {} for userId: {}", orderId, userId);
         
-        User user = userRepository.findByEmail(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        
-        Order order = orderRepository.findById(orderId)
+        Order order = orderRepository.findByIdInAnyTier(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
         
-        if (!order.getUserId().equals(user.getId())) {
+        if (!order.getUserId().equals(userLookupService.getUserIdByEmail(userId))) {
             throw new RuntimeException("Order does not belong to user");
         }
         
         return mapToOrderResponse(order);
     }
     
-    private BigDecimal calculateShipping(BigDecimal subtotal) {
+    public Map<String, Object> getOrderTimeline(String orderId, String userId, long afterSeq, int limit) {
+        Order order = orderRepository.findByIdInAnyTier(orderId)
+                .orElseThrow(() -> new RuntimeException("Order not found"));
+        
+        if (!order.getUserId().equals(userLookupService.getUserIdByEmail(userId))) {
+            throw new RuntimeException("Order does not belong to user");
+        }
+        
+        return orderEventService.getTimeline(orderId, afterSeq, limit);
+    }
+    
+    private Money calculateShipping(Money subtotal) {
         // Mock shipping calculation
-        if (subtotal.compareTo(new BigDecimal("500")) >= 0) {
-            return BigDecimal.ZERO; // Free shipping over 500 TL
+        if (subtotal.compareTo(FREE_SHIPPING_THRESHOLD) >= 0) {
+            return Money.ZERO; // Free shipping over 500 TL
         } else {
-            return new BigDecimal("50"); // Standard shipping 50 TL
+            return STANDARD_SHIPPING; // Standard shipping 50 TL
         }
     }
     
     private OrderResponse mapToOrderResponse(Order order) {
         return OrderResponse.builder()
                 .id(order.getId())
+                .orderNumber(order.getOrderNumber())
                 .userId(order.getUserId())
                 .items(order.getItems())
                 .subtotal(order.getSubtotal())
+                .discount(order.getDiscount())
+                .promotions(order.getPromotions())
+                .couponCode(order.getCouponCode())
                 .shipping(order.getShipping())
                 .total(order.getTotal())
                 .status(order.getStatus())
                 .shippingAddress(order.getShippingAddress())
                 .billingAddress(order.getBillingAddress())
                 .payment(order.getPayment())
-                .events(order.getEvents())
                 .createdAt(order.getCreatedAt())
                 .updatedAt(order.getUpdatedAt())
                 .build();
@@ -0,0 +1,16 @@
+package com.ozdilek.ecommerce.service;
+
+import com.ozdilek.ecommerce.model.Order;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Published by {@link OrderEventService} after order snapshots moved to {@code status}.
+ * One event covers a whole batch; {@code previousStatuses} maps each moved order id to
+ * the status it left.
+ */
+public record OrderStatusChangedEvent(Map<String, Order.OrderStatus> previousStatuses,
+                                      Order.OrderStatus status,
+                                      LocalDateTime at) {
+}
@@ -0,0 +1,195 @@
+package com.ozdilek.ecommerce.service;
+
+import com.ozdilek.ecommerce.model.Order;
+import com.ozdilek.ecommerce.model.OrderSummary;
+import com.ozdilek.ecommerce.model.Product;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains the order_summaries read model and serves "my orders" from it.
+ * <p>
+ * A summary is written with the order at checkout and its status follows every
+ * {@link OrderStatusChangedEvent}. Pages are keyset-paginated on (createdAt, id) descending,
+ * so every page is one bounded scan of the {userId, createdAt, _id} index no matter how
+ * deep the user scrolls.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderSummaryService {
+    
+    private static final int MAX_PAGE_SIZE = 50;
+    
+    private final MongoTemplate mongoTemplate;
+    
+    /**
+     * Writes the summary of a new order. Call with the ops that insert the order.
+     * The status is only set on insert: the pipeline may already have moved the order
+     * when this runs, and that newer status wins.
+     */
+    public void recordPlaced(MongoOperations ops, Order order, Map<String, Product> products) {
+        OrderSummary summary = toSummary(order, products);
+        ops.upsert(new Query(Criteria.where("id").is(order.getId())),
+                new Update()
+                        .set("userId", summary.getUserId())
+                        .set("orderNumber", summary.getOrderNumber())
+                        .set("createdAt", summary.getCreatedAt())
+                        .set("total", summary.getTotal())
+                        .set("itemCount", summary.getItemCount())
+                        .set("thumbnailUrl", summary.getThumbnailUrl())
+                        .set("firstItemTitle", summary.getFirstItemTitle())
+                        .setOnInsert("status", summary.getStatus())
+                        .setOnInsert("updatedAt", summary.getUpdatedAt()),
+                OrderSummary.class);
+    }
+    
+    /**
+     * Upserts so a status change that overtakes the checkout write is not lost.
+     */
+    @EventListener
+    public void onStatusChanged(OrderStatusChangedEvent event) {
+        try {
+            BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, OrderSummary.class);
+            event.previousStatuses().keySet().forEach(orderId -> bulkOps.upsert(
+                    new Query(Criteria.where("id").is(orderId)),
+                    new Update().set("status", event.status()).set("updatedAt", event.at())));
+            bulkOps.execute();
+        } catch (Exception e) {
+            // The summary lags until the next change or rebuild; the order itself is fine
+            log.warn("Failed to update {} order summaries to {}: {}",
+                    event.previousStatuses().size(), event.status(), e.getMessage());
+        }
+    }
+    
+    /**
+     * One page of the user's orders, newest first.
+     *
+     * @param cursor the {@code nextCursor} of the previous page, or null for the first page
+     */
+    public Map<String, Object> getUserOrders(String userId, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        
+        Criteria criteria = Criteria.where("userId").is(userId);
+        if (cursor != null && !cursor.isBlank()) {
+            Cursor after = decodeCursor(cursor);
+            criteria = criteria.orOperator(
+                    Criteria.where("createdAt").lt(after.createdAt()),
+                    Criteria.where("createdAt").is(after.createdAt()).and("id").lt(after.id()));
+        }
+        
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.DESC, "createdAt").and(Sort.by(Sort.Direction.DESC, "id")))
+                .limit(pageSize);
+        List<OrderSummary> orders = mongoTemplate.find(query, OrderSummary.class);
+        
+        Map<String, Object> page = new LinkedHashMap<>();
+        page.put("orders", orders);
+        page.put("nextCursor", orders.size() == pageSize ? encodeCursor(orders.get(orders.size() - 1)) : null);
+        return page;
+    }
+    
+    /**
+     * Rewrites the summaries of the next {@code batchSize} orders after {@code afterId}
+     * (by id), e.g. to backfill orders placed before the read model existed. Call again
+     * with the returned {@code nextAfterId} until it is null.
+     */
+    public Map<String, Object> rebuild(String afterId, int batchSize) {
+        Criteria criteria = afterId != null ? Criteria.where("id").gt(afterId) : new Criteria();
+        Query batch = new Query(criteria).with(Sort.by(Sort.Direction.ASC, "id")).limit(batchSize);
+        batch.fields().include("id").include("userId").include("orderNumber").include("createdAt")
+                .include("total").include("status").include("items").include("updatedAt");
+        List<Order> orders = mongoTemplate.find(batch, Order.class);
+        
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("rebuilt", orders.size());
+        result.put("nextAfterId", orders.size() == batchSize ? orders.get(orders.size() - 1).getId() : null);
+        if (orders.isEmpty()) {
+            return result;
+        }
+        
+        Set<String> productIds = orders.stream()
+                .filter(order -> order.getItems() != null && !order.getItems().isEmpty())
+                .map(order -> order.getItems().get(0).getProductId())
+                .collect(Collectors.toSet());
+        Query productQuery = new Query(Criteria.where("id").in(productIds));
+        productQuery.fields().include("id").include("images");
+        Map<String, Product> products = mongoTemplate.find(productQuery, Product.class).stream()
+                .collect(Collectors.toMap(Product::getId, product -> product));
+        
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, OrderSummary.class);
+        orders.forEach(order -> bulkOps.replaceOne(new Query(Criteria.where("id").is(order.getId())),
+                toSummary(order, products), FindAndReplaceOptions.options().upsert()));
+        bulkOps.execute();
+        
+        log.info("Rebuilt {} order summaries", orders.size());
+        return result;
+    }
+    
+    private OrderSummary toSummary(Order order, Map<String, Product> products) {
+        List<Order.OrderItem> items = order.getItems() != null ? order.getItems() : List.of();
+        Order.OrderItem first = items.isEmpty() ? null : items.get(0);
+        
+        return OrderSummary.builder()
+                .id(order.getId())
+                .userId(order.getUserId())
+                .orderNumber(order.getOrderNumber())
+                .createdAt(order.getCreatedAt())
+                .total(order.getTotal())
+                .status(order.getStatus())
+                .itemCount(items.stream().mapToInt(Order.OrderItem::getQty).sum())
+                .firstItemTitle(first != null ? first.getTitle() : null)
+                .thumbnailUrl(first != null ? thumbnailOf(products.get(first.getProductId())) : null)
+                .updatedAt(order.getUpdatedAt())
+                .build();
+    }
+    
+    private String thumbnailOf(Product product) {
+        if (product == null || product.getImages() == null || product.getImages().isEmpty()) {
+            return null;
+        }
+        return product.getImages().stream()
+                .min(Comparator.comparing((Product.ProductImage image) -> !Boolean.TRUE.equals(image.getIsPrimary()))
+                        .thenComparing(image -> image.getSortOrder() != null ? image.getSortOrder() : Integer.MAX_VALUE))
+                .map(Product.ProductImage::getUrl)
+                .orElse(null);
+    }
+    
+    private String encodeCursor(OrderSummary last) {
+        String raw = last.getCreatedAt() + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private Cursor decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            return new Cursor(LocalDateTime.parse(raw.substring(0, separator)), raw.substring(separator + 1));
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Invalid cursor");
+        }
+    }
+    
+    private record Cursor(LocalDateTime createdAt, String id) {
+    }
+}
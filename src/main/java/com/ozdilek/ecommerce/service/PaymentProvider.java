@@ -0,0 +1,20 @@
+package com.ozdilek.ecommerce.service;
+
+import com.ozdilek.ecommerce.model.Order;
+
+/**
+ * Payment gateway used by the order pipeline to authorize an order's total.
+ */
+public interface PaymentProvider {
+    
+    PaymentResult authorize(Order order);
+    
+    /**
+     * Voids the authorization made for the order, referenced by the order id. Voiding an
+     * order that has no live authorization is a no-op, so the call may be repeated.
+     */
+    void voidAuthorization(Order order);
+    
+    record PaymentResult(boolean approved, String transactionId, String message) {
+    }
+}
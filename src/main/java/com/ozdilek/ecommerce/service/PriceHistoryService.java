@@ -0,0 +1,354 @@
+package com.ozdilek.ecommerce.service;
+
+import com.ozdilek.ecommerce.model.Money;
+import com.ozdilek.ecommerce.model.PriceHistory;
+import com.ozdilek.ecommerce.model.Product;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Effective price history and the "lowest price before the reduction" shown next to discounts.
+ * <p>
+ * The effective price is what a product page shows: the list price, or the winning price
+ * book entry, less the best single-unit promotion that needs no coupon. Every change of it is
+ * pushed into a per-SKU, per-day bucket in price_history: list price edits as they are saved,
+ * price book and promotion starts and ends when the sweep notices them (every
+ * app.pricing.history-interval), so a campaign that ended still counts.
+ * <p>
+ * The reference price of a price period is the lowest effective price in effect during the
+ * {@link #WINDOW_DAYS} days before the period started, the current price excluded. It does
+ * not move while the period lasts, so it is computed once when the price changes and kept in
+ * Redis next to the price it belongs to; reads fall back to the buckets.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PriceHistoryService {
+    
+    public static final int WINDOW_DAYS = 30;
+    
+    private static final String LOCK_NAME = "price-history-sweep";
+    
+    // Hash per SKU: price (minor units), reference (minor units), since
+    private static final String REFERENCE_KEY_PREFIX = "price_ref:";
+    // SKUs last recorded below their list price; swept until they are back on it
+    private static final String DISCOUNTED_KEY = "price_discounted";
+    private static final Duration REFERENCE_TTL = Duration.ofDays(400);
+    
+    private final MongoTemplate mongoTemplate;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final PriceResolver priceResolver;
+    private final PromotionEngine promotionEngine;
+    private final DistributedLockService distributedLockService;
+    
+    @Value("${app.pricing.history-lock-ttl:PT5M}")
+    private Duration lockTtl;
+    
+    /**
+     * Records the effective price after a list price change. Call after the product is saved;
+     * does nothing when the effective price did not change (e.g. a fixed price book price
+     * still wins). Failures are logged, never thrown: the price write stands.
+     *
+     * @param previousPrice previous list price, null when the product is new
+     */
+    public void recordChange(Product product, BigDecimal previousPrice, String source) {
+        if (product.getPrice() == null) {
+            return;
+        }
+        
+        BigDecimal previous = recordedPrice(product.getSku());
+        if (previous == null) {
+            previous = previousPrice;
+        }
+        record(product, previous, effectivePrice(product), source, LocalDateTime.now());
+    }
+    
+    /**
+     * Picks up price book and promotion starts and ends: compares the effective price of
+     * every product they touch, and of every product last recorded as discounted, with the
+     * recorded one.
+     */
+    @Scheduled(fixedDelayString = "${app.pricing.history-interval:PT1M}", initialDelayString = "${app.pricing.history-interval:PT1M}")
+    public void recordScheduledPrices() {
+        Optional<String> lock = distributedLockService.tryAcquire(LOCK_NAME, lockTtl);
+        if (lock.isEmpty()) {
+            return;
+        }
+        
+        try {
+            Set<String> skus = new HashSet<>(priceResolver.pricedSkus());
+            Set<String> discounted = redisTemplate.opsForSet().members(DISCOUNTED_KEY);
+            if (discounted != null) {
+                skus.addAll(discounted);
+            }
+            Set<String> categories = new HashSet<>(priceResolver.pricedCategories());
+            categories.addAll(promotionEngine.promotedCategories());
+            
+            Query query = new Query(new Criteria().orOperator(
+                    Criteria.where("sku").in(skus),
+                    Criteria.where("id").in(promotionEngine.promotedProductIds()),
+                    Criteria.where("categories").in(categories)));
+            query.fields().include("sku", "price", "currency", "categories");
+            List<Product> products = mongoTemplate.find(query, Product.class);
+            
+            List<String> recorded = recordedPrices(products);
+            LocalDateTime now = LocalDateTime.now();
+            int changes = 0;
+            for (int i = 0; i < products.size(); i++) {
+                Product product = products.get(i);
+                if (product.getPrice() == null) {
+                    continue;
+                }
+                BigDecimal effective = effectivePrice(product);
+                // Never recorded: the list price was in effect before anything was scheduled
+                BigDecimal previous = recorded.get(i) != null
+                        ? Money.ofMinor(Long.parseLong(recorded.get(i))).toBigDecimal()
+                        : product.getPrice();
+                if (previous.compareTo(effective) != 0) {
+                    record(product, previous, effective, sourceOf(product, effective), now);
+                    changes++;
+                }
+            }
+            if (changes > 0) {
+                log.info("Recorded {} scheduled price changes", changes);
+            }
+        } catch (Exception e) {
+            log.warn("Scheduled price history sweep failed: {}", e.getMessage());
+        } finally {
+            distributedLockService.release(LOCK_NAME, lock.get());
+        }
+    }
+    
+    /**
+     * Lowest effective price in effect during the {@link #WINDOW_DAYS} days before the current
+     * price took effect, the current price excluded. The current price when nothing earlier
+     * is known.
+     */
+    public BigDecimal lowestPrice30d(Product product) {
+        if (product.getPrice() == null) {
+            return null;
+        }
+        
+        BigDecimal current = effectivePrice(product);
+        try {
+            Map<Object, Object> reference = redisTemplate.opsForHash().entries(REFERENCE_KEY_PREFIX + product.getSku());
+            Object price = reference.get("price");
+            if (price != null && Long.parseLong(price.toString()) == Money.of(current).minor()) {
+                Object lowest = reference.get("reference");
+                return lowest != null ? Money.ofMinor(Long.parseLong(lowest.toString())).toBigDecimal() : current;
+            }
+        } catch (Exception e) {
+            log.warn("Reference price lookup for {} fell back to history: {}", product.getSku(), e.getMessage());
+        }
+        
+        PriceHistory.Change last = lastChange(product.getSku());
+        if (last == null) {
+            return current;
+        }
+        if (last.getPrice().compareTo(current) == 0) {
+            return Objects.requireNonNullElse(referenceBefore(product.getSku(), last.getAt(), last.getPreviousPrice()), current);
+        }
+        // The sweep has not recorded the current price yet: its period starts now
+        return referenceBefore(product.getSku(), LocalDateTime.now(), last.getPrice());
+    }
+    
+    /**
+     * Effective price changes of a SKU between two days (inclusive), oldest first.
+     */
+    public Map<String, Object> getHistory(String sku, LocalDate from, LocalDate to) {
+        List<PriceHistory> buckets = findBuckets(sku, from, to);
+        
+        List<PriceHistory.Change> changes = new ArrayList<>();
+        buckets.forEach(bucket -> changes.addAll(bucket.getChanges()));
+        
+        List<BigDecimal> prices = new ArrayList<>();
+        changes.forEach(change -> {
+            prices.add(change.getPrice());
+            prices.add(change.getPreviousPrice());
+        });
+        
+        Map<String, Object> history = new LinkedHashMap<>();
+        history.put("sku", sku);
+        history.put("from", from);
+        history.put("to", to);
+        history.put("openingPrice", changes.isEmpty() ? null : changes.get(0).getPreviousPrice());
+        history.put("closingPrice", changes.isEmpty() ? null : changes.get(changes.size() - 1).getPrice());
+        history.put("lowestPrice", prices.stream().filter(Objects::nonNull).min(BigDecimal::compareTo).orElse(null));
+        history.put("highestPrice", prices.stream().filter(Objects::nonNull).max(BigDecimal::compareTo).orElse(null));
+        history.put("changes", changes);
+        return history;
+    }
+    
+    private BigDecimal effectivePrice(Product product) {
+        BigDecimal resolved = priceResolver.resolve(product, LocalDateTime.now()).price();
+        return promotionEngine.advertisedPrice(product.getId(), product.getCategories(), Money.of(resolved)).toBigDecimal();
+    }
+    
+    private String sourceOf(Product product, BigDecimal effective) {
+        PriceResolver.ResolvedPrice resolved = priceResolver.resolve(product, LocalDateTime.now());
+        if (effective.compareTo(resolved.price()) < 0) {
+            return "promotion";
+        }
+        return resolved.priceBookId() != null ? "price-book" : "list-price";
+    }
+    
+    /**
+     * Pushes the change and stores the reference price of the period it starts.
+     */
+    private void record(Product product, BigDecimal previous, BigDecimal price, String source, LocalDateTime at) {
+        if (previous != null && previous.compareTo(price) == 0) {
+            return;
+        }
+        
+        String sku = product.getSku();
+        LocalDate day = at.toLocalDate();
+        BigDecimal reference = null;
+        try {
+            reference = referenceBefore(sku, at, previous);
+            PriceHistory.Change change = PriceHistory.Change.builder()
+                    .at(at)
+                    .price(price)
+                    .previousPrice(previous)
+                    .listPrice(product.getPrice())
+                    .source(source)
+                    .build();
+            mongoTemplate.upsert(new Query(Criteria.where("id").is(PriceHistory.idFor(sku, day))),
+                    new Update()
+                            .setOnInsert("sku", sku)
+                            .setOnInsert("day", day)
+                            .set("productId", product.getId())
+                            .push("changes", change)
+                            .inc("count", 1)
+                            .set("updatedAt", at),
+                    PriceHistory.class);
+        } catch (Exception e) {
+            log.warn("Failed to record price history for {}: {}", sku, e.getMessage());
+        }
+        
+        try {
+            Map<String, String> fields = new LinkedHashMap<>();
+            fields.put("price", String.valueOf(Money.of(price).minor()));
+            fields.put("since", at.toString());
+            String key = REFERENCE_KEY_PREFIX + sku;
+            if (reference != null) {
+                fields.put("reference", String.valueOf(Money.of(reference).minor()));
+            } else {
+                redisTemplate.opsForHash().delete(key, "reference");
+            }
+            redisTemplate.opsForHash().putAll(key, fields);
+            redisTemplate.expire(key, REFERENCE_TTL);
+            if (price.compareTo(product.getPrice()) < 0) {
+                redisTemplate.opsForSet().add(DISCOUNTED_KEY, sku);
+            } else {
+                redisTemplate.opsForSet().remove(DISCOUNTED_KEY, sku);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to update reference price for {}: {}", sku, e.getMessage());
+        }
+    }
+    
+    /**
+     * Lowest price in effect during the window before {@code since}: the price replaced at
+     * {@code since}, plus both sides of every change inside the window (the old side covers
+     * the price already in effect when the window opened).
+     *
+     * @return null when nothing was in effect before
+     */
+    private BigDecimal referenceBefore(String sku, LocalDateTime since, BigDecimal previous) {
+        LocalDateTime windowStart = since.minusDays(WINDOW_DAYS);
+        BigDecimal lowest = previous;
+        for (PriceHistory bucket : findBuckets(sku, windowStart.toLocalDate(), since.toLocalDate())) {
+            for (PriceHistory.Change change : bucket.getChanges()) {
+                if (change.getAt().isBefore(windowStart) || !change.getAt().isBefore(since)) {
+                    continue;
+                }
+                lowest = lower(lowest, change.getPrice());
+                lowest = lower(lowest, change.getPreviousPrice());
+            }
+        }
+        return lowest;
+    }
+    
+    private static BigDecimal lower(BigDecimal a, BigDecimal b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null ? a : a.min(b);
+    }
+    
+    /**
+     * Last recorded effective price: Redis first, then the history buckets.
+     */
+    private BigDecimal recordedPrice(String sku) {
+        try {
+            Object price = redisTemplate.opsForHash().get(REFERENCE_KEY_PREFIX + sku, "price");
+            if (price != null) {
+                return Money.ofMinor(Long.parseLong(price.toString())).toBigDecimal();
+            }
+        } catch (Exception e) {
+            log.warn("Recorded price lookup for {} fell back to history: {}", sku, e.getMessage());
+        }
+        PriceHistory.Change last = lastChange(sku);
+        return last != null ? last.getPrice() : null;
+    }
+    
+    /**
+     * Recorded prices (minor units) in the order of the products, one round-trip.
+     */
+    private List<String> recordedPrices(List<Product> products) {
+        List<Object> replies = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (Product product : products) {
+                    ops.opsForHash().get(REFERENCE_KEY_PREFIX + product.getSku(), "price");
+                }
+                return null;
+            }
+        });
+        return replies.stream().map(reply -> reply != null ? reply.toString() : null).toList();
+    }
+    
+    private PriceHistory.Change lastChange(String sku) {
+        Query query = new Query(Criteria.where("sku").is(sku))
+                .with(Sort.by(Sort.Direction.DESC, "day"))
+                .limit(1);
+        PriceHistory bucket = mongoTemplate.findOne(query, PriceHistory.class);
+        if (bucket == null || bucket.getChanges() == null || bucket.getChanges().isEmpty()) {
+            return null;
+        }
+        return bucket.getChanges().get(bucket.getChanges().size() - 1);
+    }
+    
+    private List<PriceHistory> findBuckets(String sku, LocalDate from, LocalDate to) {
+        Query query = new Query(Criteria.where("sku").is(sku).and("day").gte(from).lte(to))
+                .with(Sort.by(Sort.Direction.ASC, "day"));
+        return mongoTemplate.find(query, PriceHistory.class);
+    }
+}
@@ -0,0 +1,261 @@
+package com.ozdilek.ecommerce.service;
+
+import com.ozdilek.ecommerce.model.Money;
+import com.ozdilek.ecommerce.model.PriceBook;
+import com.ozdilek.ecommerce.model.Product;
+import com.ozdilek.ecommerce.repository.PriceBookRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Resolves the effective price of a product at a point in time from the active price books.
+ * <p>
+ * Entries are compiled per SKU and per category into timelines: the sorted start/end
+ * instants cut time into segments, and the winning entry of every segment is precomputed.
+ * A lookup is one binary search and also yields the next boundary, i.e. how long the
+ * answer stays valid; cached carts expire at that instant (see CacheConfig), so scheduled
+ * prices take effect on time without anyone writing Product.price.
+ * Only edits recompile the index; passing a boundary needs nothing. Edits on other nodes
+ * are picked up by a fingerprint check every app.pricing.refresh-interval.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PriceResolver {
+    
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+    
+    // Higher book priority wins, then the entry that started last
+    private static final Comparator<Ranked> RANKING = Comparator.comparingInt(Ranked::priority)
+            .thenComparing(PriceResolver::startOf);
+    
+    private final PriceBookRepository priceBookRepository;
+    private final MongoTemplate mongoTemplate;
+    private final CacheManager cacheManager;
+    
+    private final AtomicReference<PriceIndex> index = new AtomicReference<>(PriceIndex.EMPTY);
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            reload();
+        } catch (Exception e) {
+            // List prices are served until the next refresh succeeds
+            log.error("Failed to load price books: {}", e.getMessage());
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${app.pricing.refresh-interval:PT30S}", initialDelayString = "${app.pricing.refresh-interval:PT30S}")
+    public void refresh() {
+        try {
+            if (!fingerprint().equals(index.get().fingerprint())) {
+                reload();
+            }
+        } catch (Exception e) {
+            log.warn("Failed to refresh price books: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Compiles the active price books and swaps the index in atomically.
+     */
+    public synchronized void reload() {
+        String fingerprint = fingerprint();
+        List<PriceBook> books = priceBookRepository.findByActiveTrue();
+        
+        Map<String, List<Ranked>> bySku = new HashMap<>();
+        Map<String, List<Ranked>> byCategory = new HashMap<>();
+        int entries = 0;
+        for (PriceBook book : books) {
+            if (book.getEntries() == null) {
+                continue;
+            }
+            int priority = book.getPriority() != null ? book.getPriority() : 0;
+            for (PriceBook.Entry entry : book.getEntries()) {
+                Ranked ranked = new Ranked(entry, book.getId(), priority);
+                if (entry.getSku() != null) {
+                    bySku.computeIfAbsent(entry.getSku(), key -> new ArrayList<>()).add(ranked);
+                } else {
+                    byCategory.computeIfAbsent(entry.getCategoryId(), key -> new ArrayList<>()).add(ranked);
+                }
+                entries++;
+            }
+        }
+        
+        index.set(new PriceIndex(compile(bySku), compile(byCategory), fingerprint));
+        
+        Cache carts = cacheManager.getCache("carts");
+        if (carts != null) {
+            carts.clear();
+        }
+        log.info("Compiled {} price entries from {} active price books", entries, books.size());
+    }
+    
+    public ResolvedPrice resolve(Product product, LocalDateTime at) {
+        PriceIndex current = index.get();
+        
+        Hit sku = lookup(current.bySku().get(product.getSku()), at);
+        Hit winner = sku;
+        LocalDateTime validUntil = sku.nextBoundary();
+        
+        // Category entries only matter while no SKU entry is running
+        if (sku.entry() == null && product.getCategories() != null) {
+            for (String category : product.getCategories()) {
+                Hit hit = lookup(current.byCategory().get(category), at);
+                validUntil = earliest(validUntil, hit.nextBoundary());
+                if (hit.entry() != null && (winner.entry() == null || RANKING.compare(hit.entry(), winner.entry()) > 0)) {
+                    winner = hit;
+                }
+            }
+        }
+        
+        if (winner.entry() == null) {
+            return new ResolvedPrice(product.getPrice(), product.getPrice(), null, validUntil);
+        }
+        return new ResolvedPrice(priceOf(winner.entry().entry(), product.getPrice()), product.getPrice(),
+                winner.entry().priceBookId(), validUntil);
+    }
+    
+    public Map<String, ResolvedPrice> resolveAll(Collection<Product> products, LocalDateTime at) {
+        Map<String, ResolvedPrice> prices = new HashMap<>();
+        products.forEach(product -> prices.put(product.getId(), resolve(product, at)));
+        return prices;
+    }
+    
+    /**
+     * SKUs with price book entries, running or scheduled.
+     */
+    public Set<String> pricedSkus() {
+        return index.get().bySku().keySet();
+    }
+    
+    /**
+     * Categories with price book entries, running or scheduled.
+     */
+    public Set<String> pricedCategories() {
+        return index.get().byCategory().keySet();
+    }
+    
+    private BigDecimal priceOf(PriceBook.Entry entry, BigDecimal listPrice) {
+        if (entry.getPrice() != null) {
+            return entry.getPrice();
+        }
+        return Money.of(listPrice).percent(HUNDRED.subtract(entry.getPercentOff())).toBigDecimal();
+    }
+    
+    private Hit lookup(Timeline timeline, LocalDateTime at) {
+        if (timeline == null) {
+            return Hit.NONE;
+        }
+        
+        LocalDateTime[] boundaries = timeline.boundaries();
+        int position = Arrays.binarySearch(boundaries, at);
+        // Index of the last boundary <= at, -1 when at is before the first one
+        int segment = position >= 0 ? position : -position - 2;
+        
+        LocalDateTime next = segment + 1 < boundaries.length ? boundaries[segment + 1] : null;
+        if (LocalDateTime.MAX.equals(next)) {
+            next = null;
+        }
+        Ranked entry = segment >= 0 && segment < timeline.winners().length ? timeline.winners()[segment] : null;
+        return new Hit(entry, next);
+    }
+    
+    private Map<String, Timeline> compile(Map<String, List<Ranked>> entriesByKey) {
+        Map<String, Timeline> timelines = new HashMap<>();
+        entriesByKey.forEach((key, entries) -> timelines.put(key, compileTimeline(entries)));
+        return Map.copyOf(timelines);
+    }
+    
+    /**
+     * Segment i is [boundaries[i], boundaries[i + 1]); winners[i] is the best entry covering it.
+     */
+    private Timeline compileTimeline(List<Ranked> entries) {
+        TreeSet<LocalDateTime> instants = new TreeSet<>();
+        for (Ranked ranked : entries) {
+            instants.add(startOf(ranked));
+            instants.add(endOf(ranked));
+        }
+        LocalDateTime[] boundaries = instants.toArray(new LocalDateTime[0]);
+        
+        Ranked[] winners = new Ranked[boundaries.length - 1];
+        for (int i = 0; i < winners.length; i++) {
+            LocalDateTime segmentStart = boundaries[i];
+            for (Ranked ranked : entries) {
+                boolean covers = !startOf(ranked).isAfter(segmentStart) && endOf(ranked).isAfter(segmentStart);
+                if (covers && (winners[i] == null || RANKING.compare(ranked, winners[i]) > 0)) {
+                    winners[i] = ranked;
+                }
+            }
+        }
+        return new Timeline(boundaries, winners);
+    }
+    
+    private static LocalDateTime startOf(Ranked ranked) {
+        return ranked.entry().getStartsAt() != null ? ranked.entry().getStartsAt() : LocalDateTime.MIN;
+    }
+    
+    private static LocalDateTime endOf(Ranked ranked) {
+        return ranked.entry().getEndsAt() != null ? ranked.entry().getEndsAt() : LocalDateTime.MAX;
+    }
+    
+    private static LocalDateTime earliest(LocalDateTime a, LocalDateTime b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null || a.isBefore(b) ? a : b;
+    }
+    
+    /**
+     * Changes whenever a price book is written: every write bumps updatedAt.
+     */
+    private String fingerprint() {
+        Query latest = new Query().with(Sort.by(Sort.Direction.DESC, "updatedAt")).limit(1);
+        latest.fields().include("updatedAt");
+        PriceBook last = mongoTemplate.findOne(latest, PriceBook.class);
+        return mongoTemplate.count(new Query(), PriceBook.class) + "|" + (last != null ? last.getUpdatedAt() : null);
+    }
+    
+    /**
+     * @param priceBookId null when the list price applies
+     * @param validUntil  when the answer may change next; null when no change is scheduled
+     */
+    public record ResolvedPrice(BigDecimal price, BigDecimal listPrice, String priceBookId, LocalDateTime validUntil) {
+    }
+    
+    private record Ranked(PriceBook.Entry entry, String priceBookId, int priority) {
+    }
+    
+    private record Hit(Ranked entry, LocalDateTime nextBoundary) {
+        static final Hit NONE = new Hit(null, null);
+    }
+    
+    private record Timeline(LocalDateTime[] boundaries, Ranked[] winners) {
+    }
+    
+    private record PriceIndex(Map<String, Timeline> bySku, Map<String, Timeline> byCategory, String fingerprint) {
+        static final PriceIndex EMPTY = new PriceIndex(Map.of(), Map.of(), "");
+    }
+}
@@ -17,6 +17,7 @@ import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -27,6 +28,9 @@ import java.util.stream.Collectors;
 public class ProductService {
     
     private final ProductRepository productRepository;
+    private final PriceResolver priceResolver;
+    private final PriceHistoryService priceHistoryService;
+    private final DashboardStatsService dashboardStatsService;
     
     @Transactional(readOnly = true)
     // @Cacheable(value = "products", key = "#id") // Disabled for testing
@@ -34,7 +38,7 @@ public class ProductService {
         log.info("Finding product by id: {}", id);
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
-        return mapToResponse(product);
+        return mapToDetailResponse(product);
     }
     
     @Transactional(readOnly = true)
@@ -43,7 +47,7 @@ public class ProductService {
         log.info("Finding product by sku: {}", sku);
         Product product = productRepository.findBySku(sku)
                 .orElseThrow(() -> new RuntimeException("Product not found with sku: " + sku));
-        return mapToResponse(product);
+        return mapToDetailResponse(product);
     }
     
     @Transactional(readOnly = true)
@@ -52,7 +56,7 @@ public class ProductService {
         log.info("Finding product by slug: {}", slug);
         Product product = productRepository.findBySlug(slug)
                 .orElseThrow(() -> new RuntimeException("Product not found with slug: " + slug));
-        return mapToResponse(product);
+        return mapToDetailResponse(product);
     }
     
     @Transactional(readOnly = true)
@@ -70,16 +74,16 @@ public class ProductService {
                 products = productRepository.findByTextSearchAndCategoriesAndPriceRangeAndAvailable(
                         searchRequest.getQ(),
                         searchRequest.getCategories(),
-                        searchRequest.getMinPrice(),
-                        searchRequest.getMaxPrice(),
+                        BigDecimal.valueOf(searchRequest.getMinPrice()),
+                        BigDecimal.valueOf(searchRequest.getMaxPrice()),
                         pageable
                 );
             } else if (searchRequest.getCategories() != null && !searchRequest.getCategories().isEmpty()) {
                 products = productRepository.findByCategoriesAndAvailable(searchRequest.getCategories(), pageable);
             } else if (searchRequest.getMinPrice() != null && searchRequest.getMaxPrice() != null) {
                 products = productRepository.findByPriceRangeAndAvailable(
-                        searchRequest.getMinPrice(),
-                        searchRequest.getMaxPrice(),
+                        BigDecimal.valueOf(searchRequest.getMinPrice()),
+                        BigDecimal.valueOf(searchRequest.getMaxPrice()),
                         pageable
                 );
             } else {
@@ -89,16 +93,16 @@ public class ProductService {
                    searchRequest.getMinPrice() != null && searchRequest.getMaxPrice() != null) {
             products = productRepository.findByCategoriesAndPriceRangeAndAvailable(
                     searchRequest.getCategories(),
-                    searchRequest.getMinPrice(),
-                    searchRequest.getMaxPrice(),
+                    BigDecimal.valueOf(searchRequest.getMinPrice()),
+                    BigDecimal.valueOf(searchRequest.getMaxPrice()),
                     pageable
             );
         } else if (searchRequest.getCategories() != null && !searchRequest.getCategories().isEmpty()) {
             products = productRepository.findByCategoriesAndAvailable(searchRequest.getCategories(), pageable);
         } else if (searchRequest.getMinPrice() != null && searchRequest.getMaxPrice() != null) {
             products = productRepository.findByPriceRangeAndAvailable(
-                    searchRequest.getMinPrice(),
-                    searchRequest.getMaxPrice(),
+                    BigDecimal.valueOf(searchRequest.getMinPrice()),
+                    BigDecimal.valueOf(searchRequest.getMaxPrice()),
                     pageable
             );
         } else {
@@ -145,6 +149,8 @@ public class ProductService {
                 .build();
         
         product = productRepository.save(product);
+        priceHistoryService.recordChange(product, null, "product-create");
+        dashboardStatsService.recordProductTouched(product.getId());
         log.info("Product created successfully with id: {}", product.getId());
         
         return mapToResponse(product);
@@ -157,6 +163,7 @@ public class ProductService {
         
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
+        BigDecimal previousPrice = product.getPrice();
         
         // Check slug uniqueness if changed
         if (request.getSlug() != null && !request.getSlug().equals(product.getSlug())) {
@@ -189,6 +196,8 @@ public class ProductService {
         
         product.setUpdatedAt(LocalDateTime.now());
         product = productRepository.save(product);
+        priceHistoryService.recordChange(product, previousPrice, "product-update");
+        dashboardStatsService.recordProductTouched(id);
         
         log.info("Product updated successfully with id: {}", product.getId());
         return mapToResponse(product);
@@ -204,6 +213,7 @@ public class ProductService {
         }
         
         productRepository.deleteById(id);
+        dashboardStatsService.recordProductTouched(id);
         log.info("Product deleted successfully with id: {}", id);
     }
     
@@ -223,14 +233,26 @@ public class ProductService {
         return PageRequest.of(searchRequest.getPage(), searchRequest.getSize(), sort);
     }
     
+    /**
+     * Single product views also carry the lowest price of the 30 days before the current one; lists skip it.
+     */
+    private ProductResponse mapToDetailResponse(Product product) {
+        ProductResponse response = mapToResponse(product);
+        response.setLowestPrice30d(priceHistoryService.lowestPrice30d(product));
+        return response;
+    }
+    
     private ProductResponse mapToResponse(Product product) {
+        PriceResolver.ResolvedPrice price = priceResolver.resolve(product, LocalDateTime.now());
         return ProductResponse.builder()
                 .id(product.getId())
                 .sku(product.getSku())
                 .title(product.getTitle())
                 .slug(product.getSlug())
                 .description(product.getDescription())
-                .price(product.getPrice())
+                .price(price.price())
+                .listPrice(product.getPrice())
+                .priceValidUntil(price.validUntil())
                 .currency(product.getCurrency())
                 .categories(product.getCategories())
                 .images(product.getImages() != null ? product.getImages().stream()
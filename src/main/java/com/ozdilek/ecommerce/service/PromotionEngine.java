@@ -0,0 +1,343 @@
+package com.ozdilek.ecommerce.service;
+
+import com.ozdilek.ecommerce.model.AppliedPromotion;
+import com.ozdilek.ecommerce.model.Money;
+import com.ozdilek.ecommerce.model.Promotion;
+import com.ozdilek.ecommerce.repository.PromotionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Evaluates promotions against cart lines at cart and checkout time.
+ * <p>
+ * Live rules are compiled into an immutable {@link RuleSet} indexed by product id, by
+ * category and by coupon code, so a cart only looks at the handful of rules that can touch
+ * its lines however many promotions are running. Each line gets its single best
+ * product/category promotion, then the best cart-wide promotion is applied to what is left.
+ * <p>
+ * Rule sets are swapped atomically: readers always see either the old or the new set.
+ * Admin edits recompile on the spot; other nodes pick changes up on the next refresh, which
+ * only recompiles when the promotions collection changed or a start/end time was crossed.
+ * A swap clears the cached carts so their totals are recalculated.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PromotionEngine {
+    
+    private final PromotionRepository promotionRepository;
+    private final MongoTemplate mongoTemplate;
+    private final CacheManager cacheManager;
+    private final MeterRegistry meterRegistry;
+    
+    private final AtomicReference<RuleSet> ruleSet = new AtomicReference<>(RuleSet.EMPTY);
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            reload();
+        } catch (Exception e) {
+            // Carts are priced without promotions until the next refresh succeeds
+            log.error("Failed to load promotions: {}", e.getMessage());
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${app.promotions.refresh-interval:PT30S}", initialDelayString = "${app.promotions.refresh-interval:PT30S}")
+    public void refresh() {
+        try {
+            RuleSet current = ruleSet.get();
+            boolean boundaryCrossed = current.nextBoundary() != null && !LocalDateTime.now().isBefore(current.nextBoundary());
+            if (boundaryCrossed || !fingerprint().equals(current.fingerprint())) {
+                reload();
+            }
+        } catch (Exception e) {
+            // Keep serving the current rule set
+            log.warn("Failed to refresh promotions: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Compiles the live promotions and swaps them in.
+     */
+    public synchronized void reload() {
+        String fingerprint = fingerprint();
+        LocalDateTime now = LocalDateTime.now();
+        List<Promotion> live = promotionRepository.findByActiveTrue().stream()
+                .filter(promotion -> promotion.getEndsAt() == null || promotion.getEndsAt().isAfter(now))
+                .toList();
+        
+        ruleSet.set(RuleSet.compile(live, fingerprint, now));
+        
+        Cache carts = cacheManager.getCache("carts");
+        if (carts != null) {
+            carts.clear();
+        }
+        log.info("Compiled {} live promotions", live.size());
+    }
+    
+    /**
+     * Whether the code belongs to a promotion that is running now.
+     */
+    public boolean isCouponLive(String couponCode) {
+        String code = normalizeCoupon(couponCode);
+        LocalDateTime now = LocalDateTime.now();
+        return code != null && ruleSet.get().byCoupon().getOrDefault(code, List.of()).stream()
+                .anyMatch(promotion -> isRunning(promotion, now));
+    }
+    
+    public Evaluation evaluate(List<Line> lines, String couponCode) {
+        long startedAt = System.nanoTime();
+        RuleSet rules = ruleSet.get();
+        String code = normalizeCoupon(couponCode);
+        LocalDateTime now = LocalDateTime.now();
+        
+        List<AppliedPromotion> applied = new ArrayList<>();
+        Money subtotal = Money.ZERO;
+        Money lineDiscounts = Money.ZERO;
+        
+        for (Line line : lines) {
+            Money lineTotal = line.unitPrice().times(line.qty());
+            subtotal = subtotal.plus(lineTotal);
+            
+            Promotion best = null;
+            Money bestDiscount = Money.ZERO;
+            for (Promotion promotion : candidates(rules, line)) {
+                if (!isEligible(promotion, code, now)) {
+                    continue;
+                }
+                Money discount = lineDiscount(promotion, line, lineTotal);
+                if (isBetter(discount, promotion, bestDiscount, best)) {
+                    best = promotion;
+                    bestDiscount = discount;
+                }
+            }
+            
+            if (best != null && bestDiscount.signum() > 0) {
+                lineDiscounts = lineDiscounts.plus(bestDiscount);
+                applied.add(toApplied(best, line.productId(), bestDiscount));
+            }
+        }
+        
+        Money remaining = subtotal.minus(lineDiscounts);
+        Promotion bestCart = null;
+        Money bestCartDiscount = Money.ZERO;
+        for (Promotion promotion : rules.cartWide()) {
+            if (!isEligible(promotion, code, now)
+                    || (promotion.getMinSubtotal() != null && remaining.compareTo(Money.of(promotion.getMinSubtotal())) < 0)) {
+                continue;
+            }
+            Money discount = cartDiscount(promotion, remaining);
+            if (isBetter(discount, promotion, bestCartDiscount, bestCart)) {
+                bestCart = promotion;
+                bestCartDiscount = discount;
+            }
+        }
+        if (bestCart != null && bestCartDiscount.signum() > 0) {
+            applied.add(toApplied(bestCart, null, bestCartDiscount));
+        }
+        
+        Timer.builder("promotions.evaluate")
+                .description("Latency of promotion evaluation per cart")
+                .register(meterRegistry)
+                .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        
+        return new Evaluation(subtotal, lineDiscounts.plus(bestCartDiscount), applied,
+                code, code == null || isCouponLive(code));
+    }
+    
+    /**
+     * The unit price shown on the product page: the best running product or category promotion
+     * that needs no coupon and discounts a single unit. Buy-x-get-y and cart-wide rules depend
+     * on the cart, so they never change the advertised price.
+     */
+    public Money advertisedPrice(String productId, List<String> categories, Money unitPrice) {
+        RuleSet rules = ruleSet.get();
+        LocalDateTime now = LocalDateTime.now();
+        Line line = new Line(productId, categories, 1, unitPrice);
+        
+        Money best = Money.ZERO;
+        for (Promotion promotion : candidates(rules, line)) {
+            if (promotion.getType() == Promotion.Type.BUY_X_GET_Y || !isEligible(promotion, null, now)) {
+                continue;
+            }
+            Money discount = lineDiscount(promotion, line, unitPrice);
+            if (discount.compareTo(best) > 0) {
+                best = discount;
+            }
+        }
+        return unitPrice.minus(best);
+    }
+    
+    /**
+     * Product ids and categories that live promotions point at, coupon rules included.
+     */
+    public Set<String> promotedProductIds() {
+        return ruleSet.get().byProduct().keySet();
+    }
+    
+    public Set<String> promotedCategories() {
+        return ruleSet.get().byCategory().keySet();
+    }
+    
+    static String normalizeCoupon(String couponCode) {
+        return couponCode == null || couponCode.isBlank() ? null : couponCode.trim().toUpperCase(Locale.ROOT);
+    }
+    
+    private List<Promotion> candidates(RuleSet rules, Line line) {
+        List<Promotion> candidates = new ArrayList<>(rules.byProduct().getOrDefault(line.productId(), List.of()));
+        if (line.categories() != null) {
+            for (String category : line.categories()) {
+                candidates.addAll(rules.byCategory().getOrDefault(category, List.of()));
+            }
+        }
+        return candidates;
+    }
+    
+    private boolean isEligible(Promotion promotion, String couponCode, LocalDateTime now) {
+        return isRunning(promotion, now)
+                && (promotion.getCouponCode() == null || promotion.getCouponCode().equals(couponCode));
+    }
+    
+    private boolean isRunning(Promotion promotion, LocalDateTime now) {
+        return (promotion.getStartsAt() == null || !now.isBefore(promotion.getStartsAt()))
+                && (promotion.getEndsAt() == null || now.isBefore(promotion.getEndsAt()));
+    }
+    
+    private boolean isBetter(Money discount, Promotion promotion, Money bestDiscount, Promotion best) {
+        int byAmount = discount.compareTo(bestDiscount);
+        return byAmount > 0 || (byAmount == 0 && best != null && priorityOf(promotion) > priorityOf(best));
+    }
+    
+    private int priorityOf(Promotion promotion) {
+        return promotion.getPriority() != null ? promotion.getPriority() : 0;
+    }
+    
+    private Money lineDiscount(Promotion promotion, Line line, Money lineTotal) {
+        Money discount = switch (promotion.getType()) {
+            case PERCENT_OFF -> lineTotal.percent(promotion.getPercent());
+            case AMOUNT_OFF -> Money.of(promotion.getAmount()).times(line.qty());
+            case BUY_X_GET_Y -> {
+                int free = line.qty() / (promotion.getBuyQty() + promotion.getGetQty()) * promotion.getGetQty();
+                yield line.unitPrice().times(free);
+            }
+        };
+        return discount.min(lineTotal);
+    }
+    
+    private Money cartDiscount(Promotion promotion, Money remaining) {
+        Money discount = switch (promotion.getType()) {
+            case PERCENT_OFF -> remaining.percent(promotion.getPercent());
+            case AMOUNT_OFF -> Money.of(promotion.getAmount());
+            case BUY_X_GET_Y -> Money.ZERO; // rejected for cart scope when the rule is saved
+        };
+        return discount.min(remaining);
+    }
+    
+    private AppliedPromotion toApplied(Promotion promotion, String productId, Money discount) {
+        return AppliedPromotion.builder()
+                .promotionId(promotion.getId())
+                .name(promotion.getName())
+                .couponCode(promotion.getCouponCode())
+                .productId(productId)
+                .discount(discount.toBigDecimal())
+                .build();
+    }
+    
+    /**
+     * Changes whenever a promotion is written: every write bumps updatedAt.
+     */
+    private String fingerprint() {
+        Query latest = new Query().with(Sort.by(Sort.Direction.DESC, "updatedAt")).limit(1);
+        latest.fields().include("updatedAt");
+        Promotion last = mongoTemplate.findOne(latest, Promotion.class);
+        return mongoTemplate.count(new Query(), Promotion.class) + "|" + (last != null ? last.getUpdatedAt() : null);
+    }
+    
+    /**
+     * One cart line as seen by the engine, at the price the line is charged.
+     */
+    public record Line(String productId, List<String> categories, int qty, Money unitPrice) {
+    }
+    
+    /**
+     * @param couponValid false when a coupon was given but no running promotion carries it
+     */
+    public record Evaluation(Money subtotal, Money discount, List<AppliedPromotion> applied,
+                             String couponCode, boolean couponValid) {
+        
+        public Money total() {
+            return subtotal.minus(discount);
+        }
+    }
+    
+    private record RuleSet(Map<String, List<Promotion>> byProduct,
+                           Map<String, List<Promotion>> byCategory,
+                           List<Promotion> cartWide,
+                           Map<String, List<Promotion>> byCoupon,
+                           String fingerprint,
+                           LocalDateTime nextBoundary) {
+        
+        static final RuleSet EMPTY = new RuleSet(Map.of(), Map.of(), List.of(), Map.of(), "", null);
+        
+        static RuleSet compile(List<Promotion> promotions, String fingerprint, LocalDateTime now) {
+            Map<String, List<Promotion>> byProduct = new HashMap<>();
+            Map<String, List<Promotion>> byCategory = new HashMap<>();
+            Map<String, List<Promotion>> byCoupon = new HashMap<>();
+            List<Promotion> cartWide = new ArrayList<>();
+            
+            for (Promotion promotion : promotions) {
+                switch (promotion.getScope()) {
+                    case PRODUCT -> promotion.getProductIds().forEach(productId ->
+                            byProduct.computeIfAbsent(productId, key -> new ArrayList<>()).add(promotion));
+                    case CATEGORY -> promotion.getCategoryIds().forEach(categoryId ->
+                            byCategory.computeIfAbsent(categoryId, key -> new ArrayList<>()).add(promotion));
+                    case CART -> cartWide.add(promotion);
+                }
+                if (promotion.getCouponCode() != null) {
+                    byCoupon.computeIfAbsent(promotion.getCouponCode(), key -> new ArrayList<>()).add(promotion);
+                }
+            }
+            
+            // The earliest future start or end: the running set changes there
+            LocalDateTime nextBoundary = promotions.stream()
+                    .flatMap(promotion -> Stream.of(promotion.getStartsAt(), promotion.getEndsAt()))
+                    .filter(Objects::nonNull)
+                    .filter(boundary -> boundary.isAfter(now))
+                    .min(Comparator.naturalOrder())
+                    .orElse(null);
+            
+            return new RuleSet(freeze(byProduct), freeze(byCategory), List.copyOf(cartWide), freeze(byCoupon),
+                    fingerprint, nextBoundary);
+        }
+        
+        private static Map<String, List<Promotion>> freeze(Map<String, List<Promotion>> index) {
+            Map<String, List<Promotion>> frozen = new HashMap<>();
+            index.forEach((key, value) -> frozen.put(key, List.copyOf(value)));
+            return Map.copyOf(frozen);
+        }
+    }
+}
@@ -27,6 +27,7 @@ public class SeedService {
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final DashboardStatsService dashboardStatsService;
     
     private final Random random = new Random();
     
@@ -46,6 +47,9 @@ public class SeedService {
         // Seed users
         seedUsers();
         
+        // Bulk writes bypass the counters; recount instead of adjusting
+        dashboardStatsService.reconcileNow();
+        
         log.info("Database seeding completed successfully!");
     }
     
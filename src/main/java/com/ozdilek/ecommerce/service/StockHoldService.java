@@ -0,0 +1,281 @@
+package com.ozdilek.ecommerce.service;
+
+import com.ozdilek.ecommerce.model.Product;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Optional soft stock holds placed at add-to-cart (app.cart.soft-holds.enabled).
+ * <p>
+ * Each product has a sorted set of holders scored by hold expiry and a hash with the held
+ * quantity per holder plus a running total. Available-to-sell is Product.stock minus the
+ * active holds of everyone else, and is checked atomically inside a Lua script when a hold
+ * is placed. Holds are extended every time the cart line changes, released when the line
+ * is removed or the order is placed, and expired holds are swept in batches.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockHoldService {
+    
+    private static final String KEY_PREFIX = "stock_holds:";
+    private static final String EXPIRY_INDEX_KEY = "stock_holds:expiry";
+    
+    // Drops the holds of KEYS[1..3] that expired by now; shared by the scripts below
+    private static final String PURGE_EXPIRED = """
+            local function purgeExpired(now, productId)
+                local expired = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', now)
+                for _, holder in ipairs(expired) do
+                    local held = tonumber(redis.call('HGET', KEYS[2], holder) or '0')
+                    redis.call('HDEL', KEYS[2], holder)
+                    redis.call('HINCRBY', KEYS[2], '__total', -held)
+                    redis.call('ZREM', KEYS[1], holder)
+                    redis.call('ZREM', KEYS[3], productId .. '|' .. holder)
+                end
+            end
+            """;
+    
+    // KEYS: holders zset, quantities hash, expiry index
+    // ARGV: holder, quantity, expiresAt, now, stock, productId
+    // Returns the remaining available-to-sell, or -1 - available when the hold does not fit
+    private static final RedisScript<Long> PLACE_HOLD = new DefaultRedisScript<>(PURGE_EXPIRED + """
+            purgeExpired(ARGV[4], ARGV[6])
+            local own = tonumber(redis.call('HGET', KEYS[2], ARGV[1]) or '0')
+            local total = tonumber(redis.call('HGET', KEYS[2], '__total') or '0')
+            local available = tonumber(ARGV[5]) - (total - own)
+            local quantity = tonumber(ARGV[2])
+            if quantity > available then
+                return -1 - math.max(available, 0)
+            end
+            redis.call('HSET', KEYS[2], ARGV[1], quantity)
+            redis.call('HINCRBY', KEYS[2], '__total', quantity - own)
+            redis.call('ZADD', KEYS[1], ARGV[3], ARGV[1])
+            redis.call('ZADD', KEYS[3], ARGV[3], ARGV[6] .. '|' .. ARGV[1])
+            return available - quantity
+            """, Long.class);
+    
+    // KEYS: holders zset, quantities hash, expiry index
+    // ARGV: holder, now, productId
+    // Returns the quantity held by everyone but the holder, counting only unexpired holds
+    private static final RedisScript<Long> HELD_BY_OTHERS = new DefaultRedisScript<>(PURGE_EXPIRED + """
+            purgeExpired(ARGV[2], ARGV[3])
+            local own = tonumber(redis.call('HGET', KEYS[2], ARGV[1]) or '0')
+            local total = tonumber(redis.call('HGET', KEYS[2], '__total') or '0')
+            return total - own
+            """, Long.class);
+    
+    // KEYS: holders zset, quantities hash, expiry index
+    // ARGV: holder, productId, expiredBefore ('' releases unconditionally)
+    // Returns the released quantity; 0 when the hold was renewed in the meantime
+    private static final RedisScript<Long> RELEASE_HOLD = new DefaultRedisScript<>("""
+            if ARGV[3] ~= '' then
+                local expiresAt = redis.call('ZSCORE', KEYS[1], ARGV[1])
+                if expiresAt and tonumber(expiresAt) > tonumber(ARGV[3]) then
+                    return 0
+                end
+            end
+            local held = tonumber(redis.call('HGET', KEYS[2], ARGV[1]) or '0')
+            redis.call('HDEL', KEYS[2], ARGV[1])
+            if held > 0 then
+                redis.call('HINCRBY', KEYS[2], '__total', -held)
+            end
+            redis.call('ZREM', KEYS[1], ARGV[1])
+            redis.call('ZREM', KEYS[3], ARGV[2] .. '|' .. ARGV[1])
+            return held
+            """, Long.class);
+    
+    private final RedisTemplate<String, String> redisTemplate;
+    
+    @Value("${app.cart.soft-holds.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${app.cart.soft-holds.duration:PT15M}")
+    private Duration holdDuration;
+    
+    @Value("${app.cart.soft-holds.sweep-batch-size:500}")
+    private int sweepBatchSize;
+    
+    @Value("${app.cart.soft-holds.sweep-max-batches:20}")
+    private int sweepMaxBatches;
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public static String holderFor(String userId, String sessionId) {
+        return userId != null ? "user:" + userId : "session:" + sessionId;
+    }
+    
+    /**
+     * Sets the holder's holds to the given line quantities. All-or-nothing: when one line
+     * does not fit, lines already updated by this call go back to their previous quantity.
+     */
+    public void hold(String holder, Map<String, Integer> quantities, Map<String, Product> products,
+                     Map<String, Integer> previousQuantities) {
+        if (!enabled) {
+            return;
+        }
+        
+        Map<String, Integer> placed = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+            Product product = products.get(line.getKey());
+            long result = placeHold(holder, product, line.getValue());
+            if (result < 0) {
+                placed.forEach((productId, quantity) -> restore(holder, products.get(productId),
+                        previousQuantities.getOrDefault(productId, 0)));
+                throw new RuntimeException("Insufficient stock for product: " + product.getId()
+                        + " (available: " + (-1 - result) + ")");
+            }
+            placed.put(line.getKey(), line.getValue());
+        }
+    }
+    
+    /**
+     * Re-checks the holder's holds right before checkout so the order is only placed
+     * for quantities that are still held; lines without an active hold are held now.
+     */
+    public void confirmHolds(String holder, Map<String, Integer> quantities, Map<String, Product> products) {
+        if (!enabled) {
+            return;
+        }
+        
+        Map<String, Integer> previous = new HashMap<>();
+        quantities.keySet().forEach(productId -> previous.put(productId, getHeldQuantity(holder, productId)));
+        
+        hold(holder, quantities, products, previous);
+    }
+    
+    public void release(String holder, String productId) {
+        if (!enabled) {
+            return;
+        }
+        
+        try {
+            releaseHold(holder, productId, "");
+        } catch (Exception e) {
+            // The hold simply runs out if Redis is unreachable
+            log.warn("Failed to release stock hold {} on {}: {}", holder, productId, e.getMessage());
+        }
+    }
+    
+    public void releaseAll(String holder, Collection<String> productIds) {
+        productIds.forEach(productId -> release(holder, productId));
+    }
+    
+    /**
+     * Stock the holder may still put in the cart: Product.stock minus everybody else's
+     * holds. Expired holds are purged first, so they stop counting the moment they expire
+     * rather than when the sweeper reaches them.
+     */
+    public int getAvailableToSell(String holder, Product product) {
+        if (!enabled) {
+            return product.getStock();
+        }
+        
+        Long heldByOthers = redisTemplate.execute(HELD_BY_OTHERS,
+                List.of(holdersKey(product.getId()), quantitiesKey(product.getId()), EXPIRY_INDEX_KEY),
+                holder,
+                String.valueOf(System.currentTimeMillis()),
+                product.getId());
+        return (int) Math.max(0, product.getStock() - (heldByOthers != null ? heldByOthers : 0));
+    }
+    
+    /**
+     * Releases expired holds in batches. Holds are also purged lazily whenever a hold is
+     * placed on the same product or its available-to-sell is read, so a lagging sweeper
+     * never blocks sales.
+     */
+    @Scheduled(fixedDelayString = "${app.cart.soft-holds.sweep-interval:PT30S}")
+    public void sweepExpiredHolds() {
+        if (!enabled) {
+            return;
+        }
+        
+        int released = 0;
+        for (int batch = 0; batch < sweepMaxBatches; batch++) {
+            long now = System.currentTimeMillis();
+            Set<String> expired = redisTemplate.opsForZSet()
+                    .rangeByScore(EXPIRY_INDEX_KEY, Double.NEGATIVE_INFINITY, now, 0, sweepBatchSize);
+            if (expired == null || expired.isEmpty()) {
+                break;
+            }
+            
+            for (String entry : expired) {
+                int separator = entry.indexOf('|');
+                String productId = entry.substring(0, separator);
+                String holder = entry.substring(separator + 1);
+                releaseHold(holder, productId, String.valueOf(now));
+                released++;
+            }
+            
+            if (expired.size() < sweepBatchSize) {
+                break;
+            }
+        }
+        
+        if (released > 0) {
+            log.info("Released {} expired stock holds", released);
+        }
+    }
+    
+    private long placeHold(String holder, Product product, int quantity) {
+        long now = System.currentTimeMillis();
+        Long result = redisTemplate.execute(PLACE_HOLD,
+                List.of(holdersKey(product.getId()), quantitiesKey(product.getId()), EXPIRY_INDEX_KEY),
+                holder,
+                String.valueOf(quantity),
+                String.valueOf(now + holdDuration.toMillis()),
+                String.valueOf(now),
+                String.valueOf(product.getStock()),
+                product.getId());
+        return result != null ? result : -1;
+    }
+    
+    private void restore(String holder, Product product, int previousQuantity) {
+        if (previousQuantity > 0) {
+            placeHold(holder, product, previousQuantity);
+        } else {
+            releaseHold(holder, product.getId(), "");
+        }
+    }
+    
+    private void releaseHold(String holder, String productId, String expiredBefore) {
+        redisTemplate.execute(RELEASE_HOLD,
+                List.of(holdersKey(productId), quantitiesKey(productId), EXPIRY_INDEX_KEY),
+                holder, productId, expiredBefore);
+    }
+    
+    private int getHeldQuantity(String holder, String productId) {
+        Double expiresAt = redisTemplate.opsForZSet().score(holdersKey(productId), holder);
+        if (expiresAt == null || expiresAt <= System.currentTimeMillis()) {
+            return 0;
+        }
+        return (int) toLong(redisTemplate.opsForHash().get(quantitiesKey(productId), holder));
+    }
+    
+    private String holdersKey(String productId) {
+        return KEY_PREFIX + productId;
+    }
+    
+    private String quantitiesKey(String productId) {
+        return KEY_PREFIX + productId + ":qty";
+    }
+    
+    private long toLong(Object value) {
+        return value != null ? Long.parseLong(value.toString()) : 0L;
+    }
+}
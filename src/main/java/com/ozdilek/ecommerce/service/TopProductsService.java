@@ -0,0 +1,610 @@
+package com.ozdilek.ecommerce.service;
+
+import com.ozdilek.ecommerce.model.Money;
+import com.ozdilek.ecommerce.model.Order;
+import com.ozdilek.ecommerce.model.Order.OrderStatus;
+import com.ozdilek.ecommerce.repository.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Top-selling products from Space-Saving summaries kept in Redis.
+ * <p>
+ * Every day (by order createdAt, like the sales report) and the whole history each have
+ * one summary of at most {@code capacity} products: a sorted set of units sold plus, per
+ * product, how much of that count may be inherited from an evicted product. Deliveries
+ * add units and refunds take them back, through a Lua script so all nodes update the same
+ * summaries atomically. When a summary is full, a new product replaces the smallest one
+ * and starts from its count, so counts only ever overestimate, by at most the day's units
+ * divided by the capacity.
+ * <p>
+ * A date range merges its daily summaries: a product missing from a full day may have sold
+ * up to that day's smallest count there, which widens its error bound. Results report the
+ * estimate and that bound. Revenue is tracked only while a product is in the summary.
+ * {@link #getExactTopProducts} recomputes from the orders for audits, and {@link #rebuild}
+ * replaces summaries with exact ones.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TopProductsService {
+    
+    private static final String LOCK_NAME = "top-products-rebuild";
+    
+    private static final String KEY_PREFIX = "top_products:";
+    private static final String ALL_TIME = "all";
+    private static final String ERROR_SUFFIX = ":error";
+    private static final String REVENUE_SUFFIX = ":revenue";
+    private static final String TITLES_KEY = "top_products:titles";
+    private static final String JOURNAL_SUFFIX = ":journal";
+    // Field that opens a journal; REPLACE skips it by name
+    private static final String JOURNAL_MARKER = "_rebuilding";
+    private static final String BUILT_KEY = "top_products:built";
+    
+    // Space-Saving step for one product on KEYS[1..3]; shared by both scripts below
+    private static final String APPLY = """
+            local function apply(capacity, id, units, revenue)
+                if redis.call('ZSCORE', KEYS[1], id) then
+                    local count = tonumber(redis.call('ZINCRBY', KEYS[1], units, id))
+                    if count <= 0 then
+                        redis.call('ZREM', KEYS[1], id)
+                        redis.call('HDEL', KEYS[2], id)
+                        redis.call('HDEL', KEYS[3], id)
+                    else
+                        redis.call('HINCRBY', KEYS[3], id, revenue)
+                    end
+                elseif units > 0 then
+                    if redis.call('ZCARD', KEYS[1]) < capacity then
+                        redis.call('ZADD', KEYS[1], units, id)
+                    else
+                        local smallest = redis.call('ZRANGE', KEYS[1], 0, 0, 'WITHSCORES')
+                        redis.call('ZREM', KEYS[1], smallest[1])
+                        redis.call('HDEL', KEYS[2], smallest[1])
+                        redis.call('HDEL', KEYS[3], smallest[1])
+                        redis.call('ZADD', KEYS[1], tonumber(smallest[2]) + units, id)
+                        redis.call('HSET', KEYS[2], id, smallest[2])
+                    end
+                    redis.call('HSET', KEYS[3], id, revenue)
+                end
+            end
+            """;
+    
+    // ARGV: capacity, ttl seconds (0 = none), then productId, units, revenue triples.
+    // While a rebuild journals the summary (KEYS[4] exists), the sales are also added to
+    // the journal (KEYS[4] units, KEYS[5] revenue) for the rebuild to replay.
+    private static final RedisScript<Long> SPACE_SAVING = new DefaultRedisScript<>(APPLY + """
+            local capacity = tonumber(ARGV[1])
+            local journaling = redis.call('EXISTS', KEYS[4]) == 1
+            for i = 3, #ARGV, 3 do
+                apply(capacity, ARGV[i], tonumber(ARGV[i + 1]), ARGV[i + 2])
+                if journaling then
+                    redis.call('HINCRBY', KEYS[4], ARGV[i], ARGV[i + 1])
+                    redis.call('HINCRBY', KEYS[5], ARGV[i], ARGV[i + 2])
+                end
+            end
+            if journaling then
+                redis.call('PEXPIRE', KEYS[5], redis.call('PTTL', KEYS[4]))
+            end
+            if tonumber(ARGV[2]) > 0 then
+                for i = 1, 3 do
+                    redis.call('EXPIRE', KEYS[i], ARGV[2])
+                end
+            end
+            return 1
+            """, Long.class);
+    
+    // ARGV: capacity, ttl seconds (0 = none, negative = only delete), then the exact
+    // productId, units, revenue triples. Replays and ends the journal in the same step, so
+    // no sale lands between the two.
+    private static final RedisScript<Long> REPLACE = new DefaultRedisScript<>(APPLY + """
+            local capacity = tonumber(ARGV[1])
+            local journal = redis.call('HGETALL', KEYS[4])
+            local revenue = {}
+            local journalRevenue = redis.call('HGETALL', KEYS[5])
+            for i = 1, #journalRevenue, 2 do
+                revenue[journalRevenue[i]] = journalRevenue[i + 1]
+            end
+            redis.call('DEL', KEYS[1], KEYS[2], KEYS[3], KEYS[4], KEYS[5])
+            if tonumber(ARGV[2]) < 0 then
+                return 0
+            end
+            for i = 3, #ARGV, 3 do
+                apply(capacity, ARGV[i], tonumber(ARGV[i + 1]), ARGV[i + 2])
+            end
+            for i = 1, #journal, 2 do
+                if journal[i] ~= '_rebuilding' then
+                    apply(capacity, journal[i], tonumber(journal[i + 1]), revenue[journal[i]] or '0')
+                end
+            end
+            if tonumber(ARGV[2]) > 0 then
+                for i = 1, 3 do
+                    redis.call('EXPIRE', KEYS[i], ARGV[2])
+                end
+            end
+            return 1
+            """, Long.class);
+    
+    private final MongoTemplate mongoTemplate;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final OrderRepository orderRepository;
+    private final DistributedLockService distributedLockService;
+    
+    @Value("${app.analytics.top-products.capacity:200}")
+    private int capacity;
+    
+    @Value("${app.analytics.top-products.retention:P400D}")
+    private Duration retention;
+    
+    @Value("${app.analytics.top-products.rebuild-on-startup:true}")
+    private boolean rebuildOnStartup;
+    
+    @Value("${app.analytics.top-products.lock-ttl:PT30M}")
+    private Duration lockTtl;
+    
+    /**
+     * Adds delivered orders and takes refunded ones back out.
+     */
+    @EventListener
+    public void onStatusChanged(OrderStatusChangedEvent event) {
+        List<String> delivered = new ArrayList<>();
+        List<String> returned = new ArrayList<>();
+        event.previousStatuses().forEach((orderId, previous) -> {
+            if (event.status() == OrderStatus.DELIVERED && previous != OrderStatus.DELIVERED) {
+                delivered.add(orderId);
+            } else if (previous == OrderStatus.DELIVERED && event.status() != OrderStatus.DELIVERED) {
+                returned.add(orderId);
+            }
+        });
+        
+        try {
+            record(delivered, 1);
+            record(returned, -1);
+        } catch (Exception e) {
+            // Summaries undercount until the affected days are rebuilt
+            log.warn("Failed to update top products for {} orders moved to {}: {}",
+                    delivered.size() + returned.size(), event.status(), e.getMessage());
+        }
+    }
+    
+    private void record(List<String> orderIds, int sign) {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        
+        Query query = new Query(Criteria.where("id").in(orderIds));
+        query.fields().include("id").include("createdAt").include("items");
+        Map<String, Map<String, long[]>> byDay = new HashMap<>();
+        Map<String, long[]> allTime = new LinkedHashMap<>();
+        Map<String, String> titles = new HashMap<>();
+        for (Order order : mongoTemplate.find(query, Order.class)) {
+            if (order.getItems() == null || order.getCreatedAt() == null) {
+                continue;
+            }
+            Map<String, long[]> day = byDay.computeIfAbsent(order.getCreatedAt().toLocalDate().toString(),
+                    key -> new LinkedHashMap<>());
+            for (Order.OrderItem item : order.getItems()) {
+                if (item.getProductId() == null || item.getQty() == null) {
+                    continue;
+                }
+                long units = sign * item.getQty();
+                long revenue = sign * Money.of(item.getPrice()).times(item.getQty()).minor();
+                add(day, item.getProductId(), units, revenue);
+                add(allTime, item.getProductId(), units, revenue);
+                if (item.getTitle() != null) {
+                    titles.put(item.getProductId(), item.getTitle());
+                }
+            }
+        }
+        
+        byDay.forEach((day, sales) -> update(day, sales, retention.toSeconds()));
+        update(ALL_TIME, allTime, 0);
+        if (!titles.isEmpty()) {
+            redisTemplate.opsForHash().putAll(TITLES_KEY, titles);
+        }
+    }
+    
+    private void update(String summary, Map<String, long[]> sales, long ttlSeconds) {
+        if (sales.isEmpty()) {
+            return;
+        }
+        
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(capacity));
+        args.add(String.valueOf(ttlSeconds));
+        sales.forEach((productId, totals) -> {
+            args.add(productId);
+            args.add(String.valueOf(totals[0]));
+            args.add(String.valueOf(totals[1]));
+        });
+        redisTemplate.execute(SPACE_SAVING, keysOf(summary), args.toArray());
+    }
+    
+    /**
+     * Top products by units sold from the summaries.
+     *
+     * @param from null together with {@code to} for the whole history
+     * @throws IllegalArgumentException if only one of {@code from} and {@code to} is given
+     */
+    public List<Map<String, Object>> getTopProducts(int limit, LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        List<String> summaries = new ArrayList<>();
+        if (from == null || to == null) {
+            summaries.add(ALL_TIME);
+        } else {
+            for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+                summaries.add(day.toString());
+            }
+        }
+        
+        // One round-trip for all days: counts, errors and revenue of each summary
+        List<Object> replies = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (String summary : summaries) {
+                    ops.opsForZSet().rangeWithScores(KEY_PREFIX + summary, 0, -1);
+                    ops.opsForHash().entries(KEY_PREFIX + summary + ERROR_SUFFIX);
+                    ops.opsForHash().entries(KEY_PREFIX + summary + REVENUE_SUFFIX);
+                }
+                return null;
+            }
+        });
+        
+        List<Set<ZSetOperations.TypedTuple<String>>> counts = new ArrayList<>();
+        List<Map<?, ?>> errors = new ArrayList<>();
+        List<Map<?, ?>> revenue = new ArrayList<>();
+        for (int i = 0; i < summaries.size(); i++) {
+            @SuppressWarnings("unchecked")
+            Set<ZSetOperations.TypedTuple<String>> dayCounts = (Set<ZSetOperations.TypedTuple<String>>) replies.get(i * 3);
+            counts.add(dayCounts);
+            errors.add((Map<?, ?>) replies.get(i * 3 + 1));
+            revenue.add((Map<?, ?>) replies.get(i * 3 + 2));
+        }
+        Map<String, long[]> merged = merge(counts, errors, revenue, capacity);
+        
+        List<Map.Entry<String, long[]>> top = merged.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, long[]> entry) -> entry.getValue()[0]).reversed())
+                .limit(limit)
+                .toList();
+        List<Object> titles = top.isEmpty() ? List.of()
+                : redisTemplate.opsForHash().multiGet(TITLES_KEY, top.stream().map(entry -> (Object) entry.getKey()).toList());
+        
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (int i = 0; i < top.size(); i++) {
+            long[] totals = top.get(i).getValue();
+            Map<String, Object> product = new HashMap<>();
+            product.put("productId", top.get(i).getKey());
+            product.put("productName", titles.get(i));
+            product.put("totalSold", totals[0]);
+            product.put("maxError", totals[0] - Math.max(totals[1], 0));
+            product.put("totalRevenue", Money.ofMinor(totals[2]).toBigDecimal());
+            result.add(product);
+        }
+        return result;
+    }
+    
+    /**
+     * Merges summaries into upper bound, lower bound and revenue per product. Counts come in
+     * ascending order, as ZRANGE returns them. A product missing from a full summary may have
+     * sold up to that summary's smallest count, which only widens its upper bound.
+     */
+    static Map<String, long[]> merge(List<Set<ZSetOperations.TypedTuple<String>>> counts,
+                                     List<Map<?, ?>> errors, List<Map<?, ?>> revenue, int capacity) {
+        Map<String, long[]> merged = new HashMap<>();
+        long missingAllowance = 0;
+        for (int i = 0; i < counts.size(); i++) {
+            Set<ZSetOperations.TypedTuple<String>> summary = counts.get(i);
+            if (summary == null || summary.isEmpty()) {
+                continue;
+            }
+            
+            long smallest = summary.size() >= capacity ? summary.iterator().next().getScore().longValue() : 0;
+            for (long[] totals : merged.values()) {
+                totals[0] += smallest;
+            }
+            for (ZSetOperations.TypedTuple<String> tuple : summary) {
+                long count = tuple.getScore().longValue();
+                long[] totals = merged.get(tuple.getValue());
+                if (totals == null) {
+                    totals = new long[] { missingAllowance, 0, 0 };
+                    merged.put(tuple.getValue(), totals);
+                } else {
+                    totals[0] -= smallest;
+                }
+                totals[0] += count;
+                totals[1] += count - parseLong(errors.get(i).get(tuple.getValue()));
+                totals[2] += parseLong(revenue.get(i).get(tuple.getValue()));
+            }
+            missingAllowance += smallest;
+        }
+        return merged;
+    }
+    
+    /**
+     * Exact top products computed from the orders of every tier, for audits.
+     *
+     * @param from null together with {@code to} for the whole history
+     * @throws IllegalArgumentException if only one of {@code from} and {@code to} is given
+     */
+    public List<Map<String, Object>> getExactTopProducts(int limit, LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        Map<String, long[]> totals = new HashMap<>();
+        Map<String, String> titles = new HashMap<>();
+        for (Document group : aggregateSales(from, to, false)) {
+            String productId = group.getString("_id");
+            add(totals, productId, AggregationSupport.longValue(group, "units"),
+                    Money.of(AggregationSupport.amount(group, "revenue")).minor());
+            titles.putIfAbsent(productId, group.getString("title"));
+        }
+        
+        return totals.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, long[]> entry) -> entry.getValue()[0]).reversed())
+                .limit(limit)
+                .map(entry -> {
+                    Map<String, Object> product = new HashMap<>();
+                    product.put("productId", entry.getKey());
+                    product.put("productName", titles.get(entry.getKey()));
+                    product.put("totalSold", entry.getValue()[0]);
+                    product.put("totalRevenue", Money.ofMinor(entry.getValue()[1]).toBigDecimal());
+                    return product;
+                })
+                .toList();
+    }
+    
+    /**
+     * Builds the summaries when no full rebuild has completed yet, e.g. right after they were
+     * introduced. Live sales may already have created some summaries; the rebuild keeps them.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfEmpty() {
+        try {
+            if (!rebuildOnStartup || Boolean.TRUE.equals(redisTemplate.hasKey(BUILT_KEY))) {
+                return;
+            }
+        } catch (Exception e) {
+            log.warn("Could not check top products summaries: {}", e.getMessage());
+            return;
+        }
+        CompletableFuture.runAsync(() -> rebuild(null, null))
+                .exceptionally(e -> {
+                    log.warn("Initial top products rebuild failed: {}", e.getMessage());
+                    return null;
+                });
+    }
+    
+    /**
+     * Replaces the daily summaries between {@code from} and {@code to} with exact ones, each
+     * truncated to the capacity. Without a range, every retained day and the all-time
+     * summary are rebuilt.
+     * <p>
+     * Sales recorded while the orders are scanned still land in the live summaries, which
+     * the replacement would drop. Each summary being rebuilt therefore keeps a journal of
+     * those sales from before the scan starts, and the replacement replays it atomically.
+     * An order whose status changes while its collection is being scanned may be counted
+     * both by the scan and by the journal, or by neither for a refund; the next rebuild
+     * corrects it.
+     *
+     * @throws IllegalArgumentException if only one of {@code from} and {@code to} is given
+     */
+    public Map<String, Object> rebuild(LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        Optional<String> lock = distributedLockService.tryAcquire(LOCK_NAME, lockTtl);
+        if (lock.isEmpty()) {
+            throw new RuntimeException("Top products rebuild is already running on another node");
+        }
+        
+        LocalDate today = LocalDate.now();
+        boolean full = from == null;
+        List<String> summaries = new ArrayList<>();
+        LocalDate first = full ? today.minusDays(retention.toDays() - 1) : from;
+        LocalDate last = full ? today : to;
+        for (LocalDate day = first; !day.isAfter(last); day = day.plusDays(1)) {
+            summaries.add(day.toString());
+        }
+        if (full) {
+            summaries.add(ALL_TIME);
+        }
+        
+        try {
+            long startedAt = System.nanoTime();
+            startJournals(summaries);
+            Map<String, Map<String, long[]>> byDay = new HashMap<>();
+            Map<String, String> titles = new HashMap<>();
+            for (Document group : aggregateSales(from, to, true)) {
+                Document key = group.get("_id", Document.class);
+                add(byDay.computeIfAbsent(key.getString("day"), day -> new HashMap<>()), key.getString("productId"),
+                        AggregationSupport.longValue(group, "units"), Money.of(AggregationSupport.amount(group, "revenue")).minor());
+                titles.putIfAbsent(key.getString("productId"), group.getString("title"));
+            }
+            
+            // Journaled days without delivered orders still need their journal replayed
+            for (String summary : summaries) {
+                if (!ALL_TIME.equals(summary)) {
+                    byDay.putIfAbsent(summary, Map.of());
+                }
+            }
+            byDay.forEach((day, sales) -> {
+                long ttl = retention.toSeconds() - Duration.between(LocalDate.parse(day).atStartOfDay(), today.atStartOfDay()).toSeconds();
+                replace(day, sales, ttl);
+            });
+            
+            if (full) {
+                Map<String, long[]> allTime = new HashMap<>();
+                byDay.values().forEach(sales -> sales.forEach((productId, totals) -> add(allTime, productId, totals[0], totals[1])));
+                replace(ALL_TIME, allTime, 0);
+                redisTemplate.opsForValue().set(BUILT_KEY, LocalDateTime.now().toString());
+            }
+            titles.values().removeIf(title -> title == null);
+            if (!titles.isEmpty()) {
+                redisTemplate.opsForHash().putAll(TITLES_KEY, titles);
+            }
+            
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("status", "COMPLETED");
+            result.put("from", from);
+            result.put("to", to);
+            result.put("days", byDay.size());
+            result.put("elapsedMs", (System.nanoTime() - startedAt) / 1_000_000);
+            log.info("Rebuilt top products summaries for {} days", byDay.size());
+            return result;
+        } finally {
+            endJournals(summaries);
+            distributedLockService.release(LOCK_NAME, lock.get());
+        }
+    }
+    
+    /**
+     * Opens an empty journal per summary, dropping any left by a rebuild that died. The
+     * journals expire with the lock.
+     */
+    private void startJournals(List<String> summaries) {
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (String summary : summaries) {
+                    List<String> keys = keysOf(summary);
+                    ops.delete(keys.subList(3, 5));
+                    ops.opsForHash().put(keys.get(3), JOURNAL_MARKER, "1");
+                    ops.expire(keys.get(3), lockTtl);
+                }
+                return null;
+            }
+        });
+    }
+    
+    /**
+     * Drops the journals a failed rebuild did not replay; their sales are already in the
+     * live summaries.
+     */
+    private void endJournals(List<String> summaries) {
+        try {
+            List<String> keys = new ArrayList<>();
+            summaries.forEach(summary -> keys.addAll(keysOf(summary).subList(3, 5)));
+            redisTemplate.delete(keys);
+        } catch (Exception e) {
+            log.warn("Failed to drop top products journals, they expire in {}: {}", lockTtl, e.getMessage());
+        }
+    }
+    
+    /**
+     * Overwrites a summary with exact counts of its top {@code capacity} products plus the
+     * sales journaled since the rebuild started. Past retention (ttl not positive) the
+     * summary is only deleted.
+     */
+    private void replace(String summary, Map<String, long[]> sales, long ttlSeconds) {
+        boolean expired = ttlSeconds < 0 || (ttlSeconds == 0 && !ALL_TIME.equals(summary));
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(capacity));
+        args.add(String.valueOf(expired ? -1 : ttlSeconds));
+        if (!expired) {
+            sales.entrySet().stream()
+                    .sorted(Comparator.comparingLong((Map.Entry<String, long[]> entry) -> entry.getValue()[0]).reversed())
+                    .limit(capacity)
+                    .forEach(entry -> {
+                        args.add(entry.getKey());
+                        args.add(String.valueOf(entry.getValue()[0]));
+                        args.add(String.valueOf(entry.getValue()[1]));
+                    });
+        }
+        redisTemplate.execute(REPLACE, keysOf(summary), args.toArray());
+    }
+    
+    /**
+     * Delivered units and line revenue per product (and per day when {@code byDay}),
+     * over every order tier.
+     */
+    private List<Document> aggregateSales(LocalDate from, LocalDate to, boolean byDay) {
+        Criteria criteria = Criteria.where("status").is(OrderStatus.DELIVERED.name());
+        LocalDateTime start = null;
+        LocalDateTime end = null;
+        if (from != null && to != null) {
+            start = from.atStartOfDay();
+            end = to.plusDays(1).atStartOfDay();
+            criteria = criteria.and("createdAt").gte(start).lt(end);
+        }
+        
+        List<String> collections = new ArrayList<>();
+        collections.add(mongoTemplate.getCollectionName(Order.class));
+        collections.addAll(orderRepository.archiveCollectionsBetween(start, end));
+        
+        List<Document> groups = new ArrayList<>();
+        for (String collection : collections) {
+            groups.addAll(mongoTemplate.aggregate(Aggregation.newAggregation(Order.class,
+                            Aggregation.match(criteria),
+                            Aggregation.unwind("items"),
+                            Aggregation.project()
+                                    .and(AggregationSupport.dayOf("createdAt")).as("day")
+                                    .and("items.productId").as("productId")
+                                    .and("items.title").as("title")
+                                    .and("items.qty").as("qty")
+                                    .and(ArithmeticOperators.valueOf("items.price").multiplyBy("items.qty")).as("lineTotal"),
+                            (byDay ? Aggregation.group("day", "productId") : Aggregation.group("productId"))
+                                    .sum("qty").as("units")
+                                    .sum("lineTotal").as("revenue")
+                                    .first("title").as("title")),
+                    collection, Document.class).getMappedResults());
+        }
+        return groups;
+    }
+    
+    /**
+     * Counts, errors and revenue of a summary, then its rebuild journal's units and revenue.
+     */
+    private static List<String> keysOf(String summary) {
+        String key = KEY_PREFIX + summary;
+        return List.of(key, key + ERROR_SUFFIX, key + REVENUE_SUFFIX,
+                key + JOURNAL_SUFFIX, key + JOURNAL_SUFFIX + REVENUE_SUFFIX);
+    }
+    
+    private static void checkRange(LocalDate from, LocalDate to) {
+        if ((from == null) != (to == null)) {
+            throw new IllegalArgumentException("startDate and endDate must be given together");
+        }
+        if (from != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("startDate must not be after endDate");
+        }
+    }
+    
+    private static void add(Map<String, long[]> sales, String productId, long units, long revenue) {
+        long[] totals = sales.computeIfAbsent(productId, id -> new long[2]);
+        totals[0] += units;
+        totals[1] += revenue;
+    }
+    
+    private static long parseLong(Object value) {
+        return value != null ? Long.parseLong(value.toString()) : 0L;
+    }
+}
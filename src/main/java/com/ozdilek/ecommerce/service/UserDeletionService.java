@@ -4,6 +4,7 @@ import com.ozdilek.ecommerce.model.User;
 import com.ozdilek.ecommerce.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -16,8 +17,10 @@ public class UserDeletionService {
     
     private final UserRepository userRepository;
     private final FileUploadService fileUploadService;
+    private final DashboardStatsService dashboardStatsService;
     
     @Transactional
+    @CacheEvict(value = UserLookupService.USER_IDS_CACHE, key = "#email")
     public void softDeleteUser(String email) {
         log.info("Soft deleting user: {}", email);
         
@@ -34,6 +37,7 @@ public class UserDeletionService {
         }
         
         // Soft delete user
+        boolean wasActive = !Boolean.TRUE.equals(user.getDeleted());
         user.setDeleted(true);
         user.setDeletedAt(LocalDateTime.now());
         
@@ -45,6 +49,9 @@ public class UserDeletionService {
         user.setAddresses(null);
         
         userRepository.save(user);
+        if (wasActive) {
+            dashboardStatsService.recordUserDeactivated(user);
+        }
         
         log.info("User soft deleted successfully: {}", email);
     }
@@ -64,12 +71,14 @@ public class UserDeletionService {
         user.setDeletedAt(null);
         
         userRepository.save(user);
+        dashboardStatsService.recordUserReactivated(user);
         
         log.info("User restored successfully: {}", userId);
     }
     
     @Transactional
-    public void permanentDeleteUser(String userId) {
+    @CacheEvict(value = UserLookupService.USER_IDS_CACHE, key = "#result.email")
+    public User permanentDeleteUser(String userId) {
         log.info("Permanently deleting user: {}", userId);
         
         User user = userRepository.findById(userId)
@@ -85,8 +94,10 @@ public class UserDeletionService {
         }
         
         userRepository.delete(user);
+        dashboardStatsService.recordUserRemoved(user);
         
         log.info("User permanently deleted: {}", userId);
+        return user;
     }
     
     public boolean isUserDeleted(String email) {
@@ -0,0 +1,35 @@
+package com.ozdilek.ecommerce.service;
+
+import com.ozdilek.ecommerce.model.User;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+/**
+ * Resolves the authenticated principal (email) to the user document id. The mapping
+ * never changes for a live account, so it is cached. Every deletion that frees the email
+ * for a new account evicts it: the soft delete (which anonymizes the email) and both
+ * hard deletes in UserDeletionService and AdminUserManagementService.
+ */
+@Service
+@RequiredArgsConstructor
+public class UserLookupService {
+    
+    static final String USER_IDS_CACHE = "user-ids";
+    
+    private final MongoTemplate mongoTemplate;
+    
+    @Cacheable(value = USER_IDS_CACHE, key = "#email")
+    public String getUserIdByEmail(String email) {
+        Query query = new Query(Criteria.where("email").is(email));
+        query.fields().include("id");
+        User user = mongoTemplate.findOne(query, User.class);
+        if (user == null) {
+            throw new RuntimeException("User not found");
+        }
+        return user.getId();
+    }
+}
@@ -0,0 +1,232 @@
+package com.ozdilek.ecommerce.benchmark;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+import com.ozdilek.ecommerce.EcommerceApplication;
+import com.ozdilek.ecommerce.model.Order;
+import com.ozdilek.ecommerce.service.AdminAnalyticsService;
+import com.ozdilek.ecommerce.service.AdminOrderManagementService;
+import com.ozdilek.ecommerce.service.AdminProductManagementService;
+import com.ozdilek.ecommerce.service.AdminUserManagementService;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency and allocation of the admin aggregations against a large orders collection.
+ * <p>
+ * Needs the MongoDB and Redis of docker-compose.yml (or SPRING_DATA_MONGODB_URI and
+ * SPRING_DATA_REDIS_HOST in the environment; the forked JVM inherits it). Everything goes
+ * to the {@value #DATABASE} database and Redis database {@value #REDIS_DATABASE}, never
+ * the application's own data. The first run seeds {@code orders} synthetic orders
+ * (orderNumber BENCH-*, spread over the last year) and later runs reuse them. Scheduled
+ * jobs are off, so no sweep archives, expires or rescans the orders being measured. Run
+ * with {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=AdminAnalytics}.
+ * <p>
+ * The fork runs with a 512 MB heap, which the old findAll() reports could not fit for a
+ * million orders; {@link #orderStatisticsFindAllBaseline} repeats that path in a larger
+ * heap for comparison. The gc profiler's alloc.rate.norm is the heap allocated per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx512m")
+public class AdminAnalyticsBenchmark {
+    
+    private static final String DATABASE = "ecommerce_bench";
+    private static final int REDIS_DATABASE = 15;
+    private static final String ORDER_NUMBER_PREFIX = "BENCH-";
+    private static final int BATCH_SIZE = 10_000;
+    private static final int PRODUCTS = 5_000;
+    private static final int USERS = 50_000;
+    
+    @Param({ "1000000" })
+    private int orders;
+    
+    private ConfigurableApplicationContext context;
+    private MongoTemplate mongoTemplate;
+    private AdminAnalyticsService adminAnalyticsService;
+    private AdminOrderManagementService adminOrderManagementService;
+    private AdminProductManagementService adminProductManagementService;
+    private AdminUserManagementService adminUserManagementService;
+    
+    private LocalDate from;
+    private LocalDate to;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Startup rebuilds and scheduled jobs would compete with the measured queries
+        context = new SpringApplicationBuilder(EcommerceApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.data.mongodb.database=" + DATABASE,
+                        "spring.data.redis.database=" + REDIS_DATABASE,
+                        "app.scheduling.enabled=false",
+                        "app.analytics.daily-sales.backfill-on-startup=false",
+                        "app.analytics.top-products.rebuild-on-startup=false",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN")
+                .run();
+        adminAnalyticsService = context.getBean(AdminAnalyticsService.class);
+        adminOrderManagementService = context.getBean(AdminOrderManagementService.class);
+        adminProductManagementService = context.getBean(AdminProductManagementService.class);
+        adminUserManagementService = context.getBean(AdminUserManagementService.class);
+        
+        mongoTemplate = context.getBean(MongoTemplate.class);
+        seedOrders(mongoTemplate);
+        
+        to = LocalDate.now();
+        from = to.minusDays(30);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+    
+    @Benchmark
+    public Map<String, Object> orderStatistics() {
+        return adminOrderManagementService.getOrderStatistics();
+    }
+    
+    /**
+     * The order statistics as computed before the aggregation: every order of the hot
+     * collection loaded and counted in memory.
+     */
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+    public Map<String, Object> orderStatisticsFindAllBaseline() {
+        List<Order> allOrders = mongoTemplate.findAll(Order.class);
+        Map<String, Object> stats = new HashMap<>();
+        for (Order.OrderStatus status : Order.OrderStatus.values()) {
+            stats.put(status.name(), allOrders.stream().filter(order -> order.getStatus() == status).count());
+        }
+        stats.put("totalOrders", allOrders.size());
+        stats.put("totalRevenue", allOrders.stream()
+                .filter(order -> order.getStatus() == Order.OrderStatus.DELIVERED)
+                .map(Order::getTotal)
+                .reduce(BigDecimal.ZERO, BigDecimal::add));
+        return stats;
+    }
+    
+    @Benchmark
+    public Map<String, Long> productStatistics() {
+        return adminProductManagementService.getProductStatistics();
+    }
+    
+    @Benchmark
+    public long activeUsers() {
+        return adminUserManagementService.getActiveUsersCount();
+    }
+    
+    @Benchmark
+    public Map<String, Object> dashboardOverview() {
+        return adminAnalyticsService.getDashboardOverview();
+    }
+    
+    @Benchmark
+    public Map<String, Object> inventoryAlerts() {
+        return adminAnalyticsService.getInventoryAlerts();
+    }
+    
+    @Benchmark
+    public List<Map<String, Object>> recentActivity() {
+        return adminAnalyticsService.getRecentActivity(20);
+    }
+    
+    @Benchmark
+    public List<Map<String, Object>> userGrowthLast30Days() {
+        return adminAnalyticsService.getUserGrowthReport(from, to);
+    }
+    
+    @Benchmark
+    public List<Map<String, Object>> exactTopProductsLast30Days() {
+        return adminAnalyticsService.getExactTopSellingProducts(10, from, to);
+    }
+    
+    /**
+     * Inserts the orders still missing, as raw documents so seeding does not dominate the run.
+     */
+    private void seedOrders(MongoTemplate mongoTemplate) {
+        long existing = mongoTemplate.count(new Query(Criteria.where("orderNumber").regex("^" + ORDER_NUMBER_PREFIX)), Order.class);
+        if (existing >= orders) {
+            return;
+        }
+        
+        MongoCollection<Document> collection = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Order.class));
+        Order.OrderStatus[] statuses = Order.OrderStatus.values();
+        Random random = new Random(42);
+        LocalDateTime now = LocalDateTime.now();
+        List<Document> batch = new ArrayList<>(BATCH_SIZE);
+        for (long i = existing; i < orders; i++) {
+            List<Document> items = new ArrayList<>();
+            long subtotal = 0;
+            for (int line = 0, lines = 1 + random.nextInt(3); line < lines; line++) {
+                int product = random.nextInt(PRODUCTS);
+                int qty = 1 + random.nextInt(3);
+                long price = 1_000 + random.nextInt(500_000);
+                subtotal += price * qty;
+                items.add(new Document("productId", "bench-product-" + product)
+                        .append("sku", "BENCH-SKU-" + product)
+                        .append("title", "Benchmark product " + product)
+                        .append("qty", qty)
+                        .append("price", decimal(price)));
+            }
+            Date createdAt = Date.from(now.minusMinutes(random.nextInt(365 * 24 * 60)).atZone(ZoneId.systemDefault()).toInstant());
+            batch.add(new Document("orderNumber", ORDER_NUMBER_PREFIX + i)
+                    .append("userId", "bench-user-" + random.nextInt(USERS))
+                    .append("items", items)
+                    .append("subtotal", decimal(subtotal))
+                    .append("discount", decimal(0))
+                    .append("shipping", decimal(0))
+                    .append("total", decimal(subtotal))
+                    .append("status", statuses[random.nextInt(statuses.length)].name())
+                    .append("createdAt", createdAt)
+                    .append("updatedAt", createdAt)
+                    .append("_class", Order.class.getName()));
+            if (batch.size() == BATCH_SIZE) {
+                collection.insertMany(batch, new InsertManyOptions().ordered(false));
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            collection.insertMany(batch, new InsertManyOptions().ordered(false));
+        }
+    }
+    
+    private static Decimal128 decimal(long minor) {
+        return new Decimal128(BigDecimal.valueOf(minor, 2));
+    }
+}
@@ -0,0 +1,83 @@
+package com.ozdilek.ecommerce.benchmark;
+
+import com.ozdilek.ecommerce.model.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cart subtotal, a 12.5% line discount and the total, the way cart pricing used to do it
+ * (BigDecimal in streams) against Money. Run with
+ * {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=CartTotals}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartTotalsBenchmark {
+    
+    private static final BigDecimal DISCOUNT_PERCENT = new BigDecimal("12.5");
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+    
+    @Param({ "5", "50" })
+    private int lines;
+    
+    private List<BigDecimal> decimalPrices;
+    private List<Money> moneyPrices;
+    private int[] quantities;
+    
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        decimalPrices = new ArrayList<>();
+        moneyPrices = new ArrayList<>();
+        quantities = new int[lines];
+        for (int i = 0; i < lines; i++) {
+            BigDecimal price = BigDecimal.valueOf(100 + random.nextInt(500_000), 2);
+            decimalPrices.add(price);
+            moneyPrices.add(Money.of(price));
+            quantities[i] = 1 + random.nextInt(5);
+        }
+    }
+    
+    @Benchmark
+    public BigDecimal bigDecimal() {
+        BigDecimal subtotal = BigDecimal.ZERO;
+        BigDecimal discount = BigDecimal.ZERO;
+        for (int i = 0; i < lines; i++) {
+            BigDecimal lineTotal = decimalPrices.get(i).multiply(BigDecimal.valueOf(quantities[i]));
+            subtotal = subtotal.add(lineTotal);
+            discount = discount.add(lineTotal.multiply(DISCOUNT_PERCENT).divide(HUNDRED, 2, RoundingMode.HALF_UP));
+        }
+        return subtotal.subtract(discount);
+    }
+    
+    @Benchmark
+    public Money money() {
+        Money subtotal = Money.ZERO;
+        Money discount = Money.ZERO;
+        for (int i = 0; i < lines; i++) {
+            Money lineTotal = moneyPrices.get(i).times(quantities[i]);
+            subtotal = subtotal.plus(lineTotal);
+            discount = discount.plus(lineTotal.percent(DISCOUNT_PERCENT));
+        }
+        return subtotal.minus(discount);
+    }
+}
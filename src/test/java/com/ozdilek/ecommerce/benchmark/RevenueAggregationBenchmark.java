@@ -0,0 +1,62 @@
+package com.ozdilek.ecommerce.benchmark;
+
+import com.ozdilek.ecommerce.model.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Revenue and average order value over a batch of order totals, as the analytics reports
+ * compute them once the aggregation results are in memory: BigDecimal streams against
+ * summing minor units.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RevenueAggregationBenchmark {
+    
+    @Param({ "10000", "100000" })
+    private int orders;
+    
+    private List<BigDecimal> totals;
+    
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        totals = random.longs(orders, 1_000, 5_000_000)
+                .mapToObj(minor -> BigDecimal.valueOf(minor, 2))
+                .toList();
+    }
+    
+    @Benchmark
+    public BigDecimal bigDecimal() {
+        BigDecimal revenue = totals.stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+        return revenue.divide(BigDecimal.valueOf(totals.size()), 2, RoundingMode.HALF_UP);
+    }
+    
+    @Benchmark
+    public Money money() {
+        long revenue = 0;
+        for (BigDecimal total : totals) {
+            revenue = Math.addExact(revenue, Money.of(total).minor());
+        }
+        return Money.ofMinor(revenue).dividedBy(totals.size());
+    }
+}
@@ -0,0 +1,84 @@
+package com.ozdilek.ecommerce.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MoneyTest {
+
+	@Test
+	void ofRoundsHalfUpToTheMinorUnit() {
+		assertThat(Money.of(new BigDecimal("10.005")).minor()).isEqualTo(1001);
+		assertThat(Money.of(new BigDecimal("10.004")).minor()).isEqualTo(1000);
+		assertThat(Money.of(new BigDecimal("-10.005")).minor()).isEqualTo(-1001);
+		assertThat(Money.of(new BigDecimal("7")).toBigDecimal()).isEqualByComparingTo("7.00");
+	}
+
+	@Test
+	void percentRoundsHalfUp() {
+		// 12.5% of 10.01 = 1.25125
+		assertThat(Money.of(new BigDecimal("10.01")).percent(new BigDecimal("12.5"))).isEqualTo(Money.ofMinor(125));
+		// 50% of 0.01 = 0.005
+		assertThat(Money.ofMinor(1).percent(new BigDecimal("50"))).isEqualTo(Money.ofMinor(1));
+		assertThat(Money.ofMinor(3).percent(new BigDecimal("50.00"))).isEqualTo(Money.ofMinor(2));
+		assertThat(Money.ofMinor(1000).percent(new BigDecimal("100"))).isEqualTo(Money.ofMinor(1000));
+		assertThat(Money.ofMinor(1000).percent(BigDecimal.ZERO)).isEqualTo(Money.ZERO);
+	}
+
+	@Test
+	void percentRoundsNegativeAmountsAwayFromZero() {
+		assertThat(Money.ofMinor(-1).percent(new BigDecimal("50"))).isEqualTo(Money.ofMinor(-1));
+		assertThat(Money.ofMinor(-3).percent(new BigDecimal("50"))).isEqualTo(Money.ofMinor(-2));
+		assertThat(Money.ofMinor(-1001).percent(new BigDecimal("12.5"))).isEqualTo(Money.ofMinor(-125));
+	}
+
+	@Test
+	void percentFinerThanABasisPointMatchesBigDecimal() {
+		// 12.345% of 99.99 = 12.3437655
+		assertThat(Money.of(new BigDecimal("99.99")).percent(new BigDecimal("12.345"))).isEqualTo(Money.ofMinor(1234));
+		// 0.005% of 100.00 = 0.005
+		assertThat(Money.ofMinor(10_000).percent(new BigDecimal("0.005"))).isEqualTo(Money.ofMinor(1));
+		// Negative scale: 1E+1 = 10%
+		assertThat(Money.ofMinor(10_000).percent(new BigDecimal("1E+1"))).isEqualTo(Money.ofMinor(1000));
+	}
+
+	@Test
+	void dividedByRoundsHalfAwayFromZero() {
+		assertThat(Money.ofMinor(5).dividedBy(2)).isEqualTo(Money.ofMinor(3));
+		assertThat(Money.ofMinor(4).dividedBy(3)).isEqualTo(Money.ofMinor(1));
+		assertThat(Money.ofMinor(-5).dividedBy(2)).isEqualTo(Money.ofMinor(-3));
+		assertThat(Money.ofMinor(-4).dividedBy(3)).isEqualTo(Money.ofMinor(-1));
+		assertThat(Money.ofMinor(-7).dividedBy(7)).isEqualTo(Money.ofMinor(-1));
+	}
+
+	@Test
+	void dividedByRejectsNonPositiveDivisors() {
+		assertThatThrownBy(() -> Money.ofMinor(5).dividedBy(0)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> Money.ofMinor(5).dividedBy(-1)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void arithmeticFailsOnOverflow() {
+		Money max = Money.ofMinor(Long.MAX_VALUE);
+		assertThatThrownBy(() -> max.plus(Money.ofMinor(1))).isInstanceOf(ArithmeticException.class);
+		assertThatThrownBy(() -> max.times(2)).isInstanceOf(ArithmeticException.class);
+		assertThatThrownBy(() -> max.percent(new BigDecimal("200"))).isInstanceOf(ArithmeticException.class);
+	}
+
+	@Test
+	void rejectsMixedCurrencies() {
+		Money euros = Money.of(BigDecimal.ONE, "EUR");
+		assertThatThrownBy(() -> Money.ofMinor(100).plus(euros)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> Money.ofMinor(100).compareTo(euros)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void minAndSignum() {
+		assertThat(Money.ofMinor(5).min(Money.ofMinor(3))).isEqualTo(Money.ofMinor(3));
+		assertThat(Money.ofMinor(-5).signum()).isEqualTo(-1);
+		assertThat(Money.ZERO.signum()).isZero();
+	}
+}
@@ -0,0 +1,68 @@
+package com.ozdilek.ecommerce.service;
+
+import com.ozdilek.ecommerce.model.DailySales;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DailySalesServiceTest {
+
+	private static final LocalDate DAY = LocalDate.of(2026, 3, 1);
+
+	@Test
+	void deltasMoveTheBucketOntoTheRebuiltValues() {
+		DailySales before = rollup(5, 1000, Map.of("PENDING", 3L, "DELIVERED", 2L));
+		before.getCategories().put("shoes", DailySales.CategorySales.builder().revenueMinor(1000L).units(2L).build());
+		DailySales target = rollup(6, 1500, Map.of("PENDING", 3L, "DELIVERED", 3L));
+		target.getCategories().put("shoes", DailySales.CategorySales.builder().revenueMinor(1500L).units(3L).build());
+
+		assertThat(DailySalesService.deltas(target, before)).containsOnly(
+				Map.entry("orders", 1L),
+				Map.entry("revenueMinor", 500L),
+				Map.entry("statuses.DELIVERED", 1L),
+				Map.entry("categories.shoes.revenueMinor", 500L),
+				Map.entry("categories.shoes.units", 1L));
+	}
+
+	@Test
+	void fieldsMissingOnOneSideCountAsZero() {
+		DailySales before = rollup(2, 0, Map.of("CANCELLED", 2L));
+		DailySales target = rollup(2, 0, Map.of("REFUNDED", 2L));
+
+		assertThat(DailySalesService.deltas(target, before)).containsOnly(
+				Map.entry("statuses.CANCELLED", -2L),
+				Map.entry("statuses.REFUNDED", 2L));
+	}
+
+	@Test
+	void bucketWithoutOrdersAnyMoreIsZeroed() {
+		DailySales before = rollup(1, 0, Map.of("PENDING", 1L));
+		before.setUnitsSold(null); // created by increments, never backfilled
+
+		assertThat(DailySalesService.deltas(null, before)).containsOnly(
+				Map.entry("orders", -1L),
+				Map.entry("statuses.PENDING", -1L));
+	}
+
+	@Test
+	void unchangedBucketNeedsNoUpdate() {
+		assertThat(DailySalesService.deltas(rollup(4, 700, Map.of("PAID", 4L)), rollup(4, 700, Map.of("PAID", 4L)))).isEmpty();
+	}
+
+	private static DailySales rollup(long orders, long revenueMinor, Map<String, Long> statuses) {
+		return DailySales.builder()
+				.id(DailySales.idFor(DAY, "TRY"))
+				.day(DAY)
+				.currency("TRY")
+				.orders(orders)
+				.statuses(new HashMap<>(statuses))
+				.revenueMinor(revenueMinor)
+				.unitsSold(0L)
+				.categories(new HashMap<>())
+				.build();
+	}
+}
@@ -0,0 +1,130 @@
+package com.ozdilek.ecommerce.service;
+
+import com.ozdilek.ecommerce.model.PriceBook;
+import com.ozdilek.ecommerce.model.Product;
+import com.ozdilek.ecommerce.repository.PriceBookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PriceResolverTest {
+
+	private static final LocalDateTime START = LocalDateTime.of(2026, 3, 1, 0, 0);
+	private static final LocalDateTime END = LocalDateTime.of(2026, 3, 8, 0, 0);
+
+	private PriceBookRepository priceBookRepository;
+	private PriceResolver resolver;
+
+	private final Product product = Product.builder()
+			.sku("SKU-1")
+			.price(new BigDecimal("100.00"))
+			.categories(List.of("shoes"))
+			.build();
+
+	@BeforeEach
+	void setUp() {
+		priceBookRepository = mock(PriceBookRepository.class);
+		resolver = new PriceResolver(priceBookRepository, mock(MongoTemplate.class), mock(CacheManager.class));
+	}
+
+	@Test
+	void entryRunsFromItsStartInclusiveToItsEndExclusive() {
+		load(book("spring", 0, skuEntry("80.00", START, END)));
+
+		PriceResolver.ResolvedPrice before = resolver.resolve(product, START.minusNanos(1));
+		assertThat(before.price()).isEqualByComparingTo("100.00");
+		assertThat(before.priceBookId()).isNull();
+		assertThat(before.validUntil()).isEqualTo(START);
+
+		PriceResolver.ResolvedPrice atStart = resolver.resolve(product, START);
+		assertThat(atStart.price()).isEqualByComparingTo("80.00");
+		assertThat(atStart.listPrice()).isEqualByComparingTo("100.00");
+		assertThat(atStart.priceBookId()).isEqualTo("spring");
+		assertThat(atStart.validUntil()).isEqualTo(END);
+
+		assertThat(resolver.resolve(product, END.minusNanos(1)).price()).isEqualByComparingTo("80.00");
+
+		PriceResolver.ResolvedPrice atEnd = resolver.resolve(product, END);
+		assertThat(atEnd.price()).isEqualByComparingTo("100.00");
+		assertThat(atEnd.validUntil()).isNull();
+	}
+
+	@Test
+	void openEndedEntryNeverExpires() {
+		load(book("always", 0, skuEntry("90.00", null, null)));
+
+		PriceResolver.ResolvedPrice price = resolver.resolve(product, START);
+		assertThat(price.price()).isEqualByComparingTo("90.00");
+		assertThat(price.validUntil()).isNull();
+	}
+
+	@Test
+	void higherPriorityWinsAndTheLowerOneResumesAfterIt() {
+		LocalDateTime flashStart = START.plusDays(2);
+		LocalDateTime flashEnd = START.plusDays(3);
+		load(book("spring", 0, skuEntry("80.00", START, END)),
+				book("flash", 5, skuEntry("85.00", flashStart, flashEnd)));
+
+		assertThat(resolver.resolve(product, START).validUntil()).isEqualTo(flashStart);
+		assertThat(resolver.resolve(product, flashStart).priceBookId()).isEqualTo("flash");
+		assertThat(resolver.resolve(product, flashStart).validUntil()).isEqualTo(flashEnd);
+		assertThat(resolver.resolve(product, flashEnd).priceBookId()).isEqualTo("spring");
+		assertThat(resolver.resolve(product, flashEnd).validUntil()).isEqualTo(END);
+	}
+
+	@Test
+	void onEqualPriorityTheLaterStartWins() {
+		load(book("early", 0, skuEntry("80.00", START, END)),
+				book("late", 0, skuEntry("95.00", START.plusDays(1), END)));
+
+		assertThat(resolver.resolve(product, START.plusDays(1)).priceBookId()).isEqualTo("late");
+	}
+
+	@Test
+	void skuEntryBeatsCategoryEntry() {
+		load(book("category", 9, categoryEntry("50", START, END)),
+				book("sku", 0, skuEntry("90.00", START.plusDays(1), END)));
+
+		assertThat(resolver.resolve(product, START).priceBookId()).isEqualTo("category");
+		assertThat(resolver.resolve(product, START).validUntil()).isEqualTo(START.plusDays(1));
+		assertThat(resolver.resolve(product, START.plusDays(1)).priceBookId()).isEqualTo("sku");
+	}
+
+	@Test
+	void percentOffRoundsHalfUpFromTheListPrice() {
+		load(book("category", 0, categoryEntry("25", START, END)));
+
+		Product cheap = Product.builder().sku("SKU-2").price(new BigDecimal("99.99")).categories(List.of("shoes")).build();
+
+		// 75% of 99.99 = 74.9925
+		assertThat(resolver.resolve(cheap, START).price()).isEqualByComparingTo("74.99");
+		assertThat(resolver.pricedCategories()).containsExactly("shoes");
+	}
+
+	private void load(PriceBook... books) {
+		when(priceBookRepository.findByActiveTrue()).thenReturn(List.of(books));
+		resolver.reload();
+	}
+
+	private static PriceBook book(String id, int priority, PriceBook.Entry... entries) {
+		return PriceBook.builder().id(id).priority(priority).entries(List.of(entries)).build();
+	}
+
+	private static PriceBook.Entry skuEntry(String price, LocalDateTime startsAt, LocalDateTime endsAt) {
+		return PriceBook.Entry.builder().sku("SKU-1").price(new BigDecimal(price)).startsAt(startsAt).endsAt(endsAt).build();
+	}
+
+	private static PriceBook.Entry categoryEntry(String percentOff, LocalDateTime startsAt, LocalDateTime endsAt) {
+		return PriceBook.Entry.builder().categoryId("shoes").percentOff(new BigDecimal(percentOff))
+				.startsAt(startsAt).endsAt(endsAt).build();
+	}
+}
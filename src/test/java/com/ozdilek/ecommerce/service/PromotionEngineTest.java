@@ -0,0 +1,155 @@
+package com.ozdilek.ecommerce.service;
+
+import com.ozdilek.ecommerce.model.AppliedPromotion;
+import com.ozdilek.ecommerce.model.Money;
+import com.ozdilek.ecommerce.model.Promotion;
+import com.ozdilek.ecommerce.repository.PromotionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PromotionEngineTest {
+
+	private PromotionRepository promotionRepository;
+	private PromotionEngine engine;
+
+	@BeforeEach
+	void setUp() {
+		promotionRepository = mock(PromotionRepository.class);
+		engine = new PromotionEngine(promotionRepository, mock(MongoTemplate.class), mock(CacheManager.class),
+				new SimpleMeterRegistry());
+	}
+
+	@Test
+	void buyXGetYGivesAwayOneUnitPerFullGroup() {
+		load(Promotion.builder().id("bogo").type(Promotion.Type.BUY_X_GET_Y).scope(Promotion.Scope.PRODUCT)
+				.productIds(List.of("p1")).buyQty(2).getQty(1).build());
+
+		// 7 units make two full groups of 2 + 1
+		PromotionEngine.Evaluation evaluation = engine.evaluate(List.of(line("p1", 7, "10.00")), null);
+
+		assertThat(evaluation.subtotal()).isEqualTo(Money.of(new BigDecimal("70.00")));
+		assertThat(evaluation.discount()).isEqualTo(Money.of(new BigDecimal("20.00")));
+		assertThat(evaluation.applied()).extracting(AppliedPromotion::getPromotionId).containsExactly("bogo");
+	}
+
+	@Test
+	void buyXGetYNeedsAFullGroup() {
+		load(Promotion.builder().id("bogo").type(Promotion.Type.BUY_X_GET_Y).scope(Promotion.Scope.PRODUCT)
+				.productIds(List.of("p1")).buyQty(2).getQty(1).build());
+
+		PromotionEngine.Evaluation evaluation = engine.evaluate(List.of(line("p1", 2, "10.00")), null);
+
+		assertThat(evaluation.discount()).isEqualTo(Money.ZERO);
+		assertThat(evaluation.applied()).isEmpty();
+	}
+
+	@Test
+	void eachLineGetsOnlyItsBestPromotion() {
+		load(percentOff("ten-percent", Promotion.Scope.PRODUCT, "10"),
+				Promotion.builder().id("five-off").type(Promotion.Type.AMOUNT_OFF).scope(Promotion.Scope.CATEGORY)
+						.categoryIds(List.of("shoes")).amount(new BigDecimal("5.00")).build());
+
+		// 10% of 60.00 = 6.00, 5.00 per unit = 10.00
+		PromotionEngine.Evaluation evaluation = engine.evaluate(List.of(line("p1", 2, "30.00")), null);
+
+		assertThat(evaluation.discount()).isEqualTo(Money.of(new BigDecimal("10.00")));
+		assertThat(evaluation.applied()).extracting(AppliedPromotion::getPromotionId).containsExactly("five-off");
+	}
+
+	@Test
+	void cartWidePromotionAppliesToWhatLineDiscountsLeft() {
+		Promotion cart = percentOff("cart-ten", Promotion.Scope.CART, "10");
+		Promotion bigSpender = percentOff("cart-fifty", Promotion.Scope.CART, "50");
+		bigSpender.setMinSubtotal(new BigDecimal("90.00"));
+		load(percentOff("product-twenty", Promotion.Scope.PRODUCT, "20"), cart, bigSpender);
+
+		// 100.00 - 20% = 80.00: under the 90.00 minimum, so 10% of 80.00 = 8.00
+		PromotionEngine.Evaluation evaluation = engine.evaluate(List.of(line("p1", 1, "100.00")), null);
+
+		assertThat(evaluation.discount()).isEqualTo(Money.of(new BigDecimal("28.00")));
+		assertThat(evaluation.total()).isEqualTo(Money.of(new BigDecimal("72.00")));
+		assertThat(evaluation.applied()).extracting(AppliedPromotion::getPromotionId)
+				.containsExactly("product-twenty", "cart-ten");
+	}
+
+	@Test
+	void cartWideAmountNeverExceedsTheRemainder() {
+		Promotion cart = Promotion.builder().id("hundred-off").type(Promotion.Type.AMOUNT_OFF).scope(Promotion.Scope.CART)
+				.amount(new BigDecimal("100.00")).build();
+		load(cart);
+
+		PromotionEngine.Evaluation evaluation = engine.evaluate(List.of(line("p1", 1, "40.00")), null);
+
+		assertThat(evaluation.total()).isEqualTo(Money.ZERO);
+	}
+
+	@Test
+	void couponPromotionsNeedTheirCode() {
+		Promotion coupon = percentOff("coupon", Promotion.Scope.CART, "10");
+		coupon.setCouponCode("SAVE10");
+		load(coupon);
+
+		assertThat(engine.evaluate(List.of(line("p1", 1, "50.00")), null).discount()).isEqualTo(Money.ZERO);
+
+		PromotionEngine.Evaluation withCode = engine.evaluate(List.of(line("p1", 1, "50.00")), " save10 ");
+		assertThat(withCode.discount()).isEqualTo(Money.of(new BigDecimal("5.00")));
+		assertThat(withCode.couponCode()).isEqualTo("SAVE10");
+		assertThat(withCode.couponValid()).isTrue();
+
+		assertThat(engine.evaluate(List.of(line("p1", 1, "50.00")), "UNKNOWN").couponValid()).isFalse();
+	}
+
+	@Test
+	void promotionsOutsideTheirScheduleDoNotApply() {
+		Promotion upcoming = percentOff("upcoming", Promotion.Scope.PRODUCT, "50");
+		upcoming.setStartsAt(LocalDateTime.now().plusDays(1));
+		load(upcoming);
+
+		assertThat(engine.evaluate(List.of(line("p1", 1, "50.00")), null).discount()).isEqualTo(Money.ZERO);
+	}
+
+	@Test
+	void advertisedPriceIgnoresCouponsAndBuyXGetY() {
+		Promotion coupon = percentOff("coupon", Promotion.Scope.PRODUCT, "50");
+		coupon.setCouponCode("HALF");
+		load(coupon,
+				percentOff("ten-percent", Promotion.Scope.PRODUCT, "10"),
+				Promotion.builder().id("bogo").type(Promotion.Type.BUY_X_GET_Y).scope(Promotion.Scope.PRODUCT)
+						.productIds(List.of("p1")).buyQty(1).getQty(1).build());
+
+		Money price = engine.advertisedPrice("p1", List.of("shoes"), Money.of(new BigDecimal("80.00")));
+
+		assertThat(price).isEqualTo(Money.of(new BigDecimal("72.00")));
+	}
+
+	private void load(Promotion... promotions) {
+		when(promotionRepository.findByActiveTrue()).thenReturn(List.of(promotions));
+		engine.reload();
+	}
+
+	private static Promotion percentOff(String id, Promotion.Scope scope, String percent) {
+		Promotion.PromotionBuilder promotion = Promotion.builder().id(id).type(Promotion.Type.PERCENT_OFF).scope(scope)
+				.percent(new BigDecimal(percent));
+		if (scope == Promotion.Scope.PRODUCT) {
+			promotion.productIds(List.of("p1"));
+		} else if (scope == Promotion.Scope.CATEGORY) {
+			promotion.categoryIds(List.of("shoes"));
+		}
+		return promotion.build();
+	}
+
+	private static PromotionEngine.Line line(String productId, int qty, String unitPrice) {
+		return new PromotionEngine.Line(productId, List.of("shoes"), qty, Money.of(new BigDecimal(unitPrice)));
+	}
+}
@@ -0,0 +1,102 @@
+package com.ozdilek.ecommerce.service;
+
+import com.ozdilek.ecommerce.repository.OrderRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+
+import java.time.LocalDate;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class TopProductsServiceTest {
+
+	@Test
+	void productsMissingFromAFullSummaryMayHaveSoldUpToItsSmallestCount() {
+		// Capacity 2: both days are full. Day 1 smallest is 3, day 2 smallest is 1.
+		Map<String, long[]> merged = TopProductsService.merge(
+				List.of(counts("b", 3, "a", 5), counts("a", 1, "c", 4)),
+				List.of(Map.of(), Map.of()),
+				List.of(Map.of("a", "500", "b", "300"), Map.of("a", "100", "c", "400")),
+				2);
+
+		// upper bound, lower bound, revenue
+		assertThat(merged.get("a")).containsExactly(6, 6, 600);
+		assertThat(merged.get("b")).containsExactly(4, 3, 300);
+		assertThat(merged.get("c")).containsExactly(7, 4, 400);
+	}
+
+	@Test
+	void summariesBelowCapacityAreExact() {
+		Map<String, long[]> merged = TopProductsService.merge(
+				List.of(counts("a", 2), counts("b", 1)),
+				List.of(Map.of(), Map.of()),
+				List.of(Map.of(), Map.of()),
+				10);
+
+		assertThat(merged.get("a")).containsExactly(2, 2, 0);
+		assertThat(merged.get("b")).containsExactly(1, 1, 0);
+	}
+
+	@Test
+	void inheritedCountsLowerTheLowerBound() {
+		// "c" replaced an evicted product and inherited 3 of its 5 units
+		Map<String, long[]> merged = TopProductsService.merge(
+				List.of(counts("a", 4, "c", 5)),
+				List.of(Map.of("c", "3")),
+				List.of(Map.of()),
+				2);
+
+		assertThat(merged.get("c")).containsExactly(5, 2, 0);
+		assertThat(merged.get("a")).containsExactly(4, 4, 0);
+	}
+
+	@Test
+	void emptyDaysAddNothing() {
+		Map<String, long[]> merged = TopProductsService.merge(
+				List.of(counts("a", 2, "b", 3), counts()),
+				List.of(Map.of(), Map.of()),
+				List.of(Map.of(), Map.of()),
+				2);
+
+		assertThat(merged.get("a")).containsExactly(2, 2, 0);
+		assertThat(merged.get("b")).containsExactly(3, 3, 0);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void halfOpenRangesAreRejected() {
+		RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+		DistributedLockService lockService = mock(DistributedLockService.class);
+		TopProductsService service = new TopProductsService(mock(MongoTemplate.class), redisTemplate,
+				mock(OrderRepository.class), lockService);
+		LocalDate today = LocalDate.now();
+
+		assertThatThrownBy(() -> service.getTopProducts(10, today, null)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> service.getTopProducts(10, null, today)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> service.getExactTopProducts(10, today, null)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> service.rebuild(null, today)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> service.getTopProducts(10, today, today.minusDays(1)))
+				.isInstanceOf(IllegalArgumentException.class);
+		verifyNoInteractions(redisTemplate, lockService);
+	}
+
+	/**
+	 * Alternating member and count, ascending by count like ZRANGE.
+	 */
+	private static Set<ZSetOperations.TypedTuple<String>> counts(Object... memberAndCount) {
+		Set<ZSetOperations.TypedTuple<String>> tuples = new LinkedHashSet<>();
+		for (int i = 0; i < memberAndCount.length; i += 2) {
+			tuples.add(ZSetOperations.TypedTuple.of((String) memberAndCount[i], ((Integer) memberAndCount[i + 1]).doubleValue()));
+		}
+		return tuples;
+	}
+}